@@ -0,0 +1,23 @@
+package com.ctrip.framework.apollo.adminservice;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageCompactor;
+import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+public class AdminServiceAutoConfiguration {
+
+  /**
+   * release messages are written by admin services, so they are compacted here instead of by every
+   * config service
+   */
+  @Bean
+  public ReleaseMessageCompactor releaseMessageCompactor(ReleaseMessageRepository releaseMessageRepository,
+      JdbcTemplate jdbcTemplate, BizConfig bizConfig) {
+    return new ReleaseMessageCompactor(releaseMessageRepository, jdbcTemplate, bizConfig);
+  }
+}
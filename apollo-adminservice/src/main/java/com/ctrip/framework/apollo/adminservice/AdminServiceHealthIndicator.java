@@ -1,5 +1,6 @@
 package com.ctrip.framework.apollo.adminservice;
 
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageCompactor;
 import com.ctrip.framework.apollo.biz.service.AppService;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
@@ -10,15 +11,21 @@ import org.springframework.stereotype.Component;
 public class AdminServiceHealthIndicator implements HealthIndicator {
 
   private final AppService appService;
+  private final ReleaseMessageCompactor releaseMessageCompactor;
 
-  public AdminServiceHealthIndicator(final AppService appService) {
+  public AdminServiceHealthIndicator(final AppService appService,
+      final ReleaseMessageCompactor releaseMessageCompactor) {
     this.appService = appService;
+    this.releaseMessageCompactor = releaseMessageCompactor;
   }
 
   @Override
   public Health health() {
     check();
-    return Health.up().build();
+    return Health.up()
+        .withDetail("releaseMessageTableSize", releaseMessageCompactor.getTableSize())
+        .withDetail("releaseMessageCompactionLag", releaseMessageCompactor.getLag())
+        .build();
   }
 
   private void check() {
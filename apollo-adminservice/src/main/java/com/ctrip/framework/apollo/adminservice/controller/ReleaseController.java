@@ -5,13 +5,16 @@ import com.ctrip.framework.apollo.biz.entity.Namespace;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.message.MessageSender;
 import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.service.BatchReleaseService;
 import com.ctrip.framework.apollo.biz.service.NamespaceBranchService;
 import com.ctrip.framework.apollo.biz.service.NamespaceService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
 import com.ctrip.framework.apollo.common.constants.NamespaceBranchStatus;
+import com.ctrip.framework.apollo.common.dto.BatchReleaseDTO;
 import com.ctrip.framework.apollo.common.dto.ItemChangeSets;
 import com.ctrip.framework.apollo.common.dto.ReleaseDTO;
+import com.ctrip.framework.apollo.common.dto.ReleaseTargetResultDTO;
 import com.ctrip.framework.apollo.common.exception.NotFoundException;
 import com.ctrip.framework.apollo.common.utils.BeanUtils;
 import com.google.common.base.Splitter;
@@ -39,16 +42,19 @@ public class ReleaseController {
   private final NamespaceService namespaceService;
   private final MessageSender messageSender;
   private final NamespaceBranchService namespaceBranchService;
+  private final BatchReleaseService batchReleaseService;
 
   public ReleaseController(
       final ReleaseService releaseService,
       final NamespaceService namespaceService,
       final MessageSender messageSender,
-      final NamespaceBranchService namespaceBranchService) {
+      final NamespaceBranchService namespaceBranchService,
+      final BatchReleaseService batchReleaseService) {
     this.releaseService = releaseService;
     this.namespaceService = namespaceService;
     this.messageSender = messageSender;
     this.namespaceBranchService = namespaceBranchService;
+    this.batchReleaseService = batchReleaseService;
   }
 
 
@@ -127,6 +133,16 @@ public class ReleaseController {
     return BeanUtils.transform(ReleaseDTO.class, release);
   }
 
+  /**
+   * publish many clusters and namespaces of the app, each target is published in its own transaction
+   *
+   * @return the result of each target, in the same order as the targets
+   */
+  @PostMapping("/apps/{appId}/releases/batch")
+  public List<ReleaseTargetResultDTO> batchPublish(@PathVariable("appId") String appId,
+                                                   @RequestBody BatchReleaseDTO batchRelease) {
+    return batchReleaseService.publish(appId, batchRelease);
+  }
 
   /**
    * merge branch items to master and publish master
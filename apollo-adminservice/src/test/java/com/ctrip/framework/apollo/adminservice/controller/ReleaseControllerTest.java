@@ -106,7 +106,7 @@ public class ReleaseControllerTest extends AbstractControllerTest {
     MessageSender someMessageSender = mock(MessageSender.class);
     Namespace someNamespace = mock(Namespace.class);
 
-    ReleaseController releaseController = new ReleaseController(someReleaseService, someNamespaceService, someMessageSender, null);
+    ReleaseController releaseController = new ReleaseController(someReleaseService, someNamespaceService, someMessageSender, null, null);
 
     when(someNamespaceService.findOne(someAppId, someCluster, someNamespaceName))
         .thenReturn(someNamespace);
@@ -19,16 +19,32 @@ public class BizConfig extends RefreshableConfig {
 
   private static final int DEFAULT_ITEM_KEY_LENGTH = 128;
   private static final int DEFAULT_ITEM_VALUE_LENGTH = 20000;
-  private static final int DEFAULT_APPNAMESPACE_CACHE_REBUILD_INTERVAL = 60; //60s
+  private static final int DEFAULT_ITEM_SET_BATCH_THRESHOLD = 100;
+  private static final int DEFAULT_RELEASE_FULL_SNAPSHOT_INTERVAL = 10;
+  private static final int DEFAULT_BATCH_RELEASE_PARALLELISM = 4;
+  private static final int DEFAULT_BATCH_RELEASE_MAX_TARGETS = 200;
+  private static final int DEFAULT_APPNAMESPACE_CACHE_REBUILD_INTERVAL = 1800; //30 minutes, changes are published as messages
   private static final int DEFAULT_GRAY_RELEASE_RULE_SCAN_INTERVAL = 60; //60s
+  private static final int DEFAULT_GRAY_RELEASE_RULE_FULL_SCAN_INTERVAL = 1800; //30 minutes
   private static final int DEFAULT_APPNAMESPACE_CACHE_SCAN_INTERVAL = 1; //1s
   private static final int DEFAULT_ACCESSKEY_CACHE_SCAN_INTERVAL = 1; //1s
-  private static final int DEFAULT_ACCESSKEY_CACHE_REBUILD_INTERVAL = 60; //60s
+  private static final int DEFAULT_ACCESSKEY_CACHE_REBUILD_INTERVAL = 1800; //30 minutes, changes are published as messages
   private static final int DEFAULT_RELEASE_MESSAGE_CACHE_SCAN_INTERVAL = 1; //1s
   private static final int DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_IN_MS = 1000; //1000ms
+  private static final int DEFAULT_RELEASE_MESSAGE_COMPACTION_INTERVAL = 60; //60s
   private static final int DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH = 100;
   private static final int DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH_INTERVAL_IN_MILLI = 100;//100ms
   private static final int DEFAULT_LONG_POLLING_TIMEOUT = 60; //60s
+  private static final int DEFAULT_NOTIFICATION_STREAM_TIMEOUT = 600; //10 minutes
+  private static final int DEFAULT_INSTANCE_CONFIG_HEARTBEAT_INTERVAL_IN_MINUTE = 10; //10 minutes
+  private static final int DEFAULT_INSTANCE_CONFIG_HEARTBEAT_FLUSH_INTERVAL = 60; //60s
+  private static final int DEFAULT_CONFIG_FILE_CACHE_MAX_SIZE_IN_MB = 50; //50MB
+  private static final int DEFAULT_CONFIG_FILE_CACHE_EXPIRE_IN_MINUTES = 30; //30 minutes
+  private static final int DEFAULT_CACHE_SNAPSHOT_INTERVAL = 300; //5 minutes
+  private static final int DEFAULT_ADMISSION_CONTROL_LONG_POLL_MAX_CONCURRENCY = 20000;
+  private static final int DEFAULT_ADMISSION_CONTROL_CACHE_HIT_MAX_CONCURRENCY = 1000;
+  private static final int DEFAULT_ADMISSION_CONTROL_DATABASE_MAX_CONCURRENCY = 100;
+  private static final int DEFAULT_ADMISSION_CONTROL_RETRY_AFTER = 5; //5s
 
   private Gson gson = new Gson();
   private static final Type namespaceValueLengthOverrideTypeReference =
@@ -60,12 +76,30 @@ public class BizConfig extends RefreshableConfig {
     return checkInt(interval, 1, Integer.MAX_VALUE, DEFAULT_GRAY_RELEASE_RULE_SCAN_INTERVAL);
   }
 
+  /**
+   * The interval of scanning all the gray release rules, other scans only read the rules modified
+   * since the last scan
+   */
+  public int grayReleaseRuleFullScanInterval() {
+    int interval = getIntProperty("apollo.gray-release-rule-full-scan.interval", DEFAULT_GRAY_RELEASE_RULE_FULL_SCAN_INTERVAL);
+    return checkInt(interval, 1, Integer.MAX_VALUE, DEFAULT_GRAY_RELEASE_RULE_FULL_SCAN_INTERVAL);
+  }
+
   public long longPollingTimeoutInMilli() {
     int timeout = getIntProperty("long.polling.timeout", DEFAULT_LONG_POLLING_TIMEOUT);
     // java client's long polling timeout is 90 seconds, so server side long polling timeout must be less than 90
     return 1000 * checkInt(timeout, 1, 90, DEFAULT_LONG_POLLING_TIMEOUT);
   }
 
+  /**
+   * Notification streams are closed after this, so that clients reconnect and rebalance among the
+   * config services
+   */
+  public long notificationStreamTimeoutInMilli() {
+    int timeout = getIntProperty("notification.stream.timeout", DEFAULT_NOTIFICATION_STREAM_TIMEOUT);
+    return 1000L * checkInt(timeout, 60, 3600, DEFAULT_NOTIFICATION_STREAM_TIMEOUT);
+  }
+
   public int itemKeyLengthLimit() {
     int limit = getIntProperty("item.key.length.limit", DEFAULT_ITEM_KEY_LENGTH);
     return checkInt(limit, 5, Integer.MAX_VALUE, DEFAULT_ITEM_KEY_LENGTH);
@@ -76,6 +110,14 @@ public class BizConfig extends RefreshableConfig {
     return checkInt(limit, 5, Integer.MAX_VALUE, DEFAULT_ITEM_VALUE_LENGTH);
   }
 
+  /**
+   * Change sets with more items than this are written with jdbc batches
+   */
+  public int itemSetBatchThreshold() {
+    int threshold = getIntProperty("item.set.batch.threshold", DEFAULT_ITEM_SET_BATCH_THRESHOLD);
+    return checkInt(threshold, 1, Integer.MAX_VALUE, DEFAULT_ITEM_SET_BATCH_THRESHOLD);
+  }
+
   public Map<Long, Integer> namespaceValueLengthLimitOverride() {
     String namespaceValueLengthOverrideString = getValue("namespace.value.length.limit.override");
     Map<Long, Integer> namespaceValueLengthOverride = Maps.newHashMap();
@@ -147,6 +189,15 @@ public class BizConfig extends RefreshableConfig {
     return TimeUnit.SECONDS;
   }
 
+  public int releaseMessageCompactionInterval() {
+    int interval = getIntProperty("apollo.release-message-compaction.interval", DEFAULT_RELEASE_MESSAGE_COMPACTION_INTERVAL);
+    return checkInt(interval, 1, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_COMPACTION_INTERVAL);
+  }
+
+  public TimeUnit releaseMessageCompactionIntervalTimeUnit() {
+    return TimeUnit.SECONDS;
+  }
+
   public int releaseMessageScanIntervalInMilli() {
     int interval = getIntProperty("apollo.message-scan.interval", DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_IN_MS);
     return checkInt(interval, 100, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_SCAN_INTERVAL_IN_MS);
@@ -162,10 +213,136 @@ public class BizConfig extends RefreshableConfig {
     return checkInt(interval, 10, Integer.MAX_VALUE, DEFAULT_RELEASE_MESSAGE_NOTIFICATION_BATCH_INTERVAL_IN_MILLI);
   }
 
+  /**
+   * The minimum interval between two writes of an instance config's last modified time when its
+   * release key is not changed
+   */
+  public int instanceConfigHeartbeatIntervalInMinute() {
+    int interval = getIntProperty("apollo.instance-config.heartbeat.interval", DEFAULT_INSTANCE_CONFIG_HEARTBEAT_INTERVAL_IN_MINUTE);
+    return checkInt(interval, 1, 60 * 24, DEFAULT_INSTANCE_CONFIG_HEARTBEAT_INTERVAL_IN_MINUTE);
+  }
+
+  public int instanceConfigHeartbeatFlushInterval() {
+    int interval = getIntProperty("apollo.instance-config.heartbeat-flush.interval", DEFAULT_INSTANCE_CONFIG_HEARTBEAT_FLUSH_INTERVAL);
+    return checkInt(interval, 1, Integer.MAX_VALUE, DEFAULT_INSTANCE_CONFIG_HEARTBEAT_FLUSH_INTERVAL);
+  }
+
+  public TimeUnit instanceConfigHeartbeatFlushIntervalTimeUnit() {
+    return TimeUnit.SECONDS;
+  }
+
+  /**
+   * The max size of the rendered config files cached, both formats included
+   */
+  public int configFileCacheMaxSizeInMB() {
+    int size = getIntProperty("apollo.config-file-cache.max-size", DEFAULT_CONFIG_FILE_CACHE_MAX_SIZE_IN_MB);
+    return checkInt(size, 1, 4096, DEFAULT_CONFIG_FILE_CACHE_MAX_SIZE_IN_MB);
+  }
+
+  /**
+   * Cached config files are refreshed on new releases, so they only expire when not accessed for
+   * this long
+   */
+  public int configFileCacheExpireInMinutes() {
+    int expire = getIntProperty("apollo.config-file-cache.expire", DEFAULT_CONFIG_FILE_CACHE_EXPIRE_IN_MINUTES);
+    return checkInt(expire, 1, Integer.MAX_VALUE, DEFAULT_CONFIG_FILE_CACHE_EXPIRE_IN_MINUTES);
+  }
+
+  /**
+   * The local directory to keep the snapshots of the config service caches in, so that a restarted
+   * config service only loads the changes after the snapshots. Snapshots are disabled if not set.
+   */
+  public String cacheSnapshotDir() {
+    return getValue("apollo.cache-snapshot.dir", "");
+  }
+
+  public int cacheSnapshotInterval() {
+    int interval = getIntProperty("apollo.cache-snapshot.interval", DEFAULT_CACHE_SNAPSHOT_INTERVAL);
+    return checkInt(interval, 10, Integer.MAX_VALUE, DEFAULT_CACHE_SNAPSHOT_INTERVAL);
+  }
+
+  public TimeUnit cacheSnapshotIntervalTimeUnit() {
+    return TimeUnit.SECONDS;
+  }
+
+  /**
+   * Whether to shed the config service requests beyond the concurrency limits with 429 responses
+   */
+  public boolean isAdmissionControlEnabled() {
+    return getBooleanProperty("apollo.admission-control.enabled", false);
+  }
+
+  /**
+   * The max concurrent long polls and notification streams, which is a fixed limit as they are held
+   * on purpose
+   */
+  public int admissionControlLongPollMaxConcurrency() {
+    int concurrency = getIntProperty("apollo.admission-control.long-poll.max-concurrency",
+        DEFAULT_ADMISSION_CONTROL_LONG_POLL_MAX_CONCURRENCY);
+    return checkInt(concurrency, 1, Integer.MAX_VALUE, DEFAULT_ADMISSION_CONTROL_LONG_POLL_MAX_CONCURRENCY);
+  }
+
+  /**
+   * The max concurrent config queries, the limit adapts below it to the latency of the cache hits
+   */
+  public int admissionControlCacheHitMaxConcurrency() {
+    int concurrency = getIntProperty("apollo.admission-control.cache-hit.max-concurrency",
+        DEFAULT_ADMISSION_CONTROL_CACHE_HIT_MAX_CONCURRENCY);
+    return checkInt(concurrency, 1, Integer.MAX_VALUE, DEFAULT_ADMISSION_CONTROL_CACHE_HIT_MAX_CONCURRENCY);
+  }
+
+  /**
+   * The max concurrent cache misses loading from the database, the limit adapts below it to the
+   * latency of the loads
+   */
+  public int admissionControlDatabaseMaxConcurrency() {
+    int concurrency = getIntProperty("apollo.admission-control.database.max-concurrency",
+        DEFAULT_ADMISSION_CONTROL_DATABASE_MAX_CONCURRENCY);
+    return checkInt(concurrency, 1, Integer.MAX_VALUE, DEFAULT_ADMISSION_CONTROL_DATABASE_MAX_CONCURRENCY);
+  }
+
+  /**
+   * The base of the Retry-After seconds of the requests shed, a random jitter up to the same is
+   * added so that the clients don't come back together
+   */
+  public int admissionControlRetryAfter() {
+    int retryAfter = getIntProperty("apollo.admission-control.retry-after", DEFAULT_ADMISSION_CONTROL_RETRY_AFTER);
+    return checkInt(retryAfter, 1, 3600, DEFAULT_ADMISSION_CONTROL_RETRY_AFTER);
+  }
+
   public boolean isConfigServiceCacheEnabled() {
     return getBooleanProperty("config-service.cache.enabled", false);
   }
 
+  /**
+   * Whether to store the configurations of new releases as deltas to the last full snapshot of the
+   * namespace
+   */
+  public boolean isReleaseDeltaStorageEnabled() {
+    return getBooleanProperty("apollo.release.delta-storage.enabled", false);
+  }
+
+  /**
+   * Every this many releases of a namespace, one stores the full configurations
+   */
+  public int releaseFullSnapshotInterval() {
+    int interval = getIntProperty("apollo.release.full-snapshot.interval", DEFAULT_RELEASE_FULL_SNAPSHOT_INTERVAL);
+    return checkInt(interval, 1, Integer.MAX_VALUE, DEFAULT_RELEASE_FULL_SNAPSHOT_INTERVAL);
+  }
+
+  /**
+   * How many targets of a batch release are published at the same time
+   */
+  public int batchReleaseParallelism() {
+    int parallelism = getIntProperty("apollo.release.batch.parallelism", DEFAULT_BATCH_RELEASE_PARALLELISM);
+    return checkInt(parallelism, 1, 32, DEFAULT_BATCH_RELEASE_PARALLELISM);
+  }
+
+  public int batchReleaseMaxTargets() {
+    int maxTargets = getIntProperty("apollo.release.batch.max-targets", DEFAULT_BATCH_RELEASE_MAX_TARGETS);
+    return checkInt(maxTargets, 1, Integer.MAX_VALUE, DEFAULT_BATCH_RELEASE_MAX_TARGETS);
+  }
+
   int checkInt(int value, int min, int max, int defaultValue) {
     if (value >= min && value <= max) {
       return value;
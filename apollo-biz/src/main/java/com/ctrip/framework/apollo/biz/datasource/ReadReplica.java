@@ -0,0 +1,47 @@
+package com.ctrip.framework.apollo.biz.datasource;
+
+import java.util.function.Supplier;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+/**
+ * Reads from the local read replica of ApolloConfigDB if it is configured with
+ * {@code spring.datasource.replica.*}, e.g. in a remote data center, or from the primary otherwise.
+ *
+ * <p>The replica might lag behind the primary, so it is only for the reads of the config serving path,
+ * which either tolerate stale results, e.g. the periodic scans, or fall back to the primary when they
+ * find the replica behind the notification id a client has seen.</p>
+ */
+@Component
+public class ReadReplica {
+  private final boolean enabled;
+
+  @Autowired
+  public ReadReplica(DataSource dataSource) {
+    this(dataSource instanceof ReadReplicaRoutingDataSource);
+  }
+
+  public ReadReplica(boolean enabled) {
+    this.enabled = enabled;
+  }
+
+  public boolean isEnabled() {
+    return enabled;
+  }
+
+  /**
+   * Run the reads on the replica, they must not join a transaction already begun on the primary
+   */
+  public <T> T read(Supplier<T> reader) {
+    if (!enabled || ReadReplicaRoutingDataSource.isReadingReplica()) {
+      return reader.get();
+    }
+    ReadReplicaRoutingDataSource.setReadingReplica(true);
+    try {
+      return reader.get();
+    } finally {
+      ReadReplicaRoutingDataSource.setReadingReplica(false);
+    }
+  }
+}
@@ -0,0 +1,51 @@
+package com.ctrip.framework.apollo.biz.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+/**
+ * Replaces the auto configured data source with a {@link ReadReplicaRoutingDataSource} when the read
+ * replica is configured, e.g.
+ *
+ * <pre>
+ * spring.datasource.replica.url = jdbc:mysql://local-replica:3306/ApolloConfigDB?characterEncoding=utf8
+ * spring.datasource.replica.username = someUserName
+ * spring.datasource.replica.password = somePassword
+ * spring.datasource.replica.hikari.maximum-pool-size = 20
+ * </pre>
+ *
+ * The primary is still configured with {@code spring.datasource.*}.
+ */
+@Configuration
+@ConditionalOnProperty(prefix = "spring.datasource.replica", name = "url")
+public class ReadReplicaDataSourceConfig {
+
+  @Bean
+  public ReadReplicaRoutingDataSource dataSource(DataSourceProperties dataSourceProperties,
+      Environment environment) throws Exception {
+    Binder binder = Binder.get(environment);
+
+    DataSourceProperties replicaProperties = binder
+        .bind("spring.datasource.replica", DataSourceProperties.class).get();
+    replicaProperties.setBeanClassLoader(getClass().getClassLoader());
+    replicaProperties.afterPropertiesSet();
+
+    return new ReadReplicaRoutingDataSource(
+        createDataSource(binder, dataSourceProperties, "spring.datasource.hikari"),
+        createDataSource(binder, replicaProperties, "spring.datasource.replica.hikari"));
+  }
+
+  private HikariDataSource createDataSource(Binder binder, DataSourceProperties properties,
+      String hikariPrefix) {
+    HikariDataSource dataSource = properties.initializeDataSourceBuilder()
+        .type(HikariDataSource.class).build();
+    binder.bind(hikariPrefix, Bindable.ofInstance(dataSource));
+    return dataSource;
+  }
+}
@@ -0,0 +1,63 @@
+package com.ctrip.framework.apollo.biz.datasource;
+
+import com.google.common.collect.Maps;
+import java.util.Map;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+
+/**
+ * Routes the connections to the read replica of ApolloConfigDB within {@link ReadReplica#read}, and to
+ * the primary otherwise.
+ *
+ * <p>The route is decided when a connection is acquired, i.e. when a transaction begins, so the reads
+ * joining a transaction on the primary stay on the primary.</p>
+ */
+public class ReadReplicaRoutingDataSource extends AbstractRoutingDataSource implements DisposableBean {
+  private static final String PRIMARY = "primary";
+  private static final String REPLICA = "replica";
+  private static final ThreadLocal<Boolean> READING_REPLICA = new ThreadLocal<>();
+
+  private final DataSource primary;
+  private final DataSource replica;
+
+  public ReadReplicaRoutingDataSource(DataSource primary, DataSource replica) {
+    this.primary = primary;
+    this.replica = replica;
+    Map<Object, Object> targetDataSources = Maps.newHashMap();
+    targetDataSources.put(PRIMARY, primary);
+    targetDataSources.put(REPLICA, replica);
+    setTargetDataSources(targetDataSources);
+    setDefaultTargetDataSource(primary);
+    afterPropertiesSet();
+  }
+
+  @Override
+  protected Object determineCurrentLookupKey() {
+    return isReadingReplica() ? REPLICA : PRIMARY;
+  }
+
+  static boolean isReadingReplica() {
+    return Boolean.TRUE.equals(READING_REPLICA.get());
+  }
+
+  static void setReadingReplica(boolean readingReplica) {
+    if (readingReplica) {
+      READING_REPLICA.set(Boolean.TRUE);
+    } else {
+      READING_REPLICA.remove();
+    }
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    close(primary);
+    close(replica);
+  }
+
+  private void close(DataSource dataSource) throws Exception {
+    if (dataSource instanceof AutoCloseable) {
+      ((AutoCloseable) dataSource).close();
+    }
+  }
+}
@@ -9,6 +9,7 @@ import javax.persistence.Column;
 import javax.persistence.Entity;
 import javax.persistence.Lob;
 import javax.persistence.Table;
+import javax.persistence.Transient;
 
 /**
  * @author Jason Song(song_s@ctrip.com)
@@ -43,6 +44,10 @@ public class Release extends BaseEntity {
   @Column(name = "IsAbandoned", columnDefinition = "Bit default '0'")
   private boolean isAbandoned;
 
+  //the full configurations when the stored ones are a delta to another release
+  @Transient
+  private String materializedConfigurations;
+
   public String getReleaseKey() {
     return releaseKey;
   }
@@ -60,9 +65,20 @@ public class Release extends BaseEntity {
   }
 
   public String getConfigurations() {
+    return materializedConfigurations != null ? materializedConfigurations : configurations;
+  }
+
+  /**
+   * @return the configurations as stored, which might be a delta to another release
+   */
+  public String getStoredConfigurations() {
     return configurations;
   }
 
+  public void materializeConfigurations(String materializedConfigurations) {
+    this.materializedConfigurations = materializedConfigurations;
+  }
+
   public String getNamespaceName() {
     return namespaceName;
   }
@@ -89,6 +105,7 @@ public class Release extends BaseEntity {
 
   public void setConfigurations(String configurations) {
     this.configurations = configurations;
+    this.materializedConfigurations = null;
   }
 
   public void setNamespaceName(String namespaceName) {
@@ -0,0 +1,210 @@
+package com.ctrip.framework.apollo.biz.grayReleaseRule;
+
+import com.google.common.collect.ImmutableListMultimap;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Maps;
+import com.google.common.hash.HashFunction;
+import com.google.common.hash.Hashing;
+
+import com.ctrip.framework.apollo.common.constants.NamespaceBranchStatus;
+import com.ctrip.framework.apollo.common.dto.GrayReleaseRuleItemDTO;
+import com.ctrip.framework.apollo.tracer.Tracer;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * An immutable index of the active gray release rules of one configAppId+configCluster+configNamespace,
+ * from the client app id and ip to the release id. Besides exact ips and ALL_IP, a rule's ip list
+ * could contain:
+ * <ul>
+ *   <li>CIDR ranges, e.g. <code>10.1.0.0/16</code>, indexed by {@link IpPrefixTrie}</li>
+ *   <li>percentages, e.g. <code>5%</code>, which match a stable part of the instances by hashing the
+ *   client ip with the branch name</li>
+ * </ul>
+ *
+ * <p>When a client matches more than one rule, the rule with the smallest id wins, which is the same
+ * as scanning the rules in order.</p>
+ */
+class GrayReleaseRuleIndex {
+  private static final Logger logger = LoggerFactory.getLogger(GrayReleaseRuleIndex.class);
+  private static final char KEY_SEPARATOR = '+';
+  private static final String PERCENTAGE_SUFFIX = "%";
+  private static final int PERCENTAGE_BUCKETS = 10000;
+  private static final HashFunction PERCENTAGE_HASH_FUNCTION = Hashing.murmur3_32();
+
+  private final Map<String, RuleMatch> ipMatches;
+  private final Map<String, RuleMatch> allIpMatches;
+  private final Map<String, IpPrefixTrie<RuleMatch>> cidrMatches;
+  private final ListMultimap<String, PercentageMatch> percentageMatches;
+
+  private GrayReleaseRuleIndex(Map<String, RuleMatch> ipMatches, Map<String, RuleMatch> allIpMatches,
+      Map<String, IpPrefixTrie<RuleMatch>> cidrMatches, ListMultimap<String, PercentageMatch> percentageMatches) {
+    this.ipMatches = ipMatches;
+    this.allIpMatches = allIpMatches;
+    this.cidrMatches = cidrMatches;
+    this.percentageMatches = percentageMatches;
+  }
+
+  /**
+   * @param rules the rules sorted by rule id
+   */
+  static GrayReleaseRuleIndex build(Collection<GrayReleaseRuleCache> rules) {
+    Map<String, RuleMatch> ipMatches = Maps.newHashMap();
+    Map<String, RuleMatch> allIpMatches = Maps.newHashMap();
+    Map<String, IpPrefixTrie<RuleMatch>> cidrMatches = Maps.newHashMap();
+    ImmutableListMultimap.Builder<String, PercentageMatch> percentageMatches = ImmutableListMultimap.builder();
+    for (GrayReleaseRuleCache rule : rules) {
+      if (rule.getBranchStatus() != NamespaceBranchStatus.ACTIVE) {
+        continue;
+      }
+      RuleMatch match = new RuleMatch(rule.getRuleId(), rule.getReleaseId());
+      for (GrayReleaseRuleItemDTO ruleItem : rule.getRuleItems()) {
+        String clientAppId = normalize(ruleItem.getClientAppId());
+        for (String clientIp : ruleItem.getClientIpList()) {
+          if (GrayReleaseRuleItemDTO.ALL_IP.equals(clientIp)) {
+            allIpMatches.putIfAbsent(clientAppId, match);
+            continue;
+          }
+          try {
+            if (IpPrefixTrie.isCidr(clientIp)) {
+              cidrMatches.computeIfAbsent(clientAppId, k -> new IpPrefixTrie<>()).add(clientIp, match);
+            } else if (clientIp.endsWith(PERCENTAGE_SUFFIX)) {
+              percentageMatches.put(clientAppId, new PercentageMatch(match, rule.getBranchName(),
+                  parsePercentage(clientIp)));
+            } else {
+              ipMatches.putIfAbsent(assembleIpKey(clientAppId, clientIp), match);
+            }
+          } catch (IllegalArgumentException ex) {
+            Tracer.logError(ex);
+            logger.error("Invalid client ip {} of gray release rule {}, ignored", clientIp,
+                rule.getRuleId(), ex);
+          }
+        }
+      }
+    }
+    return new GrayReleaseRuleIndex(ImmutableMap.copyOf(ipMatches), ImmutableMap.copyOf(allIpMatches),
+        ImmutableMap.copyOf(cidrMatches), percentageMatches.build());
+  }
+
+  Long findReleaseId(String clientAppId, String clientIp) {
+    String normalizedClientAppId = normalize(clientAppId);
+    RuleMatch result = allIpMatches.get(normalizedClientAppId);
+
+    if (clientIp != null) {
+      if (!ipMatches.isEmpty()) {
+        result = smaller(result, ipMatches.get(assembleIpKey(normalizedClientAppId, clientIp)));
+      }
+
+      IpPrefixTrie<RuleMatch> cidrTrie = cidrMatches.get(normalizedClientAppId);
+      if (cidrTrie != null) {
+        result = smaller(result, cidrTrie.find(clientIp));
+      }
+
+      List<PercentageMatch> percentages = percentageMatches.get(normalizedClientAppId);
+      for (int i = 0; i < percentages.size(); i++) {
+        PercentageMatch percentage = percentages.get(i);
+        if ((result == null || percentage.match.ruleId < result.ruleId) && percentage.matches(clientIp)) {
+          result = percentage.match;
+        }
+      }
+    }
+
+    return result == null ? null : result.releaseId;
+  }
+
+  boolean isEmpty() {
+    return ipMatches.isEmpty() && allIpMatches.isEmpty() && cidrMatches.isEmpty() && percentageMatches.isEmpty();
+  }
+
+  /**
+   * @return whether the client ip of a rule is a CIDR range or a percentage
+   */
+  static boolean isRange(String clientIp) {
+    return clientIp != null && (IpPrefixTrie.isCidr(clientIp) || clientIp.endsWith(PERCENTAGE_SUFFIX));
+  }
+
+  static String normalize(String value) {
+    return value == null ? "" : value.toLowerCase(Locale.ROOT);
+  }
+
+  /**
+   * @return the bucket of the client in [0, 10000), stable for the same branch and client ip
+   */
+  static int percentageBucket(String branchName, String clientIp) {
+    int hash = PERCENTAGE_HASH_FUNCTION.newHasher()
+        .putString(branchName, StandardCharsets.UTF_8)
+        .putChar(KEY_SEPARATOR)
+        .putString(clientIp, StandardCharsets.UTF_8)
+        .hash().asInt();
+    return Math.floorMod(hash, PERCENTAGE_BUCKETS);
+  }
+
+  /**
+   * @return the number of buckets matched, e.g. 500 for 5%
+   */
+  private static int parsePercentage(String percentage) {
+    double value;
+    try {
+      value = Double.parseDouble(percentage.substring(0, percentage.length() - PERCENTAGE_SUFFIX.length()).trim());
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException("Invalid percentage: " + percentage, ex);
+    }
+    if (value < 0 || value > 100) {
+      throw new IllegalArgumentException("Invalid percentage: " + percentage);
+    }
+    return (int) Math.round(value * PERCENTAGE_BUCKETS / 100);
+  }
+
+  private static RuleMatch smaller(RuleMatch some, RuleMatch another) {
+    if (some == null) {
+      return another;
+    }
+    if (another == null) {
+      return some;
+    }
+    return another.ruleId < some.ruleId ? another : some;
+  }
+
+  private static String assembleIpKey(String normalizedClientAppId, String clientIp) {
+    return normalizedClientAppId + KEY_SEPARATOR + clientIp;
+  }
+
+  private static class RuleMatch implements Comparable<RuleMatch> {
+    private final long ruleId;
+    private final long releaseId;
+
+    private RuleMatch(long ruleId, long releaseId) {
+      this.ruleId = ruleId;
+      this.releaseId = releaseId;
+    }
+
+    @Override
+    public int compareTo(RuleMatch that) {
+      return Long.compare(this.ruleId, that.ruleId);
+    }
+  }
+
+  private static class PercentageMatch {
+    private final RuleMatch match;
+    private final String branchName;
+    private final int buckets;
+
+    private PercentageMatch(RuleMatch match, String branchName, int buckets) {
+      this.match = match;
+      this.branchName = branchName;
+      this.buckets = buckets;
+    }
+
+    private boolean matches(String clientIp) {
+      return percentageBucket(branchName, clientIp) < buckets;
+    }
+  }
+}
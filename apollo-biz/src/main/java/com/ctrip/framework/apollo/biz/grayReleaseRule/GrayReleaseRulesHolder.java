@@ -3,9 +3,11 @@ package com.ctrip.framework.apollo.biz.grayReleaseRule;
 import com.google.common.base.Joiner;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
 import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
 
@@ -14,7 +16,9 @@ import com.ctrip.framework.apollo.biz.entity.GrayReleaseRule;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
 import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.datasource.ReadReplica;
 import com.ctrip.framework.apollo.biz.repository.GrayReleaseRuleRepository;
+import com.ctrip.framework.apollo.biz.utils.CacheSnapshot;
 import com.ctrip.framework.apollo.common.constants.NamespaceBranchStatus;
 import com.ctrip.framework.apollo.common.dto.GrayReleaseRuleItemDTO;
 import com.ctrip.framework.apollo.common.utils.GrayReleaseRuleItemTransformer;
@@ -28,9 +32,17 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
 import org.springframework.util.CollectionUtils;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
+import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -38,6 +50,18 @@ import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Holds the gray release rules in memory.
+ *
+ * <p>Rules are merged by the scanning and message threads under a lock, and then published as an
+ * immutable snapshot, so that the lookups on the config serving path are lock free hash lookups.</p>
+ *
+ * <p>The periodic scan only reads the rules modified since the last scan, and all the rules are
+ * scanned at a much lower frequency for safety.</p>
+ *
+ * <p>If {@link BizConfig#cacheSnapshotDir()} is set, the rules are also written to a local
+ * {@link CacheSnapshot} periodically, with the modified time watermark. On restart, the rules are
+ * restored from it and only those modified after the watermark are scanned.</p>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 public class GrayReleaseRulesHolder implements ReleaseMessageListener, InitializingBean {
@@ -45,27 +69,42 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
   private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
   private static final Splitter STRING_SPLITTER =
       Splitter.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).omitEmptyStrings();
+  private static final int SCAN_BATCH_SIZE = 500;
+  private static final Pageable SCAN_PAGE = PageRequest.of(0, SCAN_BATCH_SIZE);
+  //rules modified shortly before the watermark are scanned again, in case of clock skew among admin
+  //services and transactions committed late
+  private static final long MODIFIED_TIME_LOOK_BACK_IN_MILLIS = TimeUnit.SECONDS.toMillis(10);
+  private static final String CACHE_SNAPSHOT_NAME = "gray-release-rules";
 
   @Autowired
   private GrayReleaseRuleRepository grayReleaseRuleRepository;
   @Autowired
   private BizConfig bizConfig;
+  @Autowired
+  private ReadReplica readReplica;
 
   private int databaseScanInterval;
+  private int databaseFullScanInterval;
   private ScheduledExecutorService executorService;
-  //store configAppId+configCluster+configNamespace -> GrayReleaseRuleCache map
-  private Multimap<String, GrayReleaseRuleCache> grayReleaseRuleCache;
-  //store clientAppId+clientNamespace+ip -> ruleId map
-  private Multimap<String, Long> reversedGrayReleaseRuleCache;
+  //store configAppId+configCluster+configNamespace -> GrayReleaseRuleCache map, guarded by this
+  private final Multimap<String, GrayReleaseRuleCache> grayReleaseRuleCache;
+  //the immutable snapshot built from grayReleaseRuleCache
+  private volatile GrayReleaseRulesSnapshot snapshot;
   //an auto increment version to indicate the age of rules
   private AtomicLong loadVersion;
+  //the fields below are only accessed by the scanning thread
+  private boolean fullScanned;
+  private long lastFullScanNanoTime;
+  //the max last modified time of the rules scanned
+  private Date modifiedTimeWatermark;
+  //null if the cache snapshot is disabled
+  private File cacheSnapshotFile;
+  private GrayReleaseRulesSnapshot lastWrittenSnapshot;
 
   public GrayReleaseRulesHolder() {
     loadVersion = new AtomicLong();
-    grayReleaseRuleCache = Multimaps.synchronizedSetMultimap(
-        TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural()));
-    reversedGrayReleaseRuleCache = Multimaps.synchronizedSetMultimap(
-        TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural()));
+    grayReleaseRuleCache = TreeMultimap.create(Ordering.natural(), Ordering.natural());
+    snapshot = GrayReleaseRulesSnapshot.EMPTY;
     executorService = Executors.newScheduledThreadPool(1, ApolloThreadFactory
         .create("GrayReleaseRulesHolder", true));
   }
@@ -73,11 +112,18 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
   @Override
   public void afterPropertiesSet() throws Exception {
     populateDataBaseInterval();
-    //force sync load for the first time
+    cacheSnapshotFile = CacheSnapshot.snapshotFile(bizConfig, CACHE_SNAPSHOT_NAME);
+    restoreCacheSnapshot();
+    //force sync load for the first time, which only scans the modified rules if restored
     periodicScanRules();
     executorService.scheduleWithFixedDelay(this::periodicScanRules,
         getDatabaseScanIntervalSecond(), getDatabaseScanIntervalSecond(), getDatabaseScanTimeUnit()
     );
+    if (cacheSnapshotFile != null) {
+      int interval = bizConfig.cacheSnapshotInterval();
+      executorService.scheduleWithFixedDelay(this::writeCacheSnapshot, interval, interval,
+          bizConfig.cacheSnapshotIntervalTimeUnit());
+    }
   }
 
   @Override
@@ -97,18 +143,27 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
     String cluster = keys.get(1);
     String namespace = keys.get(2);
 
-    List<GrayReleaseRule> rules = grayReleaseRuleRepository
-        .findByAppIdAndClusterNameAndNamespaceName(appId, cluster, namespace);
+    List<GrayReleaseRule> rules = readReplica.read(() -> grayReleaseRuleRepository
+        .findByAppIdAndClusterNameAndNamespaceName(appId, cluster, namespace));
 
     mergeGrayReleaseRules(rules);
   }
 
   private void periodicScanRules() {
+    boolean fullScan = !fullScanned || System.nanoTime() - lastFullScanNanoTime >=
+        getDatabaseScanTimeUnit().toNanos(databaseFullScanInterval);
     Transaction transaction = Tracer.newTransaction("Apollo.GrayReleaseRulesScanner",
-        "scanGrayReleaseRules");
+        fullScan ? "scanGrayReleaseRules" : "scanModifiedGrayReleaseRules");
     try {
-      loadVersion.incrementAndGet();
-      scanGrayReleaseRules();
+      if (fullScan) {
+        //inactive rules are aged by full scans only, as incremental scans don't visit them again
+        loadVersion.incrementAndGet();
+        lastFullScanNanoTime = System.nanoTime();
+        scanGrayReleaseRules();
+        fullScanned = true;
+      } else {
+        scanModifiedGrayReleaseRules();
+      }
       transaction.setStatus(Transaction.SUCCESS);
     } catch (Throwable ex) {
       transaction.setStatus(ex);
@@ -118,24 +173,101 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
     }
   }
 
-  public Long findReleaseIdFromGrayReleaseRule(String clientAppId, String clientIp, String
-      configAppId, String configCluster, String configNamespaceName) {
-    String key = assembleGrayReleaseRuleKey(configAppId, configCluster, configNamespaceName);
-    if (!grayReleaseRuleCache.containsKey(key)) {
-      return null;
+  private void restoreCacheSnapshot() {
+    if (cacheSnapshotFile == null) {
+      return;
     }
-    //create a new list to avoid ConcurrentModificationException
-    List<GrayReleaseRuleCache> rules = Lists.newArrayList(grayReleaseRuleCache.get(key));
-    for (GrayReleaseRuleCache rule : rules) {
-      //check branch status
-      if (rule.getBranchStatus() != NamespaceBranchStatus.ACTIVE) {
-        continue;
+    Transaction transaction = Tracer.newTransaction("Apollo.GrayReleaseRulesScanner",
+        "restoreCacheSnapshot");
+    try {
+      CacheSnapshot<Map.Entry<String, GrayReleaseRuleCache>> restored =
+          CacheSnapshot.read(cacheSnapshotFile, this::readRule);
+      if (restored != null) {
+        synchronized (this) {
+          for (Map.Entry<String, GrayReleaseRuleCache> rule : restored.getRecords()) {
+            grayReleaseRuleCache.put(rule.getKey(), rule.getValue());
+          }
+          publishSnapshot(Sets.newHashSet(grayReleaseRuleCache.keySet()));
+        }
+        modifiedTimeWatermark = new Date(restored.getWatermark());
+        //the rules restored count as a full scan
+        fullScanned = true;
+        lastFullScanNanoTime = System.nanoTime();
+        transaction.addData("Size", restored.getRecords().size());
+        logger.info("Restored {} gray release rules from {}", restored.getRecords().size(),
+            cacheSnapshotFile);
+      }
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Restore gray release rules from {} failed", cacheSnapshotFile, ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private void writeCacheSnapshot() {
+    List<Map.Entry<String, GrayReleaseRuleCache>> rules = Lists.newArrayList();
+    GrayReleaseRulesSnapshot current;
+    synchronized (this) {
+      current = snapshot;
+      if (current == lastWrittenSnapshot) {
+        return;
       }
-      if (rule.matches(clientAppId, clientIp)) {
-        return rule.getReleaseId();
+      for (Map.Entry<String, GrayReleaseRuleCache> rule : grayReleaseRuleCache.entries()) {
+        rules.add(Maps.immutableEntry(rule.getKey(), rule.getValue()));
       }
     }
-    return null;
+    Transaction transaction = Tracer.newTransaction("Apollo.GrayReleaseRulesScanner",
+        "writeCacheSnapshot");
+    try {
+      long watermark = modifiedTimeWatermark == null ? 0 : modifiedTimeWatermark.getTime();
+      CacheSnapshot.write(cacheSnapshotFile, watermark, rules, this::writeRule);
+      lastWrittenSnapshot = current;
+      transaction.addData("Size", rules.size());
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Write gray release rules to {} failed", cacheSnapshotFile, ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private void writeRule(DataOutput out, Map.Entry<String, GrayReleaseRuleCache> rule)
+      throws IOException {
+    GrayReleaseRuleCache ruleCache = rule.getValue();
+    CacheSnapshot.writeString(out, rule.getKey());
+    out.writeLong(ruleCache.getRuleId());
+    CacheSnapshot.writeString(out, ruleCache.getBranchName());
+    CacheSnapshot.writeString(out, ruleCache.getNamespaceName());
+    out.writeLong(ruleCache.getReleaseId());
+    out.writeInt(ruleCache.getBranchStatus());
+    CacheSnapshot.writeString(out,
+        GrayReleaseRuleItemTransformer.batchTransformToJSON(ruleCache.getRuleItems()));
+  }
+
+  private Map.Entry<String, GrayReleaseRuleCache> readRule(DataInput in) throws IOException {
+    String key = CacheSnapshot.readString(in);
+    long ruleId = in.readLong();
+    String branchName = CacheSnapshot.readString(in);
+    String namespaceName = CacheSnapshot.readString(in);
+    long releaseId = in.readLong();
+    int branchStatus = in.readInt();
+    Set<GrayReleaseRuleItemDTO> ruleItems =
+        GrayReleaseRuleItemTransformer.batchTransformFromJSON(CacheSnapshot.readString(in));
+    return Maps.immutableEntry(key, new GrayReleaseRuleCache(ruleId, branchName, namespaceName,
+        releaseId, branchStatus, loadVersion.get(), ruleItems));
+  }
+
+  public Long findReleaseIdFromGrayReleaseRule(String clientAppId, String clientIp, String
+      configAppId, String configCluster, String configNamespaceName) {
+    GrayReleaseRuleIndex index = snapshot.ruleIndexes.get(assembleGrayReleaseRuleKey(configAppId,
+        configCluster, configNamespaceName));
+    if (index == null) {
+      return null;
+    }
+    return index.findReleaseId(clientAppId, clientIp);
   }
 
   /**
@@ -144,10 +276,16 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
    * load gray releases. Because gray release rules actually apply to one more dimension - cluster.
    */
   public boolean hasGrayReleaseRule(String clientAppId, String clientIp, String namespaceName) {
-    return reversedGrayReleaseRuleCache.containsKey(assembleReversedGrayReleaseRuleKey(clientAppId,
-        namespaceName, clientIp)) || reversedGrayReleaseRuleCache.containsKey
-        (assembleReversedGrayReleaseRuleKey(clientAppId, namespaceName, GrayReleaseRuleItemDTO
-            .ALL_IP));
+    GrayReleaseRulesSnapshot current = snapshot;
+    //ip ranges and percentages are not expanded, so any client of the app might match
+    if (current.rangeRuleKeys.contains(assembleReversedGrayReleaseRuleKey(clientAppId, namespaceName,
+        GrayReleaseRuleItemDTO.ALL_IP))) {
+      return true;
+    }
+    Set<String> reversedKeys = current.reversedRuleKeys;
+    return reversedKeys.contains(assembleReversedGrayReleaseRuleKey(clientAppId, namespaceName,
+        clientIp)) || reversedKeys.contains(assembleReversedGrayReleaseRuleKey(clientAppId,
+        namespaceName, GrayReleaseRuleItemDTO.ALL_IP));
   }
 
   private void scanGrayReleaseRules() {
@@ -155,23 +293,61 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
     boolean hasMore = true;
 
     while (hasMore && !Thread.currentThread().isInterrupted()) {
-      List<GrayReleaseRule> grayReleaseRules = grayReleaseRuleRepository
-          .findFirst500ByIdGreaterThanOrderByIdAsc(maxIdScanned);
+      long lastIdScanned = maxIdScanned;
+      List<GrayReleaseRule> grayReleaseRules = readReplica.read(() -> grayReleaseRuleRepository
+          .findFirst500ByIdGreaterThanOrderByIdAsc(lastIdScanned));
       if (CollectionUtils.isEmpty(grayReleaseRules)) {
         break;
       }
       mergeGrayReleaseRules(grayReleaseRules);
+      for (GrayReleaseRule grayReleaseRule : grayReleaseRules) {
+        advanceModifiedTimeWatermark(grayReleaseRule.getDataChangeLastModifiedTime());
+      }
       int rulesScanned = grayReleaseRules.size();
       maxIdScanned = grayReleaseRules.get(rulesScanned - 1).getId();
       //batch is 500
-      hasMore = rulesScanned == 500;
+      hasMore = rulesScanned == SCAN_BATCH_SIZE;
+    }
+  }
+
+  private void scanModifiedGrayReleaseRules() {
+    if (modifiedTimeWatermark == null) {
+      //no rules yet
+      modifiedTimeWatermark = new Date(0);
+    }
+    Date modifiedTimeScanned = new Date(modifiedTimeWatermark.getTime() - MODIFIED_TIME_LOOK_BACK_IN_MILLIS);
+    long maxIdScanned = 0;
+    boolean hasMore = true;
+
+    while (hasMore && !Thread.currentThread().isInterrupted()) {
+      Date lastModifiedTimeScanned = modifiedTimeScanned;
+      long lastIdScanned = maxIdScanned;
+      List<GrayReleaseRule> grayReleaseRules = readReplica.read(() -> grayReleaseRuleRepository
+          .findModifiedAfter(lastModifiedTimeScanned, lastIdScanned, SCAN_PAGE));
+      if (CollectionUtils.isEmpty(grayReleaseRules)) {
+        break;
+      }
+      mergeGrayReleaseRules(grayReleaseRules);
+      int rulesScanned = grayReleaseRules.size();
+      GrayReleaseRule lastRule = grayReleaseRules.get(rulesScanned - 1);
+      modifiedTimeScanned = lastRule.getDataChangeLastModifiedTime();
+      maxIdScanned = lastRule.getId();
+      advanceModifiedTimeWatermark(modifiedTimeScanned);
+      hasMore = rulesScanned == SCAN_BATCH_SIZE;
+    }
+  }
+
+  private void advanceModifiedTimeWatermark(Date modifiedTime) {
+    if (modifiedTime != null && (modifiedTimeWatermark == null || modifiedTime.after(modifiedTimeWatermark))) {
+      modifiedTimeWatermark = modifiedTime;
     }
   }
 
-  private void mergeGrayReleaseRules(List<GrayReleaseRule> grayReleaseRules) {
+  private synchronized void mergeGrayReleaseRules(List<GrayReleaseRule> grayReleaseRules) {
     if (CollectionUtils.isEmpty(grayReleaseRules)) {
       return;
     }
+    Set<String> changedKeys = Sets.newHashSet();
     for (GrayReleaseRule grayReleaseRule : grayReleaseRules) {
       if (grayReleaseRule.getReleaseId() == null || grayReleaseRule.getReleaseId() == 0) {
         //filter rules with no release id, i.e. never released
@@ -179,10 +355,8 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
       }
       String key = assembleGrayReleaseRuleKey(grayReleaseRule.getAppId(), grayReleaseRule
           .getClusterName(), grayReleaseRule.getNamespaceName());
-      //create a new list to avoid ConcurrentModificationException
-      List<GrayReleaseRuleCache> rules = Lists.newArrayList(grayReleaseRuleCache.get(key));
       GrayReleaseRuleCache oldRule = null;
-      for (GrayReleaseRuleCache ruleCache : rules) {
+      for (GrayReleaseRuleCache ruleCache : grayReleaseRuleCache.get(key)) {
         if (ruleCache.getBranchName().equals(grayReleaseRule.getBranchName())) {
           oldRule = ruleCache;
           break;
@@ -196,42 +370,65 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
 
       //use id comparison to avoid synchronization
       if (oldRule == null || grayReleaseRule.getId() > oldRule.getRuleId()) {
-        addCache(key, transformRuleToRuleCache(grayReleaseRule));
+        grayReleaseRuleCache.put(key, transformRuleToRuleCache(grayReleaseRule));
         if (oldRule != null) {
-          removeCache(key, oldRule);
+          grayReleaseRuleCache.remove(key, oldRule);
         }
+        changedKeys.add(key);
       } else {
         if (oldRule.getBranchStatus() == NamespaceBranchStatus.ACTIVE) {
           //update load version
           oldRule.setLoadVersion(loadVersion.get());
         } else if ((loadVersion.get() - oldRule.getLoadVersion()) > 1) {
           //remove outdated inactive branch rule after 2 update cycles
-          removeCache(key, oldRule);
+          grayReleaseRuleCache.remove(key, oldRule);
+          changedKeys.add(key);
         }
       }
     }
+
+    if (!changedKeys.isEmpty()) {
+      publishSnapshot(changedKeys);
+    }
   }
 
-  private void addCache(String key, GrayReleaseRuleCache ruleCache) {
-    if (ruleCache.getBranchStatus() == NamespaceBranchStatus.ACTIVE) {
+  /**
+   * Rebuild the indexes of the changed keys and publish a new snapshot, the indexes of other keys are
+   * shared with the previous snapshot
+   */
+  private void publishSnapshot(Set<String> changedKeys) {
+    GrayReleaseRulesSnapshot previous = snapshot;
+    Map<String, GrayReleaseRuleIndex> ruleIndexes = Maps.newHashMap(previous.ruleIndexes);
+    for (String key : changedKeys) {
+      GrayReleaseRuleIndex index = GrayReleaseRuleIndex.build(grayReleaseRuleCache.get(key));
+      if (index.isEmpty()) {
+        ruleIndexes.remove(key);
+      } else {
+        ruleIndexes.put(key, index);
+      }
+    }
+
+    ImmutableSet.Builder<String> reversedRuleKeys = ImmutableSet.builder();
+    ImmutableSet.Builder<String> rangeRuleKeys = ImmutableSet.builder();
+    for (GrayReleaseRuleCache ruleCache : grayReleaseRuleCache.values()) {
+      if (ruleCache.getBranchStatus() != NamespaceBranchStatus.ACTIVE) {
+        continue;
+      }
       for (GrayReleaseRuleItemDTO ruleItemDTO : ruleCache.getRuleItems()) {
         for (String clientIp : ruleItemDTO.getClientIpList()) {
-          reversedGrayReleaseRuleCache.put(assembleReversedGrayReleaseRuleKey(ruleItemDTO
-              .getClientAppId(), ruleCache.getNamespaceName(), clientIp), ruleCache.getRuleId());
+          if (GrayReleaseRuleIndex.isRange(clientIp)) {
+            rangeRuleKeys.add(assembleReversedGrayReleaseRuleKey(ruleItemDTO.getClientAppId(),
+                ruleCache.getNamespaceName(), GrayReleaseRuleItemDTO.ALL_IP));
+          } else {
+            reversedRuleKeys.add(assembleReversedGrayReleaseRuleKey(ruleItemDTO.getClientAppId(),
+                ruleCache.getNamespaceName(), clientIp));
+          }
         }
       }
     }
-    grayReleaseRuleCache.put(key, ruleCache);
-  }
 
-  private void removeCache(String key, GrayReleaseRuleCache ruleCache) {
-    grayReleaseRuleCache.remove(key, ruleCache);
-    for (GrayReleaseRuleItemDTO ruleItemDTO : ruleCache.getRuleItems()) {
-      for (String clientIp : ruleItemDTO.getClientIpList()) {
-        reversedGrayReleaseRuleCache.remove(assembleReversedGrayReleaseRuleKey(ruleItemDTO
-            .getClientAppId(), ruleCache.getNamespaceName(), clientIp), ruleCache.getRuleId());
-      }
-    }
+    snapshot = new GrayReleaseRulesSnapshot(ImmutableMap.copyOf(ruleIndexes), reversedRuleKeys.build(),
+        rangeRuleKeys.build());
   }
 
   private GrayReleaseRuleCache transformRuleToRuleCache(GrayReleaseRule grayReleaseRule) {
@@ -253,6 +450,7 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
 
   private void populateDataBaseInterval() {
     databaseScanInterval = bizConfig.grayReleaseRuleScanInterval();
+    databaseFullScanInterval = bizConfig.grayReleaseRuleFullScanInterval();
   }
 
   private int getDatabaseScanIntervalSecond() {
@@ -263,14 +461,36 @@ public class GrayReleaseRulesHolder implements ReleaseMessageListener, Initializ
     return TimeUnit.SECONDS;
   }
 
+  //keys are case insensitive
   private String assembleGrayReleaseRuleKey(String configAppId, String configCluster, String
       configNamespaceName) {
-    return STRING_JOINER.join(configAppId, configCluster, configNamespaceName);
+    return GrayReleaseRuleIndex.normalize(STRING_JOINER.join(configAppId, configCluster,
+        configNamespaceName));
   }
 
   private String assembleReversedGrayReleaseRuleKey(String clientAppId, String
       clientNamespaceName, String clientIp) {
-    return STRING_JOINER.join(clientAppId, clientNamespaceName, clientIp);
+    return GrayReleaseRuleIndex.normalize(STRING_JOINER.join(clientAppId, clientNamespaceName,
+        clientIp));
+  }
+
+  private static class GrayReleaseRulesSnapshot {
+    private static final GrayReleaseRulesSnapshot EMPTY = new GrayReleaseRulesSnapshot(
+        ImmutableMap.of(), ImmutableSet.of(), ImmutableSet.of());
+
+    //configAppId+configCluster+configNamespace -> index of active rules
+    private final Map<String, GrayReleaseRuleIndex> ruleIndexes;
+    //clientAppId+clientNamespace+ip of active rules
+    private final Set<String> reversedRuleKeys;
+    //clientAppId+clientNamespace+ALL_IP of active rules with ip ranges or percentages
+    private final Set<String> rangeRuleKeys;
+
+    private GrayReleaseRulesSnapshot(Map<String, GrayReleaseRuleIndex> ruleIndexes,
+        Set<String> reversedRuleKeys, Set<String> rangeRuleKeys) {
+      this.ruleIndexes = ruleIndexes;
+      this.reversedRuleKeys = reversedRuleKeys;
+      this.rangeRuleKeys = rangeRuleKeys;
+    }
   }
 
 }
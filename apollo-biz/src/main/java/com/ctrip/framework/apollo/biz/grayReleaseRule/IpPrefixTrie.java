@@ -0,0 +1,93 @@
+package com.ctrip.framework.apollo.biz.grayReleaseRule;
+
+import com.google.common.base.Preconditions;
+import com.google.common.net.InetAddresses;
+
+import java.net.InetAddress;
+
+/**
+ * A binary trie of CIDR ranges, e.g. <code>10.1.0.0/16</code> or <code>2001:db8::/32</code>, so that
+ * finding the ranges containing an ip takes at most 32 (ipv4) or 128 (ipv6) steps no matter how many
+ * ranges there are.
+ *
+ * <p>Each range carries a value, and the lookup returns the value with the smallest rank among all
+ * the ranges containing the ip.</p>
+ */
+class IpPrefixTrie<T extends Comparable<T>> {
+  private final Node<T> ipv4Root = new Node<>();
+  private final Node<T> ipv6Root = new Node<>();
+
+  /**
+   * @return whether the text is in the CIDR notation, which doesn't mean it is valid
+   */
+  static boolean isCidr(String text) {
+    return text != null && text.indexOf('/') > 0;
+  }
+
+  /**
+   * @throws IllegalArgumentException if the cidr is invalid
+   */
+  void add(String cidr, T value) {
+    int separator = cidr.indexOf('/');
+    Preconditions.checkArgument(separator > 0, "Invalid cidr: %s", cidr);
+    InetAddress address = InetAddresses.forString(cidr.substring(0, separator).trim());
+    byte[] bytes = address.getAddress();
+    int prefixLength;
+    try {
+      prefixLength = Integer.parseInt(cidr.substring(separator + 1).trim());
+    } catch (NumberFormatException ex) {
+      throw new IllegalArgumentException("Invalid cidr: " + cidr, ex);
+    }
+    Preconditions.checkArgument(prefixLength >= 0 && prefixLength <= bytes.length * 8,
+        "Invalid cidr: %s", cidr);
+
+    Node<T> node = bytes.length == 4 ? ipv4Root : ipv6Root;
+    for (int i = 0; i < prefixLength; i++) {
+      int bit = bitAt(bytes, i);
+      if (node.children[bit] == null) {
+        node.children[bit] = new Node<>();
+      }
+      node = node.children[bit];
+    }
+    if (node.value == null || value.compareTo(node.value) < 0) {
+      node.value = value;
+    }
+  }
+
+  /**
+   * @return the smallest value of the ranges containing the ip, or null if none or the ip is invalid
+   */
+  T find(String ip) {
+    if (ip == null) {
+      return null;
+    }
+    byte[] bytes;
+    try {
+      bytes = InetAddresses.forString(ip).getAddress();
+    } catch (IllegalArgumentException ex) {
+      return null;
+    }
+    Node<T> node = bytes.length == 4 ? ipv4Root : ipv6Root;
+    T result = node.value;
+    for (int i = 0; i < bytes.length * 8; i++) {
+      node = node.children[bitAt(bytes, i)];
+      if (node == null) {
+        break;
+      }
+      if (node.value != null && (result == null || node.value.compareTo(result) < 0)) {
+        result = node.value;
+      }
+    }
+    return result;
+  }
+
+  private static int bitAt(byte[] bytes, int index) {
+    return (bytes[index >>> 3] >>> (7 - (index & 7))) & 1;
+  }
+
+  private static class Node<T> {
+    @SuppressWarnings("unchecked")
+    private final Node<T>[] children = new Node[2];
+    private T value;
+  }
+}
@@ -13,7 +13,6 @@ import org.springframework.transaction.annotation.Transactional;
 
 import javax.annotation.PostConstruct;
 import java.util.List;
-import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
@@ -43,7 +42,7 @@ public class DatabaseMessageSender implements MessageSender {
   @Transactional
   public void sendMessage(String message, String channel) {
     logger.info("Sending message {} to channel {}", message, channel);
-    if (!Objects.equals(channel, Topics.APOLLO_RELEASE_TOPIC)) {
+    if (!TopicMessages.isSupported(channel)) {
       logger.warn("Channel {} not supported by DatabaseMessageSender!", channel);
       return;
     }
@@ -51,7 +50,8 @@ public class DatabaseMessageSender implements MessageSender {
     Tracer.logEvent("Apollo.AdminService.ReleaseMessage", message);
     Transaction transaction = Tracer.newTransaction("Apollo.AdminService", "sendMessage");
     try {
-      ReleaseMessage newMessage = releaseMessageRepository.save(new ReleaseMessage(message));
+      ReleaseMessage newMessage = releaseMessageRepository.save(
+          new ReleaseMessage(TopicMessages.encode(message, channel)));
       toClean.offer(newMessage.getId());
       transaction.setStatus(Transaction.SUCCESS);
     } catch (Throwable ex) {
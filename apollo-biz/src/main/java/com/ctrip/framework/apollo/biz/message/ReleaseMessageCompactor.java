@@ -0,0 +1,148 @@
+package com.ctrip.framework.apollo.biz.message;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.util.CollectionUtils;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+
+/**
+ * Compact the release message table so that only the latest message of each key is kept, which is
+ * all the config services and clients need, as notification ids are the latest message ids.
+ *
+ * <p>Stale messages only exist for keys which got a newer message, so each round only reads the
+ * messages after the watermark, i.e. the largest id compacted, and deletes the older messages of
+ * their keys with one batch of set-based deletes per page. The first round after startup compacts
+ * the whole table.</p>
+ */
+public class ReleaseMessageCompactor implements InitializingBean, DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(ReleaseMessageCompactor.class);
+  private static final String DELETE_OLDER_MESSAGES =
+      "DELETE FROM `ReleaseMessage` WHERE `Message` = ? AND `Id` < ?";
+
+  private final ReleaseMessageRepository releaseMessageRepository;
+  private final JdbcTemplate jdbcTemplate;
+  private final BizConfig bizConfig;
+  private final ScheduledExecutorService executorService;
+
+  private volatile long watermark;
+  private volatile long maxMessageId;
+  private volatile long tableSize;
+
+  public ReleaseMessageCompactor(
+      final ReleaseMessageRepository releaseMessageRepository,
+      final JdbcTemplate jdbcTemplate,
+      final BizConfig bizConfig) {
+    this.releaseMessageRepository = releaseMessageRepository;
+    this.jdbcTemplate = jdbcTemplate;
+    this.bizConfig = bizConfig;
+    executorService = Executors.newSingleThreadScheduledExecutor(
+        ApolloThreadFactory.create("ReleaseMessageCompactor", true));
+  }
+
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    int interval = bizConfig.releaseMessageCompactionInterval();
+    executorService.scheduleWithFixedDelay(() -> {
+      Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageCompactor", "compact");
+      try {
+        int deleted = compact();
+        transaction.addData("Deleted", deleted);
+        transaction.addData("TableSize", tableSize);
+        transaction.addData("Lag", getLag());
+        transaction.setStatus(Transaction.SUCCESS);
+      } catch (Throwable ex) {
+        transaction.setStatus(ex);
+        logger.error("Compact release messages failed", ex);
+      } finally {
+        transaction.complete();
+      }
+    }, interval, interval, bizConfig.releaseMessageCompactionIntervalTimeUnit());
+  }
+
+  /**
+   * @return the number of messages deleted
+   */
+  int compact() {
+    ReleaseMessage latest = releaseMessageRepository.findTopByOrderByIdDesc();
+    if (latest == null) {
+      tableSize = 0;
+      return 0;
+    }
+    maxMessageId = latest.getId();
+
+    int deleted = 0;
+    long startId = watermark;
+    while (startId < maxMessageId && !Thread.currentThread().isInterrupted()) {
+      List<ReleaseMessage> releaseMessages = releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(startId);
+      if (CollectionUtils.isEmpty(releaseMessages)) {
+        break;
+      }
+      deleted += deleteOlderMessages(releaseMessages);
+      startId = releaseMessages.get(releaseMessages.size() - 1).getId();
+      watermark = startId;
+    }
+
+    tableSize = releaseMessageRepository.count();
+    if (deleted > 0) {
+      logger.info("Compacted {} release messages, {} left", deleted, tableSize);
+    }
+    return deleted;
+  }
+
+  private int deleteOlderMessages(List<ReleaseMessage> releaseMessages) {
+    // messages are sorted by id, so the last one of each key wins
+    Map<String, Long> latestIds = Maps.newHashMapWithExpectedSize(releaseMessages.size());
+    for (ReleaseMessage releaseMessage : releaseMessages) {
+      latestIds.put(releaseMessage.getMessage(), releaseMessage.getId());
+    }
+
+    List<Object[]> batchArgs = Lists.newArrayListWithCapacity(latestIds.size());
+    for (Map.Entry<String, Long> entry : latestIds.entrySet()) {
+      batchArgs.add(new Object[]{entry.getKey(), entry.getValue()});
+    }
+
+    int deleted = 0;
+    for (int count : jdbcTemplate.batchUpdate(DELETE_OLDER_MESSAGES, batchArgs)) {
+      if (count > 0) {
+        deleted += count;
+      }
+    }
+    return deleted;
+  }
+
+  /**
+   * @return the number of release messages after the last compaction
+   */
+  public long getTableSize() {
+    return tableSize;
+  }
+
+  /**
+   * @return how far the compaction is behind the latest release message known, in message ids
+   */
+  public long getLag() {
+    return Math.max(0, maxMessageId - watermark);
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    executorService.shutdown();
+  }
+}
@@ -12,6 +12,7 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.util.CollectionUtils;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.datasource.ReadReplica;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
@@ -28,6 +29,8 @@ public class ReleaseMessageScanner implements InitializingBean {
   private BizConfig bizConfig;
   @Autowired
   private ReleaseMessageRepository releaseMessageRepository;
+  @Autowired
+  private ReadReplica readReplica;
   private int databaseScanInterval;
   private List<ReleaseMessageListener> listeners;
   private ScheduledExecutorService executorService;
@@ -85,8 +88,9 @@ public class ReleaseMessageScanner implements InitializingBean {
    */
   private boolean scanAndSendMessages() {
     //current batch is 500
-    List<ReleaseMessage> releaseMessages =
-        releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(maxIdScanned);
+    //the replica applies the messages in the commit order, so the scan just lags behind with it
+    List<ReleaseMessage> releaseMessages = readReplica.read(
+        () -> releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(maxIdScanned));
     if (CollectionUtils.isEmpty(releaseMessages)) {
       return false;
     }
@@ -101,7 +105,7 @@ public class ReleaseMessageScanner implements InitializingBean {
    * @return current largest message id
    */
   private long loadLargestMessageId() {
-    ReleaseMessage releaseMessage = releaseMessageRepository.findTopByOrderByIdDesc();
+    ReleaseMessage releaseMessage = readReplica.read(releaseMessageRepository::findTopByOrderByIdDesc);
     return releaseMessage == null ? 0 : releaseMessage.getId();
   }
 
@@ -110,10 +114,17 @@ public class ReleaseMessageScanner implements InitializingBean {
    * @param messages
    */
   private void fireMessageScanned(List<ReleaseMessage> messages) {
-    for (ReleaseMessage message : messages) {
+    for (ReleaseMessage releaseMessage : messages) {
+      String channel = TopicMessages.topicOf(releaseMessage.getMessage());
+      ReleaseMessage message = releaseMessage;
+      if (!Topics.APOLLO_RELEASE_TOPIC.equals(channel)) {
+        //listeners of the other topics get the message without the topic
+        message = new ReleaseMessage(TopicMessages.messageOf(releaseMessage.getMessage()));
+        message.setId(releaseMessage.getId());
+      }
       for (ReleaseMessageListener listener : listeners) {
         try {
-          listener.handleMessage(message, Topics.APOLLO_RELEASE_TOPIC);
+          listener.handleMessage(message, channel);
         } catch (Throwable ex) {
           Tracer.logError(ex);
           logger.error("Failed to invoke message listener {}", listener.getClass(), ex);
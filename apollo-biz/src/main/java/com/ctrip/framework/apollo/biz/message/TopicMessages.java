@@ -0,0 +1,57 @@
+package com.ctrip.framework.apollo.biz.message;
+
+import com.google.common.collect.ImmutableSet;
+
+import java.util.Set;
+
+/**
+ * The messages of the topics other than {@link Topics#APOLLO_RELEASE_TOPIC} are stored in the
+ * release message table as well, prefixed with the topic, e.g. apollo-app-namespace:someAppId.
+ *
+ * <p>Release messages are appId+cluster+namespace, and ':' is not allowed in any of them, so the
+ * prefixed messages never collide with release messages.</p>
+ */
+public class TopicMessages {
+  private static final String TOPIC_SEPARATOR = ":";
+  private static final Set<String> SUPPORTED_TOPICS = ImmutableSet.of(Topics.APOLLO_RELEASE_TOPIC,
+      Topics.APOLLO_APP_NAMESPACE_TOPIC, Topics.APOLLO_ACCESS_KEY_TOPIC);
+
+  public static boolean isSupported(String topic) {
+    return SUPPORTED_TOPICS.contains(topic);
+  }
+
+  /**
+   * @return the content stored in the release message table
+   */
+  public static String encode(String message, String topic) {
+    if (Topics.APOLLO_RELEASE_TOPIC.equals(topic)) {
+      return message;
+    }
+    return topic + TOPIC_SEPARATOR + message;
+  }
+
+  /**
+   * @return the topic of the content stored in the release message table
+   */
+  public static String topicOf(String content) {
+    int index = content == null ? -1 : content.indexOf(TOPIC_SEPARATOR);
+    if (index > 0) {
+      String topic = content.substring(0, index);
+      if (SUPPORTED_TOPICS.contains(topic)) {
+        return topic;
+      }
+    }
+    return Topics.APOLLO_RELEASE_TOPIC;
+  }
+
+  /**
+   * @return the message of the content stored in the release message table, without the topic
+   */
+  public static String messageOf(String content) {
+    String topic = topicOf(content);
+    if (Topics.APOLLO_RELEASE_TOPIC.equals(topic)) {
+      return content;
+    }
+    return content.substring(topic.length() + TOPIC_SEPARATOR.length());
+  }
+}
@@ -5,4 +5,12 @@ package com.ctrip.framework.apollo.biz.message;
  */
 public class Topics {
   public static final String APOLLO_RELEASE_TOPIC = "apollo-release";
+  /**
+   * The app namespaces of an app changed, the message is the appId
+   */
+  public static final String APOLLO_APP_NAMESPACE_TOPIC = "apollo-app-namespace";
+  /**
+   * The access keys of an app changed, the message is the appId
+   */
+  public static final String APOLLO_ACCESS_KEY_TOPIC = "apollo-access-key";
 }
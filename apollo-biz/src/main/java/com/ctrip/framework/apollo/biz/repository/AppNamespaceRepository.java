@@ -26,6 +26,8 @@ public interface AppNamespaceRepository extends PagingAndSortingRepository<AppNa
 
   List<AppNamespace> findFirst500ByIdGreaterThanOrderByIdAsc(long id);
 
+  AppNamespace findTopByOrderByIdDesc();
+
   @Modifying
   @Query("UPDATE AppNamespace SET IsDeleted=1,DataChange_LastModifiedBy = ?2 WHERE AppId=?1")
   int batchDeleteByAppId(String appId, String operator);
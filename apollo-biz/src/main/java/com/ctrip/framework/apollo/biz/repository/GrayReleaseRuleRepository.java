@@ -2,8 +2,12 @@ package com.ctrip.framework.apollo.biz.repository;
 
 import com.ctrip.framework.apollo.biz.entity.GrayReleaseRule;
 
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Date;
 import java.util.List;
 
 
@@ -17,4 +21,9 @@ public interface GrayReleaseRuleRepository extends PagingAndSortingRepository<Gr
 
   List<GrayReleaseRule> findFirst500ByIdGreaterThanOrderByIdAsc(Long id);
 
+  @Query("SELECT r FROM GrayReleaseRule r WHERE r.dataChangeLastModifiedTime > :time OR "
+      + "(r.dataChangeLastModifiedTime = :time AND r.id > :id) "
+      + "ORDER BY r.dataChangeLastModifiedTime ASC, r.id ASC")
+  List<GrayReleaseRule> findModifiedAfter(@Param("time") Date time, @Param("id") long id, Pageable pageable);
+
 }
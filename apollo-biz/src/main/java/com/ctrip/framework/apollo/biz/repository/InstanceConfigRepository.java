@@ -9,6 +9,7 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.PagingAndSortingRepository;
 import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
@@ -18,6 +19,8 @@ public interface InstanceConfigRepository extends PagingAndSortingRepository<Ins
   InstanceConfig findByInstanceIdAndConfigAppIdAndConfigNamespaceName(long instanceId, String
       configAppId, String configNamespaceName);
 
+  List<InstanceConfig> findByInstanceIdIn(Collection<Long> instanceIds);
+
   Page<InstanceConfig> findByReleaseKeyAndDataChangeLastModifiedTimeAfter(String releaseKey, Date
       validDate, Pageable pageable);
 
@@ -4,6 +4,11 @@ import com.ctrip.framework.apollo.biz.entity.Instance;
 
 import org.springframework.data.repository.PagingAndSortingRepository;
 
+import java.util.Collection;
+import java.util.List;
+
 public interface InstanceRepository extends PagingAndSortingRepository<Instance, Long> {
   Instance findByAppIdAndClusterNameAndDataCenterAndIp(String appId, String clusterName, String dataCenter, String ip);
+
+  List<Instance> findByAppIdAndClusterNameAndIpIn(String appId, String clusterName, Collection<String> ips);
 }
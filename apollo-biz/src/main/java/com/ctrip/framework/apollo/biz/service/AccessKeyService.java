@@ -2,6 +2,8 @@ package com.ctrip.framework.apollo.biz.service;
 
 import com.ctrip.framework.apollo.biz.entity.AccessKey;
 import com.ctrip.framework.apollo.biz.entity.Audit;
+import com.ctrip.framework.apollo.biz.message.MessageSender;
+import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.repository.AccessKeyRepository;
 import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import java.util.List;
@@ -18,12 +20,15 @@ public class AccessKeyService {
 
   private final AccessKeyRepository accessKeyRepository;
   private final AuditService auditService;
+  private final MessageSender messageSender;
 
   public AccessKeyService(
       AccessKeyRepository accessKeyRepository,
-      AuditService auditService) {
+      AuditService auditService,
+      MessageSender messageSender) {
     this.accessKeyRepository = accessKeyRepository;
     this.auditService = auditService;
+    this.messageSender = messageSender;
   }
 
   public List<AccessKey> findByAppId(String appId) {
@@ -45,6 +50,7 @@ public class AccessKeyService {
     auditService.audit(AccessKey.class.getSimpleName(), accessKey.getId(), Audit.OP.INSERT,
         accessKey.getDataChangeCreatedBy());
 
+    publishAccessKeyChange(appId);
     return accessKey;
   }
 
@@ -63,6 +69,8 @@ public class AccessKeyService {
     accessKeyRepository.save(accessKey);
 
     auditService.audit(AccessKey.class.getSimpleName(), id, Audit.OP.UPDATE, operator);
+
+    publishAccessKeyChange(appId);
     return accessKey;
   }
 
@@ -82,5 +90,12 @@ public class AccessKeyService {
     accessKeyRepository.save(accessKey);
 
     auditService.audit(AccessKey.class.getSimpleName(), id, Audit.OP.DELETE, operator);
+
+    publishAccessKeyChange(appId);
+  }
+
+  //so that config services could refresh their caches of this app right away
+  private void publishAccessKeyChange(String appId) {
+    messageSender.sendMessage(appId, Topics.APOLLO_ACCESS_KEY_TOPIC);
   }
 }
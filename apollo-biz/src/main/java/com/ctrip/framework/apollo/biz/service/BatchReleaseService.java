@@ -0,0 +1,199 @@
+package com.ctrip.framework.apollo.biz.service;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Namespace;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.message.MessageSender;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.common.dto.BatchReleaseDTO;
+import com.ctrip.framework.apollo.common.dto.ReleaseDTO;
+import com.ctrip.framework.apollo.common.dto.ReleaseTargetDTO;
+import com.ctrip.framework.apollo.common.dto.ReleaseTargetResultDTO;
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+import com.ctrip.framework.apollo.common.exception.NotFoundException;
+import com.ctrip.framework.apollo.common.utils.BeanUtils;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.core.utils.StringUtils;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Publish many clusters and namespaces of one app in one request.
+ *
+ * <p>Each target is published in its own transaction, so one failed target doesn't roll back the
+ * others, and at most {@link BizConfig#batchReleaseParallelism()} targets are published at the same
+ * time. The release message of each target is written in the same transaction as its release, the
+ * same as a single publish, so a committed release is never left without its message. The targets
+ * of all the batches in flight share at most {@link #MAX_PUBLISH_THREADS} threads.</p>
+ */
+@Service
+public class BatchReleaseService implements DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(BatchReleaseService.class);
+  //the upper bound of the parallelism of one batch
+  private static final int MAX_PUBLISH_THREADS = 32;
+
+  private final ExecutorService publishExecutorService;
+  private final TransactionTemplate transactionTemplate;
+
+  private final ReleaseService releaseService;
+  private final NamespaceService namespaceService;
+  private final MessageSender messageSender;
+  private final BizConfig bizConfig;
+
+  public BatchReleaseService(
+      final ReleaseService releaseService,
+      final NamespaceService namespaceService,
+      final MessageSender messageSender,
+      final BizConfig bizConfig,
+      final PlatformTransactionManager transactionManager) {
+    this.releaseService = releaseService;
+    this.namespaceService = namespaceService;
+    this.messageSender = messageSender;
+    this.bizConfig = bizConfig;
+    this.transactionTemplate = new TransactionTemplate(transactionManager);
+    //the threads are only kept while there are batches in flight
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(MAX_PUBLISH_THREADS, MAX_PUBLISH_THREADS, 60L,
+        TimeUnit.SECONDS, new LinkedBlockingQueue<>(), ApolloThreadFactory.create("BatchReleaseService", true));
+    executor.allowCoreThreadTimeOut(true);
+    publishExecutorService = executor;
+  }
+
+  /**
+   * @return the results in the same order as the targets
+   */
+  public List<ReleaseTargetResultDTO> publish(String appId, BatchReleaseDTO batchRelease) {
+    List<ReleaseTargetDTO> targets = batchRelease.getTargets();
+    checkTargets(targets);
+
+    Transaction transaction = Tracer.newTransaction("Apollo.BatchRelease", "publish");
+    transaction.addData("AppId", appId);
+    transaction.addData("Size", targets.size());
+    try {
+      ReleaseTargetResultDTO[] results = new ReleaseTargetResultDTO[targets.size()];
+      AtomicInteger nextTarget = new AtomicInteger();
+
+      int parallelism = Math.min(bizConfig.batchReleaseParallelism(), targets.size());
+      List<Future<?>> workers = Lists.newArrayListWithCapacity(parallelism);
+      for (int i = 0; i < parallelism; i++) {
+        workers.add(publishExecutorService.submit(() -> {
+          int index;
+          while ((index = nextTarget.getAndIncrement()) < targets.size()) {
+            ReleaseTargetDTO target = targets.get(index);
+            try {
+              results[index] = publish(appId, target, batchRelease);
+            } catch (Throwable ex) {
+              logger.warn("Publish {} of app {} failed", target, appId, ex);
+              results[index] = failure(target, ex);
+            }
+          }
+        }));
+      }
+      for (Future<?> worker : workers) {
+        waitFor(worker);
+      }
+
+      transaction.setStatus(Transaction.SUCCESS);
+      return Lists.newArrayList(results);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private ReleaseTargetResultDTO publish(String appId, ReleaseTargetDTO target, BatchReleaseDTO batchRelease) {
+    Release release = transactionTemplate.execute(status -> {
+      Namespace namespace = namespaceService.findOne(appId, target.getClusterName(), target.getNamespaceName());
+      if (namespace == null) {
+        throw new NotFoundException(String.format("Could not find namespace for %s %s %s", appId,
+            target.getClusterName(), target.getNamespaceName()));
+      }
+      Release newRelease = releaseService.publish(namespace, target.getReleaseName(),
+          target.getReleaseComment(), batchRelease.getOperator(), batchRelease.isEmergencyPublish());
+
+      Namespace parentNamespace = namespaceService.findParentNamespace(namespace);
+      String messageCluster = parentNamespace != null ? parentNamespace.getClusterName() : target.getClusterName();
+      messageSender.sendMessage(ReleaseMessageKeyGenerator.generate(appId, messageCluster, target.getNamespaceName()),
+          Topics.APOLLO_RELEASE_TOPIC);
+      return newRelease;
+    });
+
+    ReleaseTargetResultDTO result = result(target);
+    result.setSuccess(true);
+    result.setRelease(BeanUtils.transform(ReleaseDTO.class, release));
+    return result;
+  }
+
+  private void checkTargets(List<ReleaseTargetDTO> targets) {
+    if (targets == null || targets.isEmpty()) {
+      throw new BadRequestException("Batch release targets should not be empty");
+    }
+    if (targets.size() > bizConfig.batchReleaseMaxTargets()) {
+      throw new BadRequestException(String.format("Batch release targets should not be more than %d",
+          bizConfig.batchReleaseMaxTargets()));
+    }
+    Set<String> distinctTargets = Sets.newHashSetWithExpectedSize(targets.size());
+    for (ReleaseTargetDTO target : targets) {
+      if (StringUtils.isContainEmpty(target.getClusterName(), target.getNamespaceName())) {
+        throw new BadRequestException("Cluster name and namespace name of batch release targets should not be empty");
+      }
+      if (!distinctTargets.add(target.getClusterName() + "+" + target.getNamespaceName())) {
+        throw new BadRequestException(String.format("Duplicate batch release target %s %s",
+            target.getClusterName(), target.getNamespaceName()));
+      }
+    }
+  }
+
+  private void waitFor(Future<?> worker) {
+    try {
+      worker.get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      throw new IllegalStateException("Interrupted while waiting for batch release", ex);
+    } catch (ExecutionException ex) {
+      // should not happen as the workers catch all the failures
+      throw new IllegalStateException(ex.getCause());
+    }
+  }
+
+  private ReleaseTargetResultDTO failure(ReleaseTargetDTO target, Throwable ex) {
+    ReleaseTargetResultDTO result = result(target);
+    result.setSuccess(false);
+    result.setMessage(ex.getMessage());
+    return result;
+  }
+
+  private ReleaseTargetResultDTO result(ReleaseTargetDTO target) {
+    ReleaseTargetResultDTO result = new ReleaseTargetResultDTO();
+    result.setClusterName(target.getClusterName());
+    result.setNamespaceName(target.getNamespaceName());
+    return result;
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    publishExecutorService.shutdown();
+  }
+}
@@ -7,19 +7,25 @@ import com.ctrip.framework.apollo.biz.repository.InstanceRepository;
 import com.google.common.base.Preconditions;
 import com.google.common.collect.Lists;
 import java.util.Objects;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
 import java.math.BigInteger;
+import java.sql.Timestamp;
 import java.util.Calendar;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.stream.Collectors;
 
 /**
@@ -27,14 +33,27 @@ import java.util.stream.Collectors;
  */
 @Service
 public class InstanceService {
+  private static final String BATCH_UPDATE_INSTANCE_CONFIG_SQL = "UPDATE `InstanceConfig` SET "
+      + "`ConfigClusterName` = ?, `ReleaseKey` = ?, `ReleaseDeliveryTime` = ?, `DataChange_LastTime` = ? "
+      + "WHERE `Id` = ?";
+  private static final String BATCH_CREATE_INSTANCE_CONFIG_SQL = "INSERT INTO `InstanceConfig` "
+      + "(`InstanceId`, `ConfigAppId`, `ConfigClusterName`, `ConfigNamespaceName`, `ReleaseKey`, "
+      + "`ReleaseDeliveryTime`, `DataChange_CreatedTime`, `DataChange_LastTime`) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String BATCH_UPDATE_INSTANCE_CONFIG_LAST_MODIFIED_TIME_SQL = "UPDATE `InstanceConfig` "
+      + "SET `DataChange_LastTime` = ? WHERE `Id` = ? AND `DataChange_LastTime` < ?";
+
   private final InstanceRepository instanceRepository;
   private final InstanceConfigRepository instanceConfigRepository;
+  private final JdbcTemplate jdbcTemplate;
 
   public InstanceService(
       final InstanceRepository instanceRepository,
-      final InstanceConfigRepository instanceConfigRepository) {
+      final InstanceConfigRepository instanceConfigRepository,
+      final JdbcTemplate jdbcTemplate) {
     this.instanceRepository = instanceRepository;
     this.instanceConfigRepository = instanceConfigRepository;
+    this.jdbcTemplate = jdbcTemplate;
   }
 
   public Instance findInstance(String appId, String clusterName, String dataCenter, String ip) {
@@ -42,6 +61,17 @@ public class InstanceService {
         dataCenter, ip);
   }
 
+  /**
+   * Find the instances of the app cluster with the ips in one query, instances in all data centers
+   * are returned
+   */
+  public List<Instance> findInstances(String appId, String clusterName, Collection<String> ips) {
+    if (CollectionUtils.isEmpty(ips)) {
+      return Collections.emptyList();
+    }
+    return instanceRepository.findByAppIdAndClusterNameAndIpIn(appId, clusterName, ips);
+  }
+
   public List<Instance> findInstancesByIds(Set<Long> instanceIds) {
     Iterable<Instance> instances = instanceRepository.findAllById(instanceIds);
     if (instances == null) {
@@ -64,6 +94,13 @@ public class InstanceService {
             instanceId, configAppId, configNamespaceName);
   }
 
+  public List<InstanceConfig> findInstanceConfigsByInstanceIds(Collection<Long> instanceIds) {
+    if (CollectionUtils.isEmpty(instanceIds)) {
+      return Collections.emptyList();
+    }
+    return instanceConfigRepository.findByInstanceIdIn(instanceIds);
+  }
+
   public Page<InstanceConfig> findActiveInstanceConfigsByReleaseKey(String releaseKey, Pageable
       pageable) {
     Page<InstanceConfig> instanceConfigs = instanceConfigRepository
@@ -174,6 +211,89 @@ public class InstanceService {
     return instanceConfigRepository.save(existedInstanceConfig);
   }
 
+  /**
+   * Update the release info and last modified time of the existing instance configs with one jdbc
+   * batch
+   */
+  @Transactional
+  public void batchUpdateInstanceConfigs(List<InstanceConfig> instanceConfigs) {
+    if (CollectionUtils.isEmpty(instanceConfigs)) {
+      return;
+    }
+    jdbcTemplate.batchUpdate(BATCH_UPDATE_INSTANCE_CONFIG_SQL, instanceConfigs, instanceConfigs.size(),
+        (ps, instanceConfig) -> {
+          ps.setString(1, instanceConfig.getConfigClusterName());
+          ps.setString(2, instanceConfig.getReleaseKey());
+          ps.setTimestamp(3, toTimestamp(instanceConfig.getReleaseDeliveryTime()));
+          ps.setTimestamp(4, toTimestamp(instanceConfig.getDataChangeLastModifiedTime()));
+          ps.setLong(5, instanceConfig.getId());
+        });
+  }
+
+  /**
+   * Refresh the last modified time of the instance configs with one jdbc batch, the rows are updated
+   * in the order of id and a newer last modified time is never overwritten
+   *
+   * @param lastModifiedTimes instance config id -&gt; last modified time
+   */
+  @Transactional
+  public void batchUpdateInstanceConfigLastModifiedTimes(Map<Long, Date> lastModifiedTimes) {
+    if (CollectionUtils.isEmpty(lastModifiedTimes)) {
+      return;
+    }
+    List<Map.Entry<Long, Date>> sorted = Lists.newArrayList(new TreeMap<>(lastModifiedTimes).entrySet());
+    jdbcTemplate.batchUpdate(BATCH_UPDATE_INSTANCE_CONFIG_LAST_MODIFIED_TIME_SQL, sorted, sorted.size(),
+        (ps, entry) -> {
+          Timestamp lastModifiedTime = toTimestamp(entry.getValue());
+          ps.setTimestamp(1, lastModifiedTime);
+          ps.setLong(2, entry.getKey());
+          ps.setTimestamp(3, lastModifiedTime);
+        });
+  }
+
+  /**
+   * Create the instance configs with one jdbc batch. If some of them are created concurrently by
+   * others, the rest are created one by one and the existing ones are skipped.
+   */
+  public void batchCreateInstanceConfigs(List<InstanceConfig> instanceConfigs) {
+    if (CollectionUtils.isEmpty(instanceConfigs)) {
+      return;
+    }
+    try {
+      doBatchCreateInstanceConfigs(instanceConfigs);
+    } catch (DataIntegrityViolationException ex) {
+      for (InstanceConfig instanceConfig : instanceConfigs) {
+        try {
+          doBatchCreateInstanceConfigs(Collections.singletonList(instanceConfig));
+        } catch (DataIntegrityViolationException e) {
+          //concurrent insertion, safe to ignore
+        }
+      }
+    }
+  }
+
+  private void doBatchCreateInstanceConfigs(List<InstanceConfig> instanceConfigs) {
+    jdbcTemplate.batchUpdate(BATCH_CREATE_INSTANCE_CONFIG_SQL, instanceConfigs, instanceConfigs.size(),
+        (ps, instanceConfig) -> {
+          Date createdTime = instanceConfig.getDataChangeCreatedTime() == null ? new Date() :
+              instanceConfig.getDataChangeCreatedTime();
+          Date lastModifiedTime = instanceConfig.getDataChangeLastModifiedTime() == null ? createdTime
+              : instanceConfig.getDataChangeLastModifiedTime();
+          ps.setLong(1, instanceConfig.getInstanceId());
+          ps.setString(2, instanceConfig.getConfigAppId());
+          ps.setString(3, instanceConfig.getConfigClusterName());
+          ps.setString(4, instanceConfig.getConfigNamespaceName());
+          ps.setString(5, instanceConfig.getReleaseKey());
+          ps.setTimestamp(6, toTimestamp(instanceConfig.getReleaseDeliveryTime()));
+          ps.setTimestamp(7, toTimestamp(createdTime));
+          ps.setTimestamp(8, toTimestamp(lastModifiedTime));
+        });
+  }
+
+  private Timestamp toTimestamp(Date date) {
+    return date == null ? null : new Timestamp(date.getTime());
+  }
+
   @Transactional
   public int batchDeleteInstanceConfig(String configAppId, String configClusterName, String configNamespaceName){
     return instanceConfigRepository.batchDelete(configAppId, configClusterName, configNamespaceName);
@@ -10,10 +10,17 @@ import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.common.exception.NotFoundException;
 import com.ctrip.framework.apollo.common.utils.BeanUtils;
 import com.ctrip.framework.apollo.core.utils.StringUtils;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.CollectionUtils;
 
+import javax.persistence.EntityManager;
+import java.sql.Timestamp;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
 import java.util.List;
@@ -21,21 +28,35 @@ import java.util.Map;
 
 @Service
 public class ItemService {
+  private static final String BATCH_CREATE_ITEM_SQL = "INSERT INTO `Item` "
+      + "(`NamespaceId`, `Key`, `Value`, `Comment`, `LineNum`, `IsDeleted`, `DataChange_CreatedBy`, "
+      + "`DataChange_CreatedTime`, `DataChange_LastModifiedBy`, `DataChange_LastTime`) "
+      + "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+  private static final String BATCH_UPDATE_ITEM_SQL = "UPDATE `Item` SET `Value` = ?, `Comment` = ?, "
+      + "`LineNum` = ?, `DataChange_LastModifiedBy` = ?, `DataChange_LastTime` = ? WHERE `Id` = ?";
+  private static final String BATCH_DELETE_ITEM_SQL = "UPDATE `Item` SET `IsDeleted` = 1, "
+      + "`DataChange_LastModifiedBy` = ?, `DataChange_LastTime` = ? WHERE `Id` = ?";
 
   private final ItemRepository itemRepository;
   private final NamespaceService namespaceService;
   private final AuditService auditService;
   private final BizConfig bizConfig;
+  private final JdbcTemplate jdbcTemplate;
+  private final EntityManager entityManager;
 
   public ItemService(
       final ItemRepository itemRepository,
       final @Lazy NamespaceService namespaceService,
       final AuditService auditService,
-      final BizConfig bizConfig) {
+      final BizConfig bizConfig,
+      final JdbcTemplate jdbcTemplate,
+      final EntityManager entityManager) {
     this.itemRepository = itemRepository;
     this.namespaceService = namespaceService;
     this.auditService = auditService;
     this.bizConfig = bizConfig;
+    this.jdbcTemplate = jdbcTemplate;
+    this.entityManager = entityManager;
   }
 
 
@@ -88,6 +109,21 @@ public class ItemService {
     return item;
   }
 
+  /**
+   * Find the items to be written by the batch methods, they are detached so that the items read later
+   * in the same transaction are loaded again instead of the stale ones in the persistence context
+   *
+   * @return the items found, in no particular order
+   */
+  public List<Item> findDetachedItems(Collection<Long> itemIds) {
+    if (CollectionUtils.isEmpty(itemIds)) {
+      return Collections.emptyList();
+    }
+    List<Item> items = Lists.newArrayList(itemRepository.findAllById(itemIds));
+    items.forEach(entityManager::detach);
+    return items;
+  }
+
   public List<Item> findItemsWithoutOrdered(Long namespaceId) {
     List<Item> items = itemRepository.findByNamespaceId(namespaceId);
     if (items == null) {
@@ -158,6 +194,112 @@ public class ItemService {
     return managedItem;
   }
 
+  /**
+   * Insert the items with jdbc batches. Line numbers of the items without one are assigned in memory
+   * after the last item of their namespaces.
+   *
+   * <p>Unlike {@link #save(Item)}, the ids of the items are not populated and no audit is written
+   * for each item, callers should write an aggregated one.</p>
+   */
+  @Transactional
+  public List<Item> batchSave(List<Item> items) {
+    if (CollectionUtils.isEmpty(items)) {
+      return items;
+    }
+    Map<Long, Integer> lastLineNums = Maps.newHashMap();
+    Date now = new Date();
+    for (Item item : items) {
+      checkItemKeyLength(item.getKey());
+      checkItemValueLength(item.getNamespaceId(), item.getValue());
+
+      //seeded from the database before any line number of the batch is counted
+      int lastLineNum = lastLineNums.computeIfAbsent(item.getNamespaceId(), namespaceId -> {
+        Item lastItem = findLastOne(namespaceId);
+        return lastItem == null ? 0 : lastItem.getLineNum();
+      });
+      if (item.getLineNum() == null || item.getLineNum() == 0) {
+        item.setLineNum(lastLineNum + 1);
+      }
+      lastLineNums.merge(item.getNamespaceId(), item.getLineNum(), Math::max);
+
+      item.setId(0);//protection
+      item.setDataChangeCreatedTime(now);
+      item.setDataChangeLastModifiedTime(now);
+    }
+
+    //jdbc writes bypass the persistence context, so the pending changes are flushed first
+    entityManager.flush();
+    jdbcTemplate.batchUpdate(BATCH_CREATE_ITEM_SQL, items, items.size(), (ps, item) -> {
+      ps.setLong(1, item.getNamespaceId());
+      ps.setString(2, item.getKey());
+      ps.setString(3, item.getValue());
+      ps.setString(4, item.getComment());
+      ps.setInt(5, item.getLineNum());
+      ps.setBoolean(6, false);
+      ps.setString(7, item.getDataChangeCreatedBy());
+      ps.setTimestamp(8, toTimestamp(item.getDataChangeCreatedTime()));
+      ps.setString(9, item.getDataChangeLastModifiedBy());
+      ps.setTimestamp(10, toTimestamp(item.getDataChangeLastModifiedTime()));
+    });
+    return items;
+  }
+
+  /**
+   * Update the value, comment and line number of the items with jdbc batches, no audit is written
+   * for each item. The items should be detached, see {@link #findDetachedItems(Collection)}.
+   */
+  @Transactional
+  public List<Item> batchUpdate(List<Item> items) {
+    if (CollectionUtils.isEmpty(items)) {
+      return items;
+    }
+    Date now = new Date();
+    for (Item item : items) {
+      checkItemValueLength(item.getNamespaceId(), item.getValue());
+      item.setDataChangeLastModifiedTime(now);
+    }
+
+    entityManager.flush();
+    jdbcTemplate.batchUpdate(BATCH_UPDATE_ITEM_SQL, items, items.size(), (ps, item) -> {
+      ps.setString(1, item.getValue());
+      ps.setString(2, item.getComment());
+      ps.setObject(3, item.getLineNum());
+      ps.setString(4, item.getDataChangeLastModifiedBy());
+      ps.setTimestamp(5, toTimestamp(item.getDataChangeLastModifiedTime()));
+      ps.setLong(6, item.getId());
+    });
+    return items;
+  }
+
+  /**
+   * Mark the items as deleted with jdbc batches, no audit is written for each item. The items should
+   * be detached, see {@link #findDetachedItems(Collection)}.
+   */
+  @Transactional
+  public List<Item> batchDelete(List<Item> items, String operator) {
+    if (CollectionUtils.isEmpty(items)) {
+      return items;
+    }
+    Date now = new Date();
+    for (Item item : items) {
+      item.setDeleted(true);
+      item.setDataChangeLastModifiedBy(operator);
+      item.setDataChangeLastModifiedTime(now);
+    }
+
+    entityManager.flush();
+    jdbcTemplate.batchUpdate(BATCH_DELETE_ITEM_SQL, items, items.size(), (ps, item) -> {
+      ps.setString(1, operator);
+      ps.setTimestamp(2, toTimestamp(now));
+      ps.setLong(3, item.getId());
+    });
+    return items;
+  }
+
+  private Timestamp toTimestamp(Date date) {
+    return date == null ? null : new Timestamp(date.getTime());
+  }
+
   private boolean checkItemValueLength(long namespaceId, String value) {
     int limit = getItemValueLengthLimit(namespaceId);
     if (!StringUtils.isEmpty(value) && value.length() > limit) {
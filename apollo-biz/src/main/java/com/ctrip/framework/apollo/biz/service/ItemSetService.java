@@ -1,5 +1,6 @@
 package com.ctrip.framework.apollo.biz.service;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Audit;
 import com.ctrip.framework.apollo.biz.entity.Commit;
 import com.ctrip.framework.apollo.biz.entity.Item;
@@ -9,10 +10,17 @@ import com.ctrip.framework.apollo.common.dto.ItemChangeSets;
 import com.ctrip.framework.apollo.common.dto.ItemDTO;
 import com.ctrip.framework.apollo.common.exception.NotFoundException;
 import com.ctrip.framework.apollo.common.utils.BeanUtils;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.util.CollectionUtils;
 
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
 
 @Service
 public class ItemSetService {
@@ -20,14 +28,17 @@ public class ItemSetService {
   private final AuditService auditService;
   private final CommitService commitService;
   private final ItemService itemService;
+  private final BizConfig bizConfig;
 
   public ItemSetService(
       final AuditService auditService,
       final CommitService commitService,
-      final ItemService itemService) {
+      final ItemService itemService,
+      final BizConfig bizConfig) {
     this.auditService = auditService;
     this.commitService = commitService;
     this.itemService = itemService;
+    this.bizConfig = bizConfig;
   }
 
   @Transactional
@@ -38,6 +49,10 @@ public class ItemSetService {
   @Transactional
   public ItemChangeSets updateSet(String appId, String clusterName,
                                   String namespaceName, ItemChangeSets changeSet) {
+    if (countChanges(changeSet) > bizConfig.itemSetBatchThreshold()) {
+      return batchUpdateSet(appId, clusterName, namespaceName, changeSet);
+    }
+
     String operator = changeSet.getDataChangeLastModifiedBy();
     ConfigChangeContentBuilder configChangeContentBuilder = new ConfigChangeContentBuilder();
 
@@ -92,6 +107,97 @@ public class ItemSetService {
 
   }
 
+  /**
+   * Apply a large change set with jdbc batches, e.g. importing a config file, instead of reading and
+   * writing the items one by one. Items are audited once per operation instead of once per item.
+   */
+  private ItemChangeSets batchUpdateSet(String appId, String clusterName, String namespaceName,
+                                        ItemChangeSets changeSet) {
+    String operator = changeSet.getDataChangeLastModifiedBy();
+    ConfigChangeContentBuilder configChangeContentBuilder = new ConfigChangeContentBuilder();
+
+    if (!CollectionUtils.isEmpty(changeSet.getCreateItems())) {
+      List<Item> entities = Lists.newArrayListWithCapacity(changeSet.getCreateItems().size());
+      for (ItemDTO item : changeSet.getCreateItems()) {
+        Item entity = BeanUtils.transform(Item.class, item);
+        entity.setDataChangeCreatedBy(operator);
+        entity.setDataChangeLastModifiedBy(operator);
+        entities.add(entity);
+      }
+      for (Item createdItem : itemService.batchSave(entities)) {
+        configChangeContentBuilder.createItem(createdItem);
+      }
+      auditService.audit("ItemSet", null, Audit.OP.INSERT, operator);
+    }
+
+    if (!CollectionUtils.isEmpty(changeSet.getUpdateItems())) {
+      Map<Long, Item> detachedItems = findItems(changeSet.getUpdateItems());
+      List<Item> toUpdate = Lists.newArrayListWithCapacity(changeSet.getUpdateItems().size());
+      List<Item> beforeUpdateItems = Lists.newArrayListWithCapacity(changeSet.getUpdateItems().size());
+      for (ItemDTO item : changeSet.getUpdateItems()) {
+        Item detachedItem = detachedItems.get(item.getId());
+        if (detachedItem == null) {
+          throw new NotFoundException(String.format("item not found.(key=%s)", item.getKey()));
+        }
+        beforeUpdateItems.add(detachedItem);
+
+        //protect. only value,comment,lastModifiedBy,lineNum can be modified
+        Item updatedItem = BeanUtils.transform(Item.class, detachedItem);
+        updatedItem.setValue(item.getValue());
+        updatedItem.setComment(item.getComment());
+        updatedItem.setLineNum(item.getLineNum());
+        updatedItem.setDataChangeLastModifiedBy(operator);
+        toUpdate.add(updatedItem);
+      }
+      itemService.batchUpdate(toUpdate);
+      for (int i = 0; i < toUpdate.size(); i++) {
+        configChangeContentBuilder.updateItem(beforeUpdateItems.get(i), toUpdate.get(i));
+      }
+      auditService.audit("ItemSet", null, Audit.OP.UPDATE, operator);
+    }
+
+    if (!CollectionUtils.isEmpty(changeSet.getDeleteItems())) {
+      Map<Long, Item> detachedItems = findItems(changeSet.getDeleteItems());
+      List<Item> toDelete = Lists.newArrayListWithCapacity(changeSet.getDeleteItems().size());
+      for (ItemDTO item : changeSet.getDeleteItems()) {
+        Item detachedItem = detachedItems.get(item.getId());
+        if (detachedItem == null) {
+          throw new IllegalArgumentException("item not exist. ID:" + item.getId());
+        }
+        toDelete.add(detachedItem);
+      }
+      for (Item deletedItem : itemService.batchDelete(toDelete, operator)) {
+        configChangeContentBuilder.deleteItem(deletedItem);
+      }
+      auditService.audit("ItemSet", null, Audit.OP.DELETE, operator);
+    }
+
+    if (configChangeContentBuilder.hasContent()){
+      createCommit(appId, clusterName, namespaceName, configChangeContentBuilder.build(),
+                   changeSet.getDataChangeLastModifiedBy());
+    }
+
+    return changeSet;
+  }
+
+  private Map<Long, Item> findItems(Collection<ItemDTO> items) {
+    List<Long> itemIds = items.stream().map(ItemDTO::getId).collect(Collectors.toList());
+    Map<Long, Item> result = Maps.newHashMapWithExpectedSize(itemIds.size());
+    for (Item item : itemService.findDetachedItems(itemIds)) {
+      result.put(item.getId(), item);
+    }
+    return result;
+  }
+
+  private int countChanges(ItemChangeSets changeSet) {
+    return size(changeSet.getCreateItems()) + size(changeSet.getUpdateItems())
+        + size(changeSet.getDeleteItems());
+  }
+
+  private int size(Collection<?> collection) {
+    return collection == null ? 0 : collection.size();
+  }
+
   private void createCommit(String appId, String clusterName, String namespaceName, String configChangeContent,
                             String operator) {
 
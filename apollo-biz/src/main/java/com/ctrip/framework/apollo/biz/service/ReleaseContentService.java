@@ -0,0 +1,215 @@
+package com.ctrip.framework.apollo.biz.service;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.common.constants.GsonType;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Stores the configurations of a release either in full, or as a delta to the last full snapshot of
+ * its namespace, so that namespaces with many keys and frequent releases don't store all the
+ * configurations every time.
+ *
+ * <p>A delta only refers to a full snapshot, so materializing a release reads at most one more
+ * release. As releases are immutable, materialized configurations are cached by release id.</p>
+ *
+ * <p>The parsed configuration maps are cached by release id as well, so that merging branches
+ * doesn't parse the same big releases again and again.</p>
+ */
+@Service
+public class ReleaseContentService {
+  private static final Logger logger = LoggerFactory.getLogger(ReleaseContentService.class);
+  static final String DELTA_PREFIX = "delta:";
+  //the total length of the cached configurations
+  private static final long CACHE_MAX_WEIGHT = 32 * 1024 * 1024;
+  //the total number of keys of the cached configuration maps
+  private static final long CONFIGURATION_MAP_CACHE_MAX_WEIGHT = 1024 * 1024;
+  private static final String FIND_CONFIGURATIONS_SQL = "SELECT `Configurations` FROM `Release` WHERE `Id` = ?";
+  private static final Gson gson = new Gson();
+
+  private final BizConfig bizConfig;
+  private final JdbcTemplate jdbcTemplate;
+  private final Cache<Long, String> configurationsCache;
+  private final Cache<Long, Map<String, String>> configurationMapCache;
+
+  public ReleaseContentService(final BizConfig bizConfig, final JdbcTemplate jdbcTemplate) {
+    this.bizConfig = bizConfig;
+    this.jdbcTemplate = jdbcTemplate;
+    this.configurationsCache = CacheBuilder.newBuilder()
+        .maximumWeight(CACHE_MAX_WEIGHT)
+        .weigher((Long releaseId, String configurations) -> configurations.length())
+        .build();
+    this.configurationMapCache = CacheBuilder.newBuilder()
+        .maximumWeight(CONFIGURATION_MAP_CACHE_MAX_WEIGHT)
+        .weigher((Long releaseId, Map<String, String> configurations) -> configurations.size() + 1)
+        .build();
+  }
+
+  /**
+   * @param previousRelease the latest active release of the namespace, materialized
+   * @param configurations the full configurations of the new release
+   * @return the configurations to store for the new release
+   */
+  public String toStoredConfigurations(Release previousRelease, String configurations) {
+    if (previousRelease == null || !bizConfig.isReleaseDeltaStorageEnabled()) {
+      return configurations;
+    }
+    try {
+      String storedConfigurations = previousRelease.getStoredConfigurations();
+      ReleaseDelta delta;
+      String baseConfigurations;
+      if (isDelta(storedConfigurations)) {
+        ReleaseDelta previousDelta = parseDelta(storedConfigurations);
+        delta = new ReleaseDelta(previousDelta.baseReleaseId, previousDelta.depth + 1);
+        baseConfigurations = loadFullConfigurations(previousDelta.baseReleaseId);
+      } else {
+        delta = new ReleaseDelta(previousRelease.getId(), 1);
+        baseConfigurations = storedConfigurations;
+      }
+      if (delta.depth >= bizConfig.releaseFullSnapshotInterval()) {
+        return configurations;
+      }
+
+      Map<String, String> base = gson.fromJson(baseConfigurations, GsonType.CONFIG);
+      Map<String, String> target = gson.fromJson(configurations, GsonType.CONFIG);
+      for (Map.Entry<String, String> entry : target.entrySet()) {
+        if (!base.containsKey(entry.getKey()) || !Objects.equals(base.get(entry.getKey()), entry.getValue())) {
+          delta.changed.put(entry.getKey(), entry.getValue());
+        }
+      }
+      for (String key : base.keySet()) {
+        if (!target.containsKey(key)) {
+          delta.deleted.add(key);
+        }
+      }
+
+      String deltaConfigurations = DELTA_PREFIX + gson.toJson(delta);
+      //not worth it, or the order of the keys is changed which the delta can't keep
+      if (deltaConfigurations.length() * 2 > configurations.length()
+          || !configurations.equals(gson.toJson(apply(base, delta)))) {
+        return configurations;
+      }
+      return deltaConfigurations;
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+      logger.error("Calculate release delta failed, store full configurations instead", ex);
+      return configurations;
+    }
+  }
+
+  /**
+   * Populate the full configurations of the release if stored as a delta
+   *
+   * @return the release passed in
+   */
+  public Release materialize(Release release) {
+    if (release == null || !isDelta(release.getStoredConfigurations())) {
+      return release;
+    }
+    String storedConfigurations = release.getStoredConfigurations();
+    release.materializeConfigurations(getCachedConfigurations(release.getId(), () -> {
+      ReleaseDelta delta = parseDelta(storedConfigurations);
+      Map<String, String> base = gson.fromJson(loadFullConfigurations(delta.baseReleaseId), GsonType.CONFIG);
+      return gson.toJson(apply(base, delta));
+    }));
+    return release;
+  }
+
+  public <T extends Collection<Release>> T materialize(T releases) {
+    if (releases != null) {
+      releases.forEach(this::materialize);
+    }
+    return releases;
+  }
+
+  /**
+   * @return the configurations of the release as an unmodifiable map shared by the callers
+   */
+  public Map<String, String> getConfigurationMap(Release release) {
+    try {
+      return configurationMapCache.get(release.getId(), () -> {
+        Map<String, String> configurations = gson.fromJson(release.getConfigurations(), GsonType.CONFIG);
+        return configurations == null ? Collections.emptyMap() : Collections.unmodifiableMap(configurations);
+      });
+    } catch (ExecutionException | UncheckedExecutionException ex) {
+      throw new IllegalStateException("Parse configurations failed, release id: " + release.getId(), ex.getCause());
+    }
+  }
+
+  /**
+   * Cache the full configurations of a release just created
+   */
+  public void cacheConfigurations(Release release) {
+    if (isDelta(release.getStoredConfigurations())) {
+      configurationsCache.put(release.getId(), release.getConfigurations());
+    }
+  }
+
+  static boolean isDelta(String storedConfigurations) {
+    return storedConfigurations != null && storedConfigurations.startsWith(DELTA_PREFIX);
+  }
+
+  private String loadFullConfigurations(long releaseId) {
+    return getCachedConfigurations(releaseId, () -> {
+      //read deleted releases as well, which might still be referred to
+      String configurations = jdbcTemplate.queryForObject(FIND_CONFIGURATIONS_SQL, String.class, releaseId);
+      if (isDelta(configurations)) {
+        throw new IllegalStateException("Base release is not a full snapshot, release id: " + releaseId);
+      }
+      return configurations;
+    });
+  }
+
+  private String getCachedConfigurations(long releaseId, Callable<String> loader) {
+    try {
+      return configurationsCache.get(releaseId, loader);
+    } catch (ExecutionException | UncheckedExecutionException ex) {
+      throw new IllegalStateException("Materialize release failed, release id: " + releaseId, ex.getCause());
+    }
+  }
+
+  private ReleaseDelta parseDelta(String storedConfigurations) {
+    return gson.fromJson(storedConfigurations.substring(DELTA_PREFIX.length()), ReleaseDelta.class);
+  }
+
+  private Map<String, String> apply(Map<String, String> base, ReleaseDelta delta) {
+    Map<String, String> result = new LinkedHashMap<>(base);
+    for (String key : delta.deleted) {
+      result.remove(key);
+    }
+    result.putAll(delta.changed);
+    return result;
+  }
+
+  private static class ReleaseDelta {
+    private long baseReleaseId;
+    //the number of releases since the full snapshot
+    private int depth;
+    private Map<String, String> changed = Maps.newLinkedHashMap();
+    private List<String> deleted = Lists.newArrayList();
+
+    private ReleaseDelta(long baseReleaseId, int depth) {
+      this.baseReleaseId = baseReleaseId;
+      this.depth = depth;
+    }
+  }
+}
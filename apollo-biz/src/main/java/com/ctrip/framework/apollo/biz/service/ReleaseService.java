@@ -8,8 +8,8 @@ import com.ctrip.framework.apollo.biz.entity.NamespaceLock;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseHistory;
 import com.ctrip.framework.apollo.biz.repository.ReleaseRepository;
+import com.ctrip.framework.apollo.biz.utils.ConfigurationDiff;
 import com.ctrip.framework.apollo.biz.utils.ReleaseKeyGenerator;
-import com.ctrip.framework.apollo.common.constants.GsonType;
 import com.ctrip.framework.apollo.common.constants.ReleaseOperation;
 import com.ctrip.framework.apollo.common.constants.ReleaseOperationContext;
 import com.ctrip.framework.apollo.common.dto.ItemChangeSets;
@@ -55,6 +55,7 @@ public class ReleaseService {
   private final NamespaceBranchService namespaceBranchService;
   private final ReleaseHistoryService releaseHistoryService;
   private final ItemSetService itemSetService;
+  private final ReleaseContentService releaseContentService;
 
   public ReleaseService(
       final ReleaseRepository releaseRepository,
@@ -64,7 +65,8 @@ public class ReleaseService {
       final NamespaceService namespaceService,
       final NamespaceBranchService namespaceBranchService,
       final ReleaseHistoryService releaseHistoryService,
-      final ItemSetService itemSetService) {
+      final ItemSetService itemSetService,
+      final ReleaseContentService releaseContentService) {
     this.releaseRepository = releaseRepository;
     this.itemService = itemService;
     this.auditService = auditService;
@@ -73,15 +75,16 @@ public class ReleaseService {
     this.namespaceBranchService = namespaceBranchService;
     this.releaseHistoryService = releaseHistoryService;
     this.itemSetService = itemSetService;
+    this.releaseContentService = releaseContentService;
   }
 
   public Release findOne(long releaseId) {
-    return releaseRepository.findById(releaseId).orElse(null);
+    return releaseContentService.materialize(releaseRepository.findById(releaseId).orElse(null));
   }
 
 
   public Release findActiveOne(long releaseId) {
-    return releaseRepository.findByIdAndIsAbandonedFalse(releaseId);
+    return releaseContentService.materialize(releaseRepository.findByIdAndIsAbandonedFalse(releaseId));
   }
 
   public List<Release> findByReleaseIds(Set<Long> releaseIds) {
@@ -89,11 +92,11 @@ public class ReleaseService {
     if (releases == null) {
       return Collections.emptyList();
     }
-    return Lists.newArrayList(releases);
+    return releaseContentService.materialize(Lists.newArrayList(releases));
   }
 
   public List<Release> findByReleaseKeys(Set<String> releaseKeys) {
-    return releaseRepository.findByReleaseKeyIn(releaseKeys);
+    return releaseContentService.materialize(releaseRepository.findByReleaseKeyIn(releaseKeys));
   }
 
   public Release findLatestActiveRelease(Namespace namespace) {
@@ -103,9 +106,10 @@ public class ReleaseService {
   }
 
   public Release findLatestActiveRelease(String appId, String clusterName, String namespaceName) {
-    return releaseRepository.findFirstByAppIdAndClusterNameAndNamespaceNameAndIsAbandonedFalseOrderByIdDesc(appId,
-                                                                                                            clusterName,
-                                                                                                            namespaceName);
+    return releaseContentService.materialize(
+        releaseRepository.findFirstByAppIdAndClusterNameAndNamespaceNameAndIsAbandonedFalseOrderByIdDesc(appId,
+                                                                                                         clusterName,
+                                                                                                         namespaceName));
   }
 
   public List<Release> findAllReleases(String appId, String clusterName, String namespaceName, Pageable page) {
@@ -116,7 +120,7 @@ public class ReleaseService {
     if (releases == null) {
       return Collections.emptyList();
     }
-    return releases;
+    return releaseContentService.materialize(releases);
   }
 
   public List<Release> findActiveReleases(String appId, String clusterName, String namespaceName, Pageable page) {
@@ -128,7 +132,7 @@ public class ReleaseService {
     if (releases == null) {
       return Collections.emptyList();
     }
-    return releases;
+    return releaseContentService.materialize(releases);
   }
 
   private List<Release> findActiveReleasesBetween(String appId, String clusterName, String namespaceName,
@@ -143,7 +147,7 @@ public class ReleaseService {
     if (releases == null) {
       return Collections.emptyList();
     }
-    return releases;
+    return releaseContentService.materialize(releases);
   }
 
   @Transactional
@@ -218,8 +222,7 @@ public class ReleaseService {
                                          String operator, boolean isEmergencyPublish, Set<String> grayDelKeys) {
     Release parentLatestRelease = findLatestActiveRelease(parentNamespace);
     Map<String, String> parentConfigurations = parentLatestRelease != null ?
-            gson.fromJson(parentLatestRelease.getConfigurations(),
-                    GsonType.CONFIG) : new LinkedHashMap<>();
+            releaseContentService.getConfigurationMap(parentLatestRelease) : new LinkedHashMap<>();
     long baseReleaseId = parentLatestRelease == null ? 0 : parentLatestRelease.getId();
 
     Map<String, String> configsToPublish = mergeConfiguration(parentConfigurations, childNamespaceItems);
@@ -274,7 +277,7 @@ public class ReleaseService {
     Map<String, String> childReleaseConfiguration;
     Collection<String> branchReleaseKeys;
     if (childNamespaceLatestActiveRelease != null) {
-      childReleaseConfiguration = gson.fromJson(childNamespaceLatestActiveRelease.getConfigurations(), GsonType.CONFIG);
+      childReleaseConfiguration = releaseContentService.getConfigurationMap(childNamespaceLatestActiveRelease);
       branchReleaseKeys = getBranchReleaseKeys(childNamespaceLatestActiveRelease.getId());
     } else {
       childReleaseConfiguration = Collections.emptyMap();
@@ -282,8 +285,7 @@ public class ReleaseService {
     }
 
     Map<String, String> parentNamespaceOldConfiguration = masterPreviousRelease == null ?
-                                                          null : gson.fromJson(masterPreviousRelease.getConfigurations(),
-                                                                        GsonType.CONFIG);
+                                                          null : releaseContentService.getConfigurationMap(masterPreviousRelease);
 
     Map<String, String> childNamespaceToPublishConfigs =
         calculateChildNamespaceToPublishConfiguration(parentNamespaceOldConfiguration, parentNamespaceItems,
@@ -331,7 +333,7 @@ public class ReleaseService {
     Release lastActiveRelease = findLatestActiveRelease(namespace);
     long previousReleaseId = lastActiveRelease == null ? 0 : lastActiveRelease.getId();
     Release release = createRelease(namespace, releaseName, releaseComment,
-                                    configurations, operator);
+                                    configurations, operator, lastActiveRelease);
 
     releaseHistoryService.createReleaseHistory(namespace.getAppId(), namespace.getClusterName(),
                                                namespace.getNamespaceName(), namespace.getClusterName(),
@@ -356,7 +358,7 @@ public class ReleaseService {
     releaseOperationContext.put(ReleaseOperationContext.BRANCH_RELEASE_KEYS, branchReleaseKeys);
 
     Release release =
-        createRelease(childNamespace, releaseName, releaseComment, configurations, operator);
+        createRelease(childNamespace, releaseName, releaseComment, configurations, operator, previousRelease);
 
     //update gray release rules
     GrayReleaseRule grayReleaseRule = namespaceBranchService.updateRulesReleaseId(childNamespace.getAppId(),
@@ -409,7 +411,8 @@ public class ReleaseService {
   }
 
   private Release createRelease(Namespace namespace, String name, String comment,
-                                Map<String, String> configurations, String operator) {
+                                Map<String, String> configurations, String operator,
+                                Release previousRelease) {
     Release release = new Release();
     release.setReleaseKey(ReleaseKeyGenerator.generateReleaseKey(namespace));
     release.setDataChangeCreatedTime(new Date());
@@ -420,8 +423,12 @@ public class ReleaseService {
     release.setAppId(namespace.getAppId());
     release.setClusterName(namespace.getClusterName());
     release.setNamespaceName(namespace.getNamespaceName());
-    release.setConfigurations(gson.toJson(configurations));
+    String fullConfigurations = gson.toJson(configurations);
+    release.setConfigurations(releaseContentService.toStoredConfigurations(previousRelease,
+        fullConfigurations));
     release = releaseRepository.save(release);
+    release.materializeConfigurations(fullConfigurations);
+    releaseContentService.cacheConfigurations(release);
 
     namespaceLockService.unlock(namespace.getId());
     auditService.audit(Release.class.getSimpleName(), release.getId(), Audit.OP.INSERT,
@@ -520,7 +527,7 @@ public class ReleaseService {
     Map<String, String> childReleaseConfiguration;
     Collection<String> branchReleaseKeys;
     if (childNamespaceLatestActiveRelease != null) {
-      childReleaseConfiguration = gson.fromJson(childNamespaceLatestActiveRelease.getConfigurations(), GsonType.CONFIG);
+      childReleaseConfiguration = releaseContentService.getConfigurationMap(childNamespaceLatestActiveRelease);
       branchReleaseKeys = getBranchReleaseKeys(childNamespaceLatestActiveRelease.getId());
     } else {
       childReleaseConfiguration = Collections.emptyMap();
@@ -530,12 +537,11 @@ public class ReleaseService {
     Release abandonedRelease = parentNamespaceTwoLatestActiveRelease.get(0);
     Release parentNamespaceNewLatestRelease = parentNamespaceTwoLatestActiveRelease.get(1);
 
-    Map<String, String> parentNamespaceAbandonedConfiguration = gson.fromJson(abandonedRelease.getConfigurations(),
-                                                                              GsonType.CONFIG);
+    Map<String, String> parentNamespaceAbandonedConfiguration =
+        releaseContentService.getConfigurationMap(abandonedRelease);
 
-    Map<String, String>
-        parentNamespaceNewLatestConfiguration =
-        gson.fromJson(parentNamespaceNewLatestRelease.getConfigurations(), GsonType.CONFIG);
+    Map<String, String> parentNamespaceNewLatestConfiguration =
+        releaseContentService.getConfigurationMap(parentNamespaceNewLatestRelease);
 
     Map<String, String>
         childNamespaceNewConfiguration =
@@ -554,6 +560,12 @@ public class ReleaseService {
   private Map<String, String> calculateChildNamespaceToPublishConfiguration(
       Map<String, String> parentNamespaceOldConfiguration, Map<String, String> parentNamespaceNewConfiguration,
       Map<String, String> childNamespaceLatestActiveConfiguration, Collection<String> branchReleaseKeys) {
+    Map<String, String> mergedByKey = mergeParentChangesByKey(parentNamespaceOldConfiguration,
+        parentNamespaceNewConfiguration, childNamespaceLatestActiveConfiguration, branchReleaseKeys);
+    if (mergedByKey != null) {
+      return mergedByKey;
+    }
+
     //first. calculate child namespace modified configs
 
     Map<String, String> childNamespaceModifiedConfiguration = calculateBranchModifiedItemsAccordingToRelease(
@@ -563,6 +575,54 @@ public class ReleaseService {
     return mergeConfiguration(parentNamespaceNewConfiguration, childNamespaceModifiedConfiguration);
   }
 
+  /**
+   * Apply the parent namespace changes to the child namespace release key by key instead of merging
+   * all the configurations again. It is only possible when the parent namespace changes nothing but
+   * values of the keys not modified by the branch, and the child namespace release is in line with
+   * the old parent namespace configurations, in which case the result equals to the full merge.
+   *
+   * @return the configurations to publish, or null if a full merge is needed
+   */
+  private Map<String, String> mergeParentChangesByKey(Map<String, String> parentNamespaceOldConfiguration,
+      Map<String, String> parentNamespaceNewConfiguration, Map<String, String> childNamespaceLatestActiveConfiguration,
+      Collection<String> branchReleaseKeys) {
+    if (parentNamespaceOldConfiguration == null || branchReleaseKeys == null
+        || CollectionUtils.isEmpty(childNamespaceLatestActiveConfiguration)) {
+      return null;
+    }
+
+    ConfigurationDiff parentDiff = ConfigurationDiff.between(parentNamespaceOldConfiguration,
+        parentNamespaceNewConfiguration);
+    if (!parentDiff.isValueChangeOnly() || parentDiff.touches(branchReleaseKeys)) {
+      return null;
+    }
+
+    Set<String> branchKeys = Sets.newHashSet(branchReleaseKeys);
+    int branchOnlyKeys = 0;
+    for (Map.Entry<String, String> entry : childNamespaceLatestActiveConfiguration.entrySet()) {
+      if (branchKeys.contains(entry.getKey())) {
+        if (!parentNamespaceOldConfiguration.containsKey(entry.getKey())) {
+          branchOnlyKeys++;
+        }
+      } else if (!parentNamespaceOldConfiguration.containsKey(entry.getKey())
+          || !Objects.equals(parentNamespaceOldConfiguration.get(entry.getKey()), entry.getValue())) {
+        return null;
+      }
+    }
+    if (childNamespaceLatestActiveConfiguration.size() != parentNamespaceOldConfiguration.size() + branchOnlyKeys) {
+      return null;
+    }
+
+    if (parentDiff.isEmpty()) {
+      return childNamespaceLatestActiveConfiguration;
+    }
+    Map<String, String> result = new LinkedHashMap<>(childNamespaceLatestActiveConfiguration);
+    for (String key : parentDiff.getModifiedKeys()) {
+      result.put(key, parentNamespaceNewConfiguration.get(key));
+    }
+    return result;
+  }
+
   private Map<String, String> calculateBranchModifiedItemsAccordingToRelease(
       Map<String, String> masterReleaseConfigs, Map<String, String> branchReleaseConfigs,
       Collection<String> branchReleaseKeys) {
@@ -0,0 +1,139 @@
+package com.ctrip.framework.apollo.biz.utils;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * The local snapshot of a cache with its high-water mark, so that a restarted config service loads
+ * the cache from the disk and only catches up with the changes after the watermark.
+ *
+ * <p>The file is gzipped: magic, format version, watermark, number of records and then the records
+ * in the format of the cache. It is written to a temp file and then renamed, so the snapshot read is
+ * never partly written.</p>
+ */
+public class CacheSnapshot<T> {
+  private static final int MAGIC = 0x41504f4c;
+  private static final int FORMAT_VERSION = 1;
+  private static final String FILE_SUFFIX = ".snapshot";
+
+  private final long watermark;
+  private final List<T> records;
+
+  private CacheSnapshot(long watermark, List<T> records) {
+    this.watermark = watermark;
+    this.records = records;
+  }
+
+  public long getWatermark() {
+    return watermark;
+  }
+
+  public List<T> getRecords() {
+    return records;
+  }
+
+  /**
+   * @return the snapshot file of the cache, or null if snapshots are disabled
+   */
+  public static File snapshotFile(BizConfig bizConfig, String cacheName) {
+    String dir = bizConfig.cacheSnapshotDir();
+    if (Strings.isNullOrEmpty(dir) || dir.trim().isEmpty()) {
+      return null;
+    }
+    return new File(dir.trim(), cacheName + FILE_SUFFIX);
+  }
+
+  public static <T> void write(File file, long watermark, Collection<T> records,
+      RecordWriter<T> recordWriter) throws IOException {
+    File parent = file.getAbsoluteFile().getParentFile();
+    if (!parent.isDirectory() && !parent.mkdirs()) {
+      throw new IOException("Failed to create snapshot dir " + parent);
+    }
+    File tmpFile = new File(parent, file.getName() + ".tmp");
+    try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(
+        new GZIPOutputStream(new FileOutputStream(tmpFile))))) {
+      out.writeInt(MAGIC);
+      out.writeInt(FORMAT_VERSION);
+      out.writeLong(watermark);
+      out.writeInt(records.size());
+      for (T record : records) {
+        recordWriter.write(out, record);
+      }
+    }
+    Files.move(tmpFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING,
+        StandardCopyOption.ATOMIC_MOVE);
+  }
+
+  /**
+   * @return the snapshot, or null if the file doesn't exist or is of another format
+   */
+  public static <T> CacheSnapshot<T> read(File file, RecordReader<T> recordReader) throws IOException {
+    if (!file.isFile()) {
+      return null;
+    }
+    try (DataInputStream in = new DataInputStream(new BufferedInputStream(
+        new GZIPInputStream(new FileInputStream(file))))) {
+      if (in.readInt() != MAGIC || in.readInt() != FORMAT_VERSION) {
+        return null;
+      }
+      long watermark = in.readLong();
+      int size = in.readInt();
+      List<T> records = Lists.newArrayListWithCapacity(size);
+      for (int i = 0; i < size; i++) {
+        records.add(recordReader.read(in));
+      }
+      return new CacheSnapshot<>(watermark, Collections.unmodifiableList(records));
+    }
+  }
+
+  /**
+   * Unlike {@link DataOutput#writeUTF(String)}, null and strings longer than 64K are supported
+   */
+  public static void writeString(DataOutput out, String value) throws IOException {
+    if (value == null) {
+      out.writeInt(-1);
+      return;
+    }
+    byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+    out.writeInt(bytes.length);
+    out.write(bytes);
+  }
+
+  public static String readString(DataInput in) throws IOException {
+    int length = in.readInt();
+    if (length < 0) {
+      return null;
+    }
+    byte[] bytes = new byte[length];
+    in.readFully(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+
+  public interface RecordWriter<T> {
+    void write(DataOutput out, T record) throws IOException;
+  }
+
+  public interface RecordReader<T> {
+    T read(DataInput in) throws IOException;
+  }
+}
@@ -0,0 +1,98 @@
+package com.ctrip.framework.apollo.biz.utils;
+
+import com.google.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * The key level difference between two configurations, e.g. the previous and the new master
+ * release
+ */
+public class ConfigurationDiff {
+  private final Set<String> addedKeys;
+  private final Set<String> modifiedKeys;
+  private final Set<String> deletedKeys;
+  private final boolean orderChanged;
+
+  private ConfigurationDiff(Set<String> addedKeys, Set<String> modifiedKeys, Set<String> deletedKeys,
+      boolean orderChanged) {
+    this.addedKeys = addedKeys;
+    this.modifiedKeys = modifiedKeys;
+    this.deletedKeys = deletedKeys;
+    this.orderChanged = orderChanged;
+  }
+
+  public static ConfigurationDiff between(Map<String, String> from, Map<String, String> to) {
+    Set<String> addedKeys = Sets.newLinkedHashSet();
+    Set<String> modifiedKeys = Sets.newLinkedHashSet();
+    Set<String> deletedKeys = Sets.newLinkedHashSet();
+
+    for (Map.Entry<String, String> entry : to.entrySet()) {
+      if (!from.containsKey(entry.getKey())) {
+        addedKeys.add(entry.getKey());
+      } else if (!Objects.equals(from.get(entry.getKey()), entry.getValue())) {
+        modifiedKeys.add(entry.getKey());
+      }
+    }
+    for (String key : from.keySet()) {
+      if (!to.containsKey(key)) {
+        deletedKeys.add(key);
+      }
+    }
+
+    boolean orderChanged = false;
+    if (addedKeys.isEmpty() && deletedKeys.isEmpty()) {
+      Iterator<String> fromKeys = from.keySet().iterator();
+      Iterator<String> toKeys = to.keySet().iterator();
+      while (fromKeys.hasNext() && !orderChanged) {
+        orderChanged = !fromKeys.next().equals(toKeys.next());
+      }
+    }
+
+    return new ConfigurationDiff(addedKeys, modifiedKeys, deletedKeys, orderChanged);
+  }
+
+  public boolean isEmpty() {
+    return addedKeys.isEmpty() && modifiedKeys.isEmpty() && deletedKeys.isEmpty() && !orderChanged;
+  }
+
+  /**
+   * @return whether only the values of some keys are changed, i.e. no keys added, deleted or reordered
+   */
+  public boolean isValueChangeOnly() {
+    return addedKeys.isEmpty() && deletedKeys.isEmpty() && !orderChanged;
+  }
+
+  /**
+   * @return whether any of the keys is added, modified or deleted
+   */
+  public boolean touches(Collection<String> keys) {
+    for (String key : keys) {
+      if (addedKeys.contains(key) || modifiedKeys.contains(key) || deletedKeys.contains(key)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  public Set<String> getAddedKeys() {
+    return Collections.unmodifiableSet(addedKeys);
+  }
+
+  public Set<String> getModifiedKeys() {
+    return Collections.unmodifiableSet(modifiedKeys);
+  }
+
+  public Set<String> getDeletedKeys() {
+    return Collections.unmodifiableSet(deletedKeys);
+  }
+
+  public boolean isOrderChanged() {
+    return orderChanged;
+  }
+}
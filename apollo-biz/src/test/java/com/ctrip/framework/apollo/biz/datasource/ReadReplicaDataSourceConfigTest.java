@@ -0,0 +1,80 @@
+package com.ctrip.framework.apollo.biz.datasource;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import javax.sql.DataSource;
+import org.junit.Test;
+import org.springframework.boot.autoconfigure.AutoConfigurations;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceAutoConfiguration;
+import org.springframework.boot.test.context.runner.ApplicationContextRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * The primary and the replica are two embedded H2 databases, told apart by their names
+ */
+public class ReadReplicaDataSourceConfigTest {
+  private final ApplicationContextRunner contextRunner = new ApplicationContextRunner()
+      .withConfiguration(AutoConfigurations.of(DataSourceAutoConfiguration.class))
+      .withUserConfiguration(ReadReplicaDataSourceConfig.class, ReadReplica.class)
+      .withPropertyValues("spring.datasource.initialization-mode=never",
+          "spring.datasource.url=jdbc:h2:mem:primary;DB_CLOSE_ON_EXIT=FALSE");
+
+  @Test
+  public void testReadReplica() throws Exception {
+    contextRunner
+        .withPropertyValues("spring.datasource.replica.url=jdbc:h2:mem:replica;DB_CLOSE_ON_EXIT=FALSE",
+            "spring.datasource.replica.hikari.maximum-pool-size=2")
+        .run(context -> {
+          DataSource dataSource = context.getBean(DataSource.class);
+          ReadReplica readReplica = context.getBean(ReadReplica.class);
+          JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+          assertTrue(dataSource instanceof ReadReplicaRoutingDataSource);
+          assertTrue(readReplica.isEnabled());
+          assertEquals("PRIMARY", databaseName(jdbcTemplate));
+          assertEquals("REPLICA", readReplica.read(() -> databaseName(jdbcTemplate)));
+          assertEquals("PRIMARY", databaseName(jdbcTemplate));
+        });
+  }
+
+  @Test
+  public void testReadReplicaInPrimaryTransaction() throws Exception {
+    contextRunner
+        .withPropertyValues("spring.datasource.replica.url=jdbc:h2:mem:replica;DB_CLOSE_ON_EXIT=FALSE")
+        .run(context -> {
+          DataSource dataSource = context.getBean(DataSource.class);
+          ReadReplica readReplica = context.getBean(ReadReplica.class);
+          JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+          TransactionTemplate transactionTemplate =
+              new TransactionTemplate(new DataSourceTransactionManager(dataSource));
+
+          //the reads join the transaction begun on the primary
+          assertEquals("PRIMARY", transactionTemplate.execute(status ->
+              readReplica.read(() -> databaseName(jdbcTemplate))));
+          //while the transactions begun within are on the replica
+          assertEquals("REPLICA", readReplica.read(() -> transactionTemplate.execute(status ->
+              databaseName(jdbcTemplate))));
+        });
+  }
+
+  @Test
+  public void testWithoutReadReplica() throws Exception {
+    contextRunner.run(context -> {
+      DataSource dataSource = context.getBean(DataSource.class);
+      ReadReplica readReplica = context.getBean(ReadReplica.class);
+      JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+      assertFalse(dataSource instanceof ReadReplicaRoutingDataSource);
+      assertFalse(readReplica.isEnabled());
+      assertEquals("PRIMARY", readReplica.read(() -> databaseName(jdbcTemplate)));
+    });
+  }
+
+  private String databaseName(JdbcTemplate jdbcTemplate) {
+    return jdbcTemplate.queryForObject("SELECT DATABASE()", String.class);
+  }
+}
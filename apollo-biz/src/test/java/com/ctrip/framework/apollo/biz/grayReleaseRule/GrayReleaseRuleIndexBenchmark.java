@@ -0,0 +1,109 @@
+package com.ctrip.framework.apollo.biz.grayReleaseRule;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import com.ctrip.framework.apollo.common.constants.NamespaceBranchStatus;
+import com.ctrip.framework.apollo.common.dto.GrayReleaseRuleItemDTO;
+
+import java.util.List;
+import java.util.Set;
+
+/**
+ * Compares {@link GrayReleaseRuleIndex} with scanning the rules in order, as the rules were matched
+ * before, not run with the unit tests.
+ *
+ * <p>Run it with the test classpath, e.g. {@code java -cp target/classes:target/test-classes:<deps>
+ * com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRuleIndexBenchmark [rules] [ipsPerRule]
+ * [lookups]}. A third of the lookups match an exact ip, a third match a CIDR range, which only the
+ * index supports, and the rest match nothing.</p>
+ */
+public class GrayReleaseRuleIndexBenchmark {
+  private static final String SOME_CLIENT_APP_ID = "someClientAppId";
+
+  public static void main(String[] args) {
+    int ruleCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+    int ipsPerRule = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+    int lookupCount = args.length > 2 ? Integer.parseInt(args[2]) : 300000;
+
+    List<GrayReleaseRuleCache> rules = Lists.newArrayListWithCapacity(ruleCount + 1);
+    Set<String> ranges = Sets.newHashSet();
+    for (int i = 0; i < ruleCount; i++) {
+      Set<String> ips = Sets.newHashSet();
+      for (int j = 0; j < ipsPerRule; j++) {
+        ips.add(assembleIp(i * ipsPerRule + j));
+      }
+      rules.add(assembleRule(i + 1, ips));
+      ranges.add(String.format("172.%d.%d.0/24", 16 + i / 256, i % 256));
+    }
+    rules.add(assembleRule(ruleCount + 1, ranges));
+
+    String[] clientIps = new String[lookupCount];
+    for (int i = 0; i < lookupCount; i++) {
+      int entry = i / 3 % ruleCount;
+      switch (i % 3) {
+        case 0:
+          clientIps[i] = assembleIp(entry * ipsPerRule);
+          break;
+        case 1:
+          clientIps[i] = String.format("172.%d.%d.100", 16 + entry / 256, entry % 256);
+          break;
+        default:
+          clientIps[i] = String.format("192.168.%d.%d", entry / 256, entry % 256);
+      }
+    }
+
+    System.out.println(String.format("%d rules, %d ips each, %d lookups", ruleCount, ipsPerRule,
+        lookupCount));
+    //the first round warms up
+    for (int round = 0; round < 2; round++) {
+      scan(rules, clientIps);
+      index(rules, clientIps);
+    }
+  }
+
+  private static void scan(List<GrayReleaseRuleCache> rules, String[] clientIps) {
+    int matched = 0;
+    long start = System.nanoTime();
+    for (String clientIp : clientIps) {
+      for (GrayReleaseRuleCache rule : rules) {
+        if (rule.matches(SOME_CLIENT_APP_ID, clientIp)) {
+          matched++;
+          break;
+        }
+      }
+    }
+    print("scan", clientIps.length, matched, System.nanoTime() - start);
+  }
+
+  private static void index(List<GrayReleaseRuleCache> rules, String[] clientIps) {
+    long buildStart = System.nanoTime();
+    GrayReleaseRuleIndex index = GrayReleaseRuleIndex.build(rules);
+    long buildElapsed = System.nanoTime() - buildStart;
+
+    int matched = 0;
+    long start = System.nanoTime();
+    for (String clientIp : clientIps) {
+      if (index.findReleaseId(SOME_CLIENT_APP_ID, clientIp) != null) {
+        matched++;
+      }
+    }
+    print("index", clientIps.length, matched, System.nanoTime() - start);
+    System.out.println(String.format("%-6s built in %.1f ms", "index", buildElapsed / 1000000.0));
+  }
+
+  private static void print(String name, int lookupCount, int matched, long elapsed) {
+    System.out.println(String.format("%-6s %6d k lookups/s, %d matched", name,
+        lookupCount * 1000000L / elapsed, matched));
+  }
+
+  private static String assembleIp(int i) {
+    return String.format("10.%d.%d.%d", i / 65536, (i / 256) % 256, i % 256);
+  }
+
+  private static GrayReleaseRuleCache assembleRule(long ruleId, Set<String> ips) {
+    return new GrayReleaseRuleCache(ruleId, "someBranch", "someNamespace", ruleId,
+        NamespaceBranchStatus.ACTIVE, 0,
+        Sets.newHashSet(new GrayReleaseRuleItemDTO(SOME_CLIENT_APP_ID, ips)));
+  }
+}
@@ -0,0 +1,150 @@
+package com.ctrip.framework.apollo.biz.grayReleaseRule;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import com.ctrip.framework.apollo.common.constants.NamespaceBranchStatus;
+import com.ctrip.framework.apollo.common.dto.GrayReleaseRuleItemDTO;
+
+import org.junit.Test;
+
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class GrayReleaseRuleIndexTest {
+  private String someClientAppId = "someClientAppId";
+  private String anotherClientAppId = "anotherClientAppId";
+  private String someClientIp = "1.1.1.1";
+  private String anotherClientIp = "2.2.2.2";
+
+  @Test
+  public void testFindReleaseId() throws Exception {
+    long someReleaseId = 1;
+    GrayReleaseRuleIndex index = GrayReleaseRuleIndex.build(Lists.newArrayList(
+        assembleRule(1, someReleaseId, NamespaceBranchStatus.ACTIVE,
+            new GrayReleaseRuleItemDTO(someClientAppId, Sets.newHashSet(someClientIp)))));
+
+    assertEquals(Long.valueOf(someReleaseId), index.findReleaseId(someClientAppId, someClientIp));
+    assertEquals(Long.valueOf(someReleaseId), index.findReleaseId(someClientAppId.toUpperCase(),
+        someClientIp));
+    assertNull(index.findReleaseId(someClientAppId, anotherClientIp));
+    assertNull(index.findReleaseId(anotherClientAppId, someClientIp));
+    assertNull(index.findReleaseId(someClientAppId, null));
+  }
+
+  @Test
+  public void testFindReleaseIdWithAllIp() throws Exception {
+    long someReleaseId = 1;
+    GrayReleaseRuleIndex index = GrayReleaseRuleIndex.build(Lists.newArrayList(
+        assembleRule(1, someReleaseId, NamespaceBranchStatus.ACTIVE,
+            new GrayReleaseRuleItemDTO(someClientAppId, Sets.newHashSet(GrayReleaseRuleItemDTO.ALL_IP)))));
+
+    assertEquals(Long.valueOf(someReleaseId), index.findReleaseId(someClientAppId, someClientIp));
+    assertEquals(Long.valueOf(someReleaseId), index.findReleaseId(someClientAppId, anotherClientIp));
+    assertNull(index.findReleaseId(anotherClientAppId, someClientIp));
+  }
+
+  @Test
+  public void testSmallerRuleIdWins() throws Exception {
+    long someReleaseId = 1;
+    long anotherReleaseId = 2;
+    GrayReleaseRuleCache someRule = assembleRule(1, someReleaseId, NamespaceBranchStatus.ACTIVE,
+        new GrayReleaseRuleItemDTO(someClientAppId, Sets.newHashSet(GrayReleaseRuleItemDTO.ALL_IP)));
+    GrayReleaseRuleCache anotherRule = assembleRule(2, anotherReleaseId, NamespaceBranchStatus.ACTIVE,
+        new GrayReleaseRuleItemDTO(someClientAppId, Sets.newHashSet(someClientIp)),
+        new GrayReleaseRuleItemDTO(anotherClientAppId, Sets.newHashSet(someClientIp)));
+
+    GrayReleaseRuleIndex index = GrayReleaseRuleIndex.build(Lists.newArrayList(someRule, anotherRule));
+
+    assertEquals(Long.valueOf(someReleaseId), index.findReleaseId(someClientAppId, someClientIp));
+    assertEquals(Long.valueOf(anotherReleaseId), index.findReleaseId(anotherClientAppId, someClientIp));
+  }
+
+  @Test
+  public void testInactiveRulesIgnored() throws Exception {
+    GrayReleaseRuleIndex index = GrayReleaseRuleIndex.build(Lists.newArrayList(
+        assembleRule(1, 1, NamespaceBranchStatus.DELETED,
+            new GrayReleaseRuleItemDTO(someClientAppId, Sets.newHashSet(someClientIp)))));
+
+    assertTrue(index.isEmpty());
+    assertNull(index.findReleaseId(someClientAppId, someClientIp));
+  }
+
+  @Test
+  public void testFindReleaseIdWithCidr() throws Exception {
+    long someReleaseId = 1;
+    GrayReleaseRuleIndex index = GrayReleaseRuleIndex.build(Lists.newArrayList(
+        assembleRule(1, someReleaseId, NamespaceBranchStatus.ACTIVE,
+            new GrayReleaseRuleItemDTO(someClientAppId, Sets.newHashSet("1.1.0.0/16", "invalid/99")))));
+
+    assertEquals(Long.valueOf(someReleaseId), index.findReleaseId(someClientAppId, someClientIp));
+    assertEquals(Long.valueOf(someReleaseId), index.findReleaseId(someClientAppId, "1.1.255.255"));
+    assertNull(index.findReleaseId(someClientAppId, anotherClientIp));
+    assertNull(index.findReleaseId(anotherClientAppId, someClientIp));
+  }
+
+  @Test
+  public void testFindReleaseIdWithPercentage() throws Exception {
+    long someReleaseId = 1;
+    String someBranchName = "someBranch";
+    GrayReleaseRuleIndex index = GrayReleaseRuleIndex.build(Lists.newArrayList(
+        assembleRule(1, someReleaseId, NamespaceBranchStatus.ACTIVE,
+            new GrayReleaseRuleItemDTO(someClientAppId, Sets.newHashSet("5%")))));
+
+    int total = 20000;
+    int matched = 0;
+    for (int i = 0; i < total; i++) {
+      String clientIp = assembleIp(i);
+      Long releaseId = index.findReleaseId(someClientAppId, clientIp);
+      //stable for the same client
+      assertEquals(releaseId, index.findReleaseId(someClientAppId, clientIp));
+      assertEquals(releaseId != null, GrayReleaseRuleIndex.percentageBucket(someBranchName, clientIp) < 500);
+      if (releaseId != null) {
+        matched++;
+      }
+    }
+
+    double ratio = (double) matched / total;
+    assertTrue(String.valueOf(ratio), ratio > 0.04 && ratio < 0.06);
+    assertNull(index.findReleaseId(anotherClientAppId, someClientIp));
+    assertNull(index.findReleaseId(someClientAppId, null));
+  }
+
+  @Test
+  public void testFindReleaseIdWithThousandsOfEntries() throws Exception {
+    int entries = 5000;
+    Set<String> someIps = Sets.newHashSet();
+    Set<String> someRanges = Sets.newHashSet();
+    for (int i = 0; i < entries; i++) {
+      someIps.add(assembleIp(i));
+      someRanges.add(String.format("172.%d.%d.0/24", 16 + i / 256, i % 256));
+    }
+    long someReleaseId = 1;
+    long anotherReleaseId = 2;
+    GrayReleaseRuleIndex index = GrayReleaseRuleIndex.build(Lists.newArrayList(
+        assembleRule(1, someReleaseId, NamespaceBranchStatus.ACTIVE,
+            new GrayReleaseRuleItemDTO(someClientAppId, someIps)),
+        assembleRule(2, anotherReleaseId, NamespaceBranchStatus.ACTIVE,
+            new GrayReleaseRuleItemDTO(someClientAppId, someRanges))));
+
+    for (int i = 0; i < entries; i++) {
+      assertEquals(Long.valueOf(someReleaseId), index.findReleaseId(someClientAppId, assembleIp(i)));
+      assertEquals(Long.valueOf(anotherReleaseId), index.findReleaseId(someClientAppId,
+          String.format("172.%d.%d.100", 16 + i / 256, i % 256)));
+      assertNull(index.findReleaseId(someClientAppId, String.format("192.168.%d.%d", i / 256, i % 256)));
+    }
+  }
+
+  private String assembleIp(int i) {
+    return String.format("10.%d.%d.%d", i / 65536, (i / 256) % 256, i % 256);
+  }
+
+  private GrayReleaseRuleCache assembleRule(long ruleId, long releaseId, int branchStatus,
+      GrayReleaseRuleItemDTO... ruleItems) {
+    return new GrayReleaseRuleCache(ruleId, "someBranch", "someNamespace", releaseId, branchStatus,
+        0, Sets.newLinkedHashSet(Lists.newArrayList(ruleItems)));
+  }
+}
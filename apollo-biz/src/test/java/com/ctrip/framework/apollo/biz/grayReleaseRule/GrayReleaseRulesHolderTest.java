@@ -6,6 +6,7 @@ import com.google.common.collect.Sets;
 import com.google.gson.Gson;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.datasource.ReadReplica;
 import com.ctrip.framework.apollo.biz.entity.GrayReleaseRule;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.Topics;
@@ -15,21 +16,31 @@ import com.ctrip.framework.apollo.common.dto.GrayReleaseRuleItemDTO;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.data.domain.Pageable;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -45,6 +56,8 @@ public class GrayReleaseRulesHolderTest {
   private GrayReleaseRuleRepository grayReleaseRuleRepository;
   private Gson gson = new Gson();
   private AtomicLong idCounter;
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
 
   @Before
   public void setUp() throws Exception {
@@ -53,6 +66,7 @@ public class GrayReleaseRulesHolderTest {
                                  bizConfig);
     ReflectionTestUtils.setField(grayReleaseRulesHolder, "grayReleaseRuleRepository",
         grayReleaseRuleRepository);
+    ReflectionTestUtils.setField(grayReleaseRulesHolder, "readReplica", new ReadReplica(false));
     idCounter = new AtomicLong();
   }
 
@@ -137,6 +151,98 @@ public class GrayReleaseRulesHolderTest {
         anotherNamespaceName));
   }
 
+  @Test
+  public void testScanModifiedGrayReleaseRules() throws Exception {
+    String someAppId = "someAppId";
+    String someClusterName = "someClusterName";
+    String someNamespaceName = "someNamespaceName";
+    long someReleaseId = 1;
+    long anotherReleaseId = 2;
+    String someClientAppId = "clientAppId1";
+    String someClientIp = "1.1.1.1";
+    Date someModifiedTime = new Date(1000000);
+    Date anotherModifiedTime = new Date(someModifiedTime.getTime() + 60000);
+
+    GrayReleaseRule someRule = assembleGrayReleaseRule(someAppId, someClusterName,
+        someNamespaceName, Lists.newArrayList(assembleRuleItem(someClientAppId, Sets.newHashSet
+            (someClientIp))), someReleaseId, NamespaceBranchStatus.ACTIVE);
+    someRule.setDataChangeLastModifiedTime(someModifiedTime);
+    GrayReleaseRule anotherRule = assembleGrayReleaseRule(someAppId, someClusterName,
+        someNamespaceName, Lists.newArrayList(assembleRuleItem(someClientAppId, Sets.newHashSet
+            (someClientIp))), anotherReleaseId, NamespaceBranchStatus.ACTIVE);
+    anotherRule.setDataChangeLastModifiedTime(anotherModifiedTime);
+
+    when(bizConfig.grayReleaseRuleScanInterval()).thenReturn(30);
+    when(bizConfig.grayReleaseRuleFullScanInterval()).thenReturn(3600);
+    when(grayReleaseRuleRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(Lists
+        .newArrayList(someRule));
+    when(grayReleaseRuleRepository.findModifiedAfter(eq(new Date(someModifiedTime.getTime() - 10000)),
+        eq(0L), any(Pageable.class))).thenReturn(Lists.newArrayList(anotherRule));
+
+    //full scan
+    grayReleaseRulesHolder.afterPropertiesSet();
+
+    assertEquals(Long.valueOf(someReleaseId), grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule
+        (someClientAppId, someClientIp, someAppId, someClusterName, someNamespaceName));
+
+    //incremental scan
+    ReflectionTestUtils.invokeMethod(grayReleaseRulesHolder, "periodicScanRules");
+
+    assertEquals(Long.valueOf(anotherReleaseId), grayReleaseRulesHolder.findReleaseIdFromGrayReleaseRule
+        (someClientAppId, someClientIp, someAppId, someClusterName, someNamespaceName));
+
+    //the watermark is advanced
+    ReflectionTestUtils.invokeMethod(grayReleaseRulesHolder, "periodicScanRules");
+
+    verify(grayReleaseRuleRepository, times(1)).findFirst500ByIdGreaterThanOrderByIdAsc(anyLong());
+    verify(grayReleaseRuleRepository, times(1)).findModifiedAfter(
+        eq(new Date(anotherModifiedTime.getTime() - 10000)), eq(0L), any(Pageable.class));
+  }
+
+  @Test
+  public void testRestoreFromCacheSnapshot() throws Exception {
+    String someAppId = "someAppId";
+    String someClusterName = "someClusterName";
+    String someNamespaceName = "someNamespaceName";
+    long someReleaseId = 1;
+    String someClientAppId = "clientAppId1";
+    String someClientIp = "1.1.1.1";
+    Date someModifiedTime = new Date(1000000);
+
+    GrayReleaseRule someRule = assembleGrayReleaseRule(someAppId, someClusterName,
+        someNamespaceName, Lists.newArrayList(assembleRuleItem(someClientAppId, Sets.newHashSet
+            (someClientIp))), someReleaseId, NamespaceBranchStatus.ACTIVE);
+    someRule.setDataChangeLastModifiedTime(someModifiedTime);
+
+    when(bizConfig.grayReleaseRuleScanInterval()).thenReturn(30);
+    when(bizConfig.grayReleaseRuleFullScanInterval()).thenReturn(3600);
+    when(bizConfig.cacheSnapshotDir()).thenReturn(temporaryFolder.getRoot().getAbsolutePath());
+    when(bizConfig.cacheSnapshotInterval()).thenReturn(300);
+    when(bizConfig.cacheSnapshotIntervalTimeUnit()).thenReturn(TimeUnit.SECONDS);
+    when(grayReleaseRuleRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(Lists
+        .newArrayList(someRule));
+
+    grayReleaseRulesHolder.afterPropertiesSet();
+    ReflectionTestUtils.invokeMethod(grayReleaseRulesHolder, "writeCacheSnapshot");
+
+    //restart
+    GrayReleaseRulesHolder restarted = new GrayReleaseRulesHolder();
+    ReflectionTestUtils.setField(restarted, "bizConfig", bizConfig);
+    ReflectionTestUtils.setField(restarted, "grayReleaseRuleRepository", grayReleaseRuleRepository);
+    ReflectionTestUtils.setField(restarted, "readReplica", new ReadReplica(false));
+
+    restarted.afterPropertiesSet();
+
+    assertEquals(Long.valueOf(someReleaseId), restarted.findReleaseIdFromGrayReleaseRule
+        (someClientAppId, someClientIp, someAppId, someClusterName, someNamespaceName));
+    assertTrue(restarted.hasGrayReleaseRule(someClientAppId, someClientIp, someNamespaceName));
+
+    //only the rules modified after the watermark are scanned
+    verify(grayReleaseRuleRepository, times(1)).findFirst500ByIdGreaterThanOrderByIdAsc(anyLong());
+    verify(grayReleaseRuleRepository, times(1)).findModifiedAfter(
+        eq(new Date(someModifiedTime.getTime() - 10000)), eq(0L), any(Pageable.class));
+  }
+
   private GrayReleaseRule assembleGrayReleaseRule(String appId, String clusterName, String
       namespaceName, List<GrayReleaseRuleItemDTO> ruleItems, long releaseId, int branchStatus) {
     GrayReleaseRule rule = new GrayReleaseRule();
@@ -0,0 +1,56 @@
+package com.ctrip.framework.apollo.biz.grayReleaseRule;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class IpPrefixTrieTest {
+
+  @Test
+  public void testFind() throws Exception {
+    IpPrefixTrie<Integer> trie = new IpPrefixTrie<>();
+    trie.add("10.0.0.0/8", 3);
+    trie.add("10.1.0.0/16", 2);
+    trie.add("10.1.2.3/32", 5);
+    trie.add("2001:db8::/32", 1);
+
+    assertEquals(Integer.valueOf(3), trie.find("10.2.0.1"));
+    assertEquals(Integer.valueOf(2), trie.find("10.1.0.1"));
+    //the smallest value wins even if the range is wider
+    assertEquals(Integer.valueOf(2), trie.find("10.1.2.3"));
+    assertEquals(Integer.valueOf(1), trie.find("2001:db8::1"));
+    assertNull(trie.find("11.0.0.1"));
+    assertNull(trie.find("2001:db9::1"));
+    assertNull(trie.find("not an ip"));
+    assertNull(trie.find(null));
+  }
+
+  @Test
+  public void testMatchAll() throws Exception {
+    IpPrefixTrie<Integer> trie = new IpPrefixTrie<>();
+    trie.add("0.0.0.0/0", 1);
+
+    assertEquals(Integer.valueOf(1), trie.find("1.2.3.4"));
+    assertNull(trie.find("::1"));
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddWithInvalidPrefixLength() throws Exception {
+    new IpPrefixTrie<Integer>().add("10.0.0.0/33", 1);
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testAddWithInvalidAddress() throws Exception {
+    new IpPrefixTrie<Integer>().add("10.0.0/8", 1);
+  }
+
+  @Test
+  public void testIsCidr() throws Exception {
+    assertTrue(IpPrefixTrie.isCidr("10.0.0.0/8"));
+    assertFalse(IpPrefixTrie.isCidr("10.0.0.1"));
+    assertFalse(IpPrefixTrie.isCidr(null));
+  }
+}
@@ -0,0 +1,73 @@
+package com.ctrip.framework.apollo.biz.message;
+
+import com.google.common.collect.Lists;
+
+import com.ctrip.framework.apollo.biz.AbstractIntegrationTest;
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.mock;
+
+public class ReleaseMessageCompactorTest extends AbstractIntegrationTest {
+  @Autowired
+  private ReleaseMessageRepository releaseMessageRepository;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
+
+  private ReleaseMessageCompactor releaseMessageCompactor;
+
+  @Before
+  public void setUp() throws Exception {
+    releaseMessageCompactor = new ReleaseMessageCompactor(releaseMessageRepository, jdbcTemplate,
+        mock(BizConfig.class));
+  }
+
+  @Test
+  public void testCompact() throws Exception {
+    String someMessage = "someAppId+default+application";
+    String anotherMessage = "anotherAppId+default+application";
+    for (int i = 0; i < 600; i++) {
+      save(i % 3 == 0 ? anotherMessage : someMessage);
+    }
+    long someLatestId = save(someMessage);
+
+    assertEquals(599, releaseMessageCompactor.compact());
+    assertEquals(2, releaseMessageCompactor.getTableSize());
+    assertEquals(0, releaseMessageCompactor.getLag());
+
+    List<ReleaseMessage> left = Lists.newArrayList(releaseMessageRepository.findAll());
+    assertEquals(2, left.size());
+    assertEquals(someLatestId, releaseMessageRepository.findTopByOrderByIdDesc().getId());
+
+    long anotherLatestId = save(anotherMessage);
+    String yetAnotherMessage = "yetAnotherAppId+default+application";
+    long yetAnotherLatestId = save(yetAnotherMessage);
+
+    assertEquals(1, releaseMessageCompactor.compact());
+    assertEquals(3, releaseMessageCompactor.getTableSize());
+
+    List<Long> leftIds = Lists.newArrayList();
+    releaseMessageRepository.findAll().forEach(message -> leftIds.add(message.getId()));
+    leftIds.sort(null);
+    assertEquals(Lists.newArrayList(someLatestId, anotherLatestId, yetAnotherLatestId), leftIds);
+  }
+
+  @Test
+  public void testCompactEmptyTable() throws Exception {
+    assertEquals(0, releaseMessageCompactor.compact());
+    assertEquals(0, releaseMessageCompactor.getTableSize());
+  }
+
+  private long save(String message) {
+    return releaseMessageRepository.save(new ReleaseMessage(message)).getId();
+  }
+}
@@ -5,6 +5,7 @@ import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.SettableFuture;
 
 import com.ctrip.framework.apollo.biz.AbstractUnitTest;
+import com.ctrip.framework.apollo.biz.datasource.ReadReplica;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
 
@@ -36,6 +37,7 @@ public class ReleaseMessageScannerTest extends AbstractUnitTest {
     ReflectionTestUtils
         .setField(releaseMessageScanner, "releaseMessageRepository", releaseMessageRepository);
     ReflectionTestUtils.setField(releaseMessageScanner, "bizConfig", bizConfig);
+    ReflectionTestUtils.setField(releaseMessageScanner, "readReplica", new ReadReplica(false));
     databaseScanInterval = 100; //100 ms
     when(bizConfig.releaseMessageScanIntervalInMilli()).thenReturn(databaseScanInterval);
     releaseMessageScanner.afterPropertiesSet();
@@ -79,6 +81,30 @@ public class ReleaseMessageScannerTest extends AbstractUnitTest {
 
   }
 
+  @Test
+  public void testScanMessageOfAnotherTopic() throws Exception {
+    SettableFuture<String> someListenerFuture = SettableFuture.create();
+    SettableFuture<ReleaseMessage> someMessageFuture = SettableFuture.create();
+    ReleaseMessageListener someListener = (message, channel) -> {
+      someMessageFuture.set(message);
+      someListenerFuture.set(channel);
+    };
+    releaseMessageScanner.addMessageListener(someListener);
+
+    String someAppId = "someAppId";
+    long someId = 100;
+    ReleaseMessage someReleaseMessage = assembleReleaseMessage(someId,
+        TopicMessages.encode(someAppId, Topics.APOLLO_ACCESS_KEY_TOPIC));
+
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L)).thenReturn(
+        Lists.newArrayList(someReleaseMessage));
+
+    assertEquals(Topics.APOLLO_ACCESS_KEY_TOPIC, someListenerFuture.get(5000, TimeUnit.MILLISECONDS));
+    ReleaseMessage someListenerMessage = someMessageFuture.get(5000, TimeUnit.MILLISECONDS);
+    assertEquals(someAppId, someListenerMessage.getMessage());
+    assertEquals(someId, someListenerMessage.getId());
+  }
+
   private ReleaseMessage assembleReleaseMessage(long id, String message) {
     ReleaseMessage releaseMessage = new ReleaseMessage();
     releaseMessage.setId(id);
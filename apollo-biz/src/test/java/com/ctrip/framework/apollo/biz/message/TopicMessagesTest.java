@@ -0,0 +1,41 @@
+package com.ctrip.framework.apollo.biz.message;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TopicMessagesTest {
+
+  @Test
+  public void testReleaseMessage() throws Exception {
+    String someReleaseMessage = "someAppId+default+application";
+
+    String content = TopicMessages.encode(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    assertEquals(someReleaseMessage, content);
+    assertEquals(Topics.APOLLO_RELEASE_TOPIC, TopicMessages.topicOf(content));
+    assertEquals(someReleaseMessage, TopicMessages.messageOf(content));
+  }
+
+  @Test
+  public void testMessageOfAnotherTopic() throws Exception {
+    String someAppId = "someAppId";
+
+    String content = TopicMessages.encode(someAppId, Topics.APOLLO_APP_NAMESPACE_TOPIC);
+
+    assertEquals(Topics.APOLLO_APP_NAMESPACE_TOPIC, TopicMessages.topicOf(content));
+    assertEquals(someAppId, TopicMessages.messageOf(content));
+  }
+
+  @Test
+  public void testUnknownTopic() throws Exception {
+    String someContent = "some-topic:someAppId";
+
+    assertFalse(TopicMessages.isSupported("some-topic"));
+    assertTrue(TopicMessages.isSupported(Topics.APOLLO_ACCESS_KEY_TOPIC));
+    assertEquals(Topics.APOLLO_RELEASE_TOPIC, TopicMessages.topicOf(someContent));
+    assertEquals(someContent, TopicMessages.messageOf(someContent));
+  }
+}
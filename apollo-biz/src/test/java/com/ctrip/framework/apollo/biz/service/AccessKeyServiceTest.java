@@ -1,9 +1,13 @@
 package com.ctrip.framework.apollo.biz.service;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
 
 import com.ctrip.framework.apollo.biz.AbstractIntegrationTest;
 import com.ctrip.framework.apollo.biz.entity.AccessKey;
+import com.ctrip.framework.apollo.biz.message.TopicMessages;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
 import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -15,6 +19,8 @@ public class AccessKeyServiceTest extends AbstractIntegrationTest {
 
   @Autowired
   private AccessKeyService accessKeyService;
+  @Autowired
+  private ReleaseMessageRepository releaseMessageRepository;
 
   @Test
   public void testCreate() {
@@ -25,6 +31,8 @@ public class AccessKeyServiceTest extends AbstractIntegrationTest {
     AccessKey accessKey = accessKeyService.create(appId, entity);
 
     assertNotNull(accessKey);
+    assertEquals(TopicMessages.encode(appId, Topics.APOLLO_ACCESS_KEY_TOPIC),
+        releaseMessageRepository.findTopByOrderByIdDesc().getMessage());
   }
 
   @Test(expected = BadRequestException.class)
@@ -0,0 +1,199 @@
+package com.ctrip.framework.apollo.biz.service;
+
+import com.google.common.collect.Lists;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Namespace;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.message.MessageSender;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.common.dto.BatchReleaseDTO;
+import com.ctrip.framework.apollo.common.dto.ReleaseTargetDTO;
+import com.ctrip.framework.apollo.common.dto.ReleaseTargetResultDTO;
+import com.ctrip.framework.apollo.common.exception.BadRequestException;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+import org.springframework.transaction.support.SimpleTransactionStatus;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyBoolean;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class BatchReleaseServiceTest {
+  private BatchReleaseService batchReleaseService;
+  @Mock
+  private ReleaseService releaseService;
+  @Mock
+  private NamespaceService namespaceService;
+  @Mock
+  private MessageSender messageSender;
+  @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private PlatformTransactionManager transactionManager;
+
+  private String someAppId = "someAppId";
+  private String someNamespaceName = "someNamespace";
+  private String someOperator = "someOperator";
+
+  @Before
+  public void setUp() throws Exception {
+    when(bizConfig.batchReleaseParallelism()).thenReturn(2);
+    when(bizConfig.batchReleaseMaxTargets()).thenReturn(10);
+    when(transactionManager.getTransaction(any(TransactionDefinition.class)))
+        .thenReturn(new SimpleTransactionStatus());
+
+    batchReleaseService = new BatchReleaseService(releaseService, namespaceService, messageSender, bizConfig,
+        transactionManager);
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    batchReleaseService.destroy();
+  }
+
+  @Test
+  public void testPublish() throws Exception {
+    List<ReleaseTargetDTO> targets = Lists.newArrayList();
+    for (int i = 0; i < 5; i++) {
+      String clusterName = "cluster" + i;
+      targets.add(target(clusterName));
+      Namespace namespace = namespace(clusterName);
+      when(namespaceService.findOne(someAppId, clusterName, someNamespaceName)).thenReturn(namespace);
+      when(releaseService.publish(eq(namespace), anyString(), anyString(), eq(someOperator), eq(false)))
+          .thenReturn(release(i, clusterName));
+    }
+
+    List<ReleaseTargetResultDTO> results = batchReleaseService.publish(someAppId, batchRelease(targets));
+
+    assertEquals(5, results.size());
+    for (int i = 0; i < 5; i++) {
+      assertTrue(results.get(i).isSuccess());
+      assertEquals("cluster" + i, results.get(i).getClusterName());
+      assertEquals(i, results.get(i).getRelease().getId());
+    }
+
+    for (int i = 0; i < 5; i++) {
+      verify(messageSender, times(1)).sendMessage(someAppId + "+cluster" + i + "+" + someNamespaceName,
+          Topics.APOLLO_RELEASE_TOPIC);
+    }
+    verify(transactionManager, times(5)).commit(any(TransactionStatus.class));
+  }
+
+  @Test
+  public void testPublishWithMessageSendingFailed() throws Exception {
+    String someClusterName = "someCluster";
+    Namespace someNamespace = namespace(someClusterName);
+    TransactionStatus someTransactionStatus = new SimpleTransactionStatus();
+    when(transactionManager.getTransaction(any(TransactionDefinition.class))).thenReturn(someTransactionStatus);
+    when(namespaceService.findOne(someAppId, someClusterName, someNamespaceName)).thenReturn(someNamespace);
+    when(releaseService.publish(eq(someNamespace), anyString(), anyString(), anyString(), anyBoolean()))
+        .thenReturn(release(1, someClusterName));
+    doThrow(new IllegalStateException("db down")).when(messageSender)
+        .sendMessage(anyString(), eq(Topics.APOLLO_RELEASE_TOPIC));
+
+    List<ReleaseTargetResultDTO> results = batchReleaseService.publish(someAppId, batchRelease(
+        Lists.newArrayList(target(someClusterName))));
+
+    //the release is rolled back together with its message
+    assertFalse(results.get(0).isSuccess());
+    verify(transactionManager, times(1)).rollback(someTransactionStatus);
+    verify(transactionManager, never()).commit(any(TransactionStatus.class));
+  }
+
+  @Test
+  public void testPublishWithFailedTarget() throws Exception {
+    String someClusterName = "someCluster";
+    String anotherClusterName = "anotherCluster";
+    String missingClusterName = "missingCluster";
+    Namespace someNamespace = namespace(someClusterName);
+    Namespace anotherNamespace = namespace(anotherClusterName);
+    when(namespaceService.findOne(someAppId, someClusterName, someNamespaceName)).thenReturn(someNamespace);
+    when(namespaceService.findOne(someAppId, anotherClusterName, someNamespaceName)).thenReturn(anotherNamespace);
+    when(releaseService.publish(eq(someNamespace), anyString(), anyString(), anyString(), anyBoolean()))
+        .thenReturn(release(1, someClusterName));
+    when(releaseService.publish(eq(anotherNamespace), anyString(), anyString(), anyString(), anyBoolean()))
+        .thenThrow(new BadRequestException("locked"));
+
+    List<ReleaseTargetResultDTO> results = batchReleaseService.publish(someAppId, batchRelease(
+        Lists.newArrayList(target(someClusterName), target(anotherClusterName), target(missingClusterName))));
+
+    assertTrue(results.get(0).isSuccess());
+    assertFalse(results.get(1).isSuccess());
+    assertEquals("locked", results.get(1).getMessage());
+    assertFalse(results.get(2).isSuccess());
+
+    verify(messageSender, times(1)).sendMessage(someAppId + "+" + someClusterName + "+" + someNamespaceName,
+        Topics.APOLLO_RELEASE_TOPIC);
+    verify(messageSender, times(1)).sendMessage(anyString(), anyString());
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testPublishWithDuplicateTargets() throws Exception {
+    batchReleaseService.publish(someAppId, batchRelease(Lists.newArrayList(target("someCluster"),
+        target("someCluster"))));
+  }
+
+  @Test(expected = BadRequestException.class)
+  public void testPublishWithTooManyTargets() throws Exception {
+    List<ReleaseTargetDTO> targets = Lists.newArrayList();
+    for (int i = 0; i < 11; i++) {
+      targets.add(target("cluster" + i));
+    }
+    batchReleaseService.publish(someAppId, batchRelease(targets));
+  }
+
+  private BatchReleaseDTO batchRelease(List<ReleaseTargetDTO> targets) {
+    BatchReleaseDTO batchRelease = new BatchReleaseDTO();
+    batchRelease.setOperator(someOperator);
+    batchRelease.setTargets(targets);
+    return batchRelease;
+  }
+
+  private ReleaseTargetDTO target(String clusterName) {
+    ReleaseTargetDTO target = new ReleaseTargetDTO();
+    target.setClusterName(clusterName);
+    target.setNamespaceName(someNamespaceName);
+    target.setReleaseName("someRelease");
+    target.setReleaseComment("someComment");
+    return target;
+  }
+
+  private Namespace namespace(String clusterName) {
+    Namespace namespace = new Namespace();
+    namespace.setAppId(someAppId);
+    namespace.setClusterName(clusterName);
+    namespace.setNamespaceName(someNamespaceName);
+    return namespace;
+  }
+
+  private Release release(long id, String clusterName) {
+    Release release = new Release();
+    release.setId(id);
+    release.setAppId(someAppId);
+    release.setClusterName(clusterName);
+    release.setNamespaceName(someNamespaceName);
+    release.setConfigurations("{}");
+    return release;
+  }
+}
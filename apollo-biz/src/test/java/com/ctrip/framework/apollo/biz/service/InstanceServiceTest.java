@@ -1,6 +1,7 @@
 package com.ctrip.framework.apollo.biz.service;
 
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 
 import com.ctrip.framework.apollo.biz.AbstractIntegrationTest;
@@ -12,11 +13,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.test.annotation.Rollback;
 
 import java.util.Calendar;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 import java.util.stream.Collectors;
 
@@ -30,6 +33,8 @@ import static org.junit.Assert.assertNull;
 public class InstanceServiceTest extends AbstractIntegrationTest {
   @Autowired
   private InstanceService instanceService;
+  @Autowired
+  private JdbcTemplate jdbcTemplate;
 
   @Test
   @Rollback
@@ -75,6 +80,65 @@ public class InstanceServiceTest extends AbstractIntegrationTest {
     assertEquals(Sets.newHashSet(someIp, anotherIp), ips);
   }
 
+  @Test
+  @Rollback
+  public void testFindInstancesByIps() throws Exception {
+    String someAppId = "someAppId";
+    String someClusterName = "someClusterName";
+    String someDataCenter = "someDataCenter";
+    String anotherDataCenter = "anotherDataCenter";
+    String someIp = "someIp";
+    String anotherIp = "anotherIp";
+    String yetAnotherIp = "yetAnotherIp";
+
+    instanceService.createInstance(assembleInstance(someAppId, someClusterName, someDataCenter, someIp));
+    instanceService.createInstance(assembleInstance(someAppId, someClusterName, anotherDataCenter, someIp));
+    instanceService.createInstance(assembleInstance(someAppId, someClusterName, someDataCenter, anotherIp));
+    instanceService.createInstance(assembleInstance(someAppId, someClusterName, someDataCenter, yetAnotherIp));
+
+    List<Instance> instances = instanceService.findInstances(someAppId, someClusterName,
+        Sets.newHashSet(someIp, anotherIp));
+
+    assertEquals(3, instances.size());
+    assertEquals(Sets.newHashSet(someIp, anotherIp),
+        instances.stream().map(Instance::getIp).collect(Collectors.toSet()));
+  }
+
+  @Test
+  @Rollback
+  public void testBatchCreateAndUpdateInstanceConfigs() throws Exception {
+    long someInstanceId = 1;
+    long anotherInstanceId = 2;
+    String someConfigAppId = "someConfigAppId";
+    String someConfigClusterName = "someConfigClusterName";
+    String someConfigNamespaceName = "someConfigNamespaceName";
+    String someReleaseKey = "someReleaseKey";
+    String anotherReleaseKey = "anotherReleaseKey";
+
+    instanceService.batchCreateInstanceConfigs(Lists.newArrayList(
+        assembleInstanceConfig(someInstanceId, someConfigAppId, someConfigClusterName,
+            someConfigNamespaceName, someReleaseKey),
+        assembleInstanceConfig(anotherInstanceId, someConfigAppId, someConfigClusterName,
+            someConfigNamespaceName, someReleaseKey)));
+
+    List<InstanceConfig> instanceConfigs = instanceService.findInstanceConfigsByInstanceIds(
+        Sets.newHashSet(someInstanceId, anotherInstanceId));
+
+    assertEquals(2, instanceConfigs.size());
+
+    InstanceConfig someInstanceConfig = instanceConfigs.get(0);
+    someInstanceConfig.setReleaseKey(anotherReleaseKey);
+    someInstanceConfig.setReleaseDeliveryTime(new Date());
+    someInstanceConfig.setDataChangeLastModifiedTime(new Date());
+
+    instanceService.batchUpdateInstanceConfigs(Lists.newArrayList(someInstanceConfig));
+
+    assertEquals(anotherReleaseKey, jdbcTemplate.queryForObject(
+        "select ReleaseKey from InstanceConfig where Id = ?", String.class, someInstanceConfig.getId()));
+    assertEquals(someReleaseKey, jdbcTemplate.queryForObject(
+        "select ReleaseKey from InstanceConfig where Id = ?", String.class, instanceConfigs.get(1).getId()));
+  }
+
   @Test
   @Rollback
   public void testCreateAndFindInstanceConfig() throws Exception {
@@ -110,6 +174,40 @@ public class InstanceServiceTest extends AbstractIntegrationTest {
     assertEquals(anotherReleaseKey, updated.getReleaseKey());
   }
 
+  @Test
+  @Rollback
+  public void testBatchUpdateInstanceConfigLastModifiedTimes() throws Exception {
+    long someInstanceId = 1;
+    long anotherInstanceId = 2;
+    String someConfigAppId = "someConfigAppId";
+    String someConfigClusterName = "someConfigClusterName";
+    String someConfigNamespaceName = "someConfigNamespaceName";
+    String someReleaseKey = "someReleaseKey";
+    Date someLastModifiedTime = new Date(System.currentTimeMillis() - 60 * 1000);
+    Date newerLastModifiedTime = new Date(someLastModifiedTime.getTime() + 30 * 1000);
+    Date olderLastModifiedTime = new Date(someLastModifiedTime.getTime() - 30 * 1000);
+
+    InstanceConfig someInstanceConfig = prepareInstanceConfigForInstance(someInstanceId,
+        someConfigAppId, someConfigClusterName, someConfigNamespaceName, someReleaseKey,
+        someLastModifiedTime);
+    InstanceConfig anotherInstanceConfig = prepareInstanceConfigForInstance(anotherInstanceId,
+        someConfigAppId, someConfigClusterName, someConfigNamespaceName, someReleaseKey,
+        someLastModifiedTime);
+
+    Map<Long, Date> lastModifiedTimes = Maps.newHashMap();
+    lastModifiedTimes.put(someInstanceConfig.getId(), newerLastModifiedTime);
+    lastModifiedTimes.put(anotherInstanceConfig.getId(), olderLastModifiedTime);
+
+    instanceService.batchUpdateInstanceConfigLastModifiedTimes(lastModifiedTimes);
+
+    assertEquals(newerLastModifiedTime.getTime(), jdbcTemplate.queryForObject(
+        "select DataChange_LastTime from InstanceConfig where Id = ?", Date.class,
+        someInstanceConfig.getId()).getTime());
+    assertEquals(someLastModifiedTime.getTime(), jdbcTemplate.queryForObject(
+        "select DataChange_LastTime from InstanceConfig where Id = ?", Date.class,
+        anotherInstanceConfig.getId()).getTime());
+  }
+
   @Test
   @Rollback
   public void testFindActiveInstanceConfigs() throws Exception {
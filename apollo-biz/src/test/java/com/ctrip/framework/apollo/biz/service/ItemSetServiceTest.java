@@ -0,0 +1,141 @@
+package com.ctrip.framework.apollo.biz.service;
+
+import com.ctrip.framework.apollo.biz.AbstractIntegrationTest;
+import com.ctrip.framework.apollo.biz.entity.Commit;
+import com.ctrip.framework.apollo.biz.entity.Item;
+import com.ctrip.framework.apollo.common.dto.ItemChangeSets;
+import com.ctrip.framework.apollo.common.dto.ItemDTO;
+import com.ctrip.framework.apollo.common.exception.NotFoundException;
+
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.test.annotation.Rollback;
+
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ItemSetServiceTest extends AbstractIntegrationTest {
+  private static final String someAppId = "someAppId";
+  private static final String someClusterName = "someClusterName";
+  private static final String someNamespaceName = "someNamespaceName";
+  private static final long someNamespaceId = 1000;
+  private static final String someOperator = "someOperator";
+  //larger than the default batch threshold
+  private static final int someItemCount = 150;
+
+  @Autowired
+  private ItemSetService itemSetService;
+  @Autowired
+  private ItemService itemService;
+  @Autowired
+  private CommitService commitService;
+
+  @Test
+  @Rollback
+  public void testUpdateSetInBatch() throws Exception {
+    ItemChangeSets createSet = new ItemChangeSets();
+    createSet.setDataChangeLastModifiedBy(someOperator);
+    for (int i = 0; i < someItemCount; i++) {
+      createSet.addCreateItem(assembleItem(0, "key" + i, "value" + i));
+    }
+
+    itemSetService.updateSet(someAppId, someClusterName, someNamespaceName, createSet);
+
+    List<Item> items = itemService.findItemsWithOrdered(someNamespaceId);
+    assertEquals(someItemCount, items.size());
+    for (int i = 0; i < someItemCount; i++) {
+      Item item = items.get(i);
+      assertEquals("key" + i, item.getKey());
+      assertEquals("value" + i, item.getValue());
+      assertEquals(Integer.valueOf(i + 1), item.getLineNum());
+      assertEquals(someOperator, item.getDataChangeCreatedBy());
+    }
+
+    ItemChangeSets changeSet = new ItemChangeSets();
+    changeSet.setDataChangeLastModifiedBy(someOperator);
+    for (int i = 0; i < someItemCount; i++) {
+      Item item = items.get(i);
+      if (i % 2 == 0) {
+        ItemDTO toUpdate = assembleItem(item.getId(), item.getKey(), "newValue" + i);
+        toUpdate.setLineNum(item.getLineNum());
+        changeSet.addUpdateItem(toUpdate);
+      } else {
+        changeSet.addDeleteItem(assembleItem(item.getId(), item.getKey(), item.getValue()));
+      }
+    }
+    changeSet.addCreateItem(assembleItem(0, "anotherKey", "anotherValue"));
+
+    itemSetService.updateSet(someAppId, someClusterName, someNamespaceName, changeSet);
+
+    List<Item> updatedItems = itemService.findItemsWithOrdered(someNamespaceId);
+    assertEquals(someItemCount / 2 + 1, updatedItems.size());
+    for (int i = 0; i < someItemCount / 2; i++) {
+      assertEquals("key" + i * 2, updatedItems.get(i).getKey());
+      assertEquals("newValue" + i * 2, updatedItems.get(i).getValue());
+    }
+    Item anotherItem = updatedItems.get(someItemCount / 2);
+    assertEquals("anotherKey", anotherItem.getKey());
+    assertEquals(Integer.valueOf(someItemCount + 1), anotherItem.getLineNum());
+
+    List<Commit> commits = commitService.find(someAppId, someClusterName, someNamespaceName,
+        PageRequest.of(0, 10));
+    assertEquals(2, commits.size());
+    assertTrue(commits.get(0).getChangeSets().contains("newValue0"));
+  }
+
+  @Test
+  @Rollback
+  public void testUpdateSetInBatchWithExplicitAndZeroLineNums() throws Exception {
+    ItemChangeSets createSet = new ItemChangeSets();
+    createSet.setDataChangeLastModifiedBy(someOperator);
+    for (int i = 0; i < someItemCount; i++) {
+      createSet.addCreateItem(assembleItem(0, "key" + i, "value" + i));
+    }
+    itemSetService.updateSet(someAppId, someClusterName, someNamespaceName, createSet);
+
+    ItemChangeSets anotherCreateSet = new ItemChangeSets();
+    anotherCreateSet.setDataChangeLastModifiedBy(someOperator);
+    //an explicit line number below the existing ones comes first
+    ItemDTO explicitItem = assembleItem(0, "explicitKey", "explicitValue");
+    explicitItem.setLineNum(5);
+    anotherCreateSet.addCreateItem(explicitItem);
+    for (int i = 0; i < someItemCount; i++) {
+      anotherCreateSet.addCreateItem(assembleItem(0, "anotherKey" + i, "anotherValue" + i));
+    }
+
+    itemSetService.updateSet(someAppId, someClusterName, someNamespaceName, anotherCreateSet);
+
+    List<Item> items = itemService.findItemsWithOrdered(someNamespaceId);
+    assertEquals(someItemCount * 2 + 1, items.size());
+    for (Item item : items) {
+      if (item.getKey().equals("explicitKey")) {
+        assertEquals(Integer.valueOf(5), item.getLineNum());
+      } else if (item.getKey().startsWith("anotherKey")) {
+        int index = Integer.parseInt(item.getKey().substring("anotherKey".length()));
+        assertEquals(Integer.valueOf(someItemCount + index + 1), item.getLineNum());
+      }
+    }
+  }
+
+  @Test(expected = NotFoundException.class)
+  @Rollback
+  public void testUpdateSetInBatchWithItemNotFound() throws Exception {
+    ItemChangeSets changeSet = new ItemChangeSets();
+    changeSet.setDataChangeLastModifiedBy(someOperator);
+    for (int i = 0; i < someItemCount; i++) {
+      changeSet.addUpdateItem(assembleItem(Integer.MAX_VALUE - i, "key" + i, "value" + i));
+    }
+
+    itemSetService.updateSet(someAppId, someClusterName, someNamespaceName, changeSet);
+  }
+
+  private ItemDTO assembleItem(long id, String key, String value) {
+    ItemDTO item = new ItemDTO(key, value, null, 0);
+    item.setId(id);
+    item.setNamespaceId(someNamespaceId);
+    return item;
+  }
+}
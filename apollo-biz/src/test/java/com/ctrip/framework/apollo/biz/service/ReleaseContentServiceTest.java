@@ -0,0 +1,152 @@
+package com.ctrip.framework.apollo.biz.service;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.Release;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.Silent.class)
+public class ReleaseContentServiceTest {
+  private static final Gson gson = new Gson();
+  @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private JdbcTemplate jdbcTemplate;
+  private ReleaseContentService releaseContentService;
+  private long releaseIdCounter;
+
+  @Before
+  public void setUp() throws Exception {
+    releaseContentService = new ReleaseContentService(bizConfig, jdbcTemplate);
+    when(bizConfig.isReleaseDeltaStorageEnabled()).thenReturn(true);
+    when(bizConfig.releaseFullSnapshotInterval()).thenReturn(3);
+  }
+
+  @Test
+  public void testStoreDeltas() throws Exception {
+    Map<String, String> configurations = assembleConfigurations(100);
+    Release someRelease = assembleRelease(null, configurations);
+    assertFalse(ReleaseContentService.isDelta(someRelease.getStoredConfigurations()));
+    when(jdbcTemplate.queryForObject(anyString(), eq(String.class), eq(someRelease.getId())))
+        .thenReturn(someRelease.getStoredConfigurations());
+
+    configurations.put("key1", "newValue1");
+    configurations.remove("key2");
+    configurations.put("newKey", "newValue");
+    Release anotherRelease = assembleRelease(someRelease, configurations);
+    assertTrue(ReleaseContentService.isDelta(anotherRelease.getStoredConfigurations()));
+    assertTrue(anotherRelease.getStoredConfigurations().length() < gson.toJson(configurations).length() / 2);
+    assertEquals(gson.toJson(configurations), anotherRelease.getConfigurations());
+
+    configurations.put("key3", "newValue3");
+    Release thirdRelease = assembleRelease(anotherRelease, configurations);
+    assertTrue(ReleaseContentService.isDelta(thirdRelease.getStoredConfigurations()));
+
+    //full snapshot every 3 releases
+    configurations.put("key4", "newValue4");
+    Release fourthRelease = assembleRelease(thirdRelease, configurations);
+    assertFalse(ReleaseContentService.isDelta(fourthRelease.getStoredConfigurations()));
+    assertEquals(gson.toJson(configurations), fourthRelease.getStoredConfigurations());
+  }
+
+  @Test
+  public void testMaterialize() throws Exception {
+    Map<String, String> configurations = assembleConfigurations(100);
+    Release someRelease = assembleRelease(null, configurations);
+    String someConfigurations = gson.toJson(configurations);
+    configurations.put("key1", "newValue1");
+    configurations.remove("key2");
+    configurations.put("newKey", "newValue");
+    Release anotherRelease = assembleRelease(someRelease, configurations);
+
+    //as read from the database
+    Release storedRelease = new Release();
+    storedRelease.setId(anotherRelease.getId());
+    storedRelease.setConfigurations(anotherRelease.getStoredConfigurations());
+    when(jdbcTemplate.queryForObject(anyString(), eq(String.class), eq(someRelease.getId())))
+        .thenReturn(someConfigurations);
+
+    ReleaseContentService anotherReleaseContentService = new ReleaseContentService(bizConfig, jdbcTemplate);
+    anotherReleaseContentService.materialize(storedRelease);
+    assertEquals(gson.toJson(configurations), storedRelease.getConfigurations());
+    assertEquals(anotherRelease.getStoredConfigurations(), storedRelease.getStoredConfigurations());
+
+    //cached
+    Release sameRelease = new Release();
+    sameRelease.setId(anotherRelease.getId());
+    sameRelease.setConfigurations(anotherRelease.getStoredConfigurations());
+    anotherReleaseContentService.materialize(sameRelease);
+    assertEquals(gson.toJson(configurations), sameRelease.getConfigurations());
+    verify(jdbcTemplate, times(1)).queryForObject(anyString(), eq(String.class), eq(someRelease.getId()));
+  }
+
+  @Test
+  public void testStoreFullConfigurationsIfKeysReordered() throws Exception {
+    Map<String, String> configurations = assembleConfigurations(100);
+    Release someRelease = assembleRelease(null, configurations);
+
+    Map<String, String> reordered = Maps.newLinkedHashMap();
+    reordered.put("key50", "value50");
+    reordered.putAll(configurations);
+    Release anotherRelease = assembleRelease(someRelease, reordered);
+
+    assertFalse(ReleaseContentService.isDelta(anotherRelease.getStoredConfigurations()));
+  }
+
+  @Test
+  public void testStoreFullConfigurationsIfMostlyChanged() throws Exception {
+    Release someRelease = assembleRelease(null, assembleConfigurations(100));
+    Map<String, String> configurations = assembleConfigurations(100);
+    configurations.replaceAll((key, value) -> value + "-changed");
+    Release anotherRelease = assembleRelease(someRelease, configurations);
+
+    assertFalse(ReleaseContentService.isDelta(anotherRelease.getStoredConfigurations()));
+  }
+
+  @Test
+  public void testStoreFullConfigurationsIfDisabled() throws Exception {
+    when(bizConfig.isReleaseDeltaStorageEnabled()).thenReturn(false);
+    Map<String, String> configurations = assembleConfigurations(100);
+    Release someRelease = assembleRelease(null, configurations);
+    configurations.put("key1", "newValue1");
+    Release anotherRelease = assembleRelease(someRelease, configurations);
+
+    assertFalse(ReleaseContentService.isDelta(anotherRelease.getStoredConfigurations()));
+  }
+
+  private Release assembleRelease(Release previousRelease, Map<String, String> configurations) {
+    String fullConfigurations = gson.toJson(configurations);
+    Release release = new Release();
+    release.setId(++releaseIdCounter);
+    release.setConfigurations(releaseContentService.toStoredConfigurations(previousRelease, fullConfigurations));
+    release.materializeConfigurations(fullConfigurations);
+    releaseContentService.cacheConfigurations(release);
+    return release;
+  }
+
+  private Map<String, String> assembleConfigurations(int size) {
+    Map<String, String> configurations = Maps.newLinkedHashMap();
+    for (int i = 0; i < size; i++) {
+      configurations.put("key" + i, "value" + i);
+    }
+    return configurations;
+  }
+}
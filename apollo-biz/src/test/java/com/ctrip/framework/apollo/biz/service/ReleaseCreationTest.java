@@ -5,6 +5,7 @@ import com.google.gson.reflect.TypeToken;
 
 import com.ctrip.framework.apollo.biz.AbstractIntegrationTest;
 import com.ctrip.framework.apollo.biz.entity.GrayReleaseRule;
+import com.ctrip.framework.apollo.biz.entity.Item;
 import com.ctrip.framework.apollo.biz.entity.Namespace;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseHistory;
@@ -32,6 +33,8 @@ public class ReleaseCreationTest extends AbstractIntegrationTest {
   private NamespaceBranchService namespaceBranchService;
   @Autowired
   private ReleaseHistoryService releaseHistoryService;
+  @Autowired
+  private ItemService itemService;
 
   private String testApp = "test";
   private String testNamespace = "application";
@@ -424,6 +427,50 @@ public class ReleaseCreationTest extends AbstractIntegrationTest {
     Assert.assertTrue(branchReleaseHistory.getOperationContext().contains(rule.getRules()));
   }
 
+  /**
+   * Publish the branch, then publish the master twice: the first master release deletes k3 and the
+   * second one only modifies the value of k2, which is merged into the branch key by key.
+   */
+  @Test
+  @Sql(scripts = "/sql/release-creation-test.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/sql/clean.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testPublishMasterValueChangeAfterPublishBranch() {
+    long parentNamespaceId = 109;
+    String parentClusterName = "default5";
+    long childNamespaceId = 1010;
+    String childClusterName = "child-cluster5";
+    Namespace parentNamespace = instanceNamespace(parentNamespaceId, parentClusterName);
+    Namespace childNamespace = instanceNamespace(childNamespaceId, childClusterName);
+
+    releaseService.publish(childNamespace, "", "", operator, false);
+    releaseService.publish(parentNamespace, "", "", operator, false);
+
+    Map<String, String> childNamespaceConfiguration =
+        parseConfiguration(releaseService.findLatestActiveRelease(childNamespace).getConfigurations());
+    Assert.assertEquals(4, childNamespaceConfiguration.size());
+    Assert.assertEquals("v2-2", childNamespaceConfiguration.get("k2"));
+    Assert.assertFalse(childNamespaceConfiguration.containsKey("k3"));
+
+    Item item = itemService.findOne(testApp, parentClusterName, testNamespace, "k2");
+    item.setValue("v2-3");
+    itemService.update(item);
+
+    releaseService.publish(parentNamespace, "", "", operator, false);
+
+    Map<String, String> parentNamespaceConfiguration =
+        parseConfiguration(releaseService.findLatestActiveRelease(parentNamespace).getConfigurations());
+    Assert.assertEquals(2, parentNamespaceConfiguration.size());
+    Assert.assertEquals("v2-3", parentNamespaceConfiguration.get("k2"));
+
+    childNamespaceConfiguration =
+        parseConfiguration(releaseService.findLatestActiveRelease(childNamespace).getConfigurations());
+    Assert.assertEquals(4, childNamespaceConfiguration.size());
+    Assert.assertEquals("v1-2", childNamespaceConfiguration.get("k1"));
+    Assert.assertEquals("v2-3", childNamespaceConfiguration.get("k2"));
+    Assert.assertEquals("v4", childNamespaceConfiguration.get("k4"));
+    Assert.assertEquals("v6", childNamespaceConfiguration.get("k6"));
+  }
+
   /**
    *                          Master     |      Branch
    *                       ------------------------------                                      Master   |    Branch
@@ -5,6 +5,7 @@ import com.google.common.collect.Sets;
 
 import com.ctrip.framework.apollo.biz.AbstractUnitTest;
 import com.ctrip.framework.apollo.biz.MockBeanFactory;
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.repository.ReleaseRepository;
 import com.ctrip.framework.apollo.common.exception.BadRequestException;
@@ -16,7 +17,9 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.util.Arrays;
 import java.util.List;
@@ -39,6 +42,9 @@ public class ReleaseServiceTest extends AbstractUnitTest {
   private ReleaseHistoryService releaseHistoryService;
   @Mock
   private ItemSetService itemSetService;
+  @Spy
+  private ReleaseContentService releaseContentService = new ReleaseContentService(mock(BizConfig.class),
+      mock(JdbcTemplate.class));
   @InjectMocks
   private ReleaseService releaseService;
 
@@ -0,0 +1,79 @@
+package com.ctrip.framework.apollo.biz.utils;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.google.common.base.Strings;
+import com.google.common.collect.Lists;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class CacheSnapshotTest {
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+  @Test
+  public void testWriteAndRead() throws Exception {
+    File file = new File(temporaryFolder.getRoot(), "some/dir/some.snapshot");
+    String someLongValue = Strings.repeat("a", 70000);
+
+    CacheSnapshot.write(file, 100, Lists.newArrayList("someValue", null, someLongValue, "值"),
+        CacheSnapshot::writeString);
+
+    CacheSnapshot<String> snapshot = CacheSnapshot.read(file, CacheSnapshot::readString);
+
+    assertEquals(100, snapshot.getWatermark());
+    assertEquals(Lists.newArrayList("someValue", null, someLongValue, "值"), snapshot.getRecords());
+    assertFalse(new File(file.getParentFile(), "some.snapshot.tmp").exists());
+  }
+
+  @Test
+  public void testOverwrite() throws Exception {
+    File file = temporaryFolder.newFile("some.snapshot");
+
+    CacheSnapshot.write(file, 1, Collections.singletonList("someValue"), CacheSnapshot::writeString);
+    CacheSnapshot.write(file, 2, Collections.<String>emptyList(), CacheSnapshot::writeString);
+
+    CacheSnapshot<String> snapshot = CacheSnapshot.read(file, CacheSnapshot::readString);
+
+    assertEquals(2, snapshot.getWatermark());
+    assertEquals(Collections.emptyList(), snapshot.getRecords());
+  }
+
+  @Test
+  public void testReadNotExisted() throws Exception {
+    assertNull(CacheSnapshot.read(new File(temporaryFolder.getRoot(), "not-existed.snapshot"),
+        CacheSnapshot::readString));
+  }
+
+  @Test(expected = IOException.class)
+  public void testReadCorrupted() throws Exception {
+    File file = temporaryFolder.newFile("some.snapshot");
+    Files.write(file.toPath(), "not a snapshot".getBytes(StandardCharsets.UTF_8));
+
+    CacheSnapshot.read(file, CacheSnapshot::readString);
+  }
+
+  @Test
+  public void testSnapshotFile() throws Exception {
+    BizConfig bizConfig = mock(BizConfig.class);
+
+    when(bizConfig.cacheSnapshotDir()).thenReturn(" ");
+    assertNull(CacheSnapshot.snapshotFile(bizConfig, "someCache"));
+
+    when(bizConfig.cacheSnapshotDir()).thenReturn("/some/dir");
+    assertEquals(new File("/some/dir", "someCache.snapshot"),
+        CacheSnapshot.snapshotFile(bizConfig, "someCache"));
+  }
+}
@@ -0,0 +1,65 @@
+package com.ctrip.framework.apollo.biz.utils;
+
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConfigurationDiffTest {
+
+  @Test
+  public void testNoChange() {
+    Map<String, String> configurations = ImmutableMap.of("k1", "v1", "k2", "v2");
+
+    ConfigurationDiff diff = ConfigurationDiff.between(configurations, ImmutableMap.of("k1", "v1", "k2", "v2"));
+
+    assertTrue(diff.isEmpty());
+    assertTrue(diff.isValueChangeOnly());
+    assertFalse(diff.touches(Sets.newHashSet("k1", "k2")));
+  }
+
+  @Test
+  public void testValueChangeOnly() {
+    ConfigurationDiff diff = ConfigurationDiff.between(ImmutableMap.of("k1", "v1", "k2", "v2"),
+        ImmutableMap.of("k1", "v1", "k2", "v2-1"));
+
+    assertFalse(diff.isEmpty());
+    assertTrue(diff.isValueChangeOnly());
+    assertEquals(Collections.singleton("k2"), diff.getModifiedKeys());
+    assertTrue(diff.getAddedKeys().isEmpty());
+    assertTrue(diff.getDeletedKeys().isEmpty());
+    assertTrue(diff.touches(Sets.newHashSet("k2", "k3")));
+    assertFalse(diff.touches(Sets.newHashSet("k1", "k3")));
+  }
+
+  @Test
+  public void testKeysAddedAndDeleted() {
+    ConfigurationDiff diff = ConfigurationDiff.between(ImmutableMap.of("k1", "v1", "k2", "v2"),
+        ImmutableMap.of("k1", "v1-1", "k3", "v3"));
+
+    assertFalse(diff.isValueChangeOnly());
+    assertEquals(Collections.singleton("k1"), diff.getModifiedKeys());
+    assertEquals(Collections.singleton("k3"), diff.getAddedKeys());
+    assertEquals(Collections.singleton("k2"), diff.getDeletedKeys());
+    assertTrue(diff.touches(Collections.singleton("k2")));
+    assertTrue(diff.touches(Collections.singleton("k3")));
+  }
+
+  @Test
+  public void testOrderChanged() {
+    ConfigurationDiff diff = ConfigurationDiff.between(ImmutableMap.of("k1", "v1", "k2", "v2"),
+        ImmutableMap.of("k2", "v2", "k1", "v1"));
+
+    assertTrue(diff.isOrderChanged());
+    assertFalse(diff.isEmpty());
+    assertFalse(diff.isValueChangeOnly());
+    assertFalse(diff.touches(Sets.newHashSet("k1", "k2")));
+  }
+}
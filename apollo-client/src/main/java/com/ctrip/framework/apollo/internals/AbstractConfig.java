@@ -6,6 +6,10 @@ import com.ctrip.framework.apollo.build.ApolloInjector;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.enums.PropertyChangeType;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.metrics.Counter;
+import com.ctrip.framework.apollo.metrics.Histogram;
+import com.ctrip.framework.apollo.metrics.MetricNames;
+import com.ctrip.framework.apollo.metrics.MetricsRegistry;
 import com.ctrip.framework.apollo.model.ConfigChange;
 import com.ctrip.framework.apollo.model.ConfigChangeEvent;
 import com.ctrip.framework.apollo.tracer.Tracer;
@@ -32,6 +36,7 @@ import java.util.Properties;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicLong;
 
 /**
@@ -58,6 +63,8 @@ public abstract class AbstractConfig implements Config {
   private final Map<String, Cache<String, String[]>> m_arrayCache;
   private final List<Cache> allCaches;
   private final AtomicLong m_configVersion; //indicate config version
+  private final Histogram m_listenerDuration;
+  private final Counter m_listenerFailure;
 
   protected PropertiesFactory propertiesFactory;
 
@@ -72,6 +79,9 @@ public abstract class AbstractConfig implements Config {
     m_arrayCache = Maps.newConcurrentMap();
     allCaches = Lists.newArrayList();
     propertiesFactory = ApolloInjector.getInstance(PropertiesFactory.class);
+    MetricsRegistry metricsRegistry = ApolloInjector.getInstance(MetricsRegistry.class);
+    m_listenerDuration = metricsRegistry.histogram(MetricNames.CONFIG_CHANGE_LISTENER_DURATION);
+    m_listenerFailure = metricsRegistry.counter(MetricNames.CONFIG_CHANGE_LISTENER_FAILURE);
   }
 
   @Override
@@ -449,14 +459,17 @@ public abstract class AbstractConfig implements Config {
         public void run() {
           String listenerName = listener.getClass().getName();
           Transaction transaction = Tracer.newTransaction("Apollo.ConfigChangeListener", listenerName);
+          long startNanoTime = System.nanoTime();
           try {
             listener.onChange(changeEvent);
             transaction.setStatus(Transaction.SUCCESS);
           } catch (Throwable ex) {
             transaction.setStatus(ex);
+            m_listenerFailure.increment();
             Tracer.logError(ex);
             logger.error("Failed to invoke config change listener {}", listenerName, ex);
           } finally {
+            m_listenerDuration.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanoTime));
             transaction.complete();
           }
         }
@@ -11,6 +11,7 @@ import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.Properties;
+import java.util.concurrent.TimeUnit;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -19,6 +20,10 @@ import com.ctrip.framework.apollo.build.ApolloInjector;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.utils.ClassLoaderUtil;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.metrics.Counter;
+import com.ctrip.framework.apollo.metrics.Histogram;
+import com.ctrip.framework.apollo.metrics.MetricNames;
+import com.ctrip.framework.apollo.metrics.MetricsRegistry;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 import com.ctrip.framework.apollo.util.ConfigUtil;
@@ -36,6 +41,9 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
   private final String m_namespace;
   private File m_baseDir;
   private final ConfigUtil m_configUtil;
+  private final Histogram m_loadLatency;
+  private final Histogram m_persistLatency;
+  private final Counter m_failure;
   private volatile Properties m_fileProperties;
   private volatile ConfigRepository m_upstream;
 
@@ -53,6 +61,10 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
   public LocalFileConfigRepository(String namespace, ConfigRepository upstream) {
     m_namespace = namespace;
     m_configUtil = ApolloInjector.getInstance(ConfigUtil.class);
+    MetricsRegistry metricsRegistry = ApolloInjector.getInstance(MetricsRegistry.class);
+    m_loadLatency = metricsRegistry.histogram(MetricNames.LOCAL_FILE_LOAD_LATENCY);
+    m_persistLatency = metricsRegistry.histogram(MetricNames.LOCAL_FILE_PERSIST_LATENCY);
+    m_failure = metricsRegistry.counter(MetricNames.LOCAL_FILE_FAILURE);
     this.setLocalCacheDir(findLocalCacheDir(), false);
     this.setUpstreamRepository(upstream);
     this.trySync();
@@ -188,6 +200,7 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
 
     if (file.isFile() && file.canRead()) {
       InputStream in = null;
+      long startNanoTime = System.nanoTime();
 
       try {
         in = new FileInputStream(file);
@@ -195,6 +208,7 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
         properties.load(in);
         logger.debug("Loading local config file {} successfully!", file.getAbsolutePath());
       } catch (IOException ex) {
+        m_failure.increment();
         Tracer.logError(ex);
         throw new ApolloConfigException(String
             .format("Loading config from local cache file %s failed", file.getAbsolutePath()), ex);
@@ -206,6 +220,7 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
         } catch (IOException ex) {
           // ignore
         }
+        m_loadLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanoTime));
       }
     } else {
       throw new ApolloConfigException(
@@ -225,6 +240,7 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
 
     Transaction transaction = Tracer.newTransaction("Apollo.ConfigService", "persistLocalConfigFile");
     transaction.addData("LocalConfigFile", file.getAbsolutePath());
+    long startNanoTime = System.nanoTime();
     try {
       out = new FileOutputStream(file);
       m_fileProperties.store(out, "Persisted by DefaultConfig");
@@ -235,6 +251,7 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
               String.format("Persist local cache file %s failed", file.getAbsolutePath()), ex);
       Tracer.logError(exception);
       transaction.setStatus(exception);
+      m_failure.increment();
       logger.warn("Persist local cache file {} failed, reason: {}.", file.getAbsolutePath(),
           ExceptionUtil.getDetailMessage(ex));
     } finally {
@@ -245,6 +262,7 @@ public class LocalFileConfigRepository extends AbstractConfigRepository
           //ignore
         }
       }
+      m_persistLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanoTime));
       transaction.complete();
     }
   }
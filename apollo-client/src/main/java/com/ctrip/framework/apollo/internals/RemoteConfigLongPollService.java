@@ -7,15 +7,20 @@ import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
 import com.ctrip.framework.apollo.core.enums.ConfigFileFormat;
 import com.ctrip.framework.apollo.core.schedule.ExponentialSchedulePolicy;
-import com.ctrip.framework.apollo.core.schedule.SchedulePolicy;
 import com.ctrip.framework.apollo.core.signature.Signature;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.core.utils.StringUtils;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
+import com.ctrip.framework.apollo.metrics.Counter;
+import com.ctrip.framework.apollo.metrics.Histogram;
+import com.ctrip.framework.apollo.metrics.MetricNames;
+import com.ctrip.framework.apollo.metrics.MetricsRegistry;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 import com.ctrip.framework.apollo.util.ConfigUtil;
 import com.ctrip.framework.apollo.util.ExceptionUtil;
+import com.ctrip.framework.apollo.util.http.EventStreamHandler;
 import com.ctrip.framework.apollo.util.http.HttpRequest;
 import com.ctrip.framework.apollo.util.http.HttpResponse;
 import com.ctrip.framework.apollo.util.http.HttpUtil;
@@ -31,6 +36,8 @@ import com.google.common.net.UrlEscapers;
 import com.google.common.reflect.TypeToken;
 import com.google.common.util.concurrent.RateLimiter;
 import com.google.gson.Gson;
+import java.io.Closeable;
+import java.io.IOException;
 import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Map;
@@ -54,9 +61,12 @@ public class RemoteConfigLongPollService {
   private static final long INIT_NOTIFICATION_ID = ConfigConsts.NOTIFICATION_ID_PLACEHOLDER;
   //90 seconds, should be longer than server side's long polling timeout, which is now 60 seconds
   private static final int LONG_POLLING_READ_TIMEOUT = 90 * 1000;
+  private static final String NOTIFICATIONS_EVENT = "notifications";
+  //retry streaming after falling back to long polling for 10 minutes
+  private static final long STREAMING_RETRY_INTERVAL_IN_MILLIS = 10 * 60 * 1000;
   private final ExecutorService m_longPollingService;
   private final AtomicBoolean m_longPollingStopped;
-  private SchedulePolicy m_longPollFailSchedulePolicyInSecond;
+  private ExponentialSchedulePolicy m_longPollFailSchedulePolicyInSecond;
   private RateLimiter m_longPollRateLimiter;
   private final AtomicBoolean m_longPollStarted;
   private final Multimap<String, RemoteConfigRepository> m_longPollNamespaces;
@@ -67,6 +77,14 @@ public class RemoteConfigLongPollService {
   private ConfigUtil m_configUtil;
   private HttpUtil m_httpUtil;
   private ConfigServiceLocator m_serviceLocator;
+  private Histogram m_longPollRoundTrip;
+  private Counter m_longPollCount;
+  private Counter m_longPollNotified;
+  private Counter m_longPollNotModified;
+  private Counter m_longPollFailure;
+  private volatile Closeable m_notificationStream;
+  private final AtomicBoolean m_notificationStreamReconnecting;
+  private volatile long m_streamingRetryTime;
 
   /**
    * Constructor.
@@ -77,6 +95,7 @@ public class RemoteConfigLongPollService {
     m_longPollingService = Executors.newSingleThreadExecutor(
         ApolloThreadFactory.create("RemoteConfigLongPollService", true));
     m_longPollStarted = new AtomicBoolean(false);
+    m_notificationStreamReconnecting = new AtomicBoolean(false);
     m_longPollNamespaces =
         Multimaps.synchronizedSetMultimap(HashMultimap.<String, RemoteConfigRepository>create());
     m_notifications = Maps.newConcurrentMap();
@@ -88,6 +107,12 @@ public class RemoteConfigLongPollService {
     m_httpUtil = ApolloInjector.getInstance(HttpUtil.class);
     m_serviceLocator = ApolloInjector.getInstance(ConfigServiceLocator.class);
     m_longPollRateLimiter = RateLimiter.create(m_configUtil.getLongPollQPS());
+    MetricsRegistry metricsRegistry = ApolloInjector.getInstance(MetricsRegistry.class);
+    m_longPollRoundTrip = metricsRegistry.histogram(MetricNames.LONG_POLL_ROUND_TRIP);
+    m_longPollCount = metricsRegistry.counter(MetricNames.LONG_POLL_COUNT);
+    m_longPollNotified = metricsRegistry.counter(MetricNames.LONG_POLL_NOTIFIED);
+    m_longPollNotModified = metricsRegistry.counter(MetricNames.LONG_POLL_NOT_MODIFIED);
+    m_longPollFailure = metricsRegistry.counter(MetricNames.LONG_POLL_FAILURE);
   }
 
   public boolean submit(String namespace, RemoteConfigRepository remoteConfigRepository) {
@@ -95,6 +120,9 @@ public class RemoteConfigLongPollService {
     m_notifications.putIfAbsent(namespace, INIT_NOTIFICATION_ID);
     if (!m_longPollStarted.get()) {
       startLongPolling();
+    } else if (added) {
+      //the watched namespaces are registered once per stream, so reconnect to watch the new one
+      reconnectNotificationStream();
     }
     return added;
   }
@@ -135,6 +163,7 @@ public class RemoteConfigLongPollService {
 
   void stopLongPollingRefresh() {
     this.m_longPollingStopped.compareAndSet(false, true);
+    reconnectNotificationStream();
   }
 
   private void doLongPollingRefresh(String appId, String cluster, String dataCenter, String secret) {
@@ -156,6 +185,19 @@ public class RemoteConfigLongPollService {
           lastServiceDto = configServices.get(random.nextInt(configServices.size()));
         }
 
+        if (isNotificationStreamingAvailable()) {
+          if (doStreamingRefresh(lastServiceDto, appId, cluster, dataCenter, secret, transaction)) {
+            //reconnect to a random config service to balance the streams
+            lastServiceDto = null;
+            m_longPollFailSchedulePolicyInSecond.success();
+            transaction.setStatus(Transaction.SUCCESS);
+            continue;
+          }
+          m_streamingRetryTime = System.currentTimeMillis() + STREAMING_RETRY_INTERVAL_IN_MILLIS;
+          logger.info("Notification streaming is not supported by {}, fall back to long polling",
+              lastServiceDto.getHomepageUrl());
+        }
+
         url =
             assembleLongPollRefreshUrl(lastServiceDto.getHomepageUrl(), appId, cluster, dataCenter,
                 m_notifications);
@@ -171,17 +213,25 @@ public class RemoteConfigLongPollService {
 
         transaction.addData("Url", url);
 
+        m_longPollCount.increment();
+        long startNanoTime = System.nanoTime();
         final HttpResponse<List<ApolloConfigNotification>> response =
             m_httpUtil.doGet(request, m_responseType);
+        m_longPollRoundTrip.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanoTime));
 
         logger.debug("Long polling response: {}, url: {}", response.getStatusCode(), url);
         if (response.getStatusCode() == 200 && response.getBody() != null) {
           updateNotifications(response.getBody());
           updateRemoteNotifications(response.getBody());
           transaction.addData("Result", response.getBody().toString());
+          m_longPollNotified.increment();
           notify(lastServiceDto, response.getBody());
         }
 
+        if (response.getStatusCode() == 304) {
+          m_longPollNotModified.increment();
+        }
+
         //try to load balance
         if (response.getStatusCode() == 304 && random.nextBoolean()) {
           lastServiceDto = null;
@@ -194,7 +244,12 @@ public class RemoteConfigLongPollService {
         lastServiceDto = null;
         Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(ex));
         transaction.setStatus(ex);
-        long sleepTimeInSecond = m_longPollFailSchedulePolicyInSecond.fail();
+        m_longPollFailure.increment();
+        long retryAfterInSecond = ex instanceof ApolloConfigStatusCodeException
+            ? ((ApolloConfigStatusCodeException) ex).getRetryAfterInSecond() : 0;
+        long sleepTimeInSecond = retryAfterInSecond > 0
+            ? m_longPollFailSchedulePolicyInSecond.fail(retryAfterInSecond)
+            : m_longPollFailSchedulePolicyInSecond.fail();
         logger.warn(
             "Long polling failed, will retry in {} seconds. appId: {}, cluster: {}, namespaces: {}, long polling url: {}, reason: {}",
             sleepTimeInSecond, appId, cluster, assembleNamespaces(), url, ExceptionUtil.getDetailMessage(ex));
@@ -209,6 +264,90 @@ public class RemoteConfigLongPollService {
     }
   }
 
+  private boolean isNotificationStreamingAvailable() {
+    return m_configUtil.isNotificationStreamingEnabled() && System.currentTimeMillis() >= m_streamingRetryTime;
+  }
+
+  /**
+   * Receive the notifications from the stream until the server ends it
+   *
+   * @return false if the config service doesn't support streaming
+   */
+  private boolean doStreamingRefresh(final ServiceDTO serviceDto, String appId, String cluster,
+      String dataCenter, String secret, Transaction transaction) {
+    //namespaces are only added, so the size tells whether a namespace is submitted after the url is assembled
+    final int watchedNamespaces = m_notifications.size();
+    m_notificationStreamReconnecting.set(false);
+    final String url = assembleNotificationStreamUrl(serviceDto.getHomepageUrl(), appId, cluster, dataCenter,
+        m_notifications);
+    logger.debug("Streaming notifications from {}", url);
+
+    HttpRequest request = new HttpRequest(url);
+    request.setReadTimeout(LONG_POLLING_READ_TIMEOUT);
+    if (!StringUtils.isBlank(secret)) {
+      Map<String, String> headers = Signature.buildHttpHeaders(url, appId, secret);
+      request.setHeaders(headers);
+    }
+    transaction.addData("Url", url);
+
+    m_longPollCount.increment();
+    try {
+      m_httpUtil.doGetEventStream(request, new EventStreamHandler() {
+        @Override
+        public void onOpen(Closeable stream) {
+          m_notificationStream = stream;
+          if (m_notifications.size() != watchedNamespaces) {
+            reconnectNotificationStream();
+          }
+        }
+
+        @Override
+        public void onEvent(String event, String data) {
+          if (!NOTIFICATIONS_EVENT.equals(event)) {
+            return;
+          }
+          List<ApolloConfigNotification> notifications = gson.fromJson(data, m_responseType);
+          if (notifications == null || notifications.isEmpty()) {
+            return;
+          }
+          logger.debug("Stream notifications: {}, url: {}", notifications, url);
+          updateNotifications(notifications);
+          updateRemoteNotifications(notifications);
+          m_longPollNotified.increment();
+          RemoteConfigLongPollService.this.notify(serviceDto, notifications);
+        }
+      });
+      return true;
+    } catch (ApolloConfigStatusCodeException ex) {
+      //404 or 405 from the config services which don't have the streaming endpoint
+      if (ex.getStatusCode() == 404 || ex.getStatusCode() == 405 || ex.getStatusCode() == 406) {
+        return false;
+      }
+      throw ex;
+    } catch (ApolloConfigException ex) {
+      if (m_notificationStreamReconnecting.getAndSet(false)) {
+        //closed on purpose
+        return true;
+      }
+      throw ex;
+    } finally {
+      m_notificationStream = null;
+    }
+  }
+
+  private void reconnectNotificationStream() {
+    Closeable notificationStream = m_notificationStream;
+    if (notificationStream == null) {
+      return;
+    }
+    m_notificationStreamReconnecting.set(true);
+    try {
+      notificationStream.close();
+    } catch (IOException ex) {
+      //ignore
+    }
+  }
+
   private void notify(ServiceDTO lastServiceDto, List<ApolloConfigNotification> notifications) {
     if (notifications == null || notifications.isEmpty()) {
       return;
@@ -278,6 +417,16 @@ public class RemoteConfigLongPollService {
 
   String assembleLongPollRefreshUrl(String uri, String appId, String cluster, String dataCenter,
                                     Map<String, Long> notificationsMap) {
+    return assembleNotificationsUrl(uri, "notifications/v2", appId, cluster, dataCenter, notificationsMap);
+  }
+
+  String assembleNotificationStreamUrl(String uri, String appId, String cluster, String dataCenter,
+                                       Map<String, Long> notificationsMap) {
+    return assembleNotificationsUrl(uri, "notifications/v2/stream", appId, cluster, dataCenter, notificationsMap);
+  }
+
+  private String assembleNotificationsUrl(String uri, String path, String appId, String cluster,
+                                          String dataCenter, Map<String, Long> notificationsMap) {
     Map<String, String> queryParams = Maps.newHashMap();
     queryParams.put("appId", queryParamEscaper.escape(appId));
     queryParams.put("cluster", queryParamEscaper.escape(cluster));
@@ -297,7 +446,7 @@ public class RemoteConfigLongPollService {
       uri += "/";
     }
 
-    return uri + "notifications/v2?" + params;
+    return uri + path + "?" + params;
   }
 
   String assembleNotifications(Map<String, Long> notificationsMap) {
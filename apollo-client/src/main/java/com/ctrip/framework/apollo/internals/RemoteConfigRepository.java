@@ -7,13 +7,16 @@ import com.ctrip.framework.apollo.core.dto.ApolloConfig;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
 import com.ctrip.framework.apollo.core.schedule.ExponentialSchedulePolicy;
-import com.ctrip.framework.apollo.core.schedule.SchedulePolicy;
 import com.ctrip.framework.apollo.core.signature.Signature;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.core.utils.StringUtils;
 import com.ctrip.framework.apollo.enums.ConfigSourceType;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigException;
 import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
+import com.ctrip.framework.apollo.metrics.Counter;
+import com.ctrip.framework.apollo.metrics.Histogram;
+import com.ctrip.framework.apollo.metrics.MetricNames;
+import com.ctrip.framework.apollo.metrics.MetricsRegistry;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 import com.ctrip.framework.apollo.util.ConfigUtil;
@@ -37,6 +40,7 @@ import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -62,8 +66,15 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
   private final AtomicReference<ApolloNotificationMessages> m_remoteMessages;
   private final RateLimiter m_loadConfigRateLimiter;
   private final AtomicBoolean m_configNeedForceRefresh;
-  private final SchedulePolicy m_loadConfigFailSchedulePolicy;
+  private final ExponentialSchedulePolicy m_loadConfigFailSchedulePolicy;
   private final Gson gson;
+  private final Histogram m_configFetchLatency;
+  private final Counter m_configFetchCount;
+  private final Counter m_configFetchNotModified;
+  private final Counter m_configFetchFailure;
+  private final Histogram m_notificationApplyLag;
+  // the nano time when the latest long poll notification arrives, 0 if there is none pending
+  private final AtomicLong m_longPollNotifiedNanoTime;
 
   static {
     m_executorService = Executors.newScheduledThreadPool(1,
@@ -89,6 +100,13 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
     m_loadConfigFailSchedulePolicy = new ExponentialSchedulePolicy(m_configUtil.getOnErrorRetryInterval(),
         m_configUtil.getOnErrorRetryInterval() * 8);
     gson = new Gson();
+    MetricsRegistry metricsRegistry = ApolloInjector.getInstance(MetricsRegistry.class);
+    m_configFetchLatency = metricsRegistry.histogram(MetricNames.CONFIG_FETCH_LATENCY);
+    m_configFetchCount = metricsRegistry.counter(MetricNames.CONFIG_FETCH_COUNT);
+    m_configFetchNotModified = metricsRegistry.counter(MetricNames.CONFIG_FETCH_NOT_MODIFIED);
+    m_configFetchFailure = metricsRegistry.counter(MetricNames.CONFIG_FETCH_FAILURE);
+    m_notificationApplyLag = metricsRegistry.histogram(MetricNames.NOTIFICATION_APPLY_LAG);
+    m_longPollNotifiedNanoTime = new AtomicLong();
     this.trySync();
     this.schedulePeriodicRefresh();
     this.scheduleLongPollingRefresh();
@@ -133,6 +151,7 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
     Transaction transaction = Tracer.newTransaction("Apollo.ConfigService", "syncRemoteConfig");
 
     try {
+      long notifiedNanoTime = m_longPollNotifiedNanoTime.getAndSet(0);
       ApolloConfig previous = m_configCache.get();
       ApolloConfig current = loadApolloConfig();
 
@@ -143,6 +162,10 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
         this.fireRepositoryChange(m_namespace, this.getConfig());
       }
 
+      if (notifiedNanoTime != 0) {
+        m_notificationApplyLag.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - notifiedNanoTime));
+      }
+
       if (current != null) {
         Tracer.logEvent(String.format("Apollo.Client.Configs.%s", current.getNamespaceName()),
             current.getReleaseKey());
@@ -217,6 +240,9 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
 
         Transaction transaction = Tracer.newTransaction("Apollo.ConfigService", "queryConfig");
         transaction.addData("Url", url);
+        m_configFetchCount.increment();
+        long startNanoTime = System.nanoTime();
+        long retryAfterInSecond = 0;
         try {
 
           HttpResponse<ApolloConfig> response = m_httpUtil.doGet(request, ApolloConfig.class);
@@ -228,6 +254,7 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
 
           if (response.getStatusCode() == 304) {
             logger.debug("Config server responds with 304 HTTP status code.");
+            m_configFetchNotModified.increment();
             return m_configCache.get();
           }
 
@@ -238,6 +265,7 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
           return result;
         } catch (ApolloConfigStatusCodeException ex) {
           ApolloConfigStatusCodeException statusCodeException = ex;
+          retryAfterInSecond = ex.getRetryAfterInSecond();
           //config not found
           if (ex.getStatusCode() == 404) {
             String message = String.format(
@@ -249,6 +277,7 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
           }
           Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(statusCodeException));
           transaction.setStatus(statusCodeException);
+          m_configFetchFailure.increment();
           exception = statusCodeException;
           if(ex.getStatusCode() == 404) {
             break retryLoopLabel;
@@ -256,14 +285,22 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
         } catch (Throwable ex) {
           Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(ex));
           transaction.setStatus(ex);
+          m_configFetchFailure.increment();
           exception = ex;
         } finally {
+          m_configFetchLatency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - startNanoTime));
           transaction.complete();
         }
 
-        // if force refresh, do normal sleep, if normal config load, do exponential sleep
-        onErrorSleepTime = m_configNeedForceRefresh.get() ? m_configUtil.getOnErrorRetryInterval() :
-            m_loadConfigFailSchedulePolicy.fail();
+        // if the config service is overloaded, wait as long as it asks, e.g. 429 with Retry-After
+        if (retryAfterInSecond > 0) {
+          onErrorSleepTime = m_loadConfigFailSchedulePolicy.fail(m_configUtil.getOnErrorRetryIntervalTimeUnit()
+              .convert(retryAfterInSecond, TimeUnit.SECONDS));
+        } else {
+          // if force refresh, do normal sleep, if normal config load, do exponential sleep
+          onErrorSleepTime = m_configNeedForceRefresh.get() ? m_configUtil.getOnErrorRetryInterval() :
+              m_loadConfigFailSchedulePolicy.fail();
+        }
       }
 
     }
@@ -317,6 +354,8 @@ public class RemoteConfigRepository extends AbstractConfigRepository {
   public void onLongPollNotified(ServiceDTO longPollNotifiedServiceDto, ApolloNotificationMessages remoteMessages) {
     m_longPollServiceDto.set(longPollNotifiedServiceDto);
     m_remoteMessages.set(remoteMessages);
+    // keep the earliest pending notification, so that the lag covers notifications merged into one sync
+    m_longPollNotifiedNanoTime.compareAndSet(0, System.nanoTime());
     m_executorService.submit(new Runnable() {
       @Override
       public void run() {
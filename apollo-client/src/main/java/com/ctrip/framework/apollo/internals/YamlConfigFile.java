@@ -1,5 +1,6 @@
 package com.ctrip.framework.apollo.internals;
 
+import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.util.ExceptionUtil;
 import java.util.Properties;
 
@@ -18,11 +19,10 @@ import com.ctrip.framework.apollo.util.yaml.YamlParser;
  */
 public class YamlConfigFile extends PlainTextConfigFile implements PropertiesCompatibleConfigFile {
   private static final Logger logger = LoggerFactory.getLogger(YamlConfigFile.class);
-  private volatile Properties cachedProperties;
+  private volatile CachedProperties cachedProperties;
 
   public YamlConfigFile(String namespace, ConfigRepository configRepository) {
     super(namespace, configRepository);
-    tryTransformToProperties();
   }
 
   @Override
@@ -30,42 +30,49 @@ public class YamlConfigFile extends PlainTextConfigFile implements PropertiesCom
     return ConfigFileFormat.YAML;
   }
 
-  @Override
-  protected void update(Properties newProperties) {
-    super.update(newProperties);
-    tryTransformToProperties();
-  }
-
+  /**
+   * The yaml content is transformed lazily on the first call after each update, and the result is cached
+   * together with the content it is transformed from, so that a stale result is never returned. If an updated
+   * content fails to transform, the last transformed properties are kept.
+   */
   @Override
   public Properties asProperties() {
-    if (cachedProperties == null) {
-      transformToProperties();
+    Properties source = m_configProperties.get();
+    CachedProperties current = cachedProperties;
+    if (current != null && current.source == source) {
+      return current.properties;
     }
-    return cachedProperties;
+    return transformToProperties(source);
   }
 
-  private boolean tryTransformToProperties() {
+  private synchronized Properties transformToProperties(Properties source) {
+    CachedProperties current = cachedProperties;
+    if (current != null && current.source == source) {
+      return current.properties;
+    }
+    Properties properties;
     try {
-      transformToProperties();
-      return true;
+      properties = toProperties(source);
     } catch (Throwable ex) {
       Tracer.logEvent("ApolloConfigException", ExceptionUtil.getDetailMessage(ex));
       logger.warn("yaml to properties failed, reason: {}", ExceptionUtil.getDetailMessage(ex));
+      if (current == null) {
+        throw ex;
+      }
+      properties = current.properties;
     }
-    return false;
-  }
-
-  private synchronized void transformToProperties() {
-    cachedProperties = toProperties();
+    cachedProperties = new CachedProperties(source, properties);
+    return properties;
   }
 
-  private Properties toProperties() {
-    if (!this.hasContent()) {
+  private Properties toProperties(Properties source) {
+    if (source == null || !source.containsKey(ConfigConsts.CONFIG_FILE_CONTENT_KEY)) {
       return propertiesFactory.getPropertiesInstance();
     }
 
     try {
-      return ApolloInjector.getInstance(YamlParser.class).yamlToProperties(getContent());
+      return ApolloInjector.getInstance(YamlParser.class)
+          .yamlToProperties(source.getProperty(ConfigConsts.CONFIG_FILE_CONTENT_KEY));
     } catch (Throwable ex) {
       ApolloConfigException exception = new ApolloConfigException(
           "Parse yaml file content failed for namespace: " + m_namespace, ex);
@@ -73,4 +80,14 @@ public class YamlConfigFile extends PlainTextConfigFile implements PropertiesCom
       throw exception;
     }
   }
+
+  private static class CachedProperties {
+    private final Properties source;
+    private final Properties properties;
+
+    private CachedProperties(Properties source, Properties properties) {
+      this.source = source;
+      this.properties = properties;
+    }
+  }
 }
@@ -0,0 +1,24 @@
+package com.ctrip.framework.apollo.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A monotonically increasing counter
+ *
+ * @since 1.7.0
+ */
+public class Counter {
+  private final AtomicLong count = new AtomicLong();
+
+  public void increment() {
+    count.incrementAndGet();
+  }
+
+  public void add(long delta) {
+    count.addAndGet(delta);
+  }
+
+  public long getCount() {
+    return count.get();
+  }
+}
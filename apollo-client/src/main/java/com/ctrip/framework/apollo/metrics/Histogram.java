@@ -0,0 +1,89 @@
+package com.ctrip.framework.apollo.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A fixed memory, lock free histogram of non negative long values, e.g. latencies in microseconds.
+ *
+ * <p>Like HdrHistogram, values are counted in log-linear buckets: values below 64 are recorded
+ * exactly, larger values are recorded with 5 significant bits, i.e. within about 3% of relative error.
+ * Recording a value never allocates.</p>
+ *
+ * @since 1.7.0
+ */
+public class Histogram {
+  private static final int SUB_BUCKET_BITS = 5;
+  private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+  private static final int EXACT_BUCKET_COUNT = SUB_BUCKET_COUNT << 1;
+  private static final int MAX_SHIFT = 63 - SUB_BUCKET_BITS;
+  static final int BUCKET_COUNT = EXACT_BUCKET_COUNT + MAX_SHIFT * SUB_BUCKET_COUNT;
+
+  private final AtomicLongArray buckets = new AtomicLongArray(BUCKET_COUNT);
+  private final AtomicLong count = new AtomicLong();
+  private final AtomicLong sum = new AtomicLong();
+  private final AtomicLong max = new AtomicLong(Long.MIN_VALUE);
+  private final AtomicLong min = new AtomicLong(Long.MAX_VALUE);
+
+  public void record(long value) {
+    if (value < 0) {
+      value = 0;
+    }
+    buckets.incrementAndGet(bucketIndex(value));
+    count.incrementAndGet();
+    sum.addAndGet(value);
+    updateMax(value);
+    updateMin(value);
+  }
+
+  public HistogramSnapshot snapshot() {
+    long[] counts = new long[BUCKET_COUNT];
+    long total = 0;
+    for (int i = 0; i < BUCKET_COUNT; i++) {
+      counts[i] = buckets.get(i);
+      total += counts[i];
+    }
+    if (total == 0) {
+      return new HistogramSnapshot(counts, 0, 0, 0, 0);
+    }
+    return new HistogramSnapshot(counts, total, sum.get(), min.get(), max.get());
+  }
+
+  static int bucketIndex(long value) {
+    if (value < EXACT_BUCKET_COUNT) {
+      return (int) value;
+    }
+    int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+    int subBucket = (int) (value >>> shift) - SUB_BUCKET_COUNT;
+    return EXACT_BUCKET_COUNT + (shift - 1) * SUB_BUCKET_COUNT + subBucket;
+  }
+
+  /**
+   * @return the highest value which is counted in the bucket
+   */
+  static long bucketUpperBound(int index) {
+    if (index < EXACT_BUCKET_COUNT) {
+      return index;
+    }
+    int offset = index - EXACT_BUCKET_COUNT;
+    int shift = offset / SUB_BUCKET_COUNT + 1;
+    long top = offset % SUB_BUCKET_COUNT + SUB_BUCKET_COUNT;
+    long upperBound = ((top + 1) << shift) - 1;
+    // the last bucket would overflow
+    return upperBound < 0 ? Long.MAX_VALUE : upperBound;
+  }
+
+  private void updateMax(long value) {
+    long current = max.get();
+    while (value > current && !max.compareAndSet(current, value)) {
+      current = max.get();
+    }
+  }
+
+  private void updateMin(long value) {
+    long current = min.get();
+    while (value < current && !min.compareAndSet(current, value)) {
+      current = min.get();
+    }
+  }
+}
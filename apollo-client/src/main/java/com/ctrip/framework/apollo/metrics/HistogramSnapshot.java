@@ -0,0 +1,74 @@
+package com.ctrip.framework.apollo.metrics;
+
+/**
+ * An immutable view of a {@link Histogram} at some point
+ *
+ * @since 1.7.0
+ */
+public class HistogramSnapshot {
+  private final long[] counts;
+  private final long count;
+  private final long sum;
+  private final long min;
+  private final long max;
+
+  HistogramSnapshot(long[] counts, long count, long sum, long min, long max) {
+    this.counts = counts;
+    this.count = count;
+    this.sum = sum;
+    this.min = min;
+    this.max = max;
+  }
+
+  public long getCount() {
+    return count;
+  }
+
+  public long getSum() {
+    return sum;
+  }
+
+  public long getMin() {
+    return min;
+  }
+
+  public long getMax() {
+    return max;
+  }
+
+  public double getMean() {
+    return count == 0 ? 0 : (double) sum / count;
+  }
+
+  /**
+   * @param percentile the percentile, e.g. 99 or 99.9
+   * @return the value at the percentile, not greater than the max value recorded
+   */
+  public long getValueAtPercentile(double percentile) {
+    if (count == 0) {
+      return 0;
+    }
+    double boundedPercentile = Math.min(Math.max(percentile, 0), 100);
+    long targetCount = Math.max(1, (long) Math.ceil(boundedPercentile / 100 * count));
+    long accumulated = 0;
+    for (int i = 0; i < counts.length; i++) {
+      accumulated += counts[i];
+      if (accumulated >= targetCount) {
+        return Math.min(Histogram.bucketUpperBound(i), max);
+      }
+    }
+    return max;
+  }
+
+  @Override
+  public String toString() {
+    return "HistogramSnapshot{" +
+        "count=" + count +
+        ", min=" + min +
+        ", max=" + max +
+        ", mean=" + getMean() +
+        ", p50=" + getValueAtPercentile(50) +
+        ", p99=" + getValueAtPercentile(99) +
+        '}';
+  }
+}
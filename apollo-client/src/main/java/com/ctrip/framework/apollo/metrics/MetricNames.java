@@ -0,0 +1,31 @@
+package com.ctrip.framework.apollo.metrics;
+
+/**
+ * Names of the apollo client metrics, latencies are in microseconds
+ *
+ * @since 1.7.0
+ */
+public interface MetricNames {
+  String CONFIG_FETCH_LATENCY = "apollo.client.configFetch.latency.micros";
+  String CONFIG_FETCH_COUNT = "apollo.client.configFetch.count";
+  String CONFIG_FETCH_NOT_MODIFIED = "apollo.client.configFetch.notModified";
+  String CONFIG_FETCH_FAILURE = "apollo.client.configFetch.failure";
+
+  String LONG_POLL_ROUND_TRIP = "apollo.client.longPoll.roundTrip.micros";
+  String LONG_POLL_COUNT = "apollo.client.longPoll.count";
+  String LONG_POLL_NOTIFIED = "apollo.client.longPoll.notified";
+  String LONG_POLL_NOT_MODIFIED = "apollo.client.longPoll.notModified";
+  String LONG_POLL_FAILURE = "apollo.client.longPoll.failure";
+
+  String NOTIFICATION_APPLY_LAG = "apollo.client.notification.applyLag.micros";
+
+  String CONFIG_CHANGE_LISTENER_DURATION = "apollo.client.configChangeListener.duration.micros";
+  String CONFIG_CHANGE_LISTENER_FAILURE = "apollo.client.configChangeListener.failure";
+
+  String CONFIGURATION_PROPERTIES_REBIND_LATENCY = "apollo.client.configurationProperties.rebind.latency.micros";
+  String CONFIGURATION_PROPERTIES_REBIND_FAILURE = "apollo.client.configurationProperties.rebind.failure";
+
+  String LOCAL_FILE_LOAD_LATENCY = "apollo.client.localFile.load.latency.micros";
+  String LOCAL_FILE_PERSIST_LATENCY = "apollo.client.localFile.persist.latency.micros";
+  String LOCAL_FILE_FAILURE = "apollo.client.localFile.failure";
+}
@@ -0,0 +1,143 @@
+package com.ctrip.framework.apollo.metrics;
+
+import com.google.common.collect.Lists;
+import java.lang.management.ManagementFactory;
+import java.util.List;
+import java.util.Map;
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanOperationInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Export the metrics of {@link MetricsRegistry} as the read only attributes of the
+ * <code>com.ctrip.framework.apollo:type=ClientMetrics</code> MBean. Counters are exported as they are,
+ * and each histogram is exported as <code>name.count</code>, <code>name.mean</code>, <code>name.max</code>,
+ * <code>name.p50</code>, <code>name.p90</code> and <code>name.p99</code>.
+ *
+ * @since 1.7.0
+ */
+public class MetricsJmxExporter implements DynamicMBean {
+  private static final Logger logger = LoggerFactory.getLogger(MetricsJmxExporter.class);
+  static final String OBJECT_NAME = "com.ctrip.framework.apollo:type=ClientMetrics";
+
+  private final MetricsRegistry metricsRegistry;
+
+  public MetricsJmxExporter(MetricsRegistry metricsRegistry) {
+    this.metricsRegistry = metricsRegistry;
+  }
+
+  /**
+   * Register the exporter to the platform MBean server, replacing the previously registered one
+   */
+  public void register() {
+    try {
+      MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+      ObjectName objectName = new ObjectName(OBJECT_NAME);
+      if (mBeanServer.isRegistered(objectName)) {
+        mBeanServer.unregisterMBean(objectName);
+      }
+      mBeanServer.registerMBean(this, objectName);
+    } catch (Throwable ex) {
+      logger.warn("Register apollo client metrics to JMX failed", ex);
+    }
+  }
+
+  @Override
+  public Object getAttribute(String attribute) throws AttributeNotFoundException {
+    Map<String, Long> counters = metricsRegistry.getCounters();
+    if (counters.containsKey(attribute)) {
+      return counters.get(attribute);
+    }
+
+    int separator = attribute.lastIndexOf('.');
+    if (separator > 0) {
+      HistogramSnapshot snapshot = metricsRegistry.getHistograms().get(attribute.substring(0, separator));
+      if (snapshot != null) {
+        Object value = histogramAttribute(snapshot, attribute.substring(separator + 1));
+        if (value != null) {
+          return value;
+        }
+      }
+    }
+
+    throw new AttributeNotFoundException(attribute);
+  }
+
+  @Override
+  public AttributeList getAttributes(String[] attributes) {
+    AttributeList result = new AttributeList();
+    for (String attribute : attributes) {
+      try {
+        result.add(new Attribute(attribute, getAttribute(attribute)));
+      } catch (AttributeNotFoundException ex) {
+        // skip unknown attributes
+      }
+    }
+    return result;
+  }
+
+  @Override
+  public void setAttribute(Attribute attribute) {
+    throw new UnsupportedOperationException("Apollo client metrics are read only");
+  }
+
+  @Override
+  public AttributeList setAttributes(AttributeList attributes) {
+    return new AttributeList();
+  }
+
+  @Override
+  public Object invoke(String actionName, Object[] params, String[] signature) {
+    throw new UnsupportedOperationException("Apollo client metrics have no operations");
+  }
+
+  @Override
+  public MBeanInfo getMBeanInfo() {
+    List<MBeanAttributeInfo> attributes = Lists.newArrayList();
+    for (String counter : metricsRegistry.getCounters().keySet()) {
+      attributes.add(new MBeanAttributeInfo(counter, Long.class.getName(), counter, true, false, false));
+    }
+    for (String histogram : metricsRegistry.getHistograms().keySet()) {
+      attributes.add(attributeInfo(histogram, "count", Long.class));
+      attributes.add(attributeInfo(histogram, "mean", Double.class));
+      attributes.add(attributeInfo(histogram, "max", Long.class));
+      attributes.add(attributeInfo(histogram, "p50", Long.class));
+      attributes.add(attributeInfo(histogram, "p90", Long.class));
+      attributes.add(attributeInfo(histogram, "p99", Long.class));
+    }
+    return new MBeanInfo(getClass().getName(), "Apollo client metrics",
+        attributes.toArray(new MBeanAttributeInfo[attributes.size()]), null, new MBeanOperationInfo[0], null);
+  }
+
+  private MBeanAttributeInfo attributeInfo(String histogram, String suffix, Class<?> type) {
+    String name = histogram + "." + suffix;
+    return new MBeanAttributeInfo(name, type.getName(), name, true, false, false);
+  }
+
+  private Object histogramAttribute(HistogramSnapshot snapshot, String suffix) {
+    switch (suffix) {
+      case "count":
+        return snapshot.getCount();
+      case "mean":
+        return snapshot.getMean();
+      case "max":
+        return snapshot.getMax();
+      case "p50":
+        return snapshot.getValueAtPercentile(50);
+      case "p90":
+        return snapshot.getValueAtPercentile(90);
+      case "p99":
+        return snapshot.getValueAtPercentile(99);
+      default:
+        return null;
+    }
+  }
+}
@@ -0,0 +1,77 @@
+package com.ctrip.framework.apollo.metrics;
+
+import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.google.common.collect.ImmutableSortedMap;
+import com.google.common.collect.Maps;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The registry of apollo client metrics, which could be pulled by any monitoring backend, e.g.
+ *
+ * <pre>
+ * MetricsRegistry registry = ApolloInjector.getInstance(MetricsRegistry.class);
+ * Map&lt;String, Long&gt; counters = registry.getCounters();
+ * Map&lt;String, HistogramSnapshot&gt; histograms = registry.getHistograms();
+ * </pre>
+ *
+ * Metrics are also exported via JMX, see {@link MetricsJmxExporter}. The metric instances should be
+ * looked up once and kept by the callers, so that recording stays allocation free.
+ *
+ * @since 1.7.0
+ */
+public class MetricsRegistry {
+  private final ConcurrentMap<String, Counter> counters = Maps.newConcurrentMap();
+  private final ConcurrentMap<String, Histogram> histograms = Maps.newConcurrentMap();
+
+  public MetricsRegistry() {
+    if (ApolloInjector.getInstance(ConfigUtil.class).isMetricsJmxExportEnabled()) {
+      new MetricsJmxExporter(this).register();
+    }
+  }
+
+  public Counter counter(String name) {
+    Counter counter = counters.get(name);
+    if (counter == null) {
+      counters.putIfAbsent(name, new Counter());
+      counter = counters.get(name);
+    }
+    return counter;
+  }
+
+  /**
+   * @param name the histogram name, by convention latencies are recorded in microseconds and the name
+   * ends with <code>.micros</code>
+   */
+  public Histogram histogram(String name) {
+    Histogram histogram = histograms.get(name);
+    if (histogram == null) {
+      histograms.putIfAbsent(name, new Histogram());
+      histogram = histograms.get(name);
+    }
+    return histogram;
+  }
+
+  /**
+   * @return the current counts of all the counters, sorted by name
+   */
+  public Map<String, Long> getCounters() {
+    ImmutableSortedMap.Builder<String, Long> result = ImmutableSortedMap.naturalOrder();
+    for (Map.Entry<String, Counter> entry : counters.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().getCount());
+    }
+    return result.build();
+  }
+
+  /**
+   * @return the snapshots of all the histograms, sorted by name
+   */
+  public Map<String, HistogramSnapshot> getHistograms() {
+    ImmutableSortedMap.Builder<String, HistogramSnapshot> result = ImmutableSortedMap.naturalOrder();
+    for (Map.Entry<String, Histogram> entry : histograms.entrySet()) {
+      result.put(entry.getKey(), entry.getValue().snapshot());
+    }
+    return result.build();
+  }
+}
@@ -1,13 +1,13 @@
 package com.ctrip.framework.apollo.spring.annotation;
 
 import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.spring.property.JsonValueParser;
 import com.ctrip.framework.apollo.spring.property.PlaceholderHelper;
 import com.ctrip.framework.apollo.spring.property.SpringValue;
 import com.ctrip.framework.apollo.spring.property.SpringValueRegistry;
 import com.ctrip.framework.apollo.spring.util.SpringInjector;
 import com.ctrip.framework.apollo.util.ConfigUtil;
 import com.google.common.base.Preconditions;
-import com.google.gson.Gson;
 import java.lang.reflect.Field;
 import java.lang.reflect.Method;
 import java.lang.reflect.Type;
@@ -27,16 +27,17 @@ import org.springframework.util.ReflectionUtils;
 public class ApolloJsonValueProcessor extends ApolloProcessor implements BeanFactoryAware {
 
   private static final Logger logger = LoggerFactory.getLogger(ApolloJsonValueProcessor.class);
-  private static final Gson gson = new Gson();
 
   private final ConfigUtil configUtil;
   private final PlaceholderHelper placeholderHelper;
+  private final JsonValueParser jsonValueParser;
   private final SpringValueRegistry springValueRegistry;
   private ConfigurableBeanFactory beanFactory;
 
   public ApolloJsonValueProcessor() {
     configUtil = ApolloInjector.getInstance(ConfigUtil.class);
     placeholderHelper = SpringInjector.getInstance(PlaceholderHelper.class);
+    jsonValueParser = SpringInjector.getInstance(JsonValueParser.class);
     springValueRegistry = SpringInjector.getInstance(SpringValueRegistry.class);
   }
 
@@ -110,7 +111,7 @@ public class ApolloJsonValueProcessor extends ApolloProcessor implements BeanFac
 
   private Object parseJsonValue(String json, Type targetType) {
     try {
-      return gson.fromJson(json, targetType);
+      return jsonValueParser.parse(json, targetType);
     } catch (Throwable ex) {
       logger.error("Parsing json '{}' to type {} failed!", json, targetType, ex);
       throw ex;
@@ -2,6 +2,7 @@ package com.ctrip.framework.apollo.spring.config;
 
 import com.ctrip.framework.apollo.build.ApolloInjector;
 import com.ctrip.framework.apollo.spring.property.AutoUpdateConfigChangeListener;
+import com.ctrip.framework.apollo.spring.property.ConfigurationPropertiesRebinder;
 import com.ctrip.framework.apollo.spring.util.SpringInjector;
 import com.ctrip.framework.apollo.util.ConfigUtil;
 import com.google.common.collect.ImmutableSortedSet;
@@ -29,6 +30,7 @@ import java.util.Collection;
 import java.util.Iterator;
 import org.springframework.core.env.MutablePropertySources;
 import org.springframework.core.env.PropertySource;
+import org.springframework.util.ClassUtils;
 
 /**
  * Apollo Property Sources processor for Spring Annotation Based Application. <br /> <br />
@@ -43,6 +45,9 @@ import org.springframework.core.env.PropertySource;
 public class PropertySourcesProcessor implements BeanFactoryPostProcessor, EnvironmentAware, PriorityOrdered {
   private static final Multimap<Integer, String> NAMESPACE_NAMES = LinkedHashMultimap.create();
   private static final Set<BeanFactory> AUTO_UPDATE_INITIALIZED_BEAN_FACTORIES = Sets.newConcurrentHashSet();
+  private static final Set<BeanFactory> AUTO_REBIND_INITIALIZED_BEAN_FACTORIES = Sets.newConcurrentHashSet();
+  private static final String CONFIGURATION_PROPERTIES_CLASS_NAME =
+      "org.springframework.boot.context.properties.ConfigurationProperties";
 
   private final ConfigPropertySourceFactory configPropertySourceFactory = SpringInjector
       .getInstance(ConfigPropertySourceFactory.class);
@@ -57,6 +62,7 @@ public class PropertySourcesProcessor implements BeanFactoryPostProcessor, Envir
   public void postProcessBeanFactory(ConfigurableListableBeanFactory beanFactory) throws BeansException {
     initializePropertySources();
     initializeAutoUpdatePropertiesFeature(beanFactory);
+    initializeAutoRebindConfigurationPropertiesFeature(beanFactory);
   }
 
   private void initializePropertySources() {
@@ -126,6 +132,24 @@ public class PropertySourcesProcessor implements BeanFactoryPostProcessor, Envir
     }
   }
 
+  private void initializeAutoRebindConfigurationPropertiesFeature(ConfigurableListableBeanFactory beanFactory) {
+    if (!configUtil.isAutoUpdateConfigurationPropertiesEnabled()
+        || !ClassUtils.isPresent(CONFIGURATION_PROPERTIES_CLASS_NAME, beanFactory.getBeanClassLoader())
+        || !AUTO_REBIND_INITIALIZED_BEAN_FACTORIES.add(beanFactory)) {
+      return;
+    }
+
+    ConfigurationPropertiesRebinder configurationPropertiesRebinder = new ConfigurationPropertiesRebinder(
+        beanFactory);
+    // collects the @ConfigurationProperties beans when they are created
+    beanFactory.addBeanPostProcessor(configurationPropertiesRebinder);
+
+    List<ConfigPropertySource> configPropertySources = configPropertySourceFactory.getAllConfigPropertySources();
+    for (ConfigPropertySource configPropertySource : configPropertySources) {
+      configPropertySource.addChangeListener(configurationPropertiesRebinder);
+    }
+  }
+
   @Override
   public void setEnvironment(Environment environment) {
     //it is safe enough to cast as all known environment is derived from ConfigurableEnvironment
@@ -142,5 +166,6 @@ public class PropertySourcesProcessor implements BeanFactoryPostProcessor, Envir
   static void reset() {
     NAMESPACE_NAMES.clear();
     AUTO_UPDATE_INITIALIZED_BEAN_FACTORIES.clear();
+    AUTO_REBIND_INITIALIZED_BEAN_FACTORIES.clear();
   }
 }
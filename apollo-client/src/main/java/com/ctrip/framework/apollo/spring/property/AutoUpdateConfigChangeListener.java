@@ -5,7 +5,6 @@ import com.ctrip.framework.apollo.enums.PropertyChangeType;
 import com.ctrip.framework.apollo.model.ConfigChange;
 import com.ctrip.framework.apollo.model.ConfigChangeEvent;
 import com.ctrip.framework.apollo.spring.util.SpringInjector;
-import com.google.gson.Gson;
 import java.lang.reflect.Field;
 import java.lang.reflect.Type;
 import java.util.Collection;
@@ -31,7 +30,7 @@ public class AutoUpdateConfigChangeListener implements ConfigChangeListener{
   private final TypeConverter typeConverter;
   private final PlaceholderHelper placeholderHelper;
   private final SpringValueRegistry springValueRegistry;
-  private final Gson gson;
+  private final JsonValueParser jsonValueParser;
 
   public AutoUpdateConfigChangeListener(Environment environment, ConfigurableListableBeanFactory beanFactory){
     this.typeConverterHasConvertIfNecessaryWithFieldParameter = testTypeConverterHasConvertIfNecessaryWithFieldParameter();
@@ -40,7 +39,7 @@ public class AutoUpdateConfigChangeListener implements ConfigChangeListener{
     this.environment = environment;
     this.placeholderHelper = SpringInjector.getInstance(PlaceholderHelper.class);
     this.springValueRegistry = SpringInjector.getInstance(SpringValueRegistry.class);
-    this.gson = new Gson();
+    this.jsonValueParser = SpringInjector.getInstance(JsonValueParser.class);
   }
 
   @Override
@@ -106,7 +105,7 @@ public class AutoUpdateConfigChangeListener implements ConfigChangeListener{
 
   private Object parseJsonValue(String json, Type targetType) {
     try {
-      return gson.fromJson(json, targetType);
+      return jsonValueParser.parse(json, targetType);
     } catch (Throwable ex) {
       logger.error("Parsing json '{}' to type {} failed!", json, targetType, ex);
       throw ex;
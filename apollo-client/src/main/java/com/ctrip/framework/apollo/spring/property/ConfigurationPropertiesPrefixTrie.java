@@ -0,0 +1,108 @@
+package com.ctrip.framework.apollo.spring.property;
+
+import com.google.common.base.Splitter;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A trie of <code>@ConfigurationProperties</code> prefixes, segmented by dots, used to find out which
+ * beans are affected by a changed property key.
+ *
+ * <p>Segments are normalized in the relaxed way spring boot binds them, i.e. case insensitive and
+ * ignoring '-' and '_', so that <code>my-app.max_size</code> and <code>myApp.maxSize</code> share
+ * the same path. List indexes such as <code>servers[0]</code> are reduced to the segment itself.</p>
+ */
+public class ConfigurationPropertiesPrefixTrie {
+  private static final Splitter SEGMENT_SPLITTER = Splitter.on('.').omitEmptyStrings().trimResults();
+
+  private final Node root = new Node();
+
+  public void register(String prefix, String beanName) {
+    Node node = root;
+    for (String segment : SEGMENT_SPLITTER.split(Strings.nullToEmpty(prefix))) {
+      node = node.getOrCreateChild(normalize(segment));
+    }
+    node.beanNames.add(beanName);
+  }
+
+  public void unregister(String beanName) {
+    unregister(root, beanName);
+  }
+
+  /**
+   * @return the bean names whose prefix is the key itself or one of its ancestors
+   */
+  public Set<String> match(String key) {
+    Set<String> result = Sets.newLinkedHashSet();
+    collect(key, result);
+    return result;
+  }
+
+  public Set<String> match(Collection<String> keys) {
+    Set<String> result = Sets.newLinkedHashSet();
+    for (String key : keys) {
+      collect(key, result);
+    }
+    return result;
+  }
+
+  private void collect(String key, Set<String> result) {
+    Node node = root;
+    result.addAll(node.beanNames);
+    for (String segment : SEGMENT_SPLITTER.split(Strings.nullToEmpty(key))) {
+      node = node.children.get(normalize(segment));
+      if (node == null) {
+        return;
+      }
+      result.addAll(node.beanNames);
+    }
+  }
+
+  private void unregister(Node node, String beanName) {
+    node.beanNames.remove(beanName);
+    for (Node child : node.children.values()) {
+      unregister(child, beanName);
+    }
+  }
+
+  static String normalize(String segment) {
+    int indexStart = segment.indexOf('[');
+    if (indexStart >= 0) {
+      segment = segment.substring(0, indexStart);
+    }
+    StringBuilder normalized = new StringBuilder(segment.length());
+    for (int i = 0; i < segment.length(); i++) {
+      char c = segment.charAt(i);
+      if (c == '-' || c == '_') {
+        continue;
+      }
+      normalized.append(c);
+    }
+    return normalized.toString().toLowerCase(Locale.ROOT);
+  }
+
+  private static class Node {
+    private final Map<String, Node> children = Maps.newConcurrentMap();
+    private final Set<String> beanNames = Collections.newSetFromMap(Maps.<String, Boolean>newConcurrentMap());
+
+    private Node getOrCreateChild(String segment) {
+      Node child = children.get(segment);
+      if (child == null) {
+        synchronized (this) {
+          child = children.get(segment);
+          if (child == null) {
+            child = new Node();
+            children.put(segment, child);
+          }
+        }
+      }
+      return child;
+    }
+  }
+}
@@ -0,0 +1,146 @@
+package com.ctrip.framework.apollo.spring.property;
+
+import com.ctrip.framework.apollo.ConfigChangeListener;
+import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.metrics.Counter;
+import com.ctrip.framework.apollo.metrics.Histogram;
+import com.ctrip.framework.apollo.metrics.MetricNames;
+import com.ctrip.framework.apollo.metrics.MetricsRegistry;
+import com.ctrip.framework.apollo.model.ConfigChangeEvent;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.google.common.base.Strings;
+import com.google.common.collect.Maps;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.BeansException;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.beans.factory.config.ConfigurableListableBeanFactory;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.ConfigurationPropertiesBindingPostProcessor;
+import org.springframework.core.annotation.AnnotationUtils;
+import org.springframework.util.CollectionUtils;
+
+/**
+ * Rebind <code>@ConfigurationProperties</code> beans in place when the keys under their prefix are changed.
+ *
+ * <p>It runs on the apollo config change listener executor, and only the affected singleton beans are
+ * rebound, by the same {@link ConfigurationPropertiesBindingPostProcessor} that bound them on startup.
+ * Keys removed from apollo are not reset, as the binder only applies the properties that are present.</p>
+ */
+public class ConfigurationPropertiesRebinder implements ConfigChangeListener, BeanPostProcessor {
+  private static final Logger logger = LoggerFactory.getLogger(ConfigurationPropertiesRebinder.class);
+
+  private final ConfigurableListableBeanFactory beanFactory;
+  private final ConfigurationPropertiesPrefixTrie prefixTrie = new ConfigurationPropertiesPrefixTrie();
+  private final Map<String, Object> configurationPropertiesBeans = Maps.newConcurrentMap();
+  private final Histogram rebindLatency;
+  private final Counter rebindFailure;
+
+  public ConfigurationPropertiesRebinder(ConfigurableListableBeanFactory beanFactory) {
+    this.beanFactory = beanFactory;
+    MetricsRegistry metricsRegistry = ApolloInjector.getInstance(MetricsRegistry.class);
+    rebindLatency = metricsRegistry.histogram(MetricNames.CONFIGURATION_PROPERTIES_REBIND_LATENCY);
+    rebindFailure = metricsRegistry.counter(MetricNames.CONFIGURATION_PROPERTIES_REBIND_FAILURE);
+  }
+
+  @Override
+  public Object postProcessBeforeInitialization(Object bean, String beanName) throws BeansException {
+    if (!beanFactory.containsBeanDefinition(beanName) || !beanFactory.isSingleton(beanName)) {
+      return bean;
+    }
+
+    ConfigurationProperties annotation = findConfigurationProperties(bean, beanName);
+    if (annotation == null) {
+      return bean;
+    }
+
+    String prefix = Strings.isNullOrEmpty(annotation.prefix()) ? annotation.value() : annotation.prefix();
+    // keep the raw bean so that we never rebind an aop proxy
+    configurationPropertiesBeans.put(beanName, bean);
+    prefixTrie.register(prefix, beanName);
+    logger.debug("Monitoring @ConfigurationProperties bean {} with prefix {}", beanName, prefix);
+
+    return bean;
+  }
+
+  @Override
+  public Object postProcessAfterInitialization(Object bean, String beanName) throws BeansException {
+    return bean;
+  }
+
+  @Override
+  public void onChange(ConfigChangeEvent changeEvent) {
+    Set<String> keys = changeEvent.changedKeys();
+    if (CollectionUtils.isEmpty(keys) || configurationPropertiesBeans.isEmpty()) {
+      return;
+    }
+
+    Set<String> beanNames = prefixTrie.match(keys);
+    if (beanNames.isEmpty()) {
+      return;
+    }
+
+    Transaction transaction = Tracer.newTransaction("Apollo.ConfigurationProperties", "rebind");
+    long start = System.nanoTime();
+    try {
+      for (String beanName : beanNames) {
+        rebind(beanName);
+      }
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      long latencyInMicros = TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start);
+      rebindLatency.record(latencyInMicros);
+      transaction.addData("beans", beanNames.size());
+      transaction.complete();
+      logger.info("Rebind {} @ConfigurationProperties beans for namespace {} in {} ms", beanNames.size(),
+          changeEvent.getNamespace(), TimeUnit.MICROSECONDS.toMillis(latencyInMicros));
+    }
+  }
+
+  private void rebind(String beanName) {
+    Object bean = configurationPropertiesBeans.get(beanName);
+    if (bean == null) {
+      return;
+    }
+
+    try {
+      ConfigurationPropertiesBindingPostProcessor binder = findBinder();
+      if (binder != null) {
+        binder.postProcessBeforeInitialization(bean, beanName);
+      } else {
+        beanFactory.initializeBean(bean, beanName);
+      }
+      logger.info("Auto rebind apollo changed @ConfigurationProperties bean successfully, bean: {}", beanName);
+    } catch (Throwable ex) {
+      rebindFailure.increment();
+      Tracer.logError(ex);
+      logger.error("Auto rebind apollo changed @ConfigurationProperties bean failed, bean: {}", beanName, ex);
+    }
+  }
+
+  private ConfigurationPropertiesBindingPostProcessor findBinder() {
+    String[] binderNames = beanFactory
+        .getBeanNamesForType(ConfigurationPropertiesBindingPostProcessor.class, false, false);
+    if (binderNames.length == 0) {
+      return null;
+    }
+    return beanFactory.getBean(binderNames[0], ConfigurationPropertiesBindingPostProcessor.class);
+  }
+
+  private ConfigurationProperties findConfigurationProperties(Object bean, String beanName) {
+    ConfigurationProperties annotation = AnnotationUtils
+        .findAnnotation(bean.getClass(), ConfigurationProperties.class);
+    if (annotation == null) {
+      // @Bean methods annotated with @ConfigurationProperties
+      annotation = beanFactory.findAnnotationOnBean(beanName, ConfigurationProperties.class);
+    }
+    return annotation;
+  }
+}
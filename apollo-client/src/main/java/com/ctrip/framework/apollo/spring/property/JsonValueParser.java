@@ -0,0 +1,121 @@
+package com.ctrip.framework.apollo.spring.property;
+
+import com.ctrip.framework.apollo.build.ApolloInjector;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.google.common.base.Objects;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParser;
+import com.google.gson.TypeAdapter;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.Type;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parse json values for <code>@ApolloJsonValue</code>.
+ *
+ * <p>The same json content is usually injected into many beans and is re-parsed on every config
+ * change, so the parsed json tree is cached by content, and the type adapter of each target type is
+ * resolved only once. Every bean still gets its own deserialized instance unless instance sharing is
+ * enabled, which is only safe when the injected values are never mutated.</p>
+ */
+public class JsonValueParser {
+  private static final long MAX_CACHE_SIZE = 200;
+  private static final long CACHE_EXPIRE_MINUTES = 1;
+
+  private final Gson gson = new Gson();
+  private final JsonParser jsonParser = new JsonParser();
+  private final Map<Type, TypeAdapter<?>> typeAdapters = Maps.newConcurrentMap();
+  private final Cache<String, JsonElement> jsonTreeCache;
+  private final Cache<ParsedValueKey, Object> parsedValueCache;
+  private final boolean instanceSharingEnabled;
+
+  public JsonValueParser() {
+    instanceSharingEnabled = ApolloInjector.getInstance(ConfigUtil.class).isJsonValueInstanceSharingEnabled();
+    jsonTreeCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHE_SIZE)
+        .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).build();
+    parsedValueCache = CacheBuilder.newBuilder().maximumSize(MAX_CACHE_SIZE)
+        .expireAfterAccess(CACHE_EXPIRE_MINUTES, TimeUnit.MINUTES).build();
+  }
+
+  public Object parse(final String json, final Type targetType) {
+    if (!instanceSharingEnabled) {
+      return doParse(json, targetType);
+    }
+
+    // the cache does not allow null values, e.g. parsing empty string
+    Object value = parsedValueCache.getIfPresent(new ParsedValueKey(json, targetType));
+    if (value == null) {
+      value = doParse(json, targetType);
+      if (value != null) {
+        parsedValueCache.put(new ParsedValueKey(json, targetType), value);
+      }
+    }
+    return value;
+  }
+
+  private Object doParse(String json, Type targetType) {
+    return getTypeAdapter(targetType).fromJsonTree(getJsonTree(json));
+  }
+
+  private JsonElement getJsonTree(final String json) {
+    try {
+      return jsonTreeCache.get(json, new Callable<JsonElement>() {
+        @Override
+        public JsonElement call() throws Exception {
+          return jsonParser.parse(json);
+        }
+      });
+    } catch (ExecutionException ex) {
+      throw new IllegalStateException(ex.getCause());
+    } catch (RuntimeException ex) {
+      // UncheckedExecutionException, so that the parse error is thrown as it is
+      if (ex.getCause() instanceof RuntimeException) {
+        throw (RuntimeException) ex.getCause();
+      }
+      throw ex;
+    }
+  }
+
+  private TypeAdapter<?> getTypeAdapter(Type targetType) {
+    TypeAdapter<?> typeAdapter = typeAdapters.get(targetType);
+    if (typeAdapter == null) {
+      typeAdapter = gson.getAdapter(TypeToken.get(targetType));
+      typeAdapters.put(targetType, typeAdapter);
+    }
+    return typeAdapter;
+  }
+
+  private static class ParsedValueKey {
+    private final String json;
+    private final Type targetType;
+
+    private ParsedValueKey(String json, Type targetType) {
+      this.json = json;
+      this.targetType = targetType;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (o == null || getClass() != o.getClass()) {
+        return false;
+      }
+      ParsedValueKey that = (ParsedValueKey) o;
+      return Objects.equal(json, that.json) && Objects.equal(targetType, that.targetType);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hashCode(json, targetType);
+    }
+  }
+}
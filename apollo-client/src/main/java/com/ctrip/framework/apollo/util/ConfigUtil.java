@@ -38,8 +38,12 @@ public class ConfigUtil {
   private TimeUnit configCacheExpireTimeUnit = TimeUnit.MINUTES;//1 minute
   private long longPollingInitialDelayInMills = 2000;//2 seconds
   private boolean autoUpdateInjectedSpringProperties = true;
+  private boolean autoUpdateConfigurationProperties = false;
+  private boolean jsonValueInstanceSharing = false;
   private final RateLimiter warnLogRateLimiter;
   private boolean propertiesOrdered = false;
+  private boolean metricsJmxExportEnabled = true;
+  private boolean notificationStreamingEnabled = false;
 
   public ConfigUtil() {
     warnLogRateLimiter = RateLimiter.create(0.017); // 1 warning log output per minute
@@ -51,7 +55,11 @@ public class ConfigUtil {
     initMaxConfigCacheSize();
     initLongPollingInitialDelayInMills();
     initAutoUpdateInjectedSpringProperties();
+    initAutoUpdateConfigurationProperties();
+    initJsonValueInstanceSharing();
     initPropertiesOrdered();
+    initMetricsJmxExport();
+    initNotificationStreaming();
   }
 
   /**
@@ -319,6 +327,43 @@ public class ConfigUtil {
     return autoUpdateInjectedSpringProperties;
   }
 
+  private void initAutoUpdateConfigurationProperties() {
+    // 1. Get from System Property
+    String enableAutoUpdate = System.getProperty("apollo.autoUpdateConfigurationProperties");
+    if (Strings.isNullOrEmpty(enableAutoUpdate)) {
+      // 2. Get from app.properties
+      enableAutoUpdate = Foundation.app()
+          .getProperty("apollo.autoUpdateConfigurationProperties", null);
+    }
+    if (!Strings.isNullOrEmpty(enableAutoUpdate)) {
+      autoUpdateConfigurationProperties = Boolean.parseBoolean(enableAutoUpdate.trim());
+    }
+  }
+
+  public boolean isAutoUpdateConfigurationPropertiesEnabled() {
+    return autoUpdateConfigurationProperties;
+  }
+
+  private void initJsonValueInstanceSharing() {
+    // 1. Get from System Property
+    String enableSharing = System.getProperty("apollo.jsonValueInstanceSharing");
+    if (Strings.isNullOrEmpty(enableSharing)) {
+      // 2. Get from app.properties
+      enableSharing = Foundation.app().getProperty("apollo.jsonValueInstanceSharing", null);
+    }
+    if (!Strings.isNullOrEmpty(enableSharing)) {
+      jsonValueInstanceSharing = Boolean.parseBoolean(enableSharing.trim());
+    }
+  }
+
+  /**
+   * Whether the beans injected with the same @ApolloJsonValue content and type share the same
+   * instance, only safe when the injected values are immutable
+   */
+  public boolean isJsonValueInstanceSharingEnabled() {
+    return jsonValueInstanceSharing;
+  }
+
   private void initPropertiesOrdered() {
     String enablePropertiesOrdered = System.getProperty(APOLLO_PROPERTY_ORDER_ENABLE);
 
@@ -339,4 +384,43 @@ public class ConfigUtil {
   public boolean isPropertiesOrderEnabled() {
     return propertiesOrdered;
   }
+
+  private void initMetricsJmxExport() {
+    // 1. Get from System Property
+    String enableJmxExport = System.getProperty("apollo.metrics.jmx.enabled");
+    if (Strings.isNullOrEmpty(enableJmxExport)) {
+      // 2. Get from app.properties
+      enableJmxExport = Foundation.app().getProperty("apollo.metrics.jmx.enabled", null);
+    }
+    if (!Strings.isNullOrEmpty(enableJmxExport)) {
+      metricsJmxExportEnabled = Boolean.parseBoolean(enableJmxExport.trim());
+    }
+  }
+
+  /**
+   * Whether the apollo client metrics are exported via JMX
+   */
+  public boolean isMetricsJmxExportEnabled() {
+    return metricsJmxExportEnabled;
+  }
+
+  private void initNotificationStreaming() {
+    // 1. Get from System Property
+    String enableStreaming = System.getProperty("apollo.notification.streaming.enabled");
+    if (Strings.isNullOrEmpty(enableStreaming)) {
+      // 2. Get from app.properties
+      enableStreaming = Foundation.app().getProperty("apollo.notification.streaming.enabled", null);
+    }
+    if (!Strings.isNullOrEmpty(enableStreaming)) {
+      notificationStreamingEnabled = Boolean.parseBoolean(enableStreaming.trim());
+    }
+  }
+
+  /**
+   * Whether to receive notifications from a server-sent events stream instead of long polling, it
+   * falls back to long polling when the config service doesn't support streaming
+   */
+  public boolean isNotificationStreamingEnabled() {
+    return notificationStreamingEnabled;
+  }
 }
@@ -0,0 +1,24 @@
+package com.ctrip.framework.apollo.util.http;
+
+import java.io.Closeable;
+
+/**
+ * Handler of a server-sent events stream opened by {@link HttpUtil#doGetEventStream(HttpRequest, EventStreamHandler)}
+ */
+public interface EventStreamHandler {
+
+  /**
+   * Called once the stream is connected
+   *
+   * @param stream closing it from another thread ends the stream
+   */
+  void onOpen(Closeable stream);
+
+  /**
+   * Called for each event, heartbeat comments are not passed
+   *
+   * @param event the event name, "message" if not specified
+   * @param data the data lines joined with '\n'
+   */
+  void onEvent(String event, String data);
+}
@@ -7,6 +7,8 @@ import com.ctrip.framework.apollo.util.ConfigUtil;
 import com.google.common.base.Function;
 import com.google.common.io.CharStreams;
 import com.google.gson.Gson;
+import java.io.BufferedReader;
+import java.io.Closeable;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
@@ -129,7 +131,8 @@ public class HttpUtil {
           throw ex;
         }
         // for status codes like 404, IOException is expected when calling conn.getInputStream()
-        throw new ApolloConfigStatusCodeException(statusCode, ex);
+        throw new ApolloConfigStatusCodeException(statusCode, ex,
+            parseRetryAfter(conn.getHeaderField("Retry-After")));
       }
 
       if (statusCode == 200) {
@@ -165,4 +168,124 @@ public class HttpUtil {
         String.format("Get operation failed for %s", httpRequest.getUrl()));
   }
 
+  /**
+   * Do get operation for a server-sent events stream, the events are passed to the handler until the
+   * server ends the stream.
+   *
+   * @param httpRequest the request, its read timeout should be longer than the server's heartbeat interval
+   * @param handler     the handler of the events
+   * @throws ApolloConfigStatusCodeException if the response code is not 200
+   * @throws ApolloConfigException           if any other error happened
+   */
+  public void doGetEventStream(HttpRequest httpRequest, EventStreamHandler handler) {
+    int statusCode;
+    HttpURLConnection conn = null;
+    try {
+      conn = (HttpURLConnection) new URL(httpRequest.getUrl()).openConnection();
+
+      conn.setRequestMethod("GET");
+      conn.setRequestProperty("Accept", "text/event-stream");
+
+      Map<String, String> headers = httpRequest.getHeaders();
+      if (headers != null && headers.size() > 0) {
+        for (Map.Entry<String, String> entry : headers.entrySet()) {
+          conn.setRequestProperty(entry.getKey(), entry.getValue());
+        }
+      }
+
+      conn.setConnectTimeout(httpRequest.getConnectTimeout() < 0 ? m_configUtil.getConnectTimeout()
+          : httpRequest.getConnectTimeout());
+      conn.setReadTimeout(httpRequest.getReadTimeout() < 0 ? m_configUtil.getReadTimeout()
+          : httpRequest.getReadTimeout());
+
+      conn.connect();
+
+      statusCode = conn.getResponseCode();
+      if (statusCode != 200) {
+        InputStream errorStream = conn.getErrorStream();
+        if (errorStream != null) {
+          try (InputStreamReader esr = new InputStreamReader(errorStream, StandardCharsets.UTF_8)) {
+            CharStreams.toString(esr);
+          } catch (IOException ioe) {
+            //ignore
+          }
+        }
+        throw new ApolloConfigStatusCodeException(statusCode,
+            String.format("Get event stream failed for %s", httpRequest.getUrl()),
+            parseRetryAfter(conn.getHeaderField("Retry-After")));
+      }
+
+      final HttpURLConnection stream = conn;
+      handler.onOpen(new Closeable() {
+        @Override
+        public void close() {
+          stream.disconnect();
+        }
+      });
+
+      try (BufferedReader reader = new BufferedReader(
+          new InputStreamReader(conn.getInputStream(), StandardCharsets.UTF_8))) {
+        readEvents(reader, handler);
+      }
+    } catch (ApolloConfigStatusCodeException ex) {
+      throw ex;
+    } catch (Throwable ex) {
+      throw new ApolloConfigException("Could not complete get event stream operation", ex);
+    } finally {
+      if (conn != null) {
+        conn.disconnect();
+      }
+    }
+  }
+
+  /**
+   * @return the seconds of the Retry-After header, e.g. of the 429 responses, or 0 if absent or not in
+   * seconds
+   */
+  static long parseRetryAfter(String retryAfter) {
+    if (retryAfter == null) {
+      return 0;
+    }
+    try {
+      return Math.max(0, Long.parseLong(retryAfter.trim()));
+    } catch (NumberFormatException ex) {
+      //the http-date form is not sent by the config service
+      return 0;
+    }
+  }
+
+  static void readEvents(BufferedReader reader, EventStreamHandler handler) throws IOException {
+    String event = null;
+    StringBuilder data = null;
+    String line;
+    while ((line = reader.readLine()) != null) {
+      if (line.isEmpty()) {
+        if (data != null) {
+          handler.onEvent(event == null ? "message" : event, data.toString());
+        }
+        event = null;
+        data = null;
+        continue;
+      }
+      if (line.startsWith(":")) {
+        //comment, e.g. heartbeat
+        continue;
+      }
+      int colon = line.indexOf(':');
+      String field = colon < 0 ? line : line.substring(0, colon);
+      String value = colon < 0 ? "" : line.substring(colon + 1);
+      if (value.startsWith(" ")) {
+        value = value.substring(1);
+      }
+      if ("event".equals(field)) {
+        event = value;
+      } else if ("data".equals(field)) {
+        if (data == null) {
+          data = new StringBuilder(value);
+        } else {
+          data.append('\n').append(value);
+        }
+      }
+    }
+  }
 }
@@ -0,0 +1,201 @@
+package com.ctrip.framework.apollo.util.yaml;
+
+import com.ctrip.framework.apollo.core.utils.StringUtils;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.Sets;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Properties;
+import java.util.Set;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.Constructor;
+import org.yaml.snakeyaml.error.Mark;
+import org.yaml.snakeyaml.events.CollectionStartEvent;
+import org.yaml.snakeyaml.events.Event;
+import org.yaml.snakeyaml.events.NodeEvent;
+import org.yaml.snakeyaml.events.ScalarEvent;
+import org.yaml.snakeyaml.nodes.NodeId;
+import org.yaml.snakeyaml.nodes.ScalarNode;
+import org.yaml.snakeyaml.nodes.Tag;
+import org.yaml.snakeyaml.parser.ParserException;
+import org.yaml.snakeyaml.resolver.Resolver;
+
+/**
+ * Flatten yaml content into properties straight from the snakeyaml parser events, without building
+ * the intermediate object tree of each document.
+ *
+ * <p>The flattened result is the same as {@link YamlParser}'s tree based transformation. Content using
+ * yaml features which need the whole tree, i.e. anchors, aliases, merge keys, complex keys and
+ * explicitly tagged collections, is rejected with {@link UnsupportedYamlException} so that the caller
+ * could fall back to the tree based transformation.</p>
+ *
+ * @since 1.7.0
+ */
+class YamlEventFlattener {
+  private static final String DOCUMENT_KEY = "document";
+  private static final Set<Tag> SUPPORTED_SCALAR_TAGS = ImmutableSet
+      .of(Tag.STR, Tag.INT, Tag.FLOAT, Tag.BOOL, Tag.NULL, Tag.TIMESTAMP, Tag.BINARY);
+
+  private final Resolver resolver = new Resolver();
+  private final ScalarConstructor scalarConstructor = new ScalarConstructor();
+
+  /**
+   * Flatten all the documents of the yaml content into the properties sink, later documents override
+   * the former ones
+   */
+  void flatten(String yamlContent, Properties sink) {
+    Yaml yaml = new Yaml();
+    Deque<Frame> frames = new ArrayDeque<>();
+
+    for (Event event : yaml.parse(new StringReader(yamlContent))) {
+      if (event.is(Event.ID.Alias)) {
+        throw new UnsupportedYamlException("alias");
+      }
+      if (event instanceof NodeEvent && ((NodeEvent) event).getAnchor() != null) {
+        throw new UnsupportedYamlException("anchor");
+      }
+
+      if (event.is(Event.ID.Scalar)) {
+        onScalar((ScalarEvent) event, frames, sink);
+      } else if (event.is(Event.ID.MappingStart)) {
+        checkCollectionTag((CollectionStartEvent) event, Tag.MAP);
+        // the root mapping of a document has no path
+        String path = frames.isEmpty() ? null : nextPath(frames);
+        frames.push(new Frame(true, path, event.getStartMark()));
+      } else if (event.is(Event.ID.SequenceStart)) {
+        checkCollectionTag((CollectionStartEvent) event, Tag.SEQ);
+        frames.push(new Frame(false, nextPath(frames), event.getStartMark()));
+      } else if (event.is(Event.ID.MappingEnd) || event.is(Event.ID.SequenceEnd)) {
+        frames.pop();
+        valueCompleted(frames);
+      }
+      // stream and document events need no handling
+    }
+  }
+
+  private void onScalar(ScalarEvent event, Deque<Frame> frames, Properties sink) {
+    Object value = constructScalar(event);
+    Frame parent = frames.peek();
+
+    if (parent == null) {
+      // a document could be a text literal, null documents are skipped
+      if (value != null) {
+        sink.put(DOCUMENT_KEY, asString(value));
+      }
+      return;
+    }
+
+    if (parent.mapping && parent.expectingKey) {
+      if (!parent.keys.add(value)) {
+        throw new ParserException("while parsing MappingNode", parent.startMark, "Duplicate key: " + value,
+            event.getEndMark());
+      }
+      // yaml can have numbers as keys
+      String key = value instanceof CharSequence ? value.toString() : "[" + value + "]";
+      parent.currentPath = join(parent.path, key);
+      parent.expectingKey = false;
+      return;
+    }
+
+    sink.put(nextPath(frames), asString(value));
+    valueCompleted(frames);
+  }
+
+  /**
+   * @return the path of the next value in the current collection
+   */
+  private String nextPath(Deque<Frame> frames) {
+    Frame parent = frames.peek();
+    if (parent == null) {
+      return DOCUMENT_KEY;
+    }
+    if (parent.mapping) {
+      if (parent.expectingKey) {
+        throw new UnsupportedYamlException("complex key");
+      }
+      return parent.currentPath;
+    }
+    return join(parent.path, "[" + parent.index + "]");
+  }
+
+  private void valueCompleted(Deque<Frame> frames) {
+    Frame parent = frames.peek();
+    if (parent == null) {
+      return;
+    }
+    if (parent.mapping) {
+      parent.expectingKey = true;
+    } else {
+      parent.index++;
+    }
+  }
+
+  private Object constructScalar(ScalarEvent event) {
+    Tag tag;
+    if (event.getTag() == null || "!".equals(event.getTag())) {
+      tag = resolver.resolve(NodeId.scalar, event.getValue(), event.getImplicit().canOmitTagInPlainScalar());
+    } else {
+      tag = new Tag(event.getTag());
+    }
+    // merge keys and custom types
+    if (!SUPPORTED_SCALAR_TAGS.contains(tag)) {
+      throw new UnsupportedYamlException("tag " + tag);
+    }
+
+    return scalarConstructor.constructTypedScalar(
+        new ScalarNode(tag, event.getValue(), event.getStartMark(), event.getEndMark(), event.getStyle()));
+  }
+
+  private void checkCollectionTag(CollectionStartEvent event, Tag defaultTag) {
+    if (event.getTag() != null && !event.getImplicit() && !defaultTag.getValue().equals(event.getTag())) {
+      throw new UnsupportedYamlException("tag " + event.getTag());
+    }
+  }
+
+  private String join(String path, String key) {
+    if (StringUtils.isBlank(path)) {
+      return key;
+    }
+    if (key.startsWith("[")) {
+      return path + key;
+    }
+    return path + '.' + key;
+  }
+
+  private String asString(Object value) {
+    if (value instanceof String) {
+      return (String) value;
+    }
+    return value != null ? value.toString() : "";
+  }
+
+  private static class Frame {
+    private final boolean mapping;
+    private final String path;
+    private final Mark startMark;
+    private final Set<Object> keys;
+    private boolean expectingKey = true;
+    private String currentPath;
+    private int index;
+
+    private Frame(boolean mapping, String path, Mark startMark) {
+      this.mapping = mapping;
+      this.path = path;
+      this.startMark = startMark;
+      this.keys = mapping ? Sets.newHashSet() : null;
+    }
+  }
+
+  private static class ScalarConstructor extends Constructor {
+    private Object constructTypedScalar(ScalarNode node) {
+      return getConstructor(node).construct(node);
+    }
+  }
+
+  static class UnsupportedYamlException extends RuntimeException {
+    UnsupportedYamlException(String feature) {
+      super("Yaml feature not supported by event based flattening: " + feature);
+    }
+  }
+}
@@ -29,10 +29,40 @@ public class YamlParser {
 
   private PropertiesFactory propertiesFactory = ApolloInjector.getInstance(PropertiesFactory.class);
 
+  private volatile boolean eventFlatteningSupported = true;
+
   /**
    * Transform yaml content to properties
    */
   public Properties yamlToProperties(String yamlContent) {
+    if (eventFlatteningSupported) {
+      try {
+        return flattenYamlEvents(yamlContent);
+      } catch (YamlEventFlattener.UnsupportedYamlException ex) {
+        logger.debug("Fall back to tree based yaml transformation, reason: {}", ex.getMessage());
+      } catch (LinkageError ex) {
+        // the snakeyaml event api is not compatible with the version on the classpath
+        eventFlatteningSupported = false;
+        logger.warn("Event based yaml transformation is not supported, fall back to tree based transformation", ex);
+      }
+    }
+
+    return treeYamlToProperties(yamlContent);
+  }
+
+  /**
+   * Transform yaml content to properties by flattening the parser events, without building the object tree
+   */
+  Properties flattenYamlEvents(String yamlContent) {
+    Properties result = propertiesFactory.getPropertiesInstance();
+    new YamlEventFlattener().flatten(yamlContent, result);
+    return result;
+  }
+
+  /**
+   * Transform yaml content to properties by loading the object tree of each document
+   */
+  Properties treeYamlToProperties(String yamlContent) {
     Yaml yaml = createYaml();
     final Properties result = propertiesFactory.getPropertiesInstance();
     process(new MatchCallback() {
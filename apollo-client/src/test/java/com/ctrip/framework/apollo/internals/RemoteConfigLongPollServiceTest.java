@@ -6,6 +6,7 @@ import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.eq;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doThrow;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
@@ -17,13 +18,17 @@ import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.ctrip.framework.apollo.core.dto.ServiceDTO;
 import com.ctrip.framework.apollo.core.signature.Signature;
+import com.ctrip.framework.apollo.exceptions.ApolloConfigStatusCodeException;
 import com.ctrip.framework.apollo.util.ConfigUtil;
+import com.ctrip.framework.apollo.util.http.EventStreamHandler;
 import com.ctrip.framework.apollo.util.http.HttpRequest;
 import com.ctrip.framework.apollo.util.http.HttpResponse;
 import com.ctrip.framework.apollo.util.http.HttpUtil;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
 import com.google.common.util.concurrent.SettableFuture;
+import com.google.gson.Gson;
+import java.io.Closeable;
 import java.lang.reflect.Type;
 import java.util.List;
 import java.util.Map;
@@ -59,6 +64,7 @@ public class RemoteConfigLongPollServiceTest {
   private static String someAppId;
   private static String someCluster;
   private static String someSecret;
+  private static boolean someNotificationStreamingEnabled;
 
   @Before
   public void setUp() throws Exception {
@@ -70,6 +76,7 @@ public class RemoteConfigLongPollServiceTest {
     when(configServiceLocator.getConfigServices()).thenReturn(Lists.newArrayList(serviceDTO));
     MockInjector.setInstance(ConfigServiceLocator.class, configServiceLocator);
 
+    someNotificationStreamingEnabled = false;
     MockInjector.setInstance(ConfigUtil.class, new MockConfigUtil());
 
     remoteConfigLongPollService = new RemoteConfigLongPollService();
@@ -522,6 +529,88 @@ public class RemoteConfigLongPollServiceTest {
             + "%22%2C%22notificationId%22%3A" + anotherNotificationId + "%7D%5D"));
   }
 
+  @Test
+  public void testSubmitNamespaceWithNotificationStreaming() throws Exception {
+    someNotificationStreamingEnabled = true;
+    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtil());
+    remoteConfigLongPollService = new RemoteConfigLongPollService();
+
+    RemoteConfigRepository someRepository = mock(RemoteConfigRepository.class);
+    final String someNamespace = "someNamespace";
+    final String someKey = "someKey";
+    final long someNotificationId = 1;
+
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        HttpRequest request = invocation.getArgumentAt(0, HttpRequest.class);
+        assertTrue(request.getUrl().contains(someServerUrl + "/notifications/v2/stream?"));
+        assertTrue(request.getUrl().contains(someNamespace));
+
+        EventStreamHandler handler = invocation.getArgumentAt(1, EventStreamHandler.class);
+        handler.onOpen(mock(Closeable.class));
+        ApolloConfigNotification notification = new ApolloConfigNotification(someNamespace, someNotificationId);
+        notification.addMessage(someKey, someNotificationId);
+        handler.onEvent("notifications", new Gson().toJson(Lists.newArrayList(notification)));
+
+        TimeUnit.MILLISECONDS.sleep(50);
+        return null;
+      }
+    }).when(httpUtil).doGetEventStream(any(HttpRequest.class), any(EventStreamHandler.class));
+
+    final SettableFuture<ApolloNotificationMessages> onNotified = SettableFuture.create();
+    doAnswer(new Answer<Void>() {
+      @Override
+      public Void answer(InvocationOnMock invocation) throws Throwable {
+        onNotified.set(invocation.getArgumentAt(1, ApolloNotificationMessages.class));
+        return null;
+      }
+    }).when(someRepository).onLongPollNotified(any(ServiceDTO.class), any(ApolloNotificationMessages.class));
+
+    remoteConfigLongPollService.submit(someNamespace, someRepository);
+
+    ApolloNotificationMessages captured = onNotified.get(5000, TimeUnit.MILLISECONDS);
+
+    remoteConfigLongPollService.stopLongPollingRefresh();
+
+    assertEquals(someNotificationId, captured.get(someKey).longValue());
+    verify(httpUtil, never()).doGet(any(HttpRequest.class), eq(responseType));
+  }
+
+  @Test
+  public void testNotificationStreamingFallbackToLongPolling() throws Exception {
+    someNotificationStreamingEnabled = true;
+    MockInjector.setInstance(ConfigUtil.class, new MockConfigUtil());
+    remoteConfigLongPollService = new RemoteConfigLongPollService();
+
+    RemoteConfigRepository someRepository = mock(RemoteConfigRepository.class);
+    final String someNamespace = "someNamespace";
+
+    doThrow(new ApolloConfigStatusCodeException(HttpServletResponse.SC_NOT_FOUND, "not found"))
+        .when(httpUtil).doGetEventStream(any(HttpRequest.class), any(EventStreamHandler.class));
+
+    when(pollResponse.getStatusCode()).thenReturn(HttpServletResponse.SC_NOT_MODIFIED);
+    final SettableFuture<Boolean> longPollFinished = SettableFuture.create();
+    doAnswer(new Answer<HttpResponse<List<ApolloConfigNotification>>>() {
+      @Override
+      public HttpResponse<List<ApolloConfigNotification>> answer(InvocationOnMock invocation)
+          throws Throwable {
+        TimeUnit.MILLISECONDS.sleep(50);
+        longPollFinished.set(true);
+        return pollResponse;
+      }
+    }).when(httpUtil).doGet(any(HttpRequest.class), eq(responseType));
+
+    remoteConfigLongPollService.submit(someNamespace, someRepository);
+
+    longPollFinished.get(5000, TimeUnit.MILLISECONDS);
+
+    remoteConfigLongPollService.stopLongPollingRefresh();
+
+    //the stream is not retried right after the fallback
+    verify(httpUtil, times(1)).doGetEventStream(any(HttpRequest.class), any(EventStreamHandler.class));
+  }
+
   public static class MockConfigUtil extends ConfigUtil {
     @Override
     public String getAppId() {
@@ -557,6 +646,11 @@ public class RemoteConfigLongPollServiceTest {
     public long getLongPollingInitialDelayInMills() {
       return 0;
     }
+
+    @Override
+    public boolean isNotificationStreamingEnabled() {
+      return someNotificationStreamingEnabled;
+    }
   }
 
 }
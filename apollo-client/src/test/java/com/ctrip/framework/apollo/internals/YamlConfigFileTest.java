@@ -146,6 +146,35 @@ public class YamlConfigFileTest {
     assertNotNull(exceptionThrown.getCause());
   }
 
+  @Test
+  public void testWhenInvalidYamlContentUpdated() throws Exception {
+    Properties someProperties = new Properties();
+    String key = ConfigConsts.CONFIG_FILE_CONTENT_KEY;
+    String someValue = "someKey: 'someValue'";
+    String someInvalidContent = ",";
+    someProperties.setProperty(key, someValue);
+
+    Properties someYamlProperties = new Properties();
+    someYamlProperties.setProperty("someKey", "someValue");
+
+    when(configRepository.getConfig()).thenReturn(someProperties);
+    when(yamlParser.yamlToProperties(someValue)).thenReturn(someYamlProperties);
+    when(yamlParser.yamlToProperties(someInvalidContent))
+        .thenThrow(new RuntimeException("some exception"));
+
+    YamlConfigFile configFile = new YamlConfigFile(someNamespace, configRepository);
+
+    assertSame(someYamlProperties, configFile.asProperties());
+
+    Properties anotherProperties = new Properties();
+    anotherProperties.setProperty(key, someInvalidContent);
+
+    configFile.onRepositoryChange(someNamespace, anotherProperties);
+
+    assertSame(someInvalidContent, configFile.getContent());
+    assertSame(someYamlProperties, configFile.asProperties());
+  }
+
   @Test
   public void testWhenConfigRepositoryHasError() throws Exception {
     when(configRepository.getConfig()).thenThrow(new RuntimeException("someError"));
@@ -0,0 +1,77 @@
+package com.ctrip.framework.apollo.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+public class HistogramTest {
+
+  @Test
+  public void testBucketBoundariesAreContinuous() throws Exception {
+    assertEquals(0, Histogram.bucketIndex(0));
+    assertEquals(Long.MAX_VALUE, Histogram.bucketUpperBound(Histogram.bucketIndex(Long.MAX_VALUE)));
+
+    for (int i = 1; i <= Histogram.bucketIndex(Long.MAX_VALUE); i++) {
+      long lowerBound = Histogram.bucketUpperBound(i - 1) + 1;
+      long upperBound = Histogram.bucketUpperBound(i);
+
+      assertTrue(upperBound >= lowerBound);
+      assertEquals(i, Histogram.bucketIndex(lowerBound));
+      assertEquals(i, Histogram.bucketIndex(upperBound));
+    }
+  }
+
+  @Test
+  public void testRelativeError() throws Exception {
+    for (long value = 1; value > 0 && value < Long.MAX_VALUE / 3; value = value * 3 + 7) {
+      long upperBound = Histogram.bucketUpperBound(Histogram.bucketIndex(value));
+
+      assertTrue(upperBound >= value);
+      assertTrue((double) (upperBound - value) / value < 0.04);
+    }
+  }
+
+  @Test
+  public void testSnapshot() throws Exception {
+    Histogram histogram = new Histogram();
+    for (int i = 1; i <= 1000; i++) {
+      histogram.record(i);
+    }
+
+    HistogramSnapshot snapshot = histogram.snapshot();
+
+    assertEquals(1000, snapshot.getCount());
+    assertEquals(500500, snapshot.getSum());
+    assertEquals(1, snapshot.getMin());
+    assertEquals(1000, snapshot.getMax());
+    assertEquals(500.5, snapshot.getMean(), 0.001);
+    assertEquals(1, snapshot.getValueAtPercentile(0));
+    assertEquals(1000, snapshot.getValueAtPercentile(100));
+    assertApproximate(500, snapshot.getValueAtPercentile(50));
+    assertApproximate(990, snapshot.getValueAtPercentile(99));
+  }
+
+  @Test
+  public void testEmptySnapshot() throws Exception {
+    HistogramSnapshot snapshot = new Histogram().snapshot();
+
+    assertEquals(0, snapshot.getCount());
+    assertEquals(0, snapshot.getMin());
+    assertEquals(0, snapshot.getMax());
+    assertEquals(0, snapshot.getValueAtPercentile(99));
+  }
+
+  @Test
+  public void testRecordNegativeValue() throws Exception {
+    Histogram histogram = new Histogram();
+    histogram.record(-1);
+
+    assertEquals(0, histogram.snapshot().getMax());
+  }
+
+  private void assertApproximate(long expected, long actual) {
+    assertTrue(String.format("expected %d but was %d", expected, actual),
+        actual >= expected && actual <= expected * 1.04);
+  }
+}
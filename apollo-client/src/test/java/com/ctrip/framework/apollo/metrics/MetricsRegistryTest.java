@@ -0,0 +1,58 @@
+package com.ctrip.framework.apollo.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+import java.lang.management.ManagementFactory;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import org.junit.Before;
+import org.junit.Test;
+
+public class MetricsRegistryTest {
+
+  private MetricsRegistry metricsRegistry;
+
+  @Before
+  public void setUp() throws Exception {
+    metricsRegistry = new MetricsRegistry();
+  }
+
+  @Test
+  public void testGetOrCreate() throws Exception {
+    String someName = "someName";
+
+    assertSame(metricsRegistry.counter(someName), metricsRegistry.counter(someName));
+    assertSame(metricsRegistry.histogram(someName), metricsRegistry.histogram(someName));
+  }
+
+  @Test
+  public void testPullMetrics() throws Exception {
+    String someCounter = "someCounter";
+    String someHistogram = "someHistogram";
+
+    metricsRegistry.counter(someCounter).increment();
+    metricsRegistry.counter(someCounter).add(2);
+    metricsRegistry.histogram(someHistogram).record(10);
+
+    assertEquals(3L, (long) metricsRegistry.getCounters().get(someCounter));
+    assertEquals(1, metricsRegistry.getHistograms().get(someHistogram).getCount());
+    assertEquals(10, metricsRegistry.getHistograms().get(someHistogram).getMax());
+  }
+
+  @Test
+  public void testJmxExport() throws Exception {
+    String someCounter = "someCounter";
+    String someHistogram = "someHistogram";
+
+    metricsRegistry.counter(someCounter).increment();
+    metricsRegistry.histogram(someHistogram).record(10);
+
+    MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+    ObjectName objectName = new ObjectName(MetricsJmxExporter.OBJECT_NAME);
+
+    assertEquals(1L, mBeanServer.getAttribute(objectName, someCounter));
+    assertEquals(1L, mBeanServer.getAttribute(objectName, someHistogram + ".count"));
+    assertEquals(10L, mBeanServer.getAttribute(objectName, someHistogram + ".p99"));
+  }
+}
@@ -186,14 +186,24 @@ public abstract class AbstractSpringIntegrationTest {
   protected static class MockConfigUtil extends ConfigUtil {
 
     private boolean isAutoUpdateInjectedSpringProperties;
+    private boolean isAutoUpdateConfigurationProperties;
 
     public void setAutoUpdateInjectedSpringProperties(boolean autoUpdateInjectedSpringProperties) {
       isAutoUpdateInjectedSpringProperties = autoUpdateInjectedSpringProperties;
     }
 
+    public void setAutoUpdateConfigurationProperties(boolean autoUpdateConfigurationProperties) {
+      isAutoUpdateConfigurationProperties = autoUpdateConfigurationProperties;
+    }
+
     @Override
     public boolean isAutoUpdateInjectedSpringPropertiesEnabled() {
       return isAutoUpdateInjectedSpringProperties;
     }
+
+    @Override
+    public boolean isAutoUpdateConfigurationPropertiesEnabled() {
+      return isAutoUpdateConfigurationProperties;
+    }
   }
 }
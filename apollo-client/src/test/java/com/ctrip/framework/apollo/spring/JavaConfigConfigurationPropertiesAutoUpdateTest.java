@@ -0,0 +1,103 @@
+package com.ctrip.framework.apollo.spring;
+
+import static org.junit.Assert.assertEquals;
+
+import com.ctrip.framework.apollo.build.MockInjector;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.internals.SimpleConfig;
+import com.ctrip.framework.apollo.metrics.MetricNames;
+import com.ctrip.framework.apollo.metrics.MetricsRegistry;
+import com.ctrip.framework.apollo.spring.annotation.EnableApolloConfig;
+import com.ctrip.framework.apollo.util.ConfigUtil;
+import java.util.Properties;
+import java.util.concurrent.TimeUnit;
+import org.junit.Test;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.context.annotation.Configuration;
+
+public class JavaConfigConfigurationPropertiesAutoUpdateTest extends AbstractSpringIntegrationTest {
+
+  @Test
+  public void testAutoUpdateConfigurationProperties() throws Exception {
+    MockConfigUtil mockConfigUtil = new MockConfigUtil();
+    mockConfigUtil.setAutoUpdateInjectedSpringProperties(true);
+    mockConfigUtil.setAutoUpdateConfigurationProperties(true);
+    MockInjector.setInstance(ConfigUtil.class, mockConfigUtil);
+    MetricsRegistry metricsRegistry = new MetricsRegistry();
+    MockInjector.setInstance(MetricsRegistry.class, metricsRegistry);
+
+    SimpleConfig config = prepareConfig(ConfigConsts.NAMESPACE_APPLICATION,
+        assembleProperties("test.timeout", "1000", "test.batch", "2000", "other.key", "someValue"));
+
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig1.class);
+
+    TestConfigurationPropertiesBean bean = context.getBean(TestConfigurationPropertiesBean.class);
+
+    assertEquals(1000, bean.getTimeout());
+    assertEquals(2000, bean.getBatch());
+
+    config.onRepositoryChange(ConfigConsts.NAMESPACE_APPLICATION,
+        assembleProperties("test.timeout", "1001", "test.batch", "2000", "other.key", "someValue"));
+
+    TimeUnit.MILLISECONDS.sleep(100);
+
+    assertEquals(1001, bean.getTimeout());
+    assertEquals(2000, bean.getBatch());
+    assertEquals(1, metricsRegistry.getHistograms()
+        .get(MetricNames.CONFIGURATION_PROPERTIES_REBIND_LATENCY).getCount());
+    assertEquals(0, metricsRegistry.counter(MetricNames.CONFIGURATION_PROPERTIES_REBIND_FAILURE).getCount());
+  }
+
+  @Test
+  public void testAutoUpdateConfigurationPropertiesDisabled() throws Exception {
+    MockConfigUtil mockConfigUtil = new MockConfigUtil();
+    mockConfigUtil.setAutoUpdateInjectedSpringProperties(true);
+    mockConfigUtil.setAutoUpdateConfigurationProperties(false);
+    MockInjector.setInstance(ConfigUtil.class, mockConfigUtil);
+
+    SimpleConfig config = prepareConfig(ConfigConsts.NAMESPACE_APPLICATION,
+        assembleProperties("test.timeout", "1000", "test.batch", "2000"));
+
+    AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext(AppConfig1.class);
+
+    TestConfigurationPropertiesBean bean = context.getBean(TestConfigurationPropertiesBean.class);
+
+    config.onRepositoryChange(ConfigConsts.NAMESPACE_APPLICATION,
+        assembleProperties("test.timeout", "1001", "test.batch", "2001"));
+
+    TimeUnit.MILLISECONDS.sleep(100);
+
+    assertEquals(1000, bean.getTimeout());
+    assertEquals(2000, bean.getBatch());
+  }
+
+  @Configuration
+  @EnableApolloConfig
+  @EnableConfigurationProperties(TestConfigurationPropertiesBean.class)
+  static class AppConfig1 {
+  }
+
+  @ConfigurationProperties(prefix = "test")
+  static class TestConfigurationPropertiesBean {
+    private int timeout;
+    private int batch;
+
+    public int getTimeout() {
+      return timeout;
+    }
+
+    public void setTimeout(int timeout) {
+      this.timeout = timeout;
+    }
+
+    public int getBatch() {
+      return batch;
+    }
+
+    public void setBatch(int batch) {
+      this.batch = batch;
+    }
+  }
+}
@@ -0,0 +1,58 @@
+package com.ctrip.framework.apollo.spring.property;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+
+public class ConfigurationPropertiesPrefixTrieTest {
+
+  private ConfigurationPropertiesPrefixTrie prefixTrie;
+
+  @Before
+  public void setUp() throws Exception {
+    prefixTrie = new ConfigurationPropertiesPrefixTrie();
+  }
+
+  @Test
+  public void testMatchPrefix() throws Exception {
+    prefixTrie.register("some.prefix", "someBean");
+    prefixTrie.register("some.prefix.nested", "nestedBean");
+    prefixTrie.register("another", "anotherBean");
+
+    assertEquals(Sets.newHashSet("someBean"), prefixTrie.match("some.prefix.key"));
+    assertEquals(Sets.newHashSet("someBean", "nestedBean"), prefixTrie.match("some.prefix.nested.key"));
+    assertEquals(Sets.newHashSet("anotherBean"), prefixTrie.match("another.key"));
+    assertTrue(prefixTrie.match("some.key").isEmpty());
+    assertTrue(prefixTrie.match("some").isEmpty());
+  }
+
+  @Test
+  public void testMatchRelaxedNames() throws Exception {
+    prefixTrie.register("my-app.data_source", "someBean");
+
+    assertEquals(Sets.newHashSet("someBean"), prefixTrie.match("myApp.dataSource.url"));
+    assertEquals(Sets.newHashSet("someBean"), prefixTrie.match("MY_APP.DATA-SOURCE.url"));
+    assertEquals(Sets.newHashSet("someBean"), prefixTrie.match("my-app.data-source.servers[0].host"));
+  }
+
+  @Test
+  public void testMatchMultipleKeys() throws Exception {
+    prefixTrie.register("a", "aBean");
+    prefixTrie.register("b", "bBean");
+    prefixTrie.register("", "rootBean");
+
+    assertEquals(Sets.newHashSet("aBean", "bBean", "rootBean"), prefixTrie.match(Sets.newHashSet("a.x", "b.y")));
+    assertEquals(Sets.newHashSet("rootBean"), prefixTrie.match("c.z"));
+  }
+
+  @Test
+  public void testUnregister() throws Exception {
+    prefixTrie.register("a.b", "someBean");
+    prefixTrie.unregister("someBean");
+
+    assertTrue(prefixTrie.match("a.b.c").isEmpty());
+  }
+}
@@ -0,0 +1,58 @@
+package com.ctrip.framework.apollo.spring.property;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+
+import com.google.gson.JsonSyntaxException;
+import com.google.gson.reflect.TypeToken;
+import java.lang.reflect.Type;
+import java.util.List;
+import java.util.Map;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JsonValueParserTest {
+
+  private JsonValueParser jsonValueParser;
+
+  @Before
+  public void setUp() throws Exception {
+    jsonValueParser = new JsonValueParser();
+  }
+
+  @Test
+  public void testParseGenericType() throws Exception {
+    Type type = new TypeToken<List<Map<String, Integer>>>() {}.getType();
+
+    @SuppressWarnings("unchecked")
+    List<Map<String, Integer>> result = (List<Map<String, Integer>>) jsonValueParser
+        .parse("[{\"a\":1},{\"b\":2}]", type);
+
+    assertEquals(2, result.size());
+    assertEquals(1, (int) result.get(0).get("a"));
+    assertEquals(2, (int) result.get(1).get("b"));
+  }
+
+  @Test
+  public void testParseSameContentReturnsDifferentInstances() throws Exception {
+    String json = "{\"a\":1}";
+    Type type = new TypeToken<Map<String, Integer>>() {}.getType();
+
+    Object first = jsonValueParser.parse(json, type);
+    Object second = jsonValueParser.parse(json, type);
+
+    assertEquals(first, second);
+    assertNotSame(first, second);
+  }
+
+  @Test
+  public void testParseEmptyContent() throws Exception {
+    assertNull(jsonValueParser.parse("", Map.class));
+  }
+
+  @Test(expected = JsonSyntaxException.class)
+  public void testParseInvalidContent() throws Exception {
+    jsonValueParser.parse("[1,2", List.class);
+  }
+}
@@ -0,0 +1,52 @@
+package com.ctrip.framework.apollo.util.http;
+
+import static org.junit.Assert.assertEquals;
+
+import com.google.common.collect.Lists;
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.StringReader;
+import java.util.List;
+import org.junit.Test;
+
+public class HttpUtilTest {
+
+  @Test
+  public void testReadEvents() throws Exception {
+    String stream = ":\n"
+        + "\n"
+        + "event: notifications\n"
+        + "data: [{\"namespaceName\":\"application\",\"notificationId\":1}]\n"
+        + "\n"
+        + ": heartbeat\n"
+        + "data:line1\n"
+        + "data: line2\n"
+        + "\n"
+        + "event: notifications\n";
+
+    final List<String> events = Lists.newArrayList();
+    HttpUtil.readEvents(new BufferedReader(new StringReader(stream)), new EventStreamHandler() {
+      @Override
+      public void onOpen(Closeable stream) {
+      }
+
+      @Override
+      public void onEvent(String event, String data) {
+        events.add(event + "|" + data);
+      }
+    });
+
+    assertEquals(Lists.newArrayList(
+        "notifications|[{\"namespaceName\":\"application\",\"notificationId\":1}]",
+        "message|line1\nline2"), events);
+  }
+
+  @Test
+  public void testParseRetryAfter() throws Exception {
+    assertEquals(7, HttpUtil.parseRetryAfter("7"));
+    assertEquals(7, HttpUtil.parseRetryAfter(" 7 "));
+    assertEquals(0, HttpUtil.parseRetryAfter(null));
+    assertEquals(0, HttpUtil.parseRetryAfter("-1"));
+    assertEquals(0, HttpUtil.parseRetryAfter("Wed, 21 Oct 2015 07:28:00 GMT"));
+  }
+}
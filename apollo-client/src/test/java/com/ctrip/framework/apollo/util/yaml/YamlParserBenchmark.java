@@ -0,0 +1,56 @@
+package com.ctrip.framework.apollo.util.yaml;
+
+import java.util.Properties;
+
+/**
+ * Compares the event based flattening of {@link YamlParser} with the tree based transformation it
+ * replaces, not run with the unit tests.
+ *
+ * <p>Run it with the test classpath, e.g. {@code java -cp target/classes:target/test-classes:<deps>
+ * com.ctrip.framework.apollo.util.yaml.YamlParserBenchmark [sections] [iterations]}. Each section has
+ * a scalar, a number and a list with a nested map, i.e. 4 properties.</p>
+ */
+public class YamlParserBenchmark {
+
+  public static void main(String[] args) throws Exception {
+    int sectionCount = args.length > 0 ? Integer.parseInt(args[0]) : 5000;
+    int iterations = args.length > 1 ? Integer.parseInt(args[1]) : 20;
+
+    String content = generate(sectionCount);
+    YamlParser parser = new YamlParser();
+    System.out.println(String.format("%d sections, %d KB, %d iterations", sectionCount,
+        content.length() / 1024, iterations));
+
+    //the first round warms up
+    for (int round = 0; round < 2; round++) {
+      run("tree", parser, content, iterations, false);
+      run("events", parser, content, iterations, true);
+    }
+  }
+
+  private static String generate(int sectionCount) {
+    StringBuilder yamlContent = new StringBuilder();
+    for (int i = 0; i < sectionCount; i++) {
+      yamlContent.append("section").append(i).append(":\n")
+          .append("  key: value").append(i).append('\n')
+          .append("  number: ").append(i).append('\n')
+          .append("  list:\n")
+          .append("    - a").append(i).append('\n')
+          .append("    - nested: b").append(i).append('\n');
+    }
+    return yamlContent.toString();
+  }
+
+  private static void run(String name, YamlParser parser, String content, int iterations, boolean events) {
+    int size = 0;
+    long start = System.nanoTime();
+    for (int i = 0; i < iterations; i++) {
+      Properties properties = events ? parser.flattenYamlEvents(content) : parser.treeYamlToProperties(content);
+      size += properties.size();
+    }
+    long elapsed = System.nanoTime() - start;
+
+    System.out.println(String.format("%-8s %6.1f ms per transform, %d properties", name,
+        elapsed / 1000000.0 / iterations, size / iterations));
+  }
+}
@@ -47,6 +47,66 @@ public class YamlParserTest {
     test("case7.yaml");
   }
 
+  @Test
+  public void testEventFlatteningIsConsistentWithTreeTransformation() throws Exception {
+    for (String caseName : new String[]{"case1.yaml", "case3.yaml", "case5.yaml", "case6.yaml", "case7.yaml",
+        "orderedcase.yaml"}) {
+      String yamlContent = loadYaml(caseName);
+
+      Properties expected = parser.treeYamlToProperties(yamlContent);
+      Properties actual = parser.flattenYamlEvents(yamlContent);
+
+      assertEquals(caseName, expected, actual);
+    }
+  }
+
+  @Test
+  public void testEventFlatteningWithScalarTypes() throws Exception {
+    String yamlContent = "int: 0x1F\nfloat: 1e3\nbool: yes\nnullValue: ~\nquoted: '010'\nexplicit: !!str 0.5\n"
+        + "1: numberKey\ndate: 2002-12-14\nempty: {}\nemptyList: []\n---\nint: 2";
+
+    Properties expected = parser.treeYamlToProperties(yamlContent);
+    Properties actual = parser.flattenYamlEvents(yamlContent);
+
+    assertEquals(expected, actual);
+    assertEquals("2", actual.getProperty("int"));
+    assertEquals("numberKey", actual.getProperty("[1]"));
+  }
+
+  @Test(expected = YamlEventFlattener.UnsupportedYamlException.class)
+  public void testEventFlatteningWithAnchors() throws Exception {
+    parser.flattenYamlEvents(loadYaml("case4.yaml"));
+  }
+
+  @Test(expected = ParserException.class)
+  public void testEventFlatteningWithDuplicateKeys() throws Exception {
+    parser.flattenYamlEvents(loadYaml("case2.yaml"));
+  }
+
+  @Test
+  public void testEventFlatteningWithManySections() throws Exception {
+    StringBuilder yamlContent = new StringBuilder();
+    for (int i = 0; i < 100; i++) {
+      yamlContent.append("section").append(i).append(":\n")
+          .append("  key: value").append(i).append('\n')
+          .append("  number: ").append(i).append('\n')
+          .append("  list:\n")
+          .append("    - a").append(i).append('\n')
+          .append("    - nested: b").append(i).append('\n');
+    }
+    String content = yamlContent.toString();
+
+    Properties expected = parser.treeYamlToProperties(content);
+    Properties actual = parser.flattenYamlEvents(content);
+
+    assertEquals(expected, actual);
+    assertEquals(400, actual.size());
+    assertEquals("value99", actual.getProperty("section99.key"));
+    assertEquals("99", actual.getProperty("section99.number"));
+    assertEquals("a0", actual.getProperty("section0.list[0]"));
+    assertEquals("b0", actual.getProperty("section0.list[1].nested"));
+  }
+
   @Test(expected = ParserException.class)
   public void testcase2() throws Exception {
     testInvalid("case2.yaml");
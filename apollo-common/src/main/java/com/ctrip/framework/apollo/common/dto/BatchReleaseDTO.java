@@ -0,0 +1,39 @@
+package com.ctrip.framework.apollo.common.dto;
+
+import java.util.List;
+
+/**
+ * Publish many clusters and namespaces of one app at once
+ */
+public class BatchReleaseDTO {
+
+  private String operator;
+
+  private boolean emergencyPublish;
+
+  private List<ReleaseTargetDTO> targets;
+
+  public String getOperator() {
+    return operator;
+  }
+
+  public void setOperator(String operator) {
+    this.operator = operator;
+  }
+
+  public boolean isEmergencyPublish() {
+    return emergencyPublish;
+  }
+
+  public void setEmergencyPublish(boolean emergencyPublish) {
+    this.emergencyPublish = emergencyPublish;
+  }
+
+  public List<ReleaseTargetDTO> getTargets() {
+    return targets;
+  }
+
+  public void setTargets(List<ReleaseTargetDTO> targets) {
+    this.targets = targets;
+  }
+}
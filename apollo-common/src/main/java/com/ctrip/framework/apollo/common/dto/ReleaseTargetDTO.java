@@ -0,0 +1,56 @@
+package com.ctrip.framework.apollo.common.dto;
+
+/**
+ * One cluster + namespace to publish in a batch release
+ */
+public class ReleaseTargetDTO {
+
+  private String clusterName;
+
+  private String namespaceName;
+
+  private String releaseName;
+
+  private String releaseComment;
+
+  public String getClusterName() {
+    return clusterName;
+  }
+
+  public void setClusterName(String clusterName) {
+    this.clusterName = clusterName;
+  }
+
+  public String getNamespaceName() {
+    return namespaceName;
+  }
+
+  public void setNamespaceName(String namespaceName) {
+    this.namespaceName = namespaceName;
+  }
+
+  public String getReleaseName() {
+    return releaseName;
+  }
+
+  public void setReleaseName(String releaseName) {
+    this.releaseName = releaseName;
+  }
+
+  public String getReleaseComment() {
+    return releaseComment;
+  }
+
+  public void setReleaseComment(String releaseComment) {
+    this.releaseComment = releaseComment;
+  }
+
+  @Override
+  public String toString() {
+    return "ReleaseTargetDTO{" +
+        "clusterName='" + clusterName + '\'' +
+        ", namespaceName='" + namespaceName + '\'' +
+        ", releaseName='" + releaseName + '\'' +
+        '}';
+  }
+}
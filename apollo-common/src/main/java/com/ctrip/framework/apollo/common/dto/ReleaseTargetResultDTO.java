@@ -0,0 +1,57 @@
+package com.ctrip.framework.apollo.common.dto;
+
+/**
+ * The result of one target of a batch release, either the new release or the failure message
+ */
+public class ReleaseTargetResultDTO {
+
+  private String clusterName;
+
+  private String namespaceName;
+
+  private boolean success;
+
+  private String message;
+
+  private ReleaseDTO release;
+
+  public String getClusterName() {
+    return clusterName;
+  }
+
+  public void setClusterName(String clusterName) {
+    this.clusterName = clusterName;
+  }
+
+  public String getNamespaceName() {
+    return namespaceName;
+  }
+
+  public void setNamespaceName(String namespaceName) {
+    this.namespaceName = namespaceName;
+  }
+
+  public boolean isSuccess() {
+    return success;
+  }
+
+  public void setSuccess(boolean success) {
+    this.success = success;
+  }
+
+  public String getMessage() {
+    return message;
+  }
+
+  public void setMessage(String message) {
+    this.message = message;
+  }
+
+  public ReleaseDTO getRelease() {
+    return release;
+  }
+
+  public void setRelease(ReleaseDTO release) {
+    this.release = release;
+  }
+}
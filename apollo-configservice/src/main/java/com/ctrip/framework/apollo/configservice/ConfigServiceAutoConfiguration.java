@@ -3,18 +3,27 @@ package com.ctrip.framework.apollo.configservice;
 import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageScanner;
-import com.ctrip.framework.apollo.configservice.controller.ConfigFileController;
+import com.ctrip.framework.apollo.configservice.controller.ConfigController;
 import com.ctrip.framework.apollo.configservice.controller.NotificationController;
 import com.ctrip.framework.apollo.configservice.controller.NotificationControllerV2;
+import com.ctrip.framework.apollo.configservice.filter.AdmissionControlFilter;
 import com.ctrip.framework.apollo.configservice.filter.ClientAuthenticationFilter;
+import com.ctrip.framework.apollo.configservice.service.AccessKeyServiceWithCache;
+import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
+import com.ctrip.framework.apollo.configservice.service.ConfigFileCache;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigService;
 import com.ctrip.framework.apollo.configservice.service.config.ConfigServiceWithCache;
 import com.ctrip.framework.apollo.configservice.service.config.DefaultConfigService;
 import com.ctrip.framework.apollo.configservice.util.AccessKeyUtil;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl.Budget;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyDictionary;
+import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
 import org.springframework.security.crypto.password.NoOpPasswordEncoder;
 
 /**
@@ -42,6 +51,12 @@ public class ConfigServiceAutoConfiguration {
     return new DefaultConfigService();
   }
 
+  @Bean
+  public ConfigFileCache configFileCache(ConfigController configController, WatchKeysUtil watchKeysUtil,
+      WatchKeyDictionary watchKeyDictionary) {
+    return new ConfigFileCache(configController::loadConfig, watchKeysUtil, watchKeyDictionary, bizConfig);
+  }
+
   @Bean
   public static NoOpPasswordEncoder passwordEncoder() {
     return (NoOpPasswordEncoder) NoOpPasswordEncoder.getInstance();
@@ -59,28 +74,57 @@ public class ConfigServiceAutoConfiguration {
     return filterRegistrationBean;
   }
 
+  //shed before authenticating, which is not free either
+  @Bean
+  public FilterRegistrationBean longPollAdmissionControlFilter(AdmissionControl admissionControl) {
+    FilterRegistrationBean filterRegistrationBean = new FilterRegistrationBean();
+
+    filterRegistrationBean.setFilter(new AdmissionControlFilter(admissionControl, Budget.LONG_POLL));
+    filterRegistrationBean.addUrlPatterns("/notifications/v2/*");
+    filterRegistrationBean.setOrder(Ordered.HIGHEST_PRECEDENCE);
+
+    return filterRegistrationBean;
+  }
+
+  @Bean
+  public FilterRegistrationBean configAdmissionControlFilter(AdmissionControl admissionControl) {
+    FilterRegistrationBean filterRegistrationBean = new FilterRegistrationBean();
+
+    filterRegistrationBean.setFilter(new AdmissionControlFilter(admissionControl, Budget.CACHE_HIT));
+    filterRegistrationBean.addUrlPatterns("/configs/*");
+    filterRegistrationBean.addUrlPatterns("/configfiles/*");
+    filterRegistrationBean.setOrder(Ordered.HIGHEST_PRECEDENCE);
+
+    return filterRegistrationBean;
+  }
+
   @Configuration
   static class MessageScannerConfiguration {
     private final NotificationController notificationController;
-    private final ConfigFileController configFileController;
+    private final ConfigFileCache configFileCache;
     private final NotificationControllerV2 notificationControllerV2;
     private final GrayReleaseRulesHolder grayReleaseRulesHolder;
     private final ReleaseMessageServiceWithCache releaseMessageServiceWithCache;
     private final ConfigService configService;
-
+    private final AppNamespaceServiceWithCache appNamespaceServiceWithCache;
+    private final AccessKeyServiceWithCache accessKeyServiceWithCache;
     public MessageScannerConfiguration(
         final NotificationController notificationController,
-        final ConfigFileController configFileController,
+        final ConfigFileCache configFileCache,
         final NotificationControllerV2 notificationControllerV2,
         final GrayReleaseRulesHolder grayReleaseRulesHolder,
         final ReleaseMessageServiceWithCache releaseMessageServiceWithCache,
-        final ConfigService configService) {
+        final ConfigService configService,
+        final AppNamespaceServiceWithCache appNamespaceServiceWithCache,
+        final AccessKeyServiceWithCache accessKeyServiceWithCache) {
       this.notificationController = notificationController;
-      this.configFileController = configFileController;
+      this.configFileCache = configFileCache;
       this.notificationControllerV2 = notificationControllerV2;
       this.grayReleaseRulesHolder = grayReleaseRulesHolder;
       this.releaseMessageServiceWithCache = releaseMessageServiceWithCache;
       this.configService = configService;
+      this.appNamespaceServiceWithCache = appNamespaceServiceWithCache;
+      this.accessKeyServiceWithCache = accessKeyServiceWithCache;
     }
 
     @Bean
@@ -92,10 +136,13 @@ public class ConfigServiceAutoConfiguration {
       releaseMessageScanner.addMessageListener(grayReleaseRulesHolder);
       //2. handle server cache
       releaseMessageScanner.addMessageListener(configService);
-      releaseMessageScanner.addMessageListener(configFileController);
+      releaseMessageScanner.addMessageListener(configFileCache);
       //3. notify clients
       releaseMessageScanner.addMessageListener(notificationControllerV2);
       releaseMessageScanner.addMessageListener(notificationController);
+      //4. handle app namespace and access key changes
+      releaseMessageScanner.addMessageListener(appNamespaceServiceWithCache);
+      releaseMessageScanner.addMessageListener(accessKeyServiceWithCache);
       return releaseMessageScanner;
     }
   }
@@ -1,6 +1,7 @@
 package com.ctrip.framework.apollo.configservice;
 
 import com.ctrip.framework.apollo.biz.service.AppService;
+import com.ctrip.framework.apollo.configservice.service.ConfigFileCache;
 import org.springframework.boot.actuate.health.Health;
 import org.springframework.boot.actuate.health.HealthIndicator;
 import org.springframework.data.domain.PageRequest;
@@ -10,15 +11,23 @@ import org.springframework.stereotype.Component;
 public class ConfigServiceHealthIndicator implements HealthIndicator {
 
   private final AppService appService;
+  private final ConfigFileCache configFileCache;
 
-  public ConfigServiceHealthIndicator(final AppService appService) {
+  public ConfigServiceHealthIndicator(
+      final AppService appService,
+      final ConfigFileCache configFileCache) {
     this.appService = appService;
+    this.configFileCache = configFileCache;
   }
 
   @Override
   public Health health() {
     check();
-    return Health.up().build();
+    return Health.up()
+        .withDetail("configFileCacheSize", configFileCache.size())
+        .withDetail("configFileCacheBytes", configFileCache.getWeight())
+        .withDetail("configFileCacheHitRate", configFileCache.getHitRate())
+        .build();
   }
 
   private void check() {
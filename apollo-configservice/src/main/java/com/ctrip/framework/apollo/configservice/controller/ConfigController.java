@@ -136,6 +136,51 @@ public class ConfigController {
     return apolloConfig;
   }
 
+  /**
+   * Load the configurations of the namespace without a client request, e.g. to render the config
+   * files again after a new release. Gray releases are not loaded as there is no client ip, and no
+   * instance is audited.
+   *
+   * @param namespace      the normalized namespace name
+   * @param clientMessages the notifications the config should be no older than, e.g. the release
+   *                       message triggering the render
+   * @return the config, or null if not found
+   */
+  public ApolloConfig loadConfig(String appId, String clusterName, String namespace, String dataCenter,
+                                 ApolloNotificationMessages clientMessages) {
+    List<Release> releases = Lists.newLinkedList();
+
+    String appClusterNameLoaded = clusterName;
+    if (!ConfigConsts.NO_APPID_PLACEHOLDER.equalsIgnoreCase(appId)) {
+      Release currentAppRelease = configService.loadConfig(appId, null, appId, clusterName, namespace,
+          dataCenter, clientMessages);
+
+      if (currentAppRelease != null) {
+        releases.add(currentAppRelease);
+        appClusterNameLoaded = currentAppRelease.getClusterName();
+      }
+    }
+
+    if (!namespaceBelongsToAppId(appId, namespace)) {
+      Release publicRelease = this.findPublicConfig(appId, null, clusterName, namespace, dataCenter,
+          clientMessages);
+      if (!Objects.isNull(publicRelease)) {
+        releases.add(publicRelease);
+      }
+    }
+
+    if (releases.isEmpty()) {
+      return null;
+    }
+
+    String mergedReleaseKey = releases.stream().map(Release::getReleaseKey)
+        .collect(Collectors.joining(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR));
+
+    ApolloConfig apolloConfig = new ApolloConfig(appId, appClusterNameLoaded, namespace, mergedReleaseKey);
+    apolloConfig.setConfigurations(mergeReleaseConfigurations(releases));
+    return apolloConfig;
+  }
+
   private boolean namespaceBelongsToAppId(String appId, String namespaceName) {
     //Every app has an 'application' namespace
     if (Objects.equals(ConfigConsts.NAMESPACE_APPLICATION, namespaceName)) {
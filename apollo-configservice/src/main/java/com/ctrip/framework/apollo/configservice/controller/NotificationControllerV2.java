@@ -8,27 +8,28 @@ import com.ctrip.framework.apollo.biz.utils.EntityManagerUtil;
 import com.ctrip.framework.apollo.common.exception.BadRequestException;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyDictionary;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyRegistry;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
 import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
+import com.ctrip.framework.apollo.configservice.wrapper.NotificationStreamWrapper;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
-import com.google.common.collect.HashMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Multimap;
-import com.google.common.collect.Multimaps;
-import com.google.common.collect.Ordering;
 import com.google.common.collect.Sets;
-import com.google.common.collect.TreeMultimap;
 import com.google.gson.Gson;
 import com.google.gson.reflect.TypeToken;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.CollectionUtils;
 import org.springframework.web.bind.annotation.GetMapping;
@@ -36,6 +37,7 @@ import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 
 import java.lang.reflect.Type;
 import java.util.Collection;
@@ -45,6 +47,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Function;
 
@@ -53,10 +56,13 @@ import java.util.function.Function;
  */
 @RestController
 @RequestMapping("/notifications/v2")
-public class NotificationControllerV2 implements ReleaseMessageListener {
+public class NotificationControllerV2 implements ReleaseMessageListener, DisposableBean {
   private static final Logger logger = LoggerFactory.getLogger(NotificationControllerV2.class);
-  private final Multimap<String, DeferredResultWrapper> deferredResults =
-      Multimaps.synchronizedSetMultimap(TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.natural()));
+  //30 seconds, should be shorter than client side's read timeout, which is now 90 seconds
+  private static final long NOTIFICATION_STREAM_HEARTBEAT_INTERVAL_IN_SECONDS = 30;
+  private final WatchKeyRegistry<DeferredResultWrapper> deferredResults;
+  private final WatchKeyRegistry<NotificationStreamWrapper> notificationStreams;
+  private final Set<NotificationStreamWrapper> openNotificationStreams = Sets.newConcurrentHashSet();
   private static final Splitter STRING_SPLITTER =
       Splitter.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).omitEmptyStrings();
   private static final Type notificationsTypeReference =
@@ -64,6 +70,7 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
       }.getType();
 
   private final ExecutorService largeNotificationBatchExecutorService;
+  private final ScheduledExecutorService notificationStreamHeartbeatExecutorService;
 
   private final WatchKeysUtil watchKeysUtil;
   private final ReleaseMessageServiceWithCache releaseMessageService;
@@ -79,9 +86,17 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
       final EntityManagerUtil entityManagerUtil,
       final NamespaceUtil namespaceUtil,
       final Gson gson,
-      final BizConfig bizConfig) {
+      final BizConfig bizConfig,
+      final WatchKeyDictionary watchKeyDictionary) {
+    deferredResults = new WatchKeyRegistry<>(watchKeyDictionary);
+    notificationStreams = new WatchKeyRegistry<>(watchKeyDictionary);
     largeNotificationBatchExecutorService = Executors.newSingleThreadExecutor(ApolloThreadFactory.create
         ("NotificationControllerV2", true));
+    notificationStreamHeartbeatExecutorService = Executors.newSingleThreadScheduledExecutor(
+        ApolloThreadFactory.create("NotificationControllerV2-Heartbeat", true));
+    notificationStreamHeartbeatExecutorService.scheduleWithFixedDelay(this::sendNotificationStreamHeartbeats,
+        NOTIFICATION_STREAM_HEARTBEAT_INTERVAL_IN_SECONDS, NOTIFICATION_STREAM_HEARTBEAT_INTERVAL_IN_SECONDS,
+        TimeUnit.SECONDS);
     this.watchKeysUtil = watchKeysUtil;
     this.releaseMessageService = releaseMessageService;
     this.entityManagerUtil = entityManagerUtil;
@@ -97,25 +112,8 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
       @RequestParam(value = "notifications") String notificationsAsString,
       @RequestParam(value = "dataCenter", required = false) String dataCenter,
       @RequestParam(value = "ip", required = false) String clientIp) {
-    List<ApolloConfigNotification> notifications = null;
-
-    try {
-      notifications =
-          gson.fromJson(notificationsAsString, notificationsTypeReference);
-    } catch (Throwable ex) {
-      Tracer.logError(ex);
-    }
-
-    if (CollectionUtils.isEmpty(notifications)) {
-      throw new BadRequestException("Invalid format of notifications: " + notificationsAsString);
-    }
-    
-    Map<String, ApolloConfigNotification> filteredNotifications = filterNotifications(appId, notifications);
+    Map<String, ApolloConfigNotification> filteredNotifications = parseNotifications(appId, notificationsAsString);
 
-    if (CollectionUtils.isEmpty(filteredNotifications)) {
-      throw new BadRequestException("Invalid format of notifications: " + notificationsAsString);
-    }
-    
     DeferredResultWrapper deferredResultWrapper = new DeferredResultWrapper(bizConfig.longPollingTimeoutInMilli());
     Set<String> namespaces = Sets.newHashSetWithExpectedSize(filteredNotifications.size());
     Map<String, Long> clientSideNotifications = Maps.newHashMapWithExpectedSize(filteredNotifications.size());
@@ -185,6 +183,99 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
     return deferredResultWrapper.getResult();
   }
 
+  /**
+   * Stream the notifications of the watched namespaces with server-sent events. Unlike long polling,
+   * the watched keys are only assembled and registered once per connection, and each new release
+   * message is pushed as a delta. The stream is closed after
+   * {@link BizConfig#notificationStreamTimeoutInMilli()}, then the client reconnects.
+   */
+  @GetMapping(value = "/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+  public SseEmitter streamNotifications(
+      @RequestParam(value = "appId") String appId,
+      @RequestParam(value = "cluster") String cluster,
+      @RequestParam(value = "notifications") String notificationsAsString,
+      @RequestParam(value = "dataCenter", required = false) String dataCenter,
+      @RequestParam(value = "ip", required = false) String clientIp) {
+    Map<String, ApolloConfigNotification> filteredNotifications = parseNotifications(appId, notificationsAsString);
+
+    NotificationStreamWrapper notificationStream =
+        new NotificationStreamWrapper(bizConfig.notificationStreamTimeoutInMilli());
+    Set<String> namespaces = Sets.newHashSetWithExpectedSize(filteredNotifications.size());
+    Map<String, Long> clientSideNotifications = Maps.newHashMapWithExpectedSize(filteredNotifications.size());
+
+    for (Map.Entry<String, ApolloConfigNotification> notificationEntry : filteredNotifications.entrySet()) {
+      String normalizedNamespace = notificationEntry.getKey();
+      ApolloConfigNotification notification = notificationEntry.getValue();
+      namespaces.add(normalizedNamespace);
+      clientSideNotifications.put(normalizedNamespace, notification.getNotificationId());
+      if (!Objects.equals(notification.getNamespaceName(), normalizedNamespace)) {
+        notificationStream.recordNamespaceNameNormalizedResult(notification.getNamespaceName(), normalizedNamespace);
+      }
+    }
+
+    Multimap<String, String> watchedKeysMap =
+        watchKeysUtil.assembleAllWatchKeys(appId, cluster, namespaces, dataCenter);
+
+    Set<String> watchedKeys = Sets.newHashSet(watchedKeysMap.values());
+
+    //register before the check, same as long polling
+    notificationStream.onTimeout(notificationStream::complete);
+    notificationStream.onCompletion(() -> {
+      openNotificationStreams.remove(notificationStream);
+      for (String key : watchedKeys) {
+        notificationStreams.remove(key, notificationStream);
+      }
+      logWatchedKeys(watchedKeys, "Apollo.NotificationStream.CompletedKeys");
+    });
+
+    for (String key : watchedKeys) {
+      this.notificationStreams.put(key, notificationStream);
+    }
+    openNotificationStreams.add(notificationStream);
+
+    logWatchedKeys(watchedKeys, "Apollo.NotificationStream.RegisteredKeys");
+    logger.debug("Streaming {} to appId: {}, cluster: {}, namespace: {}, datacenter: {}",
+        watchedKeys, appId, cluster, namespaces, dataCenter);
+
+    List<ReleaseMessage> latestReleaseMessages =
+        releaseMessageService.findLatestReleaseMessagesGroupByMessages(watchedKeys);
+
+    //the stream lasts much longer than long polling, so the entity manager must not be held
+    entityManagerUtil.closeEntityManager();
+
+    List<ApolloConfigNotification> newNotifications =
+        getApolloConfigNotifications(namespaces, clientSideNotifications, watchedKeysMap,
+            latestReleaseMessages);
+
+    if (!CollectionUtils.isEmpty(newNotifications)) {
+      notificationStream.send(newNotifications);
+    }
+
+    return notificationStream.getEmitter();
+  }
+
+  private Map<String, ApolloConfigNotification> parseNotifications(String appId, String notificationsAsString) {
+    List<ApolloConfigNotification> notifications = null;
+
+    try {
+      notifications =
+          gson.fromJson(notificationsAsString, notificationsTypeReference);
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+    }
+
+    if (CollectionUtils.isEmpty(notifications)) {
+      throw new BadRequestException("Invalid format of notifications: " + notificationsAsString);
+    }
+
+    Map<String, ApolloConfigNotification> filteredNotifications = filterNotifications(appId, notifications);
+
+    if (CollectionUtils.isEmpty(filteredNotifications)) {
+      throw new BadRequestException("Invalid format of notifications: " + notificationsAsString);
+    }
+    return filteredNotifications;
+  }
+
   private Map<String, ApolloConfigNotification> filterNotifications(String appId,
                                                                     List<ApolloConfigNotification> notifications) {
     Map<String, ApolloConfigNotification> filteredNotifications = Maps.newHashMap();
@@ -261,22 +352,35 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
       return;
     }
 
-    if (!deferredResults.containsKey(content)) {
+    if (!deferredResults.containsKey(content) && !notificationStreams.containsKey(content)) {
       return;
     }
 
-    //create a new list to avoid ConcurrentModificationException
+    //create new lists to avoid ConcurrentModificationException
     List<DeferredResultWrapper> results = Lists.newArrayList(deferredResults.get(content));
+    List<NotificationStreamWrapper> streams = Lists.newArrayList(notificationStreams.get(content));
 
     ApolloConfigNotification configNotification = new ApolloConfigNotification(changedNamespace, message.getId());
     configNotification.addMessage(content, message.getId());
+    //long polling results rename the notification in place, so streams get their own
+    ApolloConfigNotification streamNotification = new ApolloConfigNotification(changedNamespace, message.getId());
+    streamNotification.addMessage(content, message.getId());
+
+    //streams are notified in the same batches, as their clients load the configs right away too
+    List<Runnable> notifications = Lists.newArrayListWithCapacity(results.size() + streams.size());
+    for (DeferredResultWrapper result : results) {
+      notifications.add(() -> result.setResult(configNotification));
+    }
+    for (NotificationStreamWrapper stream : streams) {
+      notifications.add(() -> stream.send(streamNotification));
+    }
 
     //do async notification if too many clients
-    if (results.size() > bizConfig.releaseMessageNotificationBatch()) {
+    if (notifications.size() > bizConfig.releaseMessageNotificationBatch()) {
       largeNotificationBatchExecutorService.submit(() -> {
-        logger.debug("Async notify {} clients for key {} with batch {}", results.size(), content,
+        logger.debug("Async notify {} clients for key {} with batch {}", notifications.size(), content,
             bizConfig.releaseMessageNotificationBatch());
-        for (int i = 0; i < results.size(); i++) {
+        for (int i = 0; i < notifications.size(); i++) {
           if (i > 0 && i % bizConfig.releaseMessageNotificationBatch() == 0) {
             try {
               TimeUnit.MILLISECONDS.sleep(bizConfig.releaseMessageNotificationBatchIntervalInMilli());
@@ -284,17 +388,16 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
               //ignore
             }
           }
-          logger.debug("Async notify {}", results.get(i));
-          results.get(i).setResult(configNotification);
+          notifications.get(i).run();
         }
       });
       return;
     }
 
-    logger.debug("Notify {} clients for key {}", results.size(), content);
+    logger.debug("Notify {} clients for key {}", notifications.size(), content);
 
-    for (DeferredResultWrapper result : results) {
-      result.setResult(configNotification);
+    for (Runnable notification : notifications) {
+      notification.run();
     }
     logger.debug("Notification completed");
   }
@@ -313,6 +416,24 @@ public class NotificationControllerV2 implements ReleaseMessageListener {
         return keys.get(2);
       };
 
+  private void sendNotificationStreamHeartbeats() {
+    try {
+      for (NotificationStreamWrapper notificationStream : openNotificationStreams) {
+        notificationStream.sendHeartbeat();
+      }
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+    }
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    notificationStreamHeartbeatExecutorService.shutdown();
+    for (NotificationStreamWrapper notificationStream : openNotificationStreams) {
+      notificationStream.complete();
+    }
+  }
+
   private void logWatchedKeys(Set<String> watchedKeys, String eventName) {
     for (String watchedKey : watchedKeys) {
       Tracer.logEvent(eventName, watchedKey);
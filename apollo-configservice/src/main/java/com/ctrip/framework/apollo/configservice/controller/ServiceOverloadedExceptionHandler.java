@@ -0,0 +1,29 @@
+package com.ctrip.framework.apollo.configservice.controller;
+
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl;
+import com.ctrip.framework.apollo.configservice.util.ServiceOverloadedException;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Responds to the requests shed while loading from the database, ahead of the global handler which
+ * would log them as errors
+ */
+@ControllerAdvice
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class ServiceOverloadedExceptionHandler {
+  private final AdmissionControl admissionControl;
+
+  public ServiceOverloadedExceptionHandler(final AdmissionControl admissionControl) {
+    this.admissionControl = admissionControl;
+  }
+
+  @ExceptionHandler(ServiceOverloadedException.class)
+  public void serviceOverloaded(HttpServletResponse response) {
+    admissionControl.reject(response);
+  }
+}
@@ -0,0 +1,88 @@
+package com.ctrip.framework.apollo.configservice.filter;
+
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl.Budget;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl.Permit;
+import java.io.IOException;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.Filter;
+import javax.servlet.FilterChain;
+import javax.servlet.FilterConfig;
+import javax.servlet.ServletException;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Sheds the requests beyond the concurrency limit of the budget, the permit of an async request,
+ * e.g. a long poll, is held until it completes
+ */
+public class AdmissionControlFilter implements Filter {
+
+  private final AdmissionControl admissionControl;
+  private final Budget budget;
+
+  public AdmissionControlFilter(AdmissionControl admissionControl, Budget budget) {
+    this.admissionControl = admissionControl;
+    this.budget = budget;
+  }
+
+  @Override
+  public void init(FilterConfig filterConfig) throws ServletException {
+    //nothing
+  }
+
+  @Override
+  public void doFilter(ServletRequest request, ServletResponse response, FilterChain chain)
+      throws IOException, ServletException {
+    Permit permit = admissionControl.tryAcquire(budget);
+    if (permit == null) {
+      admissionControl.reject((HttpServletResponse) response);
+      return;
+    }
+
+    try {
+      chain.doFilter(request, response);
+    } finally {
+      if (request.isAsyncStarted()) {
+        request.getAsyncContext().addListener(new PermitReleasingListener(permit));
+      } else {
+        permit.release();
+      }
+    }
+  }
+
+  @Override
+  public void destroy() {
+    //nothing
+  }
+
+  private static class PermitReleasingListener implements AsyncListener {
+    private final Permit permit;
+
+    private PermitReleasingListener(Permit permit) {
+      this.permit = permit;
+    }
+
+    @Override
+    public void onComplete(AsyncEvent event) {
+      permit.release();
+    }
+
+    @Override
+    public void onTimeout(AsyncEvent event) {
+      permit.release();
+    }
+
+    @Override
+    public void onError(AsyncEvent event) {
+      permit.release();
+    }
+
+    @Override
+    public void onStartAsync(AsyncEvent event) {
+      //nothing
+    }
+  }
+}
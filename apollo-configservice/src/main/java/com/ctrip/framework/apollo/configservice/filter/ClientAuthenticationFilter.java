@@ -3,9 +3,12 @@ package com.ctrip.framework.apollo.configservice.filter;
 import com.ctrip.framework.apollo.configservice.util.AccessKeyUtil;
 import com.ctrip.framework.apollo.core.signature.Signature;
 import com.ctrip.framework.apollo.core.utils.StringUtils;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import java.io.IOException;
 import java.util.List;
 import java.util.Objects;
+import java.util.concurrent.TimeUnit;
 import javax.servlet.Filter;
 import javax.servlet.FilterChain;
 import javax.servlet.FilterConfig;
@@ -26,11 +29,20 @@ public class ClientAuthenticationFilter implements Filter {
   private static final Logger logger = LoggerFactory.getLogger(ClientAuthenticationFilter.class);
 
   private static final Long TIMESTAMP_INTERVAL = 60 * 1000L;
+  private static final int MAX_VERIFIED_SIGNATURES = 10000;
+  private static final String DELIMITER = "\n";
 
   private final AccessKeyUtil accessKeyUtil;
+  //store signature+timestamp+path with query -> the secret it is signed with
+  private final Cache<String, String> verifiedSignatures;
 
   public ClientAuthenticationFilter(AccessKeyUtil accessKeyUtil) {
     this.accessKeyUtil = accessKeyUtil;
+    //requests with older timestamps are rejected anyway
+    verifiedSignatures = CacheBuilder.newBuilder()
+        .maximumSize(MAX_VERIFIED_SIGNATURES)
+        .expireAfterWrite(TIMESTAMP_INTERVAL, TimeUnit.MILLISECONDS)
+        .build();
   }
 
   @Override
@@ -97,15 +109,27 @@ public class ClientAuthenticationFilter implements Filter {
 
     String signature = null;
     if (authorization != null) {
-      String[] split = authorization.split(":");
-      if (split.length > 1) {
-        signature = split[1];
+      int index = authorization.indexOf(':');
+      if (index >= 0) {
+        signature = authorization.substring(index + 1);
       }
     }
+    if (StringUtils.isEmpty(signature)) {
+      return false;
+    }
+
+    // the same request might be verified already, e.g. retried by the client, so only check the
+    // secret is still available
+    String verifiedKey = signature + DELIMITER + timestamp + DELIMITER + path + DELIMITER + query;
+    String verifiedSecret = verifiedSignatures.getIfPresent(verifiedKey);
+    if (verifiedSecret != null && availableSecrets.contains(verifiedSecret)) {
+      return true;
+    }
 
     for (String secret : availableSecrets) {
       String availableSignature = accessKeyUtil.buildSignature(path, query, timestamp, secret);
       if (Objects.equals(signature, availableSignature)) {
+        verifiedSignatures.put(verifiedKey, secret);
         return true;
       }
     }
@@ -2,10 +2,14 @@ package com.ctrip.framework.apollo.configservice.service;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.AccessKey;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
+import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.repository.AccessKeyRepository;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.google.common.base.Strings;
 import com.google.common.collect.ListMultimap;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
@@ -30,10 +34,15 @@ import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
 /**
+ * Cache of the access keys. New and updated ones are scanned by modification time, and the changes
+ * of an app are refreshed right away when the {@link Topics#APOLLO_ACCESS_KEY_TOPIC} message
+ * arrives. The periodical rebuild is only a safety net for deletions made by admin services without
+ * the message.
+ *
  * @author nisiyong
  */
 @Service
-public class AccessKeyServiceWithCache implements InitializingBean {
+public class AccessKeyServiceWithCache implements InitializingBean, ReleaseMessageListener {
 
   private static Logger logger = LoggerFactory.getLogger(AccessKeyServiceWithCache.class);
 
@@ -121,6 +130,58 @@ public class AccessKeyServiceWithCache implements InitializingBean {
     }
   }
 
+  @Override
+  public void handleMessage(ReleaseMessage message, String channel) {
+    String appId = message.getMessage();
+    if (!Topics.APOLLO_ACCESS_KEY_TOPIC.equals(channel) || Strings.isNullOrEmpty(appId)) {
+      return;
+    }
+    logger.info("message received - channel: {}, message: {}", channel, message);
+    //refresh in the cache thread, so that it never races with the scan and rebuild
+    scheduledExecutorService.submit(() -> refreshAccessKeys(appId));
+  }
+
+  private void refreshAccessKeys(String appId) {
+    Transaction transaction = Tracer.newTransaction("Apollo.AccessKeyServiceWithCache",
+        "refreshAccessKeys");
+    try {
+      refreshAccessKeyCache(appId);
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Refresh access keys of {} failed", appId, ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  //for those new, updated or deleted access keys of the app
+  private void refreshAccessKeyCache(String appId) {
+    List<AccessKey> accessKeys = accessKeyRepository.findByAppId(appId);
+
+    //handle new and updated
+    List<AccessKey> changedAccessKeys = Lists.newArrayList();
+    Set<Long> foundIds = Sets.newHashSet();
+    for (AccessKey accessKey : accessKeys) {
+      foundIds.add(accessKey.getId());
+      AccessKey thatInCache = accessKeyIdCache.get(accessKey.getId());
+      if (thatInCache == null || accessKey.getDataChangeLastModifiedTime()
+          .after(thatInCache.getDataChangeLastModifiedTime())) {
+        changedAccessKeys.add(accessKey);
+      }
+    }
+    mergeAccessKeys(changedAccessKeys);
+
+    //handle deleted
+    Set<Long> cachedIds = Sets.newHashSet();
+    for (AccessKey accessKey : accessKeyIdCache.values()) {
+      if (appId.equalsIgnoreCase(accessKey.getAppId())) {
+        cachedIds.add(accessKey.getId());
+      }
+    }
+    handleDeletedAccessKeys(Sets.difference(cachedIds, foundIds));
+  }
+
   private void loadNewAndUpdatedAccessKeys() {
     boolean hasMore = true;
     while (hasMore && !Thread.currentThread().isInterrupted()) {
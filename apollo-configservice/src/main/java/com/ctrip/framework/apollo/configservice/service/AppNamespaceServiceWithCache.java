@@ -1,7 +1,12 @@
 package com.ctrip.framework.apollo.configservice.service;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.datasource.ReadReplica;
 import com.ctrip.framework.apollo.biz.repository.AppNamespaceRepository;
+import com.ctrip.framework.apollo.biz.utils.CacheSnapshot;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
 import com.ctrip.framework.apollo.configservice.wrapper.CaseInsensitiveMapWrapper;
 import com.ctrip.framework.apollo.core.ConfigConsts;
@@ -21,24 +26,41 @@ import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
+import java.util.Date;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Cache of the app namespaces. New ones are scanned by id, and the changes of an app are refreshed
+ * right away when the {@link Topics#APOLLO_APP_NAMESPACE_TOPIC} message arrives. The periodical
+ * rebuild is only a safety net for the changes made by admin services without the message.
+ *
+ * <p>If {@link BizConfig#cacheSnapshotDir()} is set, the cache is also written to a local
+ * {@link CacheSnapshot} periodically, with the max id scanned as the watermark. On restart, the
+ * cache is restored from it, the new ones are scanned from the watermark and the rest are rebuilt
+ * in the background.</p>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 @Service
-public class AppNamespaceServiceWithCache implements InitializingBean {
+public class AppNamespaceServiceWithCache implements InitializingBean, ReleaseMessageListener {
   private static final Logger logger = LoggerFactory.getLogger(AppNamespaceServiceWithCache.class);
   private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
       .skipNulls();
+  private static final String CACHE_SNAPSHOT_NAME = "app-namespaces";
   private final AppNamespaceRepository appNamespaceRepository;
   private final BizConfig bizConfig;
+  private final ReadReplica readReplica;
 
   private int scanInterval;
   private TimeUnit scanIntervalTimeUnit;
@@ -46,6 +68,9 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
   private TimeUnit rebuildIntervalTimeUnit;
   private ScheduledExecutorService scheduledExecutorService;
   private long maxIdScanned;
+  //null if the cache snapshot is disabled
+  private File cacheSnapshotFile;
+  private long lastWrittenVersion;
 
   //store namespaceName -> AppNamespace
   private CaseInsensitiveMapWrapper<AppNamespace> publicAppNamespaceCache;
@@ -56,19 +81,26 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
   //store id -> AppNamespace
   private Map<Long, AppNamespace> appNamespaceIdCache;
 
+  //increased whenever the cached app namespaces change
+  private final AtomicLong version = new AtomicLong();
+
   public AppNamespaceServiceWithCache(
       final AppNamespaceRepository appNamespaceRepository,
-      final BizConfig bizConfig) {
+      final BizConfig bizConfig,
+      final ReadReplica readReplica) {
     this.appNamespaceRepository = appNamespaceRepository;
     this.bizConfig = bizConfig;
+    this.readReplica = readReplica;
     initialize();
   }
 
   private void initialize() {
     maxIdScanned = 0;
+    lastWrittenVersion = 0;
     publicAppNamespaceCache = new CaseInsensitiveMapWrapper<>(Maps.newConcurrentMap());
     appNamespaceCache = new CaseInsensitiveMapWrapper<>(Maps.newConcurrentMap());
     appNamespaceIdCache = Maps.newConcurrentMap();
+    version.incrementAndGet();
     scheduledExecutorService = Executors.newScheduledThreadPool(1, ApolloThreadFactory
         .create("AppNamespaceServiceWithCache", true));
   }
@@ -113,25 +145,132 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
     return result;
   }
 
+  /**
+   * @return the version of the cached app namespaces, which changes after any app namespace is
+   * added, updated or deleted, so that the results derived from them could be memoized
+   */
+  public long getVersion() {
+    return version.get();
+  }
+
   @Override
   public void afterPropertiesSet() throws Exception {
     populateDataBaseInterval();
+    cacheSnapshotFile = CacheSnapshot.snapshotFile(bizConfig, CACHE_SNAPSHOT_NAME);
+    boolean restored = restoreCacheSnapshot();
     scanNewAppNamespaces(); //block the startup process until load finished
-    scheduledExecutorService.scheduleAtFixedRate(() -> {
-      Transaction transaction = Tracer.newTransaction("Apollo.AppNamespaceServiceWithCache",
-          "rebuildCache");
-      try {
-        this.updateAndDeleteCache();
-        transaction.setStatus(Transaction.SUCCESS);
-      } catch (Throwable ex) {
-        transaction.setStatus(ex);
-        logger.error("Rebuild cache failed", ex);
-      } finally {
-        transaction.complete();
-      }
-    }, rebuildInterval, rebuildInterval, rebuildIntervalTimeUnit);
+    if (restored) {
+      //for those updated or deleted after the snapshot
+      scheduledExecutorService.submit(this::rebuildCache);
+    }
+    scheduledExecutorService.scheduleAtFixedRate(this::rebuildCache, rebuildInterval,
+        rebuildInterval, rebuildIntervalTimeUnit);
     scheduledExecutorService.scheduleWithFixedDelay(this::scanNewAppNamespaces, scanInterval,
         scanInterval, scanIntervalTimeUnit);
+    if (cacheSnapshotFile != null) {
+      int interval = bizConfig.cacheSnapshotInterval();
+      scheduledExecutorService.scheduleWithFixedDelay(this::writeCacheSnapshot, interval, interval,
+          bizConfig.cacheSnapshotIntervalTimeUnit());
+    }
+  }
+
+  private void rebuildCache() {
+    Transaction transaction = Tracer.newTransaction("Apollo.AppNamespaceServiceWithCache",
+        "rebuildCache");
+    try {
+      this.updateAndDeleteCache();
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Rebuild cache failed", ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  /**
+   * @return whether the cache is restored from the cache snapshot
+   */
+  private boolean restoreCacheSnapshot() {
+    if (cacheSnapshotFile == null) {
+      return false;
+    }
+    Transaction transaction = Tracer.newTransaction("Apollo.AppNamespaceServiceWithCache",
+        "restoreCacheSnapshot");
+    try {
+      CacheSnapshot<AppNamespace> restored = CacheSnapshot.read(cacheSnapshotFile,
+          this::readAppNamespace);
+      transaction.setStatus(Transaction.SUCCESS);
+      if (restored == null) {
+        return false;
+      }
+      AppNamespace latest = appNamespaceRepository.findTopByOrderByIdDesc();
+      //the snapshot is of another database, e.g. one restored from a backup
+      if (latest == null || latest.getId() < restored.getWatermark()) {
+        logger.warn("Ignored cache snapshot {} as its watermark {} is ahead of the database",
+            cacheSnapshotFile, restored.getWatermark());
+        return false;
+      }
+      if (!restored.getRecords().isEmpty()) {
+        mergeAppNamespaces(restored.getRecords());
+      }
+      maxIdScanned = restored.getWatermark();
+      transaction.addData("Size", restored.getRecords().size());
+      logger.info("Restored {} app namespaces from {} with watermark {}",
+          restored.getRecords().size(), cacheSnapshotFile, maxIdScanned);
+      return true;
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Restore app namespaces from {} failed", cacheSnapshotFile, ex);
+      return false;
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  //runs in the cache thread, so the app namespaces are consistent with the watermark
+  private void writeCacheSnapshot() {
+    long currentVersion = version.get();
+    if (currentVersion == lastWrittenVersion) {
+      return;
+    }
+    List<AppNamespace> appNamespaces = Lists.newArrayList(appNamespaceIdCache.values());
+    Transaction transaction = Tracer.newTransaction("Apollo.AppNamespaceServiceWithCache",
+        "writeCacheSnapshot");
+    try {
+      CacheSnapshot.write(cacheSnapshotFile, maxIdScanned, appNamespaces, this::writeAppNamespace);
+      lastWrittenVersion = currentVersion;
+      transaction.addData("Size", appNamespaces.size());
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Write app namespaces to {} failed", cacheSnapshotFile, ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private void writeAppNamespace(DataOutput out, AppNamespace appNamespace) throws IOException {
+    out.writeLong(appNamespace.getId());
+    CacheSnapshot.writeString(out, appNamespace.getAppId());
+    CacheSnapshot.writeString(out, appNamespace.getName());
+    CacheSnapshot.writeString(out, appNamespace.getFormat());
+    out.writeBoolean(appNamespace.isPublic());
+    CacheSnapshot.writeString(out, appNamespace.getComment());
+    Date lastModifiedTime = appNamespace.getDataChangeLastModifiedTime();
+    out.writeLong(lastModifiedTime == null ? 0 : lastModifiedTime.getTime());
+  }
+
+  private AppNamespace readAppNamespace(DataInput in) throws IOException {
+    AppNamespace appNamespace = new AppNamespace();
+    appNamespace.setId(in.readLong());
+    appNamespace.setAppId(CacheSnapshot.readString(in));
+    appNamespace.setName(CacheSnapshot.readString(in));
+    appNamespace.setFormat(CacheSnapshot.readString(in));
+    appNamespace.setPublic(in.readBoolean());
+    appNamespace.setComment(CacheSnapshot.readString(in));
+    appNamespace.setDataChangeLastModifiedTime(new Date(in.readLong()));
+    return appNamespace;
   }
 
   private void scanNewAppNamespaces() {
@@ -153,8 +292,8 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
     boolean hasMore = true;
     while (hasMore && !Thread.currentThread().isInterrupted()) {
       //current batch is 500
-      List<AppNamespace> appNamespaces = appNamespaceRepository
-          .findFirst500ByIdGreaterThanOrderByIdAsc(maxIdScanned);
+      List<AppNamespace> appNamespaces = readReplica.read(() -> appNamespaceRepository
+          .findFirst500ByIdGreaterThanOrderByIdAsc(maxIdScanned));
       if (CollectionUtils.isEmpty(appNamespaces)) {
         break;
       }
@@ -174,6 +313,60 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
         publicAppNamespaceCache.put(appNamespace.getName(), appNamespace);
       }
     }
+    version.incrementAndGet();
+  }
+
+  @Override
+  public void handleMessage(ReleaseMessage message, String channel) {
+    String appId = message.getMessage();
+    if (!Topics.APOLLO_APP_NAMESPACE_TOPIC.equals(channel) || Strings.isNullOrEmpty(appId)) {
+      return;
+    }
+    logger.info("message received - channel: {}, message: {}", channel, message);
+    //refresh in the cache thread, so that it never races with the scan and rebuild
+    scheduledExecutorService.submit(() -> refreshAppNamespaces(appId));
+  }
+
+  private void refreshAppNamespaces(String appId) {
+    Transaction transaction = Tracer.newTransaction("Apollo.AppNamespaceServiceWithCache",
+        "refreshAppNamespaces");
+    try {
+      this.refreshCache(appId);
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Refresh app namespaces of {} failed", appId, ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  //for those new, updated or deleted app namespaces of the app
+  private void refreshCache(String appId) {
+    List<AppNamespace> appNamespaces = readReplica.read(() -> appNamespaceRepository.findByAppId(appId));
+
+    //handle new
+    List<AppNamespace> newAppNamespaces = Lists.newArrayList();
+    for (AppNamespace appNamespace : appNamespaces) {
+      if (!appNamespaceIdCache.containsKey(appNamespace.getId())) {
+        newAppNamespaces.add(appNamespace);
+      }
+    }
+    if (!newAppNamespaces.isEmpty()) {
+      mergeAppNamespaces(newAppNamespaces);
+    }
+
+    //handle updated
+    Set<Long> foundIds = handleUpdatedAppNamespaces(appNamespaces);
+
+    //handle deleted
+    Set<Long> cachedIds = Sets.newHashSet();
+    for (AppNamespace appNamespace : appNamespaceIdCache.values()) {
+      if (appId.equalsIgnoreCase(appNamespace.getAppId())) {
+        cachedIds.add(appNamespace.getId());
+      }
+    }
+    handleDeletedAppNamespaces(Sets.difference(cachedIds, foundIds));
   }
 
   //for those updated or deleted app namespaces
@@ -184,7 +377,7 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
     }
     List<List<Long>> partitionIds = Lists.partition(ids, 500);
     for (List<Long> toRebuild : partitionIds) {
-      Iterable<AppNamespace> appNamespaces = appNamespaceRepository.findAllById(toRebuild);
+      Iterable<AppNamespace> appNamespaces = readReplica.read(() -> appNamespaceRepository.findAllById(toRebuild));
 
       if (appNamespaces == null) {
         continue;
@@ -227,6 +420,7 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
           //just in case isPublic changes
           publicAppNamespaceCache.remove(thatInCache.getName());
         }
+        version.incrementAndGet();
         logger.info("Found AppNamespace changes, old: {}, new: {}", thatInCache, appNamespace);
       }
     }
@@ -251,6 +445,7 @@ public class AppNamespaceServiceWithCache implements InitializingBean {
           publicAppNamespaceCache.remove(deleted.getName());
         }
       }
+      version.incrementAndGet();
       logger.info("Found AppNamespace deleted, {}", deleted);
     }
   }
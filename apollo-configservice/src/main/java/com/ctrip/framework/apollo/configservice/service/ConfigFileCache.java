@@ -0,0 +1,365 @@
+package com.ctrip.framework.apollo.configservice.service;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyDictionary;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyIdMap;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyRegistry;
+import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.ctrip.framework.apollo.core.ConfigConsts;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.core.utils.PropertiesUtil;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+import com.google.common.base.Joiner;
+import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalCause;
+import com.google.common.cache.RemovalNotification;
+import com.google.common.cache.Weigher;
+import com.google.common.collect.Lists;
+import com.google.common.hash.Hashing;
+import com.google.gson.Gson;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Cache of the config files, keyed by appId+cluster+namespace(+dataCenter).
+ *
+ * <p>Each entry holds both the properties and the json format, rendered once as UTF-8 bytes along
+ * with their ETags. When a release message of a watched key arrives, the affected entries are
+ * invalidated and rendered again in the background, so the clients following the notification
+ * mostly hit the cache. Entries are bounded by their size in bytes and expire when not accessed for
+ * {@link BizConfig#configFileCacheExpireInMinutes()}, or 30 minutes after being rendered.</p>
+ *
+ * <p>Clients with gray release rules should bypass the cache.</p>
+ */
+public class ConfigFileCache implements ReleaseMessageListener, DisposableBean {
+  private static final Logger logger = LoggerFactory.getLogger(ConfigFileCache.class);
+  private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR).skipNulls();
+  private static final Gson GSON = new Gson();
+  //in case a release message is missed
+  private static final long EXPIRE_AFTER_WRITE_IN_MINUTES = 30;
+
+  private final ConfigLoader configLoader;
+  private final WatchKeysUtil watchKeysUtil;
+  private final Cache<String, ConfigFile> cache;
+  //store watch key -> cache keys
+  private final WatchKeyRegistry<String> watchedKeys2CacheKey;
+  //the size of the cached config files in bytes
+  private final AtomicLong weight = new AtomicLong();
+  private final WatchKeyDictionary watchKeyDictionary;
+  //store watch key id -> generation, which is increased on every release message of the key, so that
+  //the configs loaded before it are not cached
+  private final WatchKeyIdMap<AtomicLong> generations = new WatchKeyIdMap<>();
+  private final ExecutorService renderExecutorService;
+
+  public ConfigFileCache(
+      final ConfigLoader configLoader,
+      final WatchKeysUtil watchKeysUtil,
+      final WatchKeyDictionary watchKeyDictionary,
+      final BizConfig bizConfig) {
+    this.configLoader = configLoader;
+    this.watchKeysUtil = watchKeysUtil;
+    this.watchKeyDictionary = watchKeyDictionary;
+    watchedKeys2CacheKey = new WatchKeyRegistry<>(watchKeyDictionary);
+    cache = CacheBuilder.newBuilder()
+        .expireAfterAccess(bizConfig.configFileCacheExpireInMinutes(), TimeUnit.MINUTES)
+        .expireAfterWrite(EXPIRE_AFTER_WRITE_IN_MINUTES, TimeUnit.MINUTES)
+        .weigher((Weigher<String, ConfigFile>) (key, value) -> value.weight())
+        .maximumWeight(bizConfig.configFileCacheMaxSizeInMB() * 1024L * 1024L)
+        .recordStats()
+        .removalListener(this::onRemoval)
+        .build();
+    renderExecutorService = Executors.newSingleThreadExecutor(ApolloThreadFactory.create("ConfigFileCache", true));
+  }
+
+  /**
+   * @param namespace the normalized namespace name
+   * @return the cached config file, or null if not cached
+   */
+  public ConfigFile get(String appId, String clusterName, String namespace, String dataCenter) {
+    return cache.getIfPresent(assembleCacheKey(appId, clusterName, namespace, dataCenter));
+  }
+
+  /**
+   * @return the current generation of the config, which should be read before loading the config to
+   * cache, and is only changed by the release messages of its watch keys
+   */
+  public long currentGeneration(String appId, String clusterName, String namespace, String dataCenter) {
+    return generationOf(watchKeysUtil.assembleAllWatchKeys(appId, clusterName, namespace, dataCenter));
+  }
+
+  /**
+   * @return the sum of the generations of the watch keys, which changes whenever any of them changes
+   * as the generations only increase
+   */
+  private long generationOf(Set<String> watchKeys) {
+    long sum = 0;
+    for (String watchKey : watchKeys) {
+      AtomicLong keyGeneration = generations.get(watchKeyDictionary.findId(watchKey));
+      if (keyGeneration != null) {
+        sum += keyGeneration.get();
+      }
+    }
+    return sum;
+  }
+
+  /**
+   * Render the config loaded and cache it, unless there are new releases of its watch keys after the
+   * generation
+   *
+   * @param loadedGeneration the generation read before loading the config
+   * @return the rendered config file
+   */
+  public ConfigFile put(long loadedGeneration, String appId, String clusterName, String namespace,
+                        String dataCenter, ApolloConfig apolloConfig) throws IOException {
+    ConfigFile configFile = render(appId, clusterName, namespace, dataCenter, apolloConfig,
+        watchKeysUtil.assembleAllWatchKeys(appId, clusterName, namespace, dataCenter));
+    cache(assembleCacheKey(appId, clusterName, namespace, dataCenter), configFile, loadedGeneration);
+    return configFile;
+  }
+
+  /**
+   * Render the config without caching it, e.g. for the clients with gray release rules
+   */
+  public ConfigFile render(String appId, String clusterName, String namespace, String dataCenter,
+                           ApolloConfig apolloConfig) throws IOException {
+    return render(appId, clusterName, namespace, dataCenter, apolloConfig, Collections.emptySet());
+  }
+
+  private ConfigFile render(String appId, String clusterName, String namespace, String dataCenter,
+                            ApolloConfig apolloConfig, Set<String> watchKeys) throws IOException {
+    Map<String, String> configurations = apolloConfig.getConfigurations();
+
+    Properties properties = new Properties();
+    properties.putAll(configurations);
+    byte[] propertiesContent = PropertiesUtil.toString(properties).getBytes(StandardCharsets.UTF_8);
+    byte[] jsonContent = GSON.toJson(configurations).getBytes(StandardCharsets.UTF_8);
+
+    return new ConfigFile(appId, clusterName, namespace, dataCenter, propertiesContent, jsonContent,
+        watchKeys);
+  }
+
+  private void cache(String cacheKey, ConfigFile configFile, long loadedGeneration) {
+    //there are new releases during the loading, so it might be stale
+    if (loadedGeneration != generationOf(configFile.watchKeys)) {
+      return;
+    }
+    //some one else just loaded it
+    if (cache.asMap().putIfAbsent(cacheKey, configFile) != null) {
+      return;
+    }
+    weight.addAndGet(configFile.weight());
+    register(cacheKey, configFile);
+
+    //double check in case a release message is handled right before the put
+    if (loadedGeneration != generationOf(configFile.watchKeys)) {
+      cache.asMap().remove(cacheKey, configFile);
+      return;
+    }
+    logger.debug("added cache for key: {}", cacheKey);
+  }
+
+  private void onRemoval(RemovalNotification<String, ConfigFile> notification) {
+    ConfigFile configFile = notification.getValue();
+    weight.addAndGet(-configFile.weight());
+    if (notification.getCause() == RemovalCause.REPLACED) {
+      return;
+    }
+    String cacheKey = notification.getKey();
+    for (String watchKey : configFile.watchKeys) {
+      watchedKeys2CacheKey.remove(watchKey, cacheKey);
+    }
+    //in case the same key is cached again meanwhile
+    ConfigFile current = cache.asMap().get(cacheKey);
+    if (current != null) {
+      register(cacheKey, current);
+    }
+    logger.debug("removed cache key: {}, cause: {}", cacheKey, notification.getCause());
+  }
+
+  private void register(String cacheKey, ConfigFile configFile) {
+    for (String watchKey : configFile.watchKeys) {
+      watchedKeys2CacheKey.put(watchKey, cacheKey);
+    }
+  }
+
+  @Override
+  public void handleMessage(ReleaseMessage message, String channel) {
+    logger.info("message received - channel: {}, message: {}", channel, message);
+
+    String content = message.getMessage();
+    if (!Topics.APOLLO_RELEASE_TOPIC.equals(channel) || Strings.isNullOrEmpty(content)) {
+      return;
+    }
+
+    //increased even if nothing is cached for the key yet, as it might be being loaded
+    generations.computeIfAbsent(watchKeyDictionary.getOrCreateId(content), id -> new AtomicLong())
+        .incrementAndGet();
+
+    if (!watchedKeys2CacheKey.containsKey(content)) {
+      return;
+    }
+
+    //create a new list as the removal listener changes the registry
+    List<String> cacheKeys = Lists.newArrayList(watchedKeys2CacheKey.get(content));
+
+    List<ConfigFile> toRender = Lists.newArrayListWithCapacity(cacheKeys.size());
+    List<Long> renderGenerations = Lists.newArrayListWithCapacity(cacheKeys.size());
+    for (String cacheKey : cacheKeys) {
+      logger.debug("invalidate cache key: {}", cacheKey);
+      ConfigFile invalidated = cache.asMap().remove(cacheKey);
+      if (invalidated != null) {
+        toRender.add(invalidated);
+        renderGenerations.add(generationOf(invalidated.watchKeys));
+      }
+    }
+
+    if (!toRender.isEmpty()) {
+      //not to render a release older than the message
+      ApolloNotificationMessages renderMessages = new ApolloNotificationMessages();
+      renderMessages.put(content, message.getId());
+      renderExecutorService.submit(() -> renderInBackground(toRender, renderGenerations, renderMessages));
+    }
+  }
+
+  private void renderInBackground(List<ConfigFile> toRender, List<Long> renderGenerations,
+                                  ApolloNotificationMessages renderMessages) {
+    Transaction transaction = Tracer.newTransaction("Apollo.ConfigFileCache", "render");
+    try {
+      for (int i = 0; i < toRender.size(); i++) {
+        ConfigFile invalidated = toRender.get(i);
+        long renderGeneration = renderGenerations.get(i);
+        //newer releases of its watch keys would render it again
+        if (renderGeneration != generationOf(invalidated.watchKeys)) {
+          continue;
+        }
+        ApolloConfig apolloConfig = configLoader.load(invalidated.appId, invalidated.clusterName,
+            invalidated.namespace, invalidated.dataCenter, renderMessages);
+        if (apolloConfig == null || apolloConfig.getConfigurations() == null) {
+          continue;
+        }
+        put(renderGeneration, invalidated.appId, invalidated.clusterName, invalidated.namespace,
+            invalidated.dataCenter, apolloConfig);
+      }
+      transaction.addData("Size", toRender.size());
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Render config files failed", ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private String assembleCacheKey(String appId, String clusterName, String namespace, String dataCenter) {
+    return STRING_JOINER.join(appId, clusterName, namespace, Strings.emptyToNull(dataCenter));
+  }
+
+  /**
+   * @return the ratio of the lookups that hit the cache since startup
+   */
+  public double getHitRate() {
+    return cache.stats().hitRate();
+  }
+
+  /**
+   * @return the size of the cached config files in bytes
+   */
+  public long getWeight() {
+    return weight.get();
+  }
+
+  public long size() {
+    return cache.size();
+  }
+
+  //only for test use
+  private void reset() {
+    generations.forEach(AtomicLong::incrementAndGet);
+    cache.invalidateAll();
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    renderExecutorService.shutdown();
+  }
+
+  public interface ConfigLoader {
+    /**
+     * @param clientMessages the notifications the config should be no older than
+     * @return the config of the namespace for the clients without gray release rules, or null if
+     * not found
+     */
+    ApolloConfig load(String appId, String clusterName, String namespace, String dataCenter,
+                      ApolloNotificationMessages clientMessages);
+  }
+
+  public static class ConfigFile {
+    private final String appId;
+    private final String clusterName;
+    private final String namespace;
+    private final String dataCenter;
+    private final byte[] propertiesContent;
+    private final String propertiesETag;
+    private final byte[] jsonContent;
+    private final String jsonETag;
+    private final Set<String> watchKeys;
+
+    ConfigFile(String appId, String clusterName, String namespace, String dataCenter,
+               byte[] propertiesContent, byte[] jsonContent, Set<String> watchKeys) {
+      this.appId = appId;
+      this.clusterName = clusterName;
+      this.namespace = namespace;
+      this.dataCenter = dataCenter;
+      this.propertiesContent = propertiesContent;
+      this.propertiesETag = eTag(propertiesContent);
+      this.jsonContent = jsonContent;
+      this.jsonETag = eTag(jsonContent);
+      this.watchKeys = watchKeys;
+    }
+
+    private static String eTag(byte[] content) {
+      return "\"" + Hashing.md5().hashBytes(content) + "\"";
+    }
+
+    public byte[] getPropertiesContent() {
+      return propertiesContent;
+    }
+
+    public String getPropertiesETag() {
+      return propertiesETag;
+    }
+
+    public byte[] getJsonContent() {
+      return jsonContent;
+    }
+
+    public String getJsonETag() {
+      return jsonETag;
+    }
+
+    int weight() {
+      return propertiesContent.length + jsonContent.length;
+    }
+  }
+}
@@ -3,61 +3,87 @@ package com.ctrip.framework.apollo.configservice.service;
 import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.ReleaseMessageListener;
+import com.ctrip.framework.apollo.biz.message.TopicMessages;
 import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.biz.datasource.ReadReplica;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+import com.ctrip.framework.apollo.biz.utils.CacheSnapshot;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyDictionary;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyIdMap;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
-import com.google.common.collect.Maps;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.InitializingBean;
 import org.springframework.stereotype.Service;
 import org.springframework.util.CollectionUtils;
 
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.File;
+import java.io.IOException;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
-import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
+ * Cache of the latest release message of each watch key.
+ *
+ * <p>If {@link BizConfig#cacheSnapshotDir()} is set, the cache is also written to a local
+ * {@link CacheSnapshot} periodically, with the max id scanned as the watermark. On restart, the
+ * cache is restored from it and only the messages after the watermark are loaded.</p>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 @Service
 public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, InitializingBean {
   private static final Logger logger = LoggerFactory.getLogger(ReleaseMessageServiceWithCache
       .class);
+  private static final String CACHE_SNAPSHOT_NAME = "release-messages";
   private final ReleaseMessageRepository releaseMessageRepository;
   private final BizConfig bizConfig;
+  private final WatchKeyDictionary watchKeyDictionary;
+  private final ReadReplica readReplica;
 
   private int scanInterval;
   private TimeUnit scanIntervalTimeUnit;
 
   private volatile long maxIdScanned;
 
-  private ConcurrentMap<String, ReleaseMessage> releaseMessageCache;
+  //store watch key id -> latest ReleaseMessage
+  private WatchKeyIdMap<ReleaseMessage> releaseMessageCache;
 
   private AtomicBoolean doScan;
-  private ExecutorService executorService;
+  private ScheduledExecutorService executorService;
+  //null if the cache snapshot is disabled
+  private File cacheSnapshotFile;
+  //only accessed by the executor thread
+  private long lastWrittenWatermark;
 
   public ReleaseMessageServiceWithCache(
       final ReleaseMessageRepository releaseMessageRepository,
-      final BizConfig bizConfig) {
+      final BizConfig bizConfig,
+      final WatchKeyDictionary watchKeyDictionary,
+      final ReadReplica readReplica) {
     this.releaseMessageRepository = releaseMessageRepository;
     this.bizConfig = bizConfig;
+    this.watchKeyDictionary = watchKeyDictionary;
+    this.readReplica = readReplica;
     initialize();
   }
 
   private void initialize() {
-    releaseMessageCache = Maps.newConcurrentMap();
+    releaseMessageCache = new WatchKeyIdMap<>();
     doScan = new AtomicBoolean(true);
-    executorService = Executors.newSingleThreadExecutor(ApolloThreadFactory
+    lastWrittenWatermark = 0;
+    executorService = Executors.newSingleThreadScheduledExecutor(ApolloThreadFactory
         .create("ReleaseMessageServiceWithCache", true));
   }
 
@@ -69,7 +95,7 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
     long maxReleaseMessageId = 0;
     ReleaseMessage result = null;
     for (String message : messages) {
-      ReleaseMessage releaseMessage = releaseMessageCache.get(message);
+      ReleaseMessage releaseMessage = releaseMessageCache.get(watchKeyDictionary.findId(message));
       if (releaseMessage != null && releaseMessage.getId() > maxReleaseMessageId) {
         maxReleaseMessageId = releaseMessage.getId();
         result = releaseMessage;
@@ -86,7 +112,7 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
     List<ReleaseMessage> releaseMessages = Lists.newArrayList();
 
     for (String message : messages) {
-      ReleaseMessage releaseMessage = releaseMessageCache.get(message);
+      ReleaseMessage releaseMessage = releaseMessageCache.get(watchKeyDictionary.findId(message));
       if (releaseMessage != null) {
         releaseMessages.add(releaseMessage);
       }
@@ -103,13 +129,17 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
 
     String content = message.getMessage();
     Tracer.logEvent("Apollo.ReleaseMessageService.UpdateCache", String.valueOf(message.getId()));
-    if (!Topics.APOLLO_RELEASE_TOPIC.equals(channel) || Strings.isNullOrEmpty(content)) {
+    if (Strings.isNullOrEmpty(content)) {
       return;
     }
 
     long gap = message.getId() - maxIdScanned;
     if (gap == 1) {
-      mergeReleaseMessage(message);
+      if (Topics.APOLLO_RELEASE_TOPIC.equals(channel)) {
+        mergeReleaseMessage(message);
+      } else {
+        skipMessage(message);
+      }
     } else if (gap > 1) {
       //gap found!
       loadReleaseMessages(maxIdScanned);
@@ -119,50 +149,155 @@ public class ReleaseMessageServiceWithCache implements ReleaseMessageListener, I
   @Override
   public void afterPropertiesSet() throws Exception {
     populateDataBaseInterval();
+    cacheSnapshotFile = CacheSnapshot.snapshotFile(bizConfig, CACHE_SNAPSHOT_NAME);
     //block the startup process until load finished
     //this should happen before ReleaseMessageScanner due to autowire
-    loadReleaseMessages(0);
-
-    executorService.submit(() -> {
-      while (doScan.get() && !Thread.currentThread().isInterrupted()) {
-        Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageServiceWithCache",
-            "scanNewReleaseMessages");
-        try {
-          loadReleaseMessages(maxIdScanned);
-          transaction.setStatus(Transaction.SUCCESS);
-        } catch (Throwable ex) {
-          transaction.setStatus(ex);
-          logger.error("Scan new release messages failed", ex);
-        } finally {
-          transaction.complete();
-        }
-        try {
-          scanIntervalTimeUnit.sleep(scanInterval);
-        } catch (InterruptedException e) {
-          //ignore
-        }
+    //the table is compacted by admin services to the latest message of each key, so this is a snapshot load
+    //if the cache snapshot is restored, only the messages after its watermark are loaded
+    loadReleaseMessages(restoreCacheSnapshot());
+
+    executorService.scheduleWithFixedDelay(this::scanNewReleaseMessages, scanInterval, scanInterval,
+        scanIntervalTimeUnit);
+    if (cacheSnapshotFile != null) {
+      int interval = bizConfig.cacheSnapshotInterval();
+      executorService.scheduleWithFixedDelay(this::writeCacheSnapshot, interval, interval,
+          bizConfig.cacheSnapshotIntervalTimeUnit());
+    }
+  }
+
+  private void scanNewReleaseMessages() {
+    //Could stop once the ReleaseMessageScanner starts to work
+    if (!doScan.get()) {
+      return;
+    }
+    Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageServiceWithCache",
+        "scanNewReleaseMessages");
+    try {
+      loadReleaseMessages(maxIdScanned);
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Scan new release messages failed", ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  /**
+   * @return the watermark of the cache snapshot restored, or 0 if not restored
+   */
+  private long restoreCacheSnapshot() {
+    if (cacheSnapshotFile == null) {
+      return 0;
+    }
+    Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageServiceWithCache",
+        "restoreCacheSnapshot");
+    try {
+      CacheSnapshot<ReleaseMessage> restored = CacheSnapshot.read(cacheSnapshotFile,
+          this::readReleaseMessage);
+      transaction.setStatus(Transaction.SUCCESS);
+      if (restored == null) {
+        return 0;
+      }
+      ReleaseMessage latest = releaseMessageRepository.findTopByOrderByIdDesc();
+      //the snapshot is of another database, e.g. one restored from a backup
+      if (latest == null || latest.getId() < restored.getWatermark()) {
+        logger.warn("Ignored cache snapshot {} as its watermark {} is ahead of the database",
+            cacheSnapshotFile, restored.getWatermark());
+        return 0;
       }
-    });
+      for (ReleaseMessage releaseMessage : restored.getRecords()) {
+        mergeReleaseMessage(releaseMessage);
+      }
+      advanceMaxIdScanned(restored.getWatermark());
+      transaction.addData("Size", restored.getRecords().size());
+      logger.info("Restored {} release messages from {} with watermark {}",
+          restored.getRecords().size(), cacheSnapshotFile, restored.getWatermark());
+      return restored.getWatermark();
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Restore release messages from {} failed", cacheSnapshotFile, ex);
+      return 0;
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private void writeCacheSnapshot() {
+    List<ReleaseMessage> releaseMessages = Lists.newArrayList();
+    long watermark;
+    //mergeReleaseMessage is synchronized, so the messages copied are consistent with the watermark
+    synchronized (this) {
+      watermark = maxIdScanned;
+      if (watermark == lastWrittenWatermark) {
+        return;
+      }
+      releaseMessageCache.forEach(releaseMessages::add);
+    }
+    Transaction transaction = Tracer.newTransaction("Apollo.ReleaseMessageServiceWithCache",
+        "writeCacheSnapshot");
+    try {
+      CacheSnapshot.write(cacheSnapshotFile, watermark, releaseMessages, this::writeReleaseMessage);
+      lastWrittenWatermark = watermark;
+      transaction.addData("Size", releaseMessages.size());
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      logger.error("Write release messages to {} failed", cacheSnapshotFile, ex);
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private void writeReleaseMessage(DataOutput out, ReleaseMessage releaseMessage) throws IOException {
+    out.writeLong(releaseMessage.getId());
+    CacheSnapshot.writeString(out, releaseMessage.getMessage());
+  }
+
+  private ReleaseMessage readReleaseMessage(DataInput in) throws IOException {
+    long id = in.readLong();
+    ReleaseMessage releaseMessage = new ReleaseMessage(CacheSnapshot.readString(in));
+    releaseMessage.setId(id);
+    return releaseMessage;
   }
 
   private synchronized void mergeReleaseMessage(ReleaseMessage releaseMessage) {
-    ReleaseMessage old = releaseMessageCache.get(releaseMessage.getMessage());
+    int watchKeyId = watchKeyDictionary.getOrCreateId(releaseMessage.getMessage());
+    ReleaseMessage old = releaseMessageCache.get(watchKeyId);
     if (old == null || releaseMessage.getId() > old.getId()) {
-      releaseMessageCache.put(releaseMessage.getMessage(), releaseMessage);
+      releaseMessageCache.put(watchKeyId, releaseMessage);
       maxIdScanned = releaseMessage.getId();
     }
   }
 
+  //the messages of the other topics share the table, they only move the scan forward
+  private void skipMessage(ReleaseMessage message) {
+    advanceMaxIdScanned(message.getId());
+  }
+
+  private synchronized void advanceMaxIdScanned(long id) {
+    if (id > maxIdScanned) {
+      maxIdScanned = id;
+    }
+  }
+
   private void loadReleaseMessages(long startId) {
     boolean hasMore = true;
     while (hasMore && !Thread.currentThread().isInterrupted()) {
       //current batch is 500
-      List<ReleaseMessage> releaseMessages = releaseMessageRepository
-          .findFirst500ByIdGreaterThanOrderByIdAsc(startId);
+      long lastIdScanned = startId;
+      List<ReleaseMessage> releaseMessages = readReplica.read(() -> releaseMessageRepository
+          .findFirst500ByIdGreaterThanOrderByIdAsc(lastIdScanned));
       if (CollectionUtils.isEmpty(releaseMessages)) {
         break;
       }
-      releaseMessages.forEach(this::mergeReleaseMessage);
+      for (ReleaseMessage releaseMessage : releaseMessages) {
+        if (Topics.APOLLO_RELEASE_TOPIC.equals(TopicMessages.topicOf(releaseMessage.getMessage()))) {
+          mergeReleaseMessage(releaseMessage);
+        } else {
+          skipMessage(releaseMessage);
+        }
+      }
       int scanned = releaseMessages.size();
       startId = releaseMessages.get(scanned - 1).getId();
       hasMore = scanned == 500;
@@ -6,15 +6,27 @@ import com.google.common.cache.CacheBuilder;
 import com.google.common.cache.CacheLoader;
 import com.google.common.cache.LoadingCache;
 import com.google.common.collect.Lists;
-
+import com.google.common.collect.Maps;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListenableFutureTask;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.SettableFuture;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import com.ctrip.framework.apollo.biz.datasource.ReadReplica;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl.Budget;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl.Permit;
+import com.ctrip.framework.apollo.configservice.util.ServiceOverloadedException;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
 import com.ctrip.framework.apollo.tracer.spi.Transaction;
 
@@ -25,6 +37,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 
 import java.util.List;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
 
 import javax.annotation.PostConstruct;
@@ -32,12 +48,21 @@ import javax.annotation.PostConstruct;
 /**
  * config service with guava cache
  *
+ * <p>The entries are refreshed ahead: the old entry keeps being served while a new release is loaded
+ * asynchronously, and there is at most one refresh in flight per key, which the requests asking for the
+ * new release wait on. A release message arriving during a refresh queues another one after it.</p>
+ *
+ * <p>The entries are loaded from the read replica if configured, and refreshed from the primary when
+ * the replica lags behind the notification id of a client, so that the client never goes backwards.</p>
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 public class ConfigServiceWithCache extends AbstractConfigService {
   private static final Logger logger = LoggerFactory.getLogger(ConfigServiceWithCache.class);
   private static final long DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES = 60;//1 hour
-  private static final String TRACER_EVENT_CACHE_INVALIDATE = "ConfigCache.Invalidate";
+  private static final String TRACER_EVENT_CACHE_REFRESH = "ConfigCache.Refresh";
+  private static final String TRACER_EVENT_CACHE_REFRESH_FROM_PRIMARY = "ConfigCache.RefreshFromPrimary";
+  private static final int REFRESH_THREAD_POOL_SIZE = 4;
   private static final String TRACER_EVENT_CACHE_LOAD = "ConfigCache.LoadFromDB";
   private static final String TRACER_EVENT_CACHE_LOAD_ID = "ConfigCache.LoadFromDBById";
   private static final String TRACER_EVENT_CACHE_GET = "ConfigCache.Get";
@@ -51,53 +76,40 @@ public class ConfigServiceWithCache extends AbstractConfigService {
   @Autowired
   private ReleaseMessageService releaseMessageService;
 
+  @Autowired
+  private AdmissionControl admissionControl;
+
+  @Autowired
+  private ReadReplica readReplica;
+
   private LoadingCache<String, ConfigCacheEntry> configCache;
 
   private LoadingCache<Long, Optional<Release>> configIdCache;
 
   private ConfigCacheEntry nullConfigCacheEntry;
 
+  private ExecutorService refreshExecutorService;
+
+  private final ConcurrentMap<String, ListenableFuture<ConfigCacheEntry>> inflightRefreshes =
+      Maps.newConcurrentMap();
+
+  private final ConcurrentMap<String, ListenableFuture<ConfigCacheEntry>> inflightPrimaryRefreshes =
+      Maps.newConcurrentMap();
+
   public ConfigServiceWithCache() {
     nullConfigCacheEntry = new ConfigCacheEntry(ConfigConsts.NOTIFICATION_ID_PLACEHOLDER, null);
   }
 
   @PostConstruct
   void initialize() {
+    refreshExecutorService = Executors.newFixedThreadPool(REFRESH_THREAD_POOL_SIZE,
+        ApolloThreadFactory.create("ConfigServiceWithCache", true));
     configCache = CacheBuilder.newBuilder()
         .expireAfterAccess(DEFAULT_EXPIRED_AFTER_ACCESS_IN_MINUTES, TimeUnit.MINUTES)
         .build(new CacheLoader<String, ConfigCacheEntry>() {
           @Override
           public ConfigCacheEntry load(String key) throws Exception {
-            List<String> namespaceInfo = STRING_SPLITTER.splitToList(key);
-            if (namespaceInfo.size() != 3) {
-              Tracer.logError(
-                  new IllegalArgumentException(String.format("Invalid cache load key %s", key)));
-              return nullConfigCacheEntry;
-            }
-
-            Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD, key);
-            try {
-              ReleaseMessage latestReleaseMessage = releaseMessageService.findLatestReleaseMessageForMessages(Lists
-                  .newArrayList(key));
-              Release latestRelease = releaseService.findLatestActiveRelease(namespaceInfo.get(0), namespaceInfo.get(1),
-                  namespaceInfo.get(2));
-
-              transaction.setStatus(Transaction.SUCCESS);
-
-              long notificationId = latestReleaseMessage == null ? ConfigConsts.NOTIFICATION_ID_PLACEHOLDER : latestReleaseMessage
-                  .getId();
-
-              if (notificationId == ConfigConsts.NOTIFICATION_ID_PLACEHOLDER && latestRelease == null) {
-                return nullConfigCacheEntry;
-              }
-
-              return new ConfigCacheEntry(notificationId, latestRelease);
-            } catch (Throwable ex) {
-              transaction.setStatus(ex);
-              throw ex;
-            } finally {
-              transaction.complete();
-            }
+            return readReplica.read(() -> loadConfigCacheEntry(key));
           }
         });
     configIdCache = CacheBuilder.newBuilder()
@@ -105,9 +117,14 @@ public class ConfigServiceWithCache extends AbstractConfigService {
         .build(new CacheLoader<Long, Optional<Release>>() {
           @Override
           public Optional<Release> load(Long key) throws Exception {
+            Permit permit = admissionControl.acquire(Budget.DATABASE);
             Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD_ID, String.valueOf(key));
             try {
-              Release release = releaseService.findActiveOne(key);
+              Release release = readReplica.read(() -> releaseService.findActiveOne(key));
+              if (release == null && readReplica.isEnabled()) {
+                //not replicated yet
+                release = releaseService.findActiveOne(key);
+              }
 
               transaction.setStatus(Transaction.SUCCESS);
 
@@ -117,15 +134,51 @@ public class ConfigServiceWithCache extends AbstractConfigService {
               throw ex;
             } finally {
               transaction.complete();
+              permit.release();
             }
           }
         });
   }
 
+  private ConfigCacheEntry loadConfigCacheEntry(String key) {
+    List<String> namespaceInfo = STRING_SPLITTER.splitToList(key);
+    if (namespaceInfo.size() != 3) {
+      Tracer.logError(
+          new IllegalArgumentException(String.format("Invalid cache load key %s", key)));
+      return nullConfigCacheEntry;
+    }
+
+    Permit permit = admissionControl.acquire(Budget.DATABASE);
+    Transaction transaction = Tracer.newTransaction(TRACER_EVENT_CACHE_LOAD, key);
+    try {
+      ReleaseMessage latestReleaseMessage = releaseMessageService.findLatestReleaseMessageForMessages(Lists
+          .newArrayList(key));
+      Release latestRelease = releaseService.findLatestActiveRelease(namespaceInfo.get(0), namespaceInfo.get(1),
+          namespaceInfo.get(2));
+
+      transaction.setStatus(Transaction.SUCCESS);
+
+      long notificationId = latestReleaseMessage == null ? ConfigConsts.NOTIFICATION_ID_PLACEHOLDER : latestReleaseMessage
+          .getId();
+
+      if (notificationId == ConfigConsts.NOTIFICATION_ID_PLACEHOLDER && latestRelease == null) {
+        return nullConfigCacheEntry;
+      }
+
+      return new ConfigCacheEntry(notificationId, latestRelease);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      transaction.complete();
+      permit.release();
+    }
+  }
+
   @Override
   protected Release findActiveOne(long id, ApolloNotificationMessages clientMessages) {
     Tracer.logEvent(TRACER_EVENT_CACHE_GET_ID, String.valueOf(id));
-    return configIdCache.getUnchecked(id).orElse(null);
+    return getUnchecked(configIdCache, id).orElse(null);
   }
 
   @Override
@@ -135,22 +188,106 @@ public class ConfigServiceWithCache extends AbstractConfigService {
 
     Tracer.logEvent(TRACER_EVENT_CACHE_GET, key);
 
-    ConfigCacheEntry cacheEntry = configCache.getUnchecked(key);
+    ConfigCacheEntry cacheEntry = getUnchecked(configCache, key);
 
     //cache is out-dated
     if (clientMessages != null && clientMessages.has(key) &&
         clientMessages.get(key) > cacheEntry.getNotificationId()) {
-      //invalidate the cache and try to load from db again
-      invalidate(key);
-      cacheEntry = configCache.getUnchecked(key);
+      //wait for the refresh in flight
+      cacheEntry = awaitRefresh(key, false);
+      //the refresh might have read the db before the client's release, or the replica lags behind it
+      if (clientMessages.get(key) > cacheEntry.getNotificationId()) {
+        cacheEntry = awaitRefresh(key, true);
+      }
     }
 
     return cacheEntry.getRelease();
   }
 
-  private void invalidate(String key) {
-    configCache.invalidate(key);
-    Tracer.logEvent(TRACER_EVENT_CACHE_INVALIDATE, key);
+  /**
+   * Refresh the entry asynchronously, the old entry keeps being served until the refresh completes
+   *
+   * @param fromPrimary whether to load from the primary even if the read replica is configured
+   * @return the refresh in flight for the key, which is shared by the callers
+   */
+  private ListenableFuture<ConfigCacheEntry> refresh(final String key, boolean fromPrimary) {
+    ConcurrentMap<String, ListenableFuture<ConfigCacheEntry>> inflight =
+        fromPrimary ? inflightPrimaryRefreshes : inflightRefreshes;
+    ListenableFuture<ConfigCacheEntry> inflightRefresh = inflight.get(key);
+    if (inflightRefresh != null) {
+      if (!inflightRefresh.isDone()) {
+        return inflightRefresh;
+      }
+      //completed, but not removed yet
+      inflight.remove(key, inflightRefresh);
+    }
+
+    final ListenableFutureTask<ConfigCacheEntry> refreshTask = ListenableFutureTask.create(() -> {
+      ConfigCacheEntry entry;
+      try {
+        entry = fromPrimary ? loadConfigCacheEntry(key) : readReplica.read(() -> loadConfigCacheEntry(key));
+      } catch (Throwable ex) {
+        //not to serve the out-dated entry, the next query will load it again
+        configCache.invalidate(key);
+        throw ex;
+      }
+      //not to overwrite a newer entry loaded by a concurrent cache miss
+      return configCache.asMap().merge(key, entry, (oldEntry, newEntry) ->
+          newEntry.getNotificationId() >= oldEntry.getNotificationId() ? newEntry : oldEntry);
+    });
+    //registered before publishing the task, so that it is removed before the listeners added by the callers run
+    refreshTask.addListener(() -> inflight.remove(key, refreshTask), MoreExecutors.directExecutor());
+    inflightRefresh = inflight.putIfAbsent(key, refreshTask);
+    if (inflightRefresh != null) {
+      return inflightRefresh;
+    }
+
+    Tracer.logEvent(fromPrimary ? TRACER_EVENT_CACHE_REFRESH_FROM_PRIMARY : TRACER_EVENT_CACHE_REFRESH, key);
+    refreshExecutorService.execute(refreshTask);
+
+    return refreshTask;
+  }
+
+  /**
+   * Refresh the entry after a release message, the refresh in flight might have read the db before the
+   * release, so another refresh follows it
+   */
+  private ListenableFuture<ConfigCacheEntry> refreshAfterMessage(final String key) {
+    ListenableFuture<ConfigCacheEntry> inflightRefresh = inflightRefreshes.get(key);
+    if (inflightRefresh == null || inflightRefresh.isDone()) {
+      return refresh(key, false);
+    }
+
+    final SettableFuture<ConfigCacheEntry> followUpRefresh = SettableFuture.create();
+    inflightRefresh.addListener(() -> followUpRefresh.setFuture(refresh(key, false)),
+        MoreExecutors.directExecutor());
+    return followUpRefresh;
+  }
+
+  private ConfigCacheEntry awaitRefresh(String key, boolean fromPrimary) {
+    try {
+      return refresh(key, fromPrimary).get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
+      return getUnchecked(configCache, key);
+    } catch (ExecutionException ex) {
+      if (ex.getCause() instanceof ServiceOverloadedException) {
+        throw (ServiceOverloadedException) ex.getCause();
+      }
+      throw new UncheckedExecutionException(ex.getCause());
+    }
+  }
+
+  //the loads shed are thrown as is, so that they are responded with 429
+  private <K, V> V getUnchecked(LoadingCache<K, V> cache, K key) {
+    try {
+      return cache.getUnchecked(key);
+    } catch (UncheckedExecutionException ex) {
+      if (ex.getCause() instanceof ServiceOverloadedException) {
+        throw (ServiceOverloadedException) ex.getCause();
+      }
+      throw ex;
+    }
   }
 
   @Override
@@ -161,10 +298,10 @@ public class ConfigServiceWithCache extends AbstractConfigService {
     }
 
     try {
-      invalidate(message.getMessage());
-
-      //warm up the cache
-      configCache.getUnchecked(message.getMessage());
+      //wait for the refresh, so that the listeners after this one, e.g. the config file cache, load the new release
+      refreshAfterMessage(message.getMessage()).get();
+    } catch (InterruptedException ex) {
+      Thread.currentThread().interrupt();
     } catch (Throwable ex) {
       //ignore
     }
@@ -1,9 +1,16 @@
 package com.ctrip.framework.apollo.configservice.service.config;
 
+import com.ctrip.framework.apollo.biz.datasource.ReadReplica;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
+import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl.Budget;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl.Permit;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.google.common.collect.Lists;
 
 import org.springframework.beans.factory.annotation.Autowired;
 
@@ -16,17 +23,61 @@ public class DefaultConfigService extends AbstractConfigService {
 
   @Autowired
   private ReleaseService releaseService;
+  @Autowired
+  private ReleaseMessageService releaseMessageService;
+  @Autowired
+  private AdmissionControl admissionControl;
+  @Autowired
+  private ReadReplica readReplica;
 
   @Override
   protected Release findActiveOne(long id, ApolloNotificationMessages clientMessages) {
-    return releaseService.findActiveOne(id);
+    Permit permit = admissionControl.acquire(Budget.DATABASE);
+    try {
+      Release release = readReplica.read(() -> releaseService.findActiveOne(id));
+      if (release == null && readReplica.isEnabled()) {
+        //not replicated yet
+        release = releaseService.findActiveOne(id);
+      }
+      return release;
+    } finally {
+      permit.release();
+    }
   }
 
   @Override
   protected Release findLatestActiveRelease(String configAppId, String configClusterName, String configNamespace,
                                             ApolloNotificationMessages clientMessages) {
-    return releaseService.findLatestActiveRelease(configAppId, configClusterName,
-        configNamespace);
+    Permit permit = admissionControl.acquire(Budget.DATABASE);
+    try {
+      if (isReplicaBehind(configAppId, configClusterName, configNamespace, clientMessages)) {
+        return releaseService.findLatestActiveRelease(configAppId, configClusterName,
+            configNamespace);
+      }
+      return readReplica.read(() -> releaseService.findLatestActiveRelease(configAppId,
+          configClusterName, configNamespace));
+    } finally {
+      permit.release();
+    }
+  }
+
+  /**
+   * @return whether the replica is behind the notification the client has seen, so that the client won't
+   * go backwards
+   */
+  private boolean isReplicaBehind(String configAppId, String configClusterName, String configNamespace,
+                                  ApolloNotificationMessages clientMessages) {
+    if (!readReplica.isEnabled() || clientMessages == null) {
+      return false;
+    }
+    String key = ReleaseMessageKeyGenerator.generate(configAppId, configClusterName, configNamespace);
+    if (!clientMessages.has(key)) {
+      return false;
+    }
+    //the replica applies the release before its message, so the release read later is no older
+    ReleaseMessage latestReleaseMessage = readReplica.read(() ->
+        releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(key)));
+    return latestReleaseMessage == null || latestReleaseMessage.getId() < clientMessages.get(key);
   }
 
   @Override
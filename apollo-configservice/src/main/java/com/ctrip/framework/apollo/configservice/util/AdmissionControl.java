@@ -0,0 +1,158 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.google.common.collect.Maps;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import javax.servlet.http.HttpServletResponse;
+
+/**
+ * Admission control of the config service requests, so that a thundering herd, e.g. after a data
+ * center failover, is shed with 429 responses instead of piling onto the database.
+ *
+ * <p>Each {@link Budget} has its own {@link ConcurrencyLimiter}. Config queries are charged to
+ * {@link Budget#CACHE_HIT}, and those missing the cache are also charged to {@link Budget#DATABASE}
+ * while loading, so their latency is sampled by the database budget only.</p>
+ *
+ * <p>The limits and rejections are published as metrics tagged with the budget.</p>
+ */
+@Component
+public class AdmissionControl implements MeterBinder {
+  private static final long CACHE_HIT_TARGET_LATENCY_IN_MILLI = 100;
+  private static final long DATABASE_TARGET_LATENCY_IN_MILLI = 500;
+  //the adaptive limits don't go below this ratio of the max limits
+  private static final int MIN_LIMIT_DIVISOR = 10;
+
+  public enum Budget {
+    LONG_POLL, CACHE_HIT, DATABASE
+  }
+
+  private final boolean enabled;
+  private final int retryAfter;
+  private final Map<Budget, ConcurrencyLimiter> limiters = Maps.newEnumMap(Budget.class);
+  private final Permit unlimitedPermit = new Permit(null);
+  //the cache hit permit of the request served by the current thread
+  private final ThreadLocal<Permit> currentRequestPermit = new ThreadLocal<>();
+
+  public AdmissionControl(final BizConfig bizConfig) {
+    enabled = bizConfig.isAdmissionControlEnabled();
+    retryAfter = bizConfig.admissionControlRetryAfter();
+    limiters.put(Budget.LONG_POLL, new ConcurrencyLimiter(bizConfig.admissionControlLongPollMaxConcurrency(),
+        bizConfig.admissionControlLongPollMaxConcurrency(), 0));
+    limiters.put(Budget.CACHE_HIT, adaptiveLimiter(bizConfig.admissionControlCacheHitMaxConcurrency(),
+        CACHE_HIT_TARGET_LATENCY_IN_MILLI));
+    limiters.put(Budget.DATABASE, adaptiveLimiter(bizConfig.admissionControlDatabaseMaxConcurrency(),
+        DATABASE_TARGET_LATENCY_IN_MILLI));
+  }
+
+  private ConcurrencyLimiter adaptiveLimiter(int maxLimit, long targetLatencyInMilli) {
+    return new ConcurrencyLimiter(maxLimit / MIN_LIMIT_DIVISOR, maxLimit,
+        TimeUnit.MILLISECONDS.toNanos(targetLatencyInMilli));
+  }
+
+  /**
+   * @return the permit which must be released, or null if the request should be shed
+   */
+  public Permit tryAcquire(Budget budget) {
+    if (!enabled) {
+      return unlimitedPermit;
+    }
+    ConcurrencyLimiter limiter = limiters.get(budget);
+    if (!limiter.tryAcquire()) {
+      Tracer.logEvent("Apollo.AdmissionControl.Rejected", budget.name());
+      return null;
+    }
+    Permit permit = new Permit(limiter);
+    if (budget == Budget.CACHE_HIT) {
+      currentRequestPermit.set(permit);
+    } else if (budget == Budget.DATABASE) {
+      Permit requestPermit = currentRequestPermit.get();
+      if (requestPermit != null) {
+        requestPermit.sampled = false;
+      }
+    }
+    return permit;
+  }
+
+  /**
+   * @return the permit which must be released
+   * @throws ServiceOverloadedException if the request should be shed
+   */
+  public Permit acquire(Budget budget) {
+    Permit permit = tryAcquire(budget);
+    if (permit == null) {
+      throw new ServiceOverloadedException(String.format("%s budget is exhausted", budget));
+    }
+    return permit;
+  }
+
+  /**
+   * Respond to the request shed
+   */
+  public void reject(HttpServletResponse response) {
+    response.setStatus(HttpStatus.TOO_MANY_REQUESTS.value());
+    //the jitter spreads the retries of the clients shed together
+    response.setHeader(HttpHeaders.RETRY_AFTER,
+        String.valueOf(retryAfter + ThreadLocalRandom.current().nextInt(retryAfter + 1)));
+  }
+
+  ConcurrencyLimiter getLimiter(Budget budget) {
+    return limiters.get(budget);
+  }
+
+  @Override
+  public void bindTo(MeterRegistry registry) {
+    if (!enabled) {
+      return;
+    }
+    for (Map.Entry<Budget, ConcurrencyLimiter> entry : limiters.entrySet()) {
+      Tags tags = Tags.of("budget", entry.getKey().name().toLowerCase());
+      ConcurrencyLimiter limiter = entry.getValue();
+      Gauge.builder("apollo.admission.limit", limiter, ConcurrencyLimiter::getLimit).tags(tags)
+          .register(registry);
+      Gauge.builder("apollo.admission.inflight", limiter, ConcurrencyLimiter::getInflight).tags(tags)
+          .register(registry);
+      FunctionCounter.builder("apollo.admission.accepted", limiter, ConcurrencyLimiter::getAccepted)
+          .tags(tags).register(registry);
+      FunctionCounter.builder("apollo.admission.rejected", limiter, ConcurrencyLimiter::getRejected)
+          .tags(tags).register(registry);
+    }
+  }
+
+  public class Permit {
+    private final ConcurrencyLimiter limiter;
+    private final long startNanoTime;
+    private final AtomicBoolean released = new AtomicBoolean();
+    private volatile boolean sampled = true;
+
+    private Permit(ConcurrencyLimiter limiter) {
+      this.limiter = limiter;
+      this.startNanoTime = System.nanoTime();
+    }
+
+    /**
+     * Release the permit, it could be called more than once, e.g. by the listeners of async requests
+     */
+    public void release() {
+      if (limiter == null || !released.compareAndSet(false, true)) {
+        return;
+      }
+      if (currentRequestPermit.get() == this) {
+        currentRequestPermit.remove();
+      }
+      limiter.release(sampled ? System.nanoTime() - startNanoTime : -1);
+    }
+  }
+}
@@ -0,0 +1,99 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Limits the concurrent requests of one budget.
+ *
+ * <p>With a target latency, the limit adapts to the latency of the requests completed: it is
+ * decreased multiplicatively when they are slower than the target, and increased by one when they
+ * are not and the limit is in use, always between the min and the max limits. Without a target
+ * latency the limit is fixed to the max.</p>
+ */
+public class ConcurrencyLimiter {
+  private static final double BACKOFF_RATIO = 0.9;
+
+  private final int minLimit;
+  private final int maxLimit;
+  private final long targetLatencyInNanos;
+  private final AtomicInteger limit;
+  private final AtomicInteger inflight = new AtomicInteger();
+  private final AtomicLong lastBackoffNanoTime;
+  private final LongAdder accepted = new LongAdder();
+  private final LongAdder rejected = new LongAdder();
+
+  /**
+   * @param targetLatencyInNanos the target latency, or 0 for a fixed limit
+   */
+  public ConcurrencyLimiter(int minLimit, int maxLimit, long targetLatencyInNanos) {
+    this.minLimit = Math.max(1, Math.min(minLimit, maxLimit));
+    this.maxLimit = maxLimit;
+    this.targetLatencyInNanos = targetLatencyInNanos;
+    this.limit = new AtomicInteger(maxLimit);
+    this.lastBackoffNanoTime = new AtomicLong(System.nanoTime() - targetLatencyInNanos);
+  }
+
+  /**
+   * @return true if acquired, which must be released later
+   */
+  public boolean tryAcquire() {
+    while (true) {
+      int current = inflight.get();
+      if (current >= limit.get()) {
+        rejected.increment();
+        return false;
+      }
+      if (inflight.compareAndSet(current, current + 1)) {
+        accepted.increment();
+        return true;
+      }
+    }
+  }
+
+  /**
+   * @param latencyInNanos the latency of the request, or negative if it should not affect the limit
+   */
+  public void release(long latencyInNanos) {
+    int current = inflight.getAndDecrement();
+    if (targetLatencyInNanos <= 0 || latencyInNanos < 0) {
+      return;
+    }
+    if (latencyInNanos > targetLatencyInNanos) {
+      backoff();
+    } else if (current * 2 >= limit.get()) {
+      grow();
+    }
+  }
+
+  private void backoff() {
+    long now = System.nanoTime();
+    long last = lastBackoffNanoTime.get();
+    //the requests slowed by the same congestion complete together, so back off once per target latency
+    if (now - last < targetLatencyInNanos || !lastBackoffNanoTime.compareAndSet(last, now)) {
+      return;
+    }
+    limit.updateAndGet(current -> Math.max(minLimit, (int) (current * BACKOFF_RATIO)));
+  }
+
+  private void grow() {
+    limit.updateAndGet(current -> Math.min(maxLimit, current + 1));
+  }
+
+  public int getLimit() {
+    return limit.get();
+  }
+
+  public int getInflight() {
+    return inflight.get();
+  }
+
+  public long getAccepted() {
+    return accepted.sum();
+  }
+
+  public long getRejected() {
+    return rejected.sum();
+  }
+}
@@ -4,8 +4,12 @@ import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
 import com.google.common.cache.Cache;
 import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.LinkedHashMultimap;
 import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.common.collect.Multimap;
 import com.google.common.collect.Queues;
+import com.google.common.collect.Sets;
 
 import com.ctrip.framework.apollo.biz.entity.Instance;
 import com.ctrip.framework.apollo.biz.entity.InstanceConfig;
@@ -13,22 +17,31 @@ import com.ctrip.framework.apollo.biz.service.InstanceService;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
 import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
 
 import org.springframework.beans.factory.InitializingBean;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.stereotype.Service;
 
+import java.util.Collection;
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
+ * Audit the config deliveries of instances in batches: audits offered within a short window are
+ * coalesced, the instances and instance configs are looked up in bulk, and the instance configs are
+ * updated or created with jdbc batches by a small worker pool.
+ *
  * @author Jason Song(song_s@ctrip.com)
  */
 @Service
@@ -36,22 +49,33 @@ public class InstanceConfigAuditUtil implements InitializingBean {
   private static final int INSTANCE_CONFIG_AUDIT_MAX_SIZE = 10000;
   private static final int INSTANCE_CACHE_MAX_SIZE = 50000;
   private static final int INSTANCE_CONFIG_CACHE_MAX_SIZE = 50000;
-  private static final long OFFER_TIME_LAST_MODIFIED_TIME_THRESHOLD_IN_MILLI = TimeUnit.MINUTES.toMillis(10);//10 minutes
+  private static final int INSTANCE_CONFIG_AUDIT_BATCH_SIZE = 500;
+  private static final long INSTANCE_CONFIG_AUDIT_WINDOW_IN_MILLI = 500;
+  private static final int INSTANCE_CONFIG_AUDIT_WORKER_COUNT = 4;
   private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
   private final ExecutorService auditExecutorService;
+  private final ExecutorService auditWorkerExecutorService;
   private final AtomicBoolean auditStopped;
+  private final AtomicLong droppedAuditCount;
+  private volatile long auditLagInMillis;
   private BlockingQueue<InstanceConfigAuditModel> audits = Queues.newLinkedBlockingQueue
       (INSTANCE_CONFIG_AUDIT_MAX_SIZE);
   private Cache<String, Long> instanceCache;
   private Cache<String, String> instanceConfigReleaseKeyCache;
 
   private final InstanceService instanceService;
+  private final InstanceConfigHeartbeatStore instanceConfigHeartbeatStore;
 
-  public InstanceConfigAuditUtil(final InstanceService instanceService) {
+  public InstanceConfigAuditUtil(final InstanceService instanceService,
+      final InstanceConfigHeartbeatStore instanceConfigHeartbeatStore) {
     this.instanceService = instanceService;
+    this.instanceConfigHeartbeatStore = instanceConfigHeartbeatStore;
     auditExecutorService = Executors.newSingleThreadExecutor(
         ApolloThreadFactory.create("InstanceConfigAuditUtil", true));
+    auditWorkerExecutorService = Executors.newFixedThreadPool(INSTANCE_CONFIG_AUDIT_WORKER_COUNT,
+        ApolloThreadFactory.create("InstanceConfigAuditUtil-Worker", true));
     auditStopped = new AtomicBoolean(false);
+    droppedAuditCount = new AtomicLong();
     instanceCache = CacheBuilder.newBuilder().expireAfterAccess(1, TimeUnit.HOURS)
         .maximumSize(INSTANCE_CACHE_MAX_SIZE).build();
     instanceConfigReleaseKeyCache = CacheBuilder.newBuilder().expireAfterWrite(1, TimeUnit.DAYS)
@@ -60,86 +84,201 @@ public class InstanceConfigAuditUtil implements InitializingBean {
 
   public boolean audit(String appId, String clusterName, String dataCenter, String
       ip, String configAppId, String configClusterName, String configNamespace, String releaseKey) {
-    return this.audits.offer(new InstanceConfigAuditModel(appId, clusterName, dataCenter, ip,
+    boolean offered = this.audits.offer(new InstanceConfigAuditModel(appId, clusterName, dataCenter, ip,
         configAppId, configClusterName, configNamespace, releaseKey));
+    if (!offered) {
+      droppedAuditCount.incrementAndGet();
+    }
+    return offered;
   }
 
-  void doAudit(InstanceConfigAuditModel auditModel) {
-    String instanceCacheKey = assembleInstanceKey(auditModel.getAppId(), auditModel
-        .getClusterName(), auditModel.getIp(), auditModel.getDataCenter());
-    Long instanceId = instanceCache.getIfPresent(instanceCacheKey);
-    if (instanceId == null) {
-      instanceId = prepareInstanceId(auditModel);
-      instanceCache.put(instanceCacheKey, instanceId);
-    }
+  /**
+   * @return the number of audits dropped because the audit queue is full
+   */
+  public long getDroppedAuditCount() {
+    return droppedAuditCount.get();
+  }
 
-    //load instance config release key from cache, and check if release key is the same
-    String instanceConfigCacheKey = assembleInstanceConfigKey(instanceId, auditModel
-        .getConfigAppId(), auditModel.getConfigNamespace());
-    String cacheReleaseKey = instanceConfigReleaseKeyCache.getIfPresent(instanceConfigCacheKey);
+  /**
+   * @return the time between offering and auditing of the oldest audit in the latest batch
+   */
+  public long getAuditLagInMillis() {
+    return auditLagInMillis;
+  }
+
+  public int getPendingAuditCount() {
+    return audits.size();
+  }
 
-    //if release key is the same, then skip audit
-    if (cacheReleaseKey != null && Objects.equals(cacheReleaseKey, auditModel.getReleaseKey())) {
+  void doAudit(List<InstanceConfigAuditModel> auditModels) throws Exception {
+    if (auditModels.isEmpty()) {
       return;
     }
+    auditLagInMillis = System.currentTimeMillis() - auditModels.get(0).getOfferTime().getTime();
+
+    // the later audit of the same instance config wins
+    Map<String, InstanceConfigAuditModel> coalesced = Maps.newLinkedHashMap();
+    for (InstanceConfigAuditModel auditModel : auditModels) {
+      coalesced.put(STRING_JOINER.join(assembleInstanceKey(auditModel), auditModel.getConfigAppId(),
+          auditModel.getConfigNamespace()), auditModel);
+    }
+
+    // audits of the same instance go to the same partition, so that the instance is created only once
+    List<List<InstanceConfigAuditModel>> partitions = Lists.newArrayList();
+    for (int i = 0; i < INSTANCE_CONFIG_AUDIT_WORKER_COUNT; i++) {
+      partitions.add(Lists.newArrayList());
+    }
+    for (InstanceConfigAuditModel auditModel : coalesced.values()) {
+      int partition = Math.floorMod(assembleInstanceKey(auditModel).hashCode(), INSTANCE_CONFIG_AUDIT_WORKER_COUNT);
+      partitions.get(partition).add(auditModel);
+    }
+
+    Transaction transaction = Tracer.newTransaction("Apollo.InstanceConfigAudit", "batch");
+    transaction.addData("Size", auditModels.size());
+    transaction.addData("Coalesced", coalesced.size());
+    transaction.addData("Dropped", droppedAuditCount.get());
+    transaction.addData("LagInMillis", auditLagInMillis);
+    try {
+      List<Future<?>> futures = Lists.newArrayList();
+      for (List<InstanceConfigAuditModel> partition : partitions) {
+        if (!partition.isEmpty()) {
+          futures.add(auditWorkerExecutorService.submit(() -> doAuditPartition(partition)));
+        }
+      }
+      for (Future<?> future : futures) {
+        future.get();
+      }
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  private void doAuditPartition(List<InstanceConfigAuditModel> auditModels) {
+    Map<InstanceConfigAuditModel, Long> instanceIds = prepareInstanceIds(auditModels);
+
+    List<InstanceConfigAuditModel> toAudit = Lists.newArrayList();
+    for (InstanceConfigAuditModel auditModel : auditModels) {
+      //load instance config release key from cache, and check if release key is the same
+      String instanceConfigCacheKey = assembleInstanceConfigKey(instanceIds.get(auditModel),
+          auditModel.getConfigAppId(), auditModel.getConfigNamespace());
+      String cacheReleaseKey = instanceConfigReleaseKeyCache.getIfPresent(instanceConfigCacheKey);
+
+      //if release key is the same, then skip audit
+      if (cacheReleaseKey != null && Objects.equals(cacheReleaseKey, auditModel.getReleaseKey())) {
+        continue;
+      }
+
+      instanceConfigReleaseKeyCache.put(instanceConfigCacheKey, auditModel.getReleaseKey());
+      toAudit.add(auditModel);
+    }
 
-    instanceConfigReleaseKeyCache.put(instanceConfigCacheKey, auditModel.getReleaseKey());
+    if (toAudit.isEmpty()) {
+      return;
+    }
 
     //if release key is not the same or cannot find in cache, then do audit
-    InstanceConfig instanceConfig = instanceService.findInstanceConfig(instanceId, auditModel
-        .getConfigAppId(), auditModel.getConfigNamespace());
+    Set<Long> toAuditInstanceIds = Sets.newHashSet();
+    for (InstanceConfigAuditModel auditModel : toAudit) {
+      toAuditInstanceIds.add(instanceIds.get(auditModel));
+    }
+    Map<String, InstanceConfig> instanceConfigs = Maps.newHashMap();
+    for (InstanceConfig instanceConfig : instanceService.findInstanceConfigsByInstanceIds(toAuditInstanceIds)) {
+      instanceConfigs.put(assembleInstanceConfigKey(instanceConfig.getInstanceId(),
+          instanceConfig.getConfigAppId(), instanceConfig.getConfigNamespaceName()), instanceConfig);
+    }
 
-    if (instanceConfig != null) {
-      if (!Objects.equals(instanceConfig.getReleaseKey(), auditModel.getReleaseKey())) {
+    List<InstanceConfig> toUpdate = Lists.newArrayList();
+    List<InstanceConfig> toCreate = Lists.newArrayList();
+    for (InstanceConfigAuditModel auditModel : toAudit) {
+      long instanceId = instanceIds.get(auditModel);
+      InstanceConfig instanceConfig = instanceConfigs.get(assembleInstanceConfigKey(instanceId,
+          auditModel.getConfigAppId(), auditModel.getConfigNamespace()));
+
+      if (instanceConfig != null) {
+        if (Objects.equals(instanceConfig.getReleaseKey(), auditModel.getReleaseKey())) {
+          //when releaseKey is the same, we only need to refresh the last modified time once in a while
+          //to ensure the last modified time is updated each day, which is written behind
+          instanceConfigHeartbeatStore.heartbeat(instanceConfig, auditModel.getOfferTime());
+          continue;
+        }
         instanceConfig.setConfigClusterName(auditModel.getConfigClusterName());
         instanceConfig.setReleaseKey(auditModel.getReleaseKey());
         instanceConfig.setReleaseDeliveryTime(auditModel.getOfferTime());
-      } else if (offerTimeAndLastModifiedTimeCloseEnough(auditModel.getOfferTime(),
-          instanceConfig.getDataChangeLastModifiedTime())) {
-        //when releaseKey is the same, optimize to reduce writes if the record was updated not long ago
-        return;
+        instanceConfig.setDataChangeLastModifiedTime(auditModel.getOfferTime());
+        toUpdate.add(instanceConfig);
+        continue;
       }
-      //we need to update no matter the release key is the same or not, to ensure the
-      //last modified time is updated each day
-      instanceConfig.setDataChangeLastModifiedTime(auditModel.getOfferTime());
-      instanceService.updateInstanceConfig(instanceConfig);
-      return;
+
+      instanceConfig = new InstanceConfig();
+      instanceConfig.setInstanceId(instanceId);
+      instanceConfig.setConfigAppId(auditModel.getConfigAppId());
+      instanceConfig.setConfigClusterName(auditModel.getConfigClusterName());
+      instanceConfig.setConfigNamespaceName(auditModel.getConfigNamespace());
+      instanceConfig.setReleaseKey(auditModel.getReleaseKey());
+      instanceConfig.setReleaseDeliveryTime(auditModel.getOfferTime());
+      instanceConfig.setDataChangeCreatedTime(auditModel.getOfferTime());
+      toCreate.add(instanceConfig);
     }
 
-    instanceConfig = new InstanceConfig();
-    instanceConfig.setInstanceId(instanceId);
-    instanceConfig.setConfigAppId(auditModel.getConfigAppId());
-    instanceConfig.setConfigClusterName(auditModel.getConfigClusterName());
-    instanceConfig.setConfigNamespaceName(auditModel.getConfigNamespace());
-    instanceConfig.setReleaseKey(auditModel.getReleaseKey());
-    instanceConfig.setReleaseDeliveryTime(auditModel.getOfferTime());
-    instanceConfig.setDataChangeCreatedTime(auditModel.getOfferTime());
+    instanceService.batchUpdateInstanceConfigs(toUpdate);
+    instanceService.batchCreateInstanceConfigs(toCreate);
+  }
 
-    try {
-      instanceService.createInstanceConfig(instanceConfig);
-    } catch (DataIntegrityViolationException ex) {
-      //concurrent insertion, safe to ignore
+  /**
+   * Resolve the instance ids from cache first, then look up the missing ones of each app cluster in one
+   * query, and create the instances not found
+   */
+  private Map<InstanceConfigAuditModel, Long> prepareInstanceIds(List<InstanceConfigAuditModel> auditModels) {
+    Map<InstanceConfigAuditModel, Long> instanceIds = Maps.newIdentityHashMap();
+    Multimap<String, InstanceConfigAuditModel> missing = LinkedHashMultimap.create();
+    for (InstanceConfigAuditModel auditModel : auditModels) {
+      Long instanceId = instanceCache.getIfPresent(assembleInstanceKey(auditModel));
+      if (instanceId != null) {
+        instanceIds.put(auditModel, instanceId);
+      } else {
+        missing.put(STRING_JOINER.join(auditModel.getAppId(), auditModel.getClusterName()), auditModel);
+      }
     }
-  }
 
-  private boolean offerTimeAndLastModifiedTimeCloseEnough(Date offerTime, Date lastModifiedTime) {
-    return (offerTime.getTime() - lastModifiedTime.getTime()) <
-        OFFER_TIME_LAST_MODIFIED_TIME_THRESHOLD_IN_MILLI;
-  }
+    for (Collection<InstanceConfigAuditModel> appClusterAuditModels : missing.asMap().values()) {
+      InstanceConfigAuditModel first = appClusterAuditModels.iterator().next();
+      Set<String> ips = Sets.newHashSet();
+      for (InstanceConfigAuditModel auditModel : appClusterAuditModels) {
+        ips.add(auditModel.getIp());
+      }
+
+      Map<String, Long> found = Maps.newHashMap();
+      for (Instance instance : instanceService.findInstances(first.getAppId(), first.getClusterName(), ips)) {
+        found.put(assembleInstanceKey(instance.getAppId(), instance.getClusterName(), instance.getIp(),
+            instance.getDataCenter()), instance.getId());
+      }
 
-  private long prepareInstanceId(InstanceConfigAuditModel auditModel) {
-    Instance instance = instanceService.findInstance(auditModel.getAppId(), auditModel
-        .getClusterName(), auditModel.getDataCenter(), auditModel.getIp());
-    if (instance != null) {
-      return instance.getId();
+      for (InstanceConfigAuditModel auditModel : appClusterAuditModels) {
+        String instanceCacheKey = assembleInstanceKey(auditModel);
+        Long instanceId = found.get(instanceCacheKey);
+        if (instanceId == null) {
+          instanceId = createInstance(auditModel);
+          found.put(instanceCacheKey, instanceId);
+        }
+        instanceCache.put(instanceCacheKey, instanceId);
+        instanceIds.put(auditModel, instanceId);
+      }
     }
-    instance = new Instance();
+
+    return instanceIds;
+  }
+
+  private long createInstance(InstanceConfigAuditModel auditModel) {
+    Instance instance = new Instance();
     instance.setAppId(auditModel.getAppId());
     instance.setClusterName(auditModel.getClusterName());
     instance.setDataCenter(auditModel.getDataCenter());
     instance.setIp(auditModel.getIp());
 
-
     try {
       return instanceService.createInstance(instance).getId();
     } catch (DataIntegrityViolationException ex) {
@@ -152,21 +291,34 @@ public class InstanceConfigAuditUtil implements InitializingBean {
   @Override
   public void afterPropertiesSet() throws Exception {
     auditExecutorService.submit(() -> {
+      List<InstanceConfigAuditModel> batch = Lists.newArrayListWithCapacity(INSTANCE_CONFIG_AUDIT_BATCH_SIZE);
       while (!auditStopped.get() && !Thread.currentThread().isInterrupted()) {
         try {
-          InstanceConfigAuditModel model = audits.poll();
+          InstanceConfigAuditModel model = audits.poll(1, TimeUnit.SECONDS);
           if (model == null) {
-            TimeUnit.SECONDS.sleep(1);
             continue;
           }
-          doAudit(model);
+          batch.add(model);
+          //wait a little while to collect more audits in one batch
+          Queues.drain(audits, batch, INSTANCE_CONFIG_AUDIT_BATCH_SIZE - 1,
+              INSTANCE_CONFIG_AUDIT_WINDOW_IN_MILLI, TimeUnit.MILLISECONDS);
+          doAudit(batch);
+        } catch (InterruptedException ex) {
+          Thread.currentThread().interrupt();
         } catch (Throwable ex) {
           Tracer.logError(ex);
+        } finally {
+          batch.clear();
         }
       }
     });
   }
 
+  private String assembleInstanceKey(InstanceConfigAuditModel auditModel) {
+    return assembleInstanceKey(auditModel.getAppId(), auditModel.getClusterName(), auditModel.getIp(),
+        auditModel.getDataCenter());
+  }
+
   private String assembleInstanceKey(String appId, String cluster, String ip, String datacenter) {
     List<String> keyParts = Lists.newArrayList(appId, cluster, ip);
     if (!Strings.isNullOrEmpty(datacenter)) {
@@ -0,0 +1,136 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.InstanceConfig;
+import com.ctrip.framework.apollo.biz.service.InstanceService;
+import com.ctrip.framework.apollo.core.utils.ApolloThreadFactory;
+import com.ctrip.framework.apollo.tracer.Tracer;
+import com.ctrip.framework.apollo.tracer.spi.Transaction;
+
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.InitializingBean;
+import org.springframework.stereotype.Service;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Write-behind store of instance config heartbeats, i.e. the deliveries whose release key is not
+ * changed and only the last modified time needs to be refreshed.
+ *
+ * <p>Only the latest heartbeat of each instance config is kept in memory, and they are flushed
+ * periodically in batches sorted by id. The portal still reads instances from the database, which
+ * is at most one flush interval behind.</p>
+ */
+@Service
+public class InstanceConfigHeartbeatStore implements InitializingBean, DisposableBean {
+  private static final int FLUSH_BATCH_SIZE = 500;
+
+  private final ConcurrentMap<Long, Date> pendingHeartbeats = Maps.newConcurrentMap();
+  private final ScheduledExecutorService flushExecutorService;
+
+  private final InstanceService instanceService;
+  private final BizConfig bizConfig;
+
+  public InstanceConfigHeartbeatStore(final InstanceService instanceService, final BizConfig bizConfig) {
+    this.instanceService = instanceService;
+    this.bizConfig = bizConfig;
+    flushExecutorService = Executors.newSingleThreadScheduledExecutor(
+        ApolloThreadFactory.create("InstanceConfigHeartbeatStore", true));
+  }
+
+  /**
+   * Record the heartbeat if the last modified time of the instance config is older than the
+   * heartbeat interval
+   *
+   * @return whether the heartbeat is recorded
+   */
+  public boolean heartbeat(InstanceConfig instanceConfig, Date heartbeatTime) {
+    Date lastModifiedTime = instanceConfig.getDataChangeLastModifiedTime();
+    if (lastModifiedTime != null && heartbeatTime.getTime() - lastModifiedTime.getTime() <
+        TimeUnit.MINUTES.toMillis(bizConfig.instanceConfigHeartbeatIntervalInMinute())) {
+      return false;
+    }
+
+    offer(instanceConfig.getId(), heartbeatTime);
+    return true;
+  }
+
+  private void offer(long instanceConfigId, Date heartbeatTime) {
+    pendingHeartbeats.merge(instanceConfigId, heartbeatTime,
+        (existing, latest) -> latest.after(existing) ? latest : existing);
+  }
+
+  public int getPendingHeartbeatCount() {
+    return pendingHeartbeats.size();
+  }
+
+  void flush() {
+    if (pendingHeartbeats.isEmpty()) {
+      return;
+    }
+
+    Map<Long, Date> toFlush = Maps.newHashMap();
+    for (Map.Entry<Long, Date> entry : pendingHeartbeats.entrySet()) {
+      // a newer heartbeat offered meanwhile stays pending for the next flush
+      if (pendingHeartbeats.remove(entry.getKey(), entry.getValue())) {
+        toFlush.put(entry.getKey(), entry.getValue());
+      }
+    }
+
+    Transaction transaction = Tracer.newTransaction("Apollo.InstanceConfigHeartbeat", "flush");
+    transaction.addData("Size", toFlush.size());
+    try {
+      List<Long> ids = Lists.newArrayList(toFlush.keySet());
+      ids.sort(null);
+      for (List<Long> batch : Iterables.partition(ids, FLUSH_BATCH_SIZE)) {
+        Map<Long, Date> lastModifiedTimes = Maps.newHashMapWithExpectedSize(batch.size());
+        for (Long id : batch) {
+          lastModifiedTimes.put(id, toFlush.get(id));
+        }
+        instanceService.batchUpdateInstanceConfigLastModifiedTimes(lastModifiedTimes);
+        toFlush.keySet().removeAll(batch);
+      }
+      transaction.setStatus(Transaction.SUCCESS);
+    } catch (Throwable ex) {
+      //the heartbeats not flushed are offered again, as the same deliveries are not audited again
+      //until the audit cache expires
+      toFlush.forEach(this::offer);
+      transaction.setStatus(ex);
+      throw ex;
+    } finally {
+      transaction.complete();
+    }
+  }
+
+  @Override
+  public void afterPropertiesSet() throws Exception {
+    long interval = bizConfig.instanceConfigHeartbeatFlushInterval();
+    flushExecutorService.scheduleWithFixedDelay(() -> {
+      try {
+        flush();
+      } catch (Throwable ex) {
+        Tracer.logError(ex);
+      }
+    }, interval, interval, bizConfig.instanceConfigHeartbeatFlushIntervalTimeUnit());
+  }
+
+  @Override
+  public void destroy() throws Exception {
+    flushExecutorService.shutdown();
+    try {
+      flush();
+    } catch (Throwable ex) {
+      Tracer.logError(ex);
+    }
+  }
+}
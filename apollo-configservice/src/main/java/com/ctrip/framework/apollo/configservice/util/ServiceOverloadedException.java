@@ -0,0 +1,13 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+/**
+ * Thrown when a request is shed by {@link AdmissionControl}, which is responded with 429 and a
+ * Retry-After header
+ */
+public class ServiceOverloadedException extends RuntimeException {
+
+  public ServiceOverloadedException(String message) {
+    //thrown a lot under overload, so skip the stack trace
+    super(message, null, false, false);
+  }
+}
@@ -0,0 +1,61 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.collect.Maps;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Map each watch key, i.e. appId+cluster+namespace, to a stable and dense int id, so that the
+ * notification registry and the caches keyed by watch keys could be plain arrays indexed by id.
+ *
+ * <p>Watch keys are case insensitive, same as the database, so the different cases of one key share
+ * the same id. Ids are only created for the keys of the release messages, which are bounded by the
+ * apps, clusters and namespaces in the database, and are never released. The keys watched by the
+ * clients are only looked up, see {@link WatchKeyRegistry}.</p>
+ */
+@Component
+public class WatchKeyDictionary {
+  public static final int NOT_FOUND = -1;
+
+  //store the lower case form of the watch keys -> id
+  private final ConcurrentMap<String, Integer> ids = Maps.newConcurrentMap();
+  private final AtomicInteger nextId = new AtomicInteger();
+
+  /**
+   * @param watchKey the watch key of a release message
+   * @return the id of the watch key, which is assigned if the key is new
+   */
+  public int getOrCreateId(String watchKey) {
+    String normalizedKey = normalize(watchKey);
+    Integer id = ids.get(normalizedKey);
+    if (id != null) {
+      return id;
+    }
+    return ids.computeIfAbsent(normalizedKey, key -> nextId.getAndIncrement());
+  }
+
+  /**
+   * @return the id of the watch key, or {@link #NOT_FOUND} if the key has no release message yet
+   */
+  public int findId(String watchKey) {
+    Integer id = ids.get(normalize(watchKey));
+    return id == null ? NOT_FOUND : id;
+  }
+
+  /**
+   * @return the number of distinct watch keys, which is also the upper bound of the ids
+   */
+  public int size() {
+    return nextId.get();
+  }
+
+  /**
+   * @return the lower case form of the watch key, which is the same instance if it is lower case already
+   */
+  static String normalize(String watchKey) {
+    return watchKey.toLowerCase(Locale.ROOT);
+  }
+}
@@ -0,0 +1,84 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * A map from the ids of {@link WatchKeyDictionary} to values, backed by an array as the ids are
+ * dense, so lookups neither hash nor box the keys.
+ *
+ * <p>Reads are lock free, while writes are serialized so that no write is lost when the array
+ * grows.</p>
+ */
+public class WatchKeyIdMap<V> {
+  private static final int INITIAL_CAPACITY = 1024;
+
+  private volatile AtomicReferenceArray<V> values = new AtomicReferenceArray<>(INITIAL_CAPACITY);
+
+  public V get(int id) {
+    if (id < 0) {
+      return null;
+    }
+    AtomicReferenceArray<V> current = values;
+    return id < current.length() ? current.get(id) : null;
+  }
+
+  public synchronized void put(int id, V value) {
+    ensureCapacity(id);
+    values.set(id, value);
+  }
+
+  public V computeIfAbsent(int id, IntFunction<V> mappingFunction) {
+    V value = get(id);
+    if (value != null) {
+      return value;
+    }
+    synchronized (this) {
+      ensureCapacity(id);
+      value = values.get(id);
+      if (value == null) {
+        value = mappingFunction.apply(id);
+        values.set(id, value);
+      }
+      return value;
+    }
+  }
+
+  /**
+   * Removes the value of the id only if it is the given one
+   */
+  public synchronized boolean remove(int id, V value) {
+    if (get(id) != value) {
+      return false;
+    }
+    values.set(id, null);
+    return true;
+  }
+
+  /**
+   * Performs the action for each value, the values put meanwhile might be missed unless the writes
+   * are serialized with it
+   */
+  public void forEach(Consumer<V> action) {
+    AtomicReferenceArray<V> current = values;
+    for (int i = 0; i < current.length(); i++) {
+      V value = current.get(i);
+      if (value != null) {
+        action.accept(value);
+      }
+    }
+  }
+
+  private void ensureCapacity(int id) {
+    AtomicReferenceArray<V> current = values;
+    if (id < current.length()) {
+      return;
+    }
+    AtomicReferenceArray<V> grown = new AtomicReferenceArray<>(Math.max(current.length() * 2, id + 1));
+    for (int i = 0; i < current.length(); i++) {
+      grown.set(i, current.get(i));
+    }
+    values = grown;
+  }
+}
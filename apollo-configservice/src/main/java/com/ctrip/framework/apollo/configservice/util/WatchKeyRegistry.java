@@ -0,0 +1,133 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.collect.Maps;
+import com.google.common.collect.Sets;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * A multimap from watch keys to their watchers, e.g. the long polling requests, which replaces the
+ * synchronized case insensitive tree multimaps. Keys with release messages are resolved to ids by
+ * {@link WatchKeyDictionary}, and each key has its own concurrent set, so registrations of different
+ * keys don't contend with each other or with the notifying thread.
+ *
+ * <p>The keys without ids, e.g. the clusters or namespaces never released, are kept by their lower
+ * case form, so that the keys supplied by the clients never create ids. The set of a key is removed
+ * once its last watcher is removed.</p>
+ */
+public class WatchKeyRegistry<V> {
+  private final WatchKeyDictionary watchKeyDictionary;
+  private final WatchKeyIdMap<Watchers<V>> watchers = new WatchKeyIdMap<>();
+  //store the lower case form of the watch keys without ids -> watchers
+  private final ConcurrentMap<String, Watchers<V>> unknownKeyWatchers = Maps.newConcurrentMap();
+  private final AtomicInteger size = new AtomicInteger();
+
+  public WatchKeyRegistry(WatchKeyDictionary watchKeyDictionary) {
+    this.watchKeyDictionary = watchKeyDictionary;
+  }
+
+  public boolean put(String watchKey, V watcher) {
+    int id = watchKeyDictionary.findId(watchKey);
+    boolean added;
+    if (id != WatchKeyDictionary.NOT_FOUND) {
+      added = add(() -> watchers.computeIfAbsent(id, key -> new Watchers<>()), watcher);
+    } else {
+      String normalizedKey = WatchKeyDictionary.normalize(watchKey);
+      added = add(() -> unknownKeyWatchers.computeIfAbsent(normalizedKey, key -> new Watchers<>()), watcher);
+    }
+    if (added) {
+      size.incrementAndGet();
+    }
+    return added;
+  }
+
+  public boolean remove(String watchKey, V watcher) {
+    int id = watchKeyDictionary.findId(watchKey);
+    boolean removed = false;
+    if (id != WatchKeyDictionary.NOT_FOUND) {
+      Watchers<V> keyWatchers = watchers.get(id);
+      removed = keyWatchers != null && remove(keyWatchers, watcher, () -> watchers.remove(id, keyWatchers));
+    }
+    //the watcher might be put before the key has an id
+    if (!removed && !unknownKeyWatchers.isEmpty()) {
+      String normalizedKey = WatchKeyDictionary.normalize(watchKey);
+      Watchers<V> keyWatchers = unknownKeyWatchers.get(normalizedKey);
+      removed = keyWatchers != null &&
+          remove(keyWatchers, watcher, () -> unknownKeyWatchers.remove(normalizedKey, keyWatchers));
+    }
+    if (removed) {
+      size.decrementAndGet();
+    }
+    return removed;
+  }
+
+  /**
+   * @return a live view of the watchers of the key, which should be copied before iterating if
+   * watchers may be removed meanwhile
+   */
+  public Collection<V> get(String watchKey) {
+    Set<V> keyWatchers = watchersOf(watchers.get(watchKeyDictionary.findId(watchKey)));
+    if (unknownKeyWatchers.isEmpty()) {
+      return keyWatchers;
+    }
+    Set<V> unknownKeyWatchersOfKey =
+        watchersOf(unknownKeyWatchers.get(WatchKeyDictionary.normalize(watchKey)));
+    if (unknownKeyWatchersOfKey.isEmpty()) {
+      return keyWatchers;
+    }
+    return keyWatchers.isEmpty() ? unknownKeyWatchersOfKey : Sets.union(keyWatchers, unknownKeyWatchersOfKey);
+  }
+
+  public boolean containsKey(String watchKey) {
+    return !get(watchKey).isEmpty();
+  }
+
+  /**
+   * @return the number of key and watcher pairs
+   */
+  public int size() {
+    return size.get();
+  }
+
+  public boolean isEmpty() {
+    return size() == 0;
+  }
+
+  private boolean add(Supplier<Watchers<V>> keyWatchersSupplier, V watcher) {
+    while (true) {
+      Watchers<V> keyWatchers = keyWatchersSupplier.get();
+      synchronized (keyWatchers) {
+        //otherwise it is just removed, so try again with a new one
+        if (!keyWatchers.removed) {
+          return keyWatchers.watchers.add(watcher);
+        }
+      }
+    }
+  }
+
+  private boolean remove(Watchers<V> keyWatchers, V watcher, Runnable removeKey) {
+    synchronized (keyWatchers) {
+      boolean removed = keyWatchers.watchers.remove(watcher);
+      if (keyWatchers.watchers.isEmpty() && !keyWatchers.removed) {
+        keyWatchers.removed = true;
+        removeKey.run();
+      }
+      return removed;
+    }
+  }
+
+  private Set<V> watchersOf(Watchers<V> keyWatchers) {
+    return keyWatchers == null ? Collections.emptySet() : Collections.unmodifiableSet(keyWatchers.watchers);
+  }
+
+  private static class Watchers<V> {
+    private final Set<V> watchers = Sets.newConcurrentHashSet();
+    //set once it is removed from the registry, so that no watcher is added to it any more
+    private boolean removed;
+  }
+}
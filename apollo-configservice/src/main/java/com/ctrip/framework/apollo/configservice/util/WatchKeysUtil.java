@@ -5,15 +5,23 @@ import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithC
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.google.common.base.Joiner;
 import com.google.common.base.Strings;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import com.google.common.collect.HashMultimap;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.collect.ImmutableSetMultimap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
 import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import org.springframework.stereotype.Component;
 
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
 /**
@@ -22,30 +30,79 @@ import java.util.stream.Collectors;
 @Component
 public class WatchKeysUtil {
   private static final Joiner STRING_JOINER = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR);
+  private static final int WATCH_KEYS_CACHE_MAX_SIZE = 10000;
+  private static final int WATCH_KEYS_CACHE_EXPIRE_HOURS = 1;
   private final AppNamespaceServiceWithCache appNamespaceService;
 
+  //store appId+cluster+namespaces+dataCenter -> watch keys, validated by the app namespace version
+  private final Cache<WatchKeysCacheKey, VersionedWatchKeys> watchKeysCache;
+  //the same watch keys are shared by all the clients of an app
+  private final Interner<String> watchKeyInterner;
+
   public WatchKeysUtil(final AppNamespaceServiceWithCache appNamespaceService) {
     this.appNamespaceService = appNamespaceService;
+    watchKeysCache = CacheBuilder.newBuilder()
+        .maximumSize(WATCH_KEYS_CACHE_MAX_SIZE)
+        .expireAfterAccess(WATCH_KEYS_CACHE_EXPIRE_HOURS, TimeUnit.HOURS)
+        .build();
+    watchKeyInterner = Interners.newWeakInterner();
   }
 
   /**
    * Assemble watch keys for the given appId, cluster, namespace, dataCenter combination
+   *
+   * @return an immutable set of watch keys
    */
   public Set<String> assembleAllWatchKeys(String appId, String clusterName, String namespace,
                                           String dataCenter) {
-    Multimap<String, String> watchedKeysMap =
-        assembleAllWatchKeys(appId, clusterName, Sets.newHashSet(namespace), dataCenter);
-    return Sets.newHashSet(watchedKeysMap.get(namespace));
+    return memoizedWatchKeys(appId, clusterName, ImmutableSet.of(namespace), dataCenter)
+        .get(namespace);
   }
 
   /**
-   * Assemble watch keys for the given appId, cluster, namespaces, dataCenter combination
+   * Assemble watch keys for the given appId, cluster, namespaces, dataCenter combination.
+   *
+   * <p>The result only changes when the app namespaces change, so it is memoized until
+   * {@link AppNamespaceServiceWithCache#getVersion()} moves on.</p>
    *
-   * @return a multimap with namespace as the key and watch keys as the value
+   * @return an immutable multimap with namespace as the key and watch keys as the value
    */
   public Multimap<String, String> assembleAllWatchKeys(String appId, String clusterName,
                                                        Set<String> namespaces,
                                                        String dataCenter) {
+    return memoizedWatchKeys(appId, clusterName, namespaces, dataCenter);
+  }
+
+  private ImmutableSetMultimap<String, String> memoizedWatchKeys(String appId, String clusterName,
+                                                                 Set<String> namespaces,
+                                                                 String dataCenter) {
+    WatchKeysCacheKey cacheKey = new WatchKeysCacheKey(appId, clusterName, namespaces, dataCenter);
+    long version = appNamespaceService.getVersion();
+
+    VersionedWatchKeys cached = watchKeysCache.getIfPresent(cacheKey);
+    if (cached != null && cached.version == version) {
+      return cached.watchKeys;
+    }
+
+    // the version is read before the assembling, so a concurrent change would be caught next time
+    ImmutableSetMultimap<String, String> watchKeys = intern(
+        doAssembleAllWatchKeys(appId, clusterName, cacheKey.namespaces, dataCenter));
+    watchKeysCache.put(cacheKey, new VersionedWatchKeys(version, watchKeys));
+
+    return watchKeys;
+  }
+
+  private ImmutableSetMultimap<String, String> intern(Multimap<String, String> watchedKeysMap) {
+    ImmutableSetMultimap.Builder<String, String> builder = ImmutableSetMultimap.builder();
+    for (Map.Entry<String, String> entry : watchedKeysMap.entries()) {
+      builder.put(entry.getKey(), watchKeyInterner.intern(entry.getValue()));
+    }
+    return builder.build();
+  }
+
+  private Multimap<String, String> doAssembleAllWatchKeys(String appId, String clusterName,
+                                                          Set<String> namespaces,
+                                                          String dataCenter) {
     Multimap<String, String> watchedKeysMap =
         assembleWatchKeys(appId, clusterName, namespaces, dataCenter);
 
@@ -139,4 +196,51 @@ public class WatchKeysUtil {
 
     return appNamespaces.stream().map(AppNamespace::getName).collect(Collectors.toSet());
   }
+
+  private static class WatchKeysCacheKey {
+    private final String appId;
+    private final String clusterName;
+    private final ImmutableSet<String> namespaces;
+    private final String dataCenter;
+    private final int hashCode;
+
+    WatchKeysCacheKey(String appId, String clusterName, Set<String> namespaces, String dataCenter) {
+      this.appId = appId;
+      this.clusterName = clusterName;
+      this.namespaces = ImmutableSet.copyOf(namespaces);
+      this.dataCenter = dataCenter;
+      this.hashCode = Objects.hash(appId, clusterName, this.namespaces, dataCenter);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof WatchKeysCacheKey)) {
+        return false;
+      }
+      WatchKeysCacheKey that = (WatchKeysCacheKey) o;
+      return hashCode == that.hashCode
+          && Objects.equals(appId, that.appId)
+          && Objects.equals(clusterName, that.clusterName)
+          && Objects.equals(dataCenter, that.dataCenter)
+          && namespaces.equals(that.namespaces);
+    }
+
+    @Override
+    public int hashCode() {
+      return hashCode;
+    }
+  }
+
+  private static class VersionedWatchKeys {
+    private final long version;
+    private final ImmutableSetMultimap<String, String> watchKeys;
+
+    VersionedWatchKeys(long version, ImmutableSetMultimap<String, String> watchKeys) {
+      this.version = version;
+      this.watchKeys = watchKeys;
+    }
+  }
 }
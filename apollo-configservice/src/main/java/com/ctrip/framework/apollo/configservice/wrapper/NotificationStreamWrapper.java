@@ -0,0 +1,115 @@
+package com.ctrip.framework.apollo.configservice.wrapper;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Maps;
+import com.google.gson.Gson;
+
+import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
+
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A server-sent events stream of one client, which stays open across notifications, unlike the
+ * long polling {@link DeferredResultWrapper}.
+ *
+ * <p>Each event is named {@value #NOTIFICATIONS_EVENT} and carries the json of the notification
+ * list, same as the body of the long polling response.</p>
+ */
+public class NotificationStreamWrapper implements Comparable<NotificationStreamWrapper> {
+  public static final String NOTIFICATIONS_EVENT = "notifications";
+  private static final Gson GSON = new Gson();
+
+  private Map<String, String> normalizedNamespaceNameToOriginalNamespaceName;
+  private final SseEmitter emitter;
+  private volatile boolean closed;
+
+  public NotificationStreamWrapper(long timeoutInMilli) {
+    emitter = new SseEmitter(timeoutInMilli);
+  }
+
+  public void recordNamespaceNameNormalizedResult(String originalNamespaceName, String normalizedNamespaceName) {
+    if (normalizedNamespaceNameToOriginalNamespaceName == null) {
+      normalizedNamespaceNameToOriginalNamespaceName = Maps.newHashMap();
+    }
+    normalizedNamespaceNameToOriginalNamespaceName.put(normalizedNamespaceName, originalNamespaceName);
+  }
+
+  public void onTimeout(Runnable timeoutCallback) {
+    emitter.onTimeout(timeoutCallback);
+  }
+
+  public void onCompletion(Runnable completionCallback) {
+    emitter.onCompletion(() -> {
+      closed = true;
+      completionCallback.run();
+    });
+  }
+
+  public void send(ApolloConfigNotification notification) {
+    send(Lists.newArrayList(notification));
+  }
+
+  /**
+   * The namespace name is used as a key in client side, so we have to send the original one
+   * instead of the correct one. As the notifications are shared among streams, the renamed ones are
+   * copied.
+   */
+  public void send(List<ApolloConfigNotification> notifications) {
+    List<ApolloConfigNotification> toSend = notifications;
+    if (normalizedNamespaceNameToOriginalNamespaceName != null) {
+      toSend = Lists.newArrayListWithCapacity(notifications.size());
+      for (ApolloConfigNotification notification : notifications) {
+        String originalNamespaceName = normalizedNamespaceNameToOriginalNamespaceName
+            .get(notification.getNamespaceName());
+        if (originalNamespaceName == null) {
+          toSend.add(notification);
+          continue;
+        }
+        ApolloConfigNotification renamed =
+            new ApolloConfigNotification(originalNamespaceName, notification.getNotificationId());
+        renamed.setMessages(notification.getMessages());
+        toSend.add(renamed);
+      }
+    }
+
+    send(SseEmitter.event().name(NOTIFICATIONS_EVENT).data(GSON.toJson(toSend)));
+  }
+
+  /**
+   * Keep the connection alive through proxies and let the client detect dead connections by its
+   * read timeout
+   */
+  public void sendHeartbeat() {
+    send(SseEmitter.event().comment(""));
+  }
+
+  public void complete() {
+    emitter.complete();
+  }
+
+  private void send(SseEmitter.SseEventBuilder event) {
+    if (closed) {
+      return;
+    }
+    try {
+      emitter.send(event);
+    } catch (IOException | IllegalStateException ex) {
+      // the client is gone, the servlet container completes the request with an error dispatch
+      closed = true;
+    }
+  }
+
+  public SseEmitter getEmitter() {
+    return emitter;
+  }
+
+  @Override
+  public int compareTo(@NonNull NotificationStreamWrapper notificationStreamWrapper) {
+    return Integer.compare(this.hashCode(), notificationStreamWrapper.hashCode());
+  }
+}
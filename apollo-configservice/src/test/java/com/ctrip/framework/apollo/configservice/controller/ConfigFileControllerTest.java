@@ -1,15 +1,13 @@
 package com.ctrip.framework.apollo.configservice.controller;
 
-import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
-import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.configservice.service.ConfigFileCache;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyDictionary;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
 import com.ctrip.framework.apollo.core.dto.ApolloConfig;
-import com.google.common.cache.Cache;
 import com.google.common.collect.ImmutableMap;
-import com.google.common.collect.Lists;
-import com.google.common.collect.Multimap;
 import com.google.common.collect.Sets;
 import com.google.common.reflect.TypeToken;
 import com.google.gson.Gson;
@@ -20,15 +18,17 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
-import org.springframework.test.util.ReflectionTestUtils;
 
 import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import java.lang.reflect.Type;
+import java.nio.charset.StandardCharsets;
 import java.util.Map;
 import java.util.Set;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.*;
@@ -46,6 +46,11 @@ public class ConfigFileControllerTest {
   private NamespaceUtil namespaceUtil;
   @Mock
   private GrayReleaseRulesHolder grayReleaseRulesHolder;
+  @Mock
+  private ConfigFileCache.ConfigLoader configLoader;
+  @Mock
+  private BizConfig bizConfig;
+  private ConfigFileCache configFileCache;
   private ConfigFileController configFileController;
   private String someAppId;
   private String someClusterName;
@@ -56,13 +61,14 @@ public class ConfigFileControllerTest {
   private HttpServletResponse someResponse;
   @Mock
   private HttpServletRequest someRequest;
-  Multimap<String, String> watchedKeys2CacheKey;
-  Multimap<String, String> cacheKey2WatchedKeys;
 
   @Before
   public void setUp() throws Exception {
+    when(bizConfig.configFileCacheMaxSizeInMB()).thenReturn(1);
+    when(bizConfig.configFileCacheExpireInMinutes()).thenReturn(30);
+    configFileCache = new ConfigFileCache(configLoader, watchKeysUtil, new WatchKeyDictionary(), bizConfig);
     configFileController = new ConfigFileController(
-        configController, namespaceUtil, watchKeysUtil, grayReleaseRulesHolder
+        configController, namespaceUtil, grayReleaseRulesHolder, configFileCache
     );
 
     someAppId = "someAppId";
@@ -75,13 +81,6 @@ public class ConfigFileControllerTest {
     when(namespaceUtil.normalizeNamespace(someAppId, someNamespace)).thenReturn(someNamespace);
     when(grayReleaseRulesHolder.hasGrayReleaseRule(anyString(), anyString(), anyString()))
         .thenReturn(false);
-
-    watchedKeys2CacheKey =
-        (Multimap<String, String>) ReflectionTestUtils
-            .getField(configFileController, "watchedKeys2CacheKey");
-    cacheKey2WatchedKeys =
-        (Multimap<String, String>) ReflectionTestUtils
-            .getField(configFileController, "cacheKey2WatchedKeys");
   }
 
   @Test
@@ -95,10 +94,6 @@ public class ConfigFileControllerTest {
     String anotherWatchKey = "anotherWatchKey";
     Set<String> watchKeys = Sets.newHashSet(someWatchKey, anotherWatchKey);
 
-    String cacheKey =
-        configFileController
-            .assembleCacheKey(ConfigFileController.ConfigFileOutputFormat.PROPERTIES, someAppId, someClusterName, someNamespace, someDataCenter);
-
     Map<String, String> configurations =
         ImmutableMap.of(someKey, someValue, anotherKey, anotherValue);
     ApolloConfig someApolloConfig = mock(ApolloConfig.class);
@@ -110,28 +105,36 @@ public class ConfigFileControllerTest {
         .assembleAllWatchKeys(someAppId, someClusterName, someNamespace, someDataCenter))
         .thenReturn(watchKeys);
 
-    ResponseEntity<String> response =
+    ResponseEntity<byte[]> response =
         configFileController
             .queryConfigAsProperties(someAppId, someClusterName, someNamespace, someDataCenter,
                 someClientIp, someRequest, someResponse);
 
-    assertEquals(2, watchedKeys2CacheKey.size());
-    assertEquals(2, cacheKey2WatchedKeys.size());
-    assertTrue(watchedKeys2CacheKey.containsEntry(someWatchKey, cacheKey));
-    assertTrue(watchedKeys2CacheKey.containsEntry(anotherWatchKey, cacheKey));
-    assertTrue(cacheKey2WatchedKeys.containsEntry(cacheKey, someWatchKey));
-    assertTrue(cacheKey2WatchedKeys.containsEntry(cacheKey, anotherWatchKey));
+    assertEquals(1, configFileCache.size());
 
+    String body = new String(response.getBody(), StandardCharsets.UTF_8);
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    assertTrue(response.getBody().contains(String.format("%s=%s", someKey, someValue)));
-    assertTrue(response.getBody().contains(String.format("%s=%s", anotherKey, anotherValue)));
+    assertTrue(body.contains(String.format("%s=%s", someKey, someValue)));
+    assertTrue(body.contains(String.format("%s=%s", anotherKey, anotherValue)));
+    assertTrue(response.getHeaders().getETag().startsWith("\""));
 
-    ResponseEntity<String> anotherResponse =
+    ResponseEntity<byte[]> anotherResponse =
         configFileController
             .queryConfigAsProperties(someAppId, someClusterName, someNamespace, someDataCenter,
                 someClientIp, someRequest, someResponse);
 
-    assertEquals(response, anotherResponse);
+    assertArrayEquals(response.getBody(), anotherResponse.getBody());
+    assertEquals(response.getHeaders().getETag(), anotherResponse.getHeaders().getETag());
+
+    //the json format is rendered and cached at the same time
+    ResponseEntity<byte[]> jsonResponse =
+        configFileController
+            .queryConfigAsJson(someAppId, someClusterName, someNamespace, someDataCenter,
+                someClientIp, someRequest, someResponse);
+
+    assertEquals(HttpStatus.OK, jsonResponse.getStatusCode());
+    assertNotEquals(response.getHeaders().getETag(), jsonResponse.getHeaders().getETag());
+    assertEquals(2.0 / 3, configFileCache.getHitRate(), 0.01);
 
     verify(configController, times(1))
         .queryConfig(someAppId, someClusterName, someNamespace, someDataCenter, "-1", someClientIp, null,
@@ -159,13 +162,14 @@ public class ConfigFileControllerTest {
         .assembleAllWatchKeys(someAppId, someClusterName, someNamespace, someDataCenter))
         .thenReturn(watchKeys);
 
-    ResponseEntity<String> response =
+    ResponseEntity<byte[]> response =
         configFileController
             .queryConfigAsJson(someAppId, someClusterName, someNamespace, someDataCenter,
                 someClientIp, someRequest, someResponse);
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    assertEquals(configurations, gson.fromJson(response.getBody(), responseType));
+    assertEquals(configurations,
+        gson.fromJson(new String(response.getBody(), StandardCharsets.UTF_8), responseType));
   }
 
   @Test
@@ -187,12 +191,12 @@ public class ConfigFileControllerTest {
         .queryConfig(someAppId, someClusterName, someNamespace, someDataCenter, "-1", someClientIp, null,
             someRequest, someResponse)).thenReturn(someApolloConfig);
 
-    ResponseEntity<String> response =
+    ResponseEntity<byte[]> response =
         configFileController
             .queryConfigAsJson(someAppId, someClusterName, someNamespace, someDataCenter,
                 someClientIp, someRequest, someResponse);
 
-    ResponseEntity<String> anotherResponse =
+    ResponseEntity<byte[]> anotherResponse =
         configFileController
             .queryConfigAsJson(someAppId, someClusterName, someNamespace, someDataCenter,
                 someClientIp, someRequest, someResponse);
@@ -202,36 +206,9 @@ public class ConfigFileControllerTest {
             someRequest, someResponse);
 
     assertEquals(HttpStatus.OK, response.getStatusCode());
-    assertEquals(configurations, gson.fromJson(response.getBody(), responseType));
-    assertTrue(watchedKeys2CacheKey.isEmpty());
-    assertTrue(cacheKey2WatchedKeys.isEmpty());
-  }
-
-  @Test
-  public void testHandleMessage() throws Exception {
-    String someWatchKey = "someWatchKey";
-    String anotherWatchKey = "anotherWatchKey";
-    String someCacheKey = "someCacheKey";
-    String anotherCacheKey = "anotherCacheKey";
-    String someValue = "someValue";
-
-    ReleaseMessage someReleaseMessage = mock(ReleaseMessage.class);
-    when(someReleaseMessage.getMessage()).thenReturn(someWatchKey);
-
-    Cache<String, String> cache =
-        (Cache<String, String>) ReflectionTestUtils.getField(configFileController, "localCache");
-    cache.put(someCacheKey, someValue);
-    cache.put(anotherCacheKey, someValue);
-
-    watchedKeys2CacheKey.putAll(someWatchKey, Lists.newArrayList(someCacheKey, anotherCacheKey));
-    watchedKeys2CacheKey.putAll(anotherWatchKey, Lists.newArrayList(someCacheKey, anotherCacheKey));
-
-    cacheKey2WatchedKeys.putAll(someCacheKey, Lists.newArrayList(someWatchKey, anotherWatchKey));
-    cacheKey2WatchedKeys.putAll(anotherCacheKey, Lists.newArrayList(someWatchKey, anotherWatchKey));
-
-    configFileController.handleMessage(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
-
-    assertTrue(watchedKeys2CacheKey.isEmpty());
-    assertTrue(cacheKey2WatchedKeys.isEmpty());
+    assertEquals(configurations,
+        gson.fromJson(new String(response.getBody(), StandardCharsets.UTF_8), responseType));
+    assertArrayEquals(response.getBody(), anotherResponse.getBody());
+    assertEquals(0, configFileCache.size());
   }
 }
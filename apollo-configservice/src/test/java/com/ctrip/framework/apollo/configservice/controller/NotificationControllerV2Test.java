@@ -6,8 +6,11 @@ import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.utils.EntityManagerUtil;
 import com.ctrip.framework.apollo.configservice.service.ReleaseMessageServiceWithCache;
 import com.ctrip.framework.apollo.configservice.util.NamespaceUtil;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyDictionary;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyRegistry;
 import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
 import com.ctrip.framework.apollo.configservice.wrapper.DeferredResultWrapper;
+import com.ctrip.framework.apollo.configservice.wrapper.NotificationStreamWrapper;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloConfigNotification;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
@@ -63,13 +66,13 @@ public class NotificationControllerV2Test {
 
   private Gson gson;
 
-  private Multimap<String, DeferredResultWrapper> deferredResults;
+  private WatchKeyRegistry<DeferredResultWrapper> deferredResults;
 
   @Before
   public void setUp() throws Exception {
     gson = new Gson();
     controller = new NotificationControllerV2(
-        watchKeysUtil, releaseMessageService, entityManagerUtil, namespaceUtil, gson, bizConfig
+        watchKeysUtil, releaseMessageService, entityManagerUtil, namespaceUtil, gson, bizConfig, new WatchKeyDictionary()
     );
 
     when(bizConfig.releaseMessageNotificationBatch()).thenReturn(100);
@@ -90,7 +93,7 @@ public class NotificationControllerV2Test {
     when(namespaceUtil.normalizeNamespace(someAppId, somePublicNamespace)).thenReturn(somePublicNamespace);
 
     deferredResults =
-        (Multimap<String, DeferredResultWrapper>) ReflectionTestUtils.getField(controller, "deferredResults");
+        (WatchKeyRegistry<DeferredResultWrapper>) ReflectionTestUtils.getField(controller, "deferredResults");
   }
 
   @Test
@@ -119,6 +122,43 @@ public class NotificationControllerV2Test {
     assertWatchKeys(watchKeysMap, deferredResult);
   }
 
+  @Test
+  public void testStreamNotificationsRegisteredOnce() throws Exception {
+    String someWatchKey = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(someAppId, someCluster, defaultNamespace);
+    String anotherWatchKey = Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(someAppId, defaultCluster, defaultNamespace);
+
+    Multimap<String, String> watchKeysMap =
+        assembleMultiMap(defaultNamespace, Lists.newArrayList(someWatchKey, anotherWatchKey));
+
+    String notificationAsString =
+        transformApolloConfigNotificationsToString(defaultNamespace, someNotificationId);
+
+    when(watchKeysUtil
+        .assembleAllWatchKeys(someAppId, someCluster, Sets.newHashSet(defaultNamespace),
+            someDataCenter)).thenReturn(
+        watchKeysMap);
+    when(bizConfig.notificationStreamTimeoutInMilli()).thenReturn(60000L);
+
+    controller.streamNotifications(someAppId, someCluster, notificationAsString, someDataCenter, someClientIp);
+
+    WatchKeyRegistry<NotificationStreamWrapper> notificationStreams =
+        (WatchKeyRegistry<NotificationStreamWrapper>) ReflectionTestUtils.getField(controller, "notificationStreams");
+    assertEquals(watchKeysMap.size(), notificationStreams.size());
+    assertEquals(0, deferredResults.size());
+
+    ReleaseMessage someReleaseMessage = new ReleaseMessage(someWatchKey);
+    someReleaseMessage.setId(someNotificationId + 1);
+    controller.handleMessage(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+    controller.handleMessage(someReleaseMessage, Topics.APOLLO_RELEASE_TOPIC);
+
+    //still registered after the notifications, unlike long polling
+    assertEquals(watchKeysMap.size(), notificationStreams.size());
+    verify(watchKeysUtil, times(1)).assembleAllWatchKeys(someAppId, someCluster, Sets.newHashSet(defaultNamespace),
+        someDataCenter);
+  }
+
   @Test
   public void testPollNotificationWithDefaultNamespaceAsFile() throws Exception {
     String namespace = String.format("%s.%s", defaultNamespace, "properties");
@@ -0,0 +1,90 @@
+package com.ctrip.framework.apollo.configservice.filter;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl.Budget;
+import javax.servlet.FilterChain;
+import javax.servlet.ServletRequest;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AdmissionControlFilterTest {
+
+  private AdmissionControl admissionControl;
+  private AdmissionControlFilter admissionControlFilter;
+
+  @Mock
+  private BizConfig bizConfig;
+  @Mock
+  private FilterChain filterChain;
+
+  @Before
+  public void setUp() {
+    when(bizConfig.isAdmissionControlEnabled()).thenReturn(true);
+    when(bizConfig.admissionControlRetryAfter()).thenReturn(1);
+    when(bizConfig.admissionControlLongPollMaxConcurrency()).thenReturn(1);
+
+    admissionControl = new AdmissionControl(bizConfig);
+    admissionControlFilter = new AdmissionControlFilter(admissionControl, Budget.LONG_POLL);
+  }
+
+  @Test
+  public void testReleaseAfterChain() throws Exception {
+    MockHttpServletRequest request = new MockHttpServletRequest();
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    admissionControlFilter.doFilter(request, response, filterChain);
+    admissionControlFilter.doFilter(request, response, filterChain);
+
+    verify(filterChain, times(2)).doFilter(request, response);
+    assertEquals(200, response.getStatus());
+  }
+
+  @Test
+  public void testShedWhenExhausted() throws Exception {
+    MockHttpServletRequest someRequest = new MockHttpServletRequest();
+    someRequest.setAsyncSupported(true);
+    MockHttpServletResponse someResponse = new MockHttpServletResponse();
+    doAnswer(invocation -> {
+      ServletRequest request = invocation.getArgument(0);
+      request.startAsync();
+      return null;
+    }).when(filterChain).doFilter(someRequest, someResponse);
+
+    admissionControlFilter.doFilter(someRequest, someResponse, filterChain);
+
+    MockHttpServletRequest anotherRequest = new MockHttpServletRequest();
+    MockHttpServletResponse anotherResponse = new MockHttpServletResponse();
+
+    admissionControlFilter.doFilter(anotherRequest, anotherResponse, filterChain);
+
+    verify(filterChain, never()).doFilter(anotherRequest, anotherResponse);
+    assertEquals(429, anotherResponse.getStatus());
+    int retryAfter = Integer.parseInt(anotherResponse.getHeader(HttpHeaders.RETRY_AFTER));
+    assertTrue(retryAfter >= 1 && retryAfter <= 2);
+
+    //the permit of the async request is released on completion
+    someRequest.getAsyncContext().complete();
+
+    anotherResponse = new MockHttpServletResponse();
+    admissionControlFilter.doFilter(anotherRequest, anotherResponse, filterChain);
+
+    verify(filterChain).doFilter(anotherRequest, anotherResponse);
+    assertEquals(200, anotherResponse.getStatus());
+  }
+}
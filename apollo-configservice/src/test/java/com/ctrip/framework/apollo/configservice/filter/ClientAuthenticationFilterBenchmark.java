@@ -0,0 +1,78 @@
+package com.ctrip.framework.apollo.configservice.filter;
+
+import com.ctrip.framework.apollo.configservice.util.AccessKeyUtil;
+import com.ctrip.framework.apollo.core.signature.Signature;
+import com.google.common.collect.Lists;
+import java.util.List;
+import javax.servlet.FilterChain;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+/**
+ * Measures the throughput of {@link ClientAuthenticationFilter}, not run with the unit tests.
+ *
+ * <p>Run it with the test classpath, e.g. {@code java -cp target/classes:target/test-classes:<deps>
+ * com.ctrip.framework.apollo.configservice.filter.ClientAuthenticationFilterBenchmark [requests]}. The
+ * requests are signed with the last of the available secrets, either all unique or 1000 distinct ones
+ * repeated, as retried by the clients.</p>
+ */
+public class ClientAuthenticationFilterBenchmark {
+  private static final String SOME_APP_ID = "someAppId";
+  private static final int REPEATED_REQUESTS = 1000;
+  private static final FilterChain NOOP_CHAIN = (request, response) -> {
+  };
+
+  public static void main(String[] args) throws Exception {
+    int requestCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+
+    //the first round warms up
+    for (int round = 0; round < 2; round++) {
+      for (int secretCount : new int[]{1, 5}) {
+        run("unique requests", secretCount, requestCount, requestCount);
+        run("1000 repeated", secretCount, REPEATED_REQUESTS, requestCount);
+      }
+    }
+  }
+
+  private static void run(String name, int secretCount, int distinctRequests, int requestCount)
+      throws Exception {
+    List<String> secrets = Lists.newArrayList();
+    for (int i = 0; i < secretCount; i++) {
+      secrets.add("someSecret" + i);
+    }
+    ClientAuthenticationFilter filter = new ClientAuthenticationFilter(new AccessKeyUtil(null) {
+      @Override
+      public List<String> findAvailableSecret(String appId) {
+        return secrets;
+      }
+    });
+
+    //signed before the timing, the timestamps are valid for 1 minute
+    String signingSecret = secrets.get(secretCount - 1);
+    MockHttpServletRequest[] requests = new MockHttpServletRequest[distinctRequests];
+    for (int i = 0; i < distinctRequests; i++) {
+      String path = "/configs/" + SOME_APP_ID + "/default/application";
+      String query = "ip=10.0.0." + i % 256 + "&releaseKey=" + i;
+      MockHttpServletRequest request = new MockHttpServletRequest("GET", path);
+      request.setServletPath(path);
+      request.setQueryString(query);
+      String url = "http://localhost:8080" + path + "?" + query;
+      Signature.buildHttpHeaders(url, SOME_APP_ID, signingSecret).forEach(request::addHeader);
+      requests[i] = request;
+    }
+
+    MockHttpServletResponse response = new MockHttpServletResponse();
+    long start = System.nanoTime();
+    for (int i = 0; i < requestCount; i++) {
+      filter.doFilter(requests[i % distinctRequests], response, NOOP_CHAIN);
+    }
+    long elapsed = System.nanoTime() - start;
+
+    if (response.getStatus() != HttpServletResponse.SC_OK) {
+      throw new IllegalStateException("Requests rejected with " + response.getStatus());
+    }
+    System.out.println(String.format("%-16s %d secret(s): %5d k/s", name, secretCount,
+        requestCount * 1000000L / elapsed));
+  }
+}
@@ -1,6 +1,7 @@
 package com.ctrip.framework.apollo.configservice.filter;
 
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
 import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -124,4 +125,49 @@ public class ClientAuthenticationFilterTest {
     verify(response, never()).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Unauthorized");
     verify(filterChain, times(1)).doFilter(request, response);
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testAuthorizedWithVerifiedSignature() throws Exception {
+    String appId = "someAppId";
+    String availableSignature = "someSignature";
+    List<String> secrets = Lists.newArrayList("someSecret", "anotherSecret");
+    String timestamp = Long.toString(System.currentTimeMillis());
+    String correctAuthorization = "Apollo someAppId:someSignature";
+
+    when(accessKeyUtil.extractAppIdFromRequest(any())).thenReturn(appId);
+    when(accessKeyUtil.findAvailableSecret(appId)).thenReturn(secrets);
+    when(accessKeyUtil.buildSignature(any(), any(), any(), eq("someSecret"))).thenReturn("wrongSignature");
+    when(accessKeyUtil.buildSignature(any(), any(), any(), eq("anotherSecret"))).thenReturn(availableSignature);
+    when(request.getHeader(Signature.HTTP_HEADER_TIMESTAMP)).thenReturn(timestamp);
+    when(request.getHeader(Signature.HTTP_HEADER_AUTHORIZATION)).thenReturn(correctAuthorization);
+
+    clientAuthenticationFilter.doFilter(request, response, filterChain);
+    clientAuthenticationFilter.doFilter(request, response, filterChain);
+
+    verify(accessKeyUtil, times(1)).buildSignature(any(), any(), any(), eq("anotherSecret"));
+    verify(response, never()).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Unauthorized");
+    verify(filterChain, times(2)).doFilter(request, response);
+  }
+
+  @Test
+  public void testUnauthorizedAfterSecretDisabled() throws Exception {
+    String appId = "someAppId";
+    String availableSignature = "someSignature";
+    String timestamp = Long.toString(System.currentTimeMillis());
+    String correctAuthorization = "Apollo someAppId:someSignature";
+
+    when(accessKeyUtil.extractAppIdFromRequest(any())).thenReturn(appId);
+    when(accessKeyUtil.findAvailableSecret(appId)).thenReturn(Lists.newArrayList("someSecret"),
+        Lists.newArrayList("anotherSecret"));
+    when(accessKeyUtil.buildSignature(any(), any(), any(), eq("someSecret"))).thenReturn(availableSignature);
+    when(accessKeyUtil.buildSignature(any(), any(), any(), eq("anotherSecret"))).thenReturn("anotherSignature");
+    when(request.getHeader(Signature.HTTP_HEADER_TIMESTAMP)).thenReturn(timestamp);
+    when(request.getHeader(Signature.HTTP_HEADER_AUTHORIZATION)).thenReturn(correctAuthorization);
+
+    clientAuthenticationFilter.doFilter(request, response, filterChain);
+    clientAuthenticationFilter.doFilter(request, response, filterChain);
+
+    verify(filterChain, times(1)).doFilter(request, response);
+    verify(response, times(1)).sendError(HttpServletResponse.SC_UNAUTHORIZED, "Unauthorized");
+  }
+}
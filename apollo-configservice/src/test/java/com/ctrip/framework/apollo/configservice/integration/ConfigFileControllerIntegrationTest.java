@@ -1,6 +1,7 @@
 package com.ctrip.framework.apollo.configservice.integration;
 
 import com.ctrip.framework.apollo.configservice.service.AppNamespaceServiceWithCache;
+import com.ctrip.framework.apollo.configservice.service.ConfigFileCache;
 import com.google.common.base.Joiner;
 import com.google.common.collect.ImmutableMap;
 import com.google.common.collect.Lists;
@@ -14,6 +15,9 @@ import com.netflix.servo.util.Strings;
 import org.junit.Before;
 import org.junit.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpEntity;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.jdbc.Sql;
@@ -29,6 +33,8 @@ import org.springframework.test.util.ReflectionTestUtils;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -50,10 +56,13 @@ public class ConfigFileControllerIntegrationTest extends AbstractBaseIntegration
 
   @Autowired
   private AppNamespaceServiceWithCache appNamespaceServiceWithCache;
+  @Autowired
+  private ConfigFileCache configFileCache;
 
   @Before
   public void setUp() throws Exception {
     ReflectionTestUtils.invokeMethod(appNamespaceServiceWithCache, "reset");
+    ReflectionTestUtils.invokeMethod(configFileCache, "reset");
     someDefaultCluster = ConfigConsts.CLUSTER_NAME_DEFAULT;
     someAppId = "someAppId";
     somePublicAppId = "somePublicAppId";
@@ -81,6 +90,31 @@ public class ConfigFileControllerIntegrationTest extends AbstractBaseIntegration
     assertTrue(result.contains("k2=v2"));
   }
 
+  @Test
+  @Sql(scripts = "/integration-test/test-release.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
+  @Sql(scripts = "/integration-test/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testQueryConfigAsPropertiesNotModified() throws Exception {
+    ResponseEntity<String> response =
+        restTemplate
+            .getForEntity("http://{baseurl}/configfiles/{appId}/{clusterName}/{namespace}", String.class,
+                getHostUrl(), someAppId, someCluster, someNamespace);
+
+    String eTag = response.getHeaders().getETag();
+
+    HttpHeaders headers = new HttpHeaders();
+    headers.setIfNoneMatch(eTag);
+
+    ResponseEntity<String> anotherResponse =
+        restTemplate
+            .exchange("http://{baseurl}/configfiles/{appId}/{clusterName}/{namespace}", HttpMethod.GET,
+                new HttpEntity<>(headers), String.class, getHostUrl(), someAppId, someCluster, someNamespace);
+
+    assertEquals(HttpStatus.OK, response.getStatusCode());
+    assertNotNull(eTag);
+    assertEquals(HttpStatus.NOT_MODIFIED, anotherResponse.getStatusCode());
+    assertNull(anotherResponse.getBody());
+  }
+
   @Test
   @Sql(scripts = "/integration-test/test-release.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
   @Sql(scripts = "/integration-test/test-gray-release.sql", executionPhase = Sql.ExecutionPhase.BEFORE_TEST_METHOD)
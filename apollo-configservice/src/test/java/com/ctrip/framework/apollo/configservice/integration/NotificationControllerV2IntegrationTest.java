@@ -17,10 +17,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpMethod;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.test.context.jdbc.Sql;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutorService;
@@ -116,6 +123,42 @@ public class NotificationControllerV2IntegrationTest extends AbstractBaseIntegra
     assertNotEquals(ConfigConsts.NOTIFICATION_ID_PLACEHOLDER, messages.get(key).longValue());
   }
 
+  @Test(timeout = 5000L)
+  @Sql(scripts = "/integration-test/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
+  public void testStreamNotificationsWithDefaultNamespace() throws Exception {
+    AtomicBoolean stop = new AtomicBoolean();
+    String key = assembleKey(someAppId, someCluster, defaultNamespace);
+    periodicSendMessage(executorService, key, stop);
+
+    String notifications = URLEncoder.encode(
+        transformApolloConfigNotificationsToString(defaultNamespace, ConfigConsts.NOTIFICATION_ID_PLACEHOLDER),
+        StandardCharsets.UTF_8.name());
+    HttpURLConnection connection = (HttpURLConnection) new URL(String.format(
+        "http://%s/notifications/v2/stream?appId=%s&cluster=%s&notifications=%s", getHostUrl(), someAppId,
+        someCluster, notifications)).openConnection();
+
+    List<ApolloConfigNotification> result = null;
+    try (BufferedReader reader = new BufferedReader(
+        new InputStreamReader(connection.getInputStream(), StandardCharsets.UTF_8))) {
+      assertEquals(HttpStatus.OK.value(), connection.getResponseCode());
+      assertTrue(connection.getContentType().startsWith(MediaType.TEXT_EVENT_STREAM_VALUE));
+      String line;
+      while (result == null && (line = reader.readLine()) != null) {
+        if (line.startsWith("data:")) {
+          result = gson.fromJson(line.substring("data:".length()), typeReference.getType());
+        }
+      }
+    } finally {
+      stop.set(true);
+      connection.disconnect();
+    }
+
+    assertEquals(1, result.size());
+    assertEquals(defaultNamespace, result.get(0).getNamespaceName());
+    assertNotEquals(0, result.get(0).getNotificationId());
+    assertTrue(result.get(0).getMessages().has(key));
+  }
+
   @Test
   @Sql(scripts = "/integration-test/cleanup.sql", executionPhase = Sql.ExecutionPhase.AFTER_TEST_METHOD)
   public void testPollNotificationWithMultipleNamespaces() throws Exception {
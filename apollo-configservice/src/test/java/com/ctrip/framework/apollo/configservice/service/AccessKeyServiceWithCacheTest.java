@@ -7,6 +7,8 @@ import static org.awaitility.Awaitility.*;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
 import com.ctrip.framework.apollo.biz.entity.AccessKey;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.repository.AccessKeyRepository;
 import com.google.common.collect.Lists;
 import java.util.Date;
@@ -109,6 +111,45 @@ public class AccessKeyServiceWithCacheTest {
         .containsExactly("secret-3"));
   }
 
+  @Test
+  public void testRefreshAccessKeysOnMessage() throws Exception {
+    String appId = "someAppId";
+    AccessKey firstAccessKey = assembleAccessKey(1L, appId, "secret-1", true,
+        false, 1577808000000L);
+    AccessKey secondAccessKey = assembleAccessKey(2L, appId, "secret-2", true,
+        false, 1577808001000L);
+
+    //only the message could trigger the deletion
+    when(bizConfig.accessKeyCacheRebuildInterval()).thenReturn(1);
+    when(bizConfig.accessKeyCacheRebuildIntervalTimeUnit()).thenReturn(TimeUnit.HOURS);
+    when(accessKeyRepository.findFirst500ByDataChangeLastModifiedTimeGreaterThanOrderByDataChangeLastModifiedTimeAsc(new Date(0L)))
+        .thenReturn(Lists.newArrayList(firstAccessKey, secondAccessKey));
+
+    accessKeyServiceWithCache.afterPropertiesSet();
+
+    assertThat(accessKeyServiceWithCache.getAvailableSecrets(appId))
+        .containsExactly("secret-1", "secret-2");
+
+    // Delete the first one, disable the second one
+    secondAccessKey = assembleAccessKey(2L, appId, "secret-2", false, false, 1577808002000L);
+    when(accessKeyRepository.findByAppId(appId)).thenReturn(Lists.newArrayList(secondAccessKey));
+
+    accessKeyServiceWithCache.handleMessage(new ReleaseMessage(appId), Topics.APOLLO_ACCESS_KEY_TOPIC);
+
+    await().untilAsserted(
+        () -> assertThat(accessKeyServiceWithCache.getAvailableSecrets(appId)).isEmpty());
+
+    // Add a new one
+    AccessKey thirdAccessKey = assembleAccessKey(3L, appId, "secret-3", true, false, 1577808003000L);
+    when(accessKeyRepository.findByAppId(appId))
+        .thenReturn(Lists.newArrayList(secondAccessKey, thirdAccessKey));
+
+    accessKeyServiceWithCache.handleMessage(new ReleaseMessage(appId), Topics.APOLLO_ACCESS_KEY_TOPIC);
+
+    await().untilAsserted(() -> assertThat(accessKeyServiceWithCache.getAvailableSecrets(appId))
+        .containsExactly("secret-3"));
+  }
+
   public AccessKey assembleAccessKey(Long id, String appId, String secret, boolean enabled,
       boolean deleted, long dataChangeLastModifiedTime) {
     AccessKey accessKey = new AccessKey();
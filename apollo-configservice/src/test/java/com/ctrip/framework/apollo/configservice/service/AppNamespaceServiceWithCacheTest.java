@@ -1,16 +1,22 @@
 package com.ctrip.framework.apollo.configservice.service;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.datasource.ReadReplica;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.repository.AppNamespaceRepository;
 import com.ctrip.framework.apollo.common.entity.AppNamespace;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.awaitility.Awaitility;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.Calendar;
 import java.util.Collections;
@@ -18,10 +24,15 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static org.awaitility.Awaitility.await;
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.Mockito.after;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -41,9 +52,13 @@ public class AppNamespaceServiceWithCacheTest {
   private Comparator<AppNamespace> appNamespaceComparator = (o1, o2) -> (int) (o1.getId() -
       o2.getId());
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Before
   public void setUp() throws Exception {
-    appNamespaceServiceWithCache = new AppNamespaceServiceWithCache(appNamespaceRepository, bizConfig);
+    appNamespaceServiceWithCache = new AppNamespaceServiceWithCache(appNamespaceRepository, bizConfig,
+        new ReadReplica(false));
 
     scanInterval = 50;
     scanIntervalTimeUnit = TimeUnit.MILLISECONDS;
@@ -279,6 +294,102 @@ public class AppNamespaceServiceWithCacheTest {
     return calendar.getTime();
   }
 
+  @Test
+  public void testRefreshAppNamespacesOnMessage() throws Exception {
+    String someAppId = "someAppId";
+    String somePrivateNamespace = "somePrivateNamespace";
+    String somePublicNamespace = "somePublicNamespace";
+    String anotherPrivateNamespace = "anotherPrivateNamespace";
+    AppNamespace somePrivateAppNamespace = assembleAppNamespace(1, someAppId, somePrivateNamespace, false);
+    AppNamespace somePublicAppNamespace = assembleAppNamespace(2, someAppId, somePublicNamespace, true);
+    AppNamespace anotherPrivateAppNamespace = assembleAppNamespace(3, someAppId, anotherPrivateNamespace, false);
+
+    //only the message could trigger the refresh
+    when(bizConfig.appNamespaceCacheRebuildInterval()).thenReturn(1);
+    when(bizConfig.appNamespaceCacheRebuildIntervalTimeUnit()).thenReturn(TimeUnit.HOURS);
+    when(appNamespaceRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0))
+        .thenReturn(Lists.newArrayList(somePrivateAppNamespace, somePublicAppNamespace));
+
+    appNamespaceServiceWithCache.afterPropertiesSet();
+
+    assertEquals(somePublicAppNamespace, appNamespaceServiceWithCache.findPublicNamespaceByName(somePublicNamespace));
+    long version = appNamespaceServiceWithCache.getVersion();
+
+    //public namespace deleted, a new one created and the private one changed to public
+    AppNamespace somePrivateAppNamespaceNow = assembleAppNamespace(1, someAppId, somePrivateNamespace, true);
+    somePrivateAppNamespaceNow.setDataChangeLastModifiedTime(new Date(System.currentTimeMillis() + 1000));
+    when(appNamespaceRepository.findByAppId(someAppId))
+        .thenReturn(Lists.newArrayList(somePrivateAppNamespaceNow, anotherPrivateAppNamespace));
+
+    ReleaseMessage someMessage = new ReleaseMessage(someAppId);
+    appNamespaceServiceWithCache.handleMessage(someMessage, Topics.APOLLO_APP_NAMESPACE_TOPIC);
+
+    await().untilAsserted(() -> {
+      assertNull(appNamespaceServiceWithCache.findPublicNamespaceByName(somePublicNamespace));
+      assertNull(appNamespaceServiceWithCache.findByAppIdAndNamespace(someAppId, somePublicNamespace));
+      assertEquals(anotherPrivateAppNamespace,
+          appNamespaceServiceWithCache.findByAppIdAndNamespace(someAppId, anotherPrivateNamespace));
+      assertEquals(somePrivateAppNamespaceNow,
+          appNamespaceServiceWithCache.findPublicNamespaceByName(somePrivateNamespace));
+    });
+    assertTrue(appNamespaceServiceWithCache.getVersion() > version);
+  }
+
+  @Test
+  public void testIgnoreMessageOfOtherTopics() throws Exception {
+    String someAppId = "someAppId";
+
+    appNamespaceServiceWithCache.afterPropertiesSet();
+
+    appNamespaceServiceWithCache.handleMessage(new ReleaseMessage(someAppId), Topics.APOLLO_RELEASE_TOPIC);
+    appNamespaceServiceWithCache.handleMessage(new ReleaseMessage(someAppId), Topics.APOLLO_ACCESS_KEY_TOPIC);
+
+    verify(appNamespaceRepository, after(100).never()).findByAppId(someAppId);
+  }
+
+  @Test
+  public void testRestoreFromCacheSnapshot() throws Exception {
+    String someAppId = "someAppId";
+    AppNamespace somePrivateAppNamespace = assembleAppNamespace(1, someAppId, "somePrivateNamespace", false);
+    AppNamespace somePublicAppNamespace = assembleAppNamespace(2, someAppId, "somePublicNamespace", true);
+    AppNamespace newAppNamespace = assembleAppNamespace(3, someAppId, "newNamespace", false);
+
+    when(bizConfig.cacheSnapshotDir()).thenReturn(temporaryFolder.getRoot().getAbsolutePath());
+    when(bizConfig.cacheSnapshotInterval()).thenReturn(300);
+    when(bizConfig.cacheSnapshotIntervalTimeUnit()).thenReturn(TimeUnit.SECONDS);
+    when(appNamespaceRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
+        .thenReturn(Lists.newArrayList(somePrivateAppNamespace, somePublicAppNamespace));
+    when(appNamespaceRepository.findAllById(anyIterable()))
+        .thenReturn(Lists.newArrayList(somePrivateAppNamespace, somePublicAppNamespace));
+
+    appNamespaceServiceWithCache.afterPropertiesSet();
+    ReflectionTestUtils.invokeMethod(appNamespaceServiceWithCache, "writeCacheSnapshot");
+    stop(appNamespaceServiceWithCache);
+
+    //restart, the public namespace is deleted meanwhile
+    when(appNamespaceRepository.findTopByOrderByIdDesc()).thenReturn(newAppNamespace);
+    when(appNamespaceRepository.findFirst500ByIdGreaterThanOrderByIdAsc(2L))
+        .thenReturn(Lists.newArrayList(newAppNamespace));
+    when(appNamespaceRepository.findAllById(anyIterable()))
+        .thenReturn(Lists.newArrayList(somePrivateAppNamespace, newAppNamespace));
+    AppNamespaceServiceWithCache restarted = new AppNamespaceServiceWithCache(appNamespaceRepository, bizConfig,
+        new ReadReplica(false));
+    restarted.afterPropertiesSet();
+
+    assertEquals(somePrivateAppNamespace.getName(),
+        restarted.findByAppIdAndNamespace(someAppId, "somePrivateNamespace").getName());
+    assertEquals(newAppNamespace, restarted.findByAppIdAndNamespace(someAppId, "newNamespace"));
+    //only the new ones after the watermark are scanned
+    verify(appNamespaceRepository, times(1)).findFirst500ByIdGreaterThanOrderByIdAsc(0L);
+
+    await().untilAsserted(() -> assertNull(restarted.findPublicNamespaceByName("somePublicNamespace")));
+    stop(restarted);
+  }
+
+  private void stop(AppNamespaceServiceWithCache service) {
+    ((ExecutorService) ReflectionTestUtils.getField(service, "scheduledExecutorService")).shutdownNow();
+  }
+
   private AppNamespace assembleAppNamespace(long id, String appId, String name, boolean isPublic) {
     AppNamespace appNamespace = new AppNamespace();
     appNamespace.setId(id);
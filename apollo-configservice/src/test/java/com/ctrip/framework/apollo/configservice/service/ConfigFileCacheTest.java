@@ -0,0 +1,170 @@
+package com.ctrip.framework.apollo.configservice.service;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
+import com.ctrip.framework.apollo.biz.message.Topics;
+import com.ctrip.framework.apollo.configservice.service.ConfigFileCache.ConfigFile;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyDictionary;
+import com.ctrip.framework.apollo.configservice.util.WatchKeysUtil;
+import com.ctrip.framework.apollo.core.dto.ApolloConfig;
+import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Sets;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class ConfigFileCacheTest {
+  private ConfigFileCache configFileCache;
+  @Mock
+  private ConfigFileCache.ConfigLoader configLoader;
+  @Mock
+  private WatchKeysUtil watchKeysUtil;
+  @Mock
+  private BizConfig bizConfig;
+
+  private String someAppId;
+  private String someClusterName;
+  private String someNamespace;
+  private String someWatchKey;
+
+  @Before
+  public void setUp() throws Exception {
+    when(bizConfig.configFileCacheMaxSizeInMB()).thenReturn(1);
+    when(bizConfig.configFileCacheExpireInMinutes()).thenReturn(30);
+    configFileCache = new ConfigFileCache(configLoader, watchKeysUtil, new WatchKeyDictionary(), bizConfig);
+
+    someAppId = "someAppId";
+    someClusterName = "someClusterName";
+    someNamespace = "someNamespace";
+    someWatchKey = "someAppId+default+someNamespace";
+
+    when(watchKeysUtil.assembleAllWatchKeys(someAppId, someClusterName, someNamespace, null))
+        .thenReturn(Sets.newHashSet(someWatchKey));
+  }
+
+  @After
+  public void tearDown() throws Exception {
+    configFileCache.destroy();
+  }
+
+  @Test
+  public void testRenderAgainAfterReleaseMessage() throws Exception {
+    ConfigFile configFile = configFileCache.put(currentGeneration(), someAppId,
+        someClusterName, someNamespace, null, apolloConfig("v1"));
+
+    assertEquals(configFile, configFileCache.get(someAppId, someClusterName, someNamespace, null));
+    assertEquals(configFile.getPropertiesContent().length + configFile.getJsonContent().length,
+        configFileCache.getWeight());
+
+    when(configLoader.load(eq(someAppId), eq(someClusterName), eq(someNamespace), isNull(),
+        any(ApolloNotificationMessages.class))).thenReturn(apolloConfig("v2"));
+
+    configFileCache.handleMessage(releaseMessage(someWatchKey), Topics.APOLLO_RELEASE_TOPIC);
+
+    ArgumentCaptor<ApolloNotificationMessages> renderMessages =
+        ArgumentCaptor.forClass(ApolloNotificationMessages.class);
+    verify(configLoader, timeout(1000)).load(eq(someAppId), eq(someClusterName), eq(someNamespace), isNull(),
+        renderMessages.capture());
+    assertEquals(1L, renderMessages.getValue().get(someWatchKey).longValue());
+    ConfigFile rendered = waitForCached();
+    assertTrue(new String(rendered.getPropertiesContent(), StandardCharsets.UTF_8).contains("someKey=v2"));
+    assertTrue(new String(rendered.getJsonContent(), StandardCharsets.UTF_8).contains("\"someKey\":\"v2\""));
+    assertEquals(rendered.getPropertiesContent().length + rendered.getJsonContent().length,
+        configFileCache.getWeight());
+  }
+
+  @Test
+  public void testNotCacheConfigLoadedBeforeReleaseMessage() throws Exception {
+    configFileCache.put(currentGeneration(), someAppId, someClusterName, someNamespace,
+        null, apolloConfig("v1"));
+
+    long staleGeneration = currentGeneration();
+    configFileCache.handleMessage(releaseMessage(someWatchKey), Topics.APOLLO_RELEASE_TOPIC);
+
+    ConfigFile stale = configFileCache.put(staleGeneration, someAppId, someClusterName, someNamespace,
+        null, apolloConfig("v1"));
+
+    assertNotNull(stale);
+    assertNull(configFileCache.get(someAppId, someClusterName, someNamespace, null));
+  }
+
+  @Test
+  public void testIgnoreMessageNotWatched() throws Exception {
+    ConfigFile configFile = configFileCache.put(currentGeneration(), someAppId,
+        someClusterName, someNamespace, null, apolloConfig("v1"));
+
+    configFileCache.handleMessage(releaseMessage("someAppId+default+anotherNamespace"),
+        Topics.APOLLO_RELEASE_TOPIC);
+
+    assertEquals(configFile, configFileCache.get(someAppId, someClusterName, someNamespace, null));
+  }
+
+  @Test
+  public void testNotCacheConfigLoadedBeforeReleaseMessageNotWatchedYet() throws Exception {
+    long staleGeneration = currentGeneration();
+    configFileCache.handleMessage(releaseMessage(someWatchKey), Topics.APOLLO_RELEASE_TOPIC);
+
+    configFileCache.put(staleGeneration, someAppId, someClusterName, someNamespace, null, apolloConfig("v1"));
+
+    assertNull(configFileCache.get(someAppId, someClusterName, someNamespace, null));
+  }
+
+  @Test
+  public void testCacheConfigLoadedBeforeReleaseMessageOfAnotherKey() throws Exception {
+    long generation = currentGeneration();
+    configFileCache.handleMessage(releaseMessage("someAppId+default+anotherNamespace"),
+        Topics.APOLLO_RELEASE_TOPIC);
+
+    ConfigFile configFile = configFileCache.put(generation, someAppId, someClusterName, someNamespace, null,
+        apolloConfig("v1"));
+
+    assertEquals(configFile, configFileCache.get(someAppId, someClusterName, someNamespace, null));
+  }
+
+  private long currentGeneration() {
+    return configFileCache.currentGeneration(someAppId, someClusterName, someNamespace, null);
+  }
+
+  private ConfigFile waitForCached() throws InterruptedException {
+    for (int i = 0; i < 100; i++) {
+      ConfigFile configFile = configFileCache.get(someAppId, someClusterName, someNamespace, null);
+      if (configFile != null) {
+        return configFile;
+      }
+      TimeUnit.MILLISECONDS.sleep(10);
+    }
+    throw new AssertionError("Config file is not rendered again");
+  }
+
+  private ApolloConfig apolloConfig(String value) {
+    ApolloConfig apolloConfig = new ApolloConfig(someAppId, someClusterName, someNamespace, "someReleaseKey");
+    apolloConfig.setConfigurations(ImmutableMap.of("someKey", value));
+    return apolloConfig;
+  }
+
+  private ReleaseMessage releaseMessage(String message) {
+    ReleaseMessage releaseMessage = new ReleaseMessage(message);
+    releaseMessage.setId(1);
+    return releaseMessage;
+  }
+}
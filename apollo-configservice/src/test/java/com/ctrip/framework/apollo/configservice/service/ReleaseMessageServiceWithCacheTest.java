@@ -1,22 +1,28 @@
 package com.ctrip.framework.apollo.configservice.service;
 
 import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.datasource.ReadReplica;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.repository.ReleaseMessageRepository;
+import com.ctrip.framework.apollo.configservice.util.WatchKeyDictionary;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Sets;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.junit.runner.RunWith;
 import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.TimeUnit;
 
 import static org.awaitility.Awaitility.await;
@@ -41,11 +47,14 @@ public class ReleaseMessageServiceWithCacheTest {
 
   private TimeUnit scanIntervalTimeUnit;
 
+  @Rule
+  public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
   @Before
 
   public void setUp() throws Exception {
     releaseMessageServiceWithCache = new ReleaseMessageServiceWithCache(
-        releaseMessageRepository, bizConfig
+        releaseMessageRepository, bizConfig, new WatchKeyDictionary(), new ReadReplica(false)
     );
 
     scanInterval = 10;
@@ -229,6 +238,76 @@ public class ReleaseMessageServiceWithCacheTest {
     assertEquals(newLatestReleaseMsg, newLatestReleaseMsgGroupByMsgContent.get(0));
   }
 
+  @Test
+  public void testRestoreFromCacheSnapshot() throws Exception {
+    String someMsgContent = "msg1";
+    String anotherMsgContent = "msg2";
+    ReleaseMessage someMsg = assembleReleaseMsg(1, someMsgContent);
+    ReleaseMessage anotherMsg = assembleReleaseMsg(2, anotherMsgContent);
+    ReleaseMessage newMsg = assembleReleaseMsg(3, someMsgContent);
+
+    enableCacheSnapshot();
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
+        .thenReturn(Arrays.asList(someMsg, anotherMsg));
+
+    releaseMessageServiceWithCache.afterPropertiesSet();
+    ReflectionTestUtils.invokeMethod(releaseMessageServiceWithCache, "writeCacheSnapshot");
+    stop(releaseMessageServiceWithCache);
+
+    //restart
+    when(releaseMessageRepository.findTopByOrderByIdDesc()).thenReturn(newMsg);
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(2L))
+        .thenReturn(Collections.singletonList(newMsg));
+    ReleaseMessageServiceWithCache restarted = new ReleaseMessageServiceWithCache(
+        releaseMessageRepository, bizConfig, new WatchKeyDictionary(), new ReadReplica(false));
+    restarted.afterPropertiesSet();
+    stop(restarted);
+
+    assertEquals(3, restarted.findLatestReleaseMessageForMessages(Sets.newHashSet(someMsgContent)).getId());
+    assertEquals(2, restarted.findLatestReleaseMessageForMessages(Sets.newHashSet(anotherMsgContent)).getId());
+
+    //only the messages after the watermark are loaded
+    verify(releaseMessageRepository, times(1)).findFirst500ByIdGreaterThanOrderByIdAsc(0L);
+  }
+
+  @Test
+  public void testIgnoreCacheSnapshotAheadOfDatabase() throws Exception {
+    String someMsgContent = "msg1";
+    String anotherMsgContent = "msg2";
+    ReleaseMessage someMsg = assembleReleaseMsg(1, someMsgContent);
+    ReleaseMessage anotherMsg = assembleReleaseMsg(2, anotherMsgContent);
+
+    enableCacheSnapshot();
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
+        .thenReturn(Arrays.asList(someMsg, anotherMsg));
+
+    releaseMessageServiceWithCache.afterPropertiesSet();
+    ReflectionTestUtils.invokeMethod(releaseMessageServiceWithCache, "writeCacheSnapshot");
+    stop(releaseMessageServiceWithCache);
+
+    //restart with another database
+    when(releaseMessageRepository.findTopByOrderByIdDesc()).thenReturn(someMsg);
+    when(releaseMessageRepository.findFirst500ByIdGreaterThanOrderByIdAsc(0L))
+        .thenReturn(Collections.singletonList(someMsg));
+    ReleaseMessageServiceWithCache restarted = new ReleaseMessageServiceWithCache(
+        releaseMessageRepository, bizConfig, new WatchKeyDictionary(), new ReadReplica(false));
+    restarted.afterPropertiesSet();
+    stop(restarted);
+
+    assertEquals(1, restarted.findLatestReleaseMessageForMessages(Sets.newHashSet(someMsgContent)).getId());
+    assertNull(restarted.findLatestReleaseMessageForMessages(Sets.newHashSet(anotherMsgContent)));
+  }
+
+  private void enableCacheSnapshot() {
+    when(bizConfig.cacheSnapshotDir()).thenReturn(temporaryFolder.getRoot().getAbsolutePath());
+    when(bizConfig.cacheSnapshotInterval()).thenReturn(300);
+    when(bizConfig.cacheSnapshotIntervalTimeUnit()).thenReturn(TimeUnit.SECONDS);
+  }
+
+  private void stop(ReleaseMessageServiceWithCache service) {
+    ((ExecutorService) ReflectionTestUtils.getField(service, "executorService")).shutdownNow();
+  }
+
   private ReleaseMessage assembleReleaseMsg(long id, String msgContent) {
 
     ReleaseMessage msg = new ReleaseMessage(msgContent);
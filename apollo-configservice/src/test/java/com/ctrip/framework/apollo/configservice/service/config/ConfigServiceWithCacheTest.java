@@ -3,12 +3,27 @@ package com.ctrip.framework.apollo.configservice.service.config;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
 import com.google.common.collect.Lists;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.datasource.ReadReplica;
 import com.ctrip.framework.apollo.biz.entity.Release;
 import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.message.Topics;
 import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
 import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl.Budget;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl.Permit;
+import com.ctrip.framework.apollo.configservice.util.ServiceOverloadedException;
+
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 
 import org.junit.Before;
 import org.junit.Test;
@@ -19,6 +34,9 @@ import org.springframework.test.util.ReflectionTestUtils;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
@@ -52,6 +70,9 @@ public class ConfigServiceWithCacheTest {
     configServiceWithCache = new ConfigServiceWithCache();
     ReflectionTestUtils.setField(configServiceWithCache, "releaseService", releaseService);
     ReflectionTestUtils.setField(configServiceWithCache, "releaseMessageService", releaseMessageService);
+    ReflectionTestUtils.setField(configServiceWithCache, "admissionControl",
+        new AdmissionControl(mock(BizConfig.class)));
+    ReflectionTestUtils.setField(configServiceWithCache, "readReplica", new ReadReplica(false));
 
     configServiceWithCache.initialize();
 
@@ -76,6 +97,31 @@ public class ConfigServiceWithCacheTest {
     verify(releaseService, times(1)).findActiveOne(someId);
   }
 
+  @Test
+  public void testFindLatestActiveReleaseWhenDatabaseBudgetExhausted() throws Exception {
+    BizConfig bizConfig = mock(BizConfig.class);
+    when(bizConfig.isAdmissionControlEnabled()).thenReturn(true);
+    when(bizConfig.admissionControlDatabaseMaxConcurrency()).thenReturn(1);
+    AdmissionControl admissionControl = new AdmissionControl(bizConfig);
+    ReflectionTestUtils.setField(configServiceWithCache, "admissionControl", admissionControl);
+
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName))
+        .thenReturn(someRelease);
+
+    Permit permit = admissionControl.acquire(Budget.DATABASE);
+    try {
+      configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName,
+          someNotificationMessages);
+      fail("the load should be shed");
+    } catch (ServiceOverloadedException ex) {
+      //expected
+    }
+    permit.release();
+
+    assertEquals(someRelease, configServiceWithCache.findLatestActiveRelease(someAppId,
+        someClusterName, someNamespaceName, someNotificationMessages));
+  }
+
   @Test
   public void testFindActiveOneWithSameIdMultipleTimes() throws Exception {
     long someId = 1;
@@ -247,6 +293,151 @@ public class ConfigServiceWithCacheTest {
     verify(releaseService, times(2)).findLatestActiveRelease(someAppId, someClusterName, someNamespaceName);
   }
 
+  @Test
+  public void testFindLatestActiveReleaseWithRefreshAhead() throws Exception {
+    final long someNewNotificationId = someNotificationId + 1;
+    ReleaseMessage anotherReleaseMessage = mock(ReleaseMessage.class);
+    Release anotherRelease = mock(Release.class);
+    CountDownLatch refreshStarted = new CountDownLatch(1);
+    CountDownLatch refreshBlocked = new CountDownLatch(1);
+
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenReturn(someReleaseMessage)
+        .thenAnswer(invocation -> {
+          refreshStarted.countDown();
+          refreshBlocked.await();
+          return anotherReleaseMessage;
+        });
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName))
+        .thenReturn(someRelease, anotherRelease);
+    when(someReleaseMessage.getId()).thenReturn(someNotificationId);
+    when(anotherReleaseMessage.getMessage()).thenReturn(someKey);
+    when(anotherReleaseMessage.getId()).thenReturn(someNewNotificationId);
+
+    Release release = configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName,
+        someNotificationMessages);
+
+    ExecutorService executorService = Executors.newFixedThreadPool(3);
+    Future<?> messageHandled = executorService.submit(() ->
+        configServiceWithCache.handleMessage(anotherReleaseMessage, Topics.APOLLO_RELEASE_TOPIC));
+    assertTrue(refreshStarted.await(5, TimeUnit.SECONDS));
+
+    //the old entry is served while refreshing
+    Release stillOldRelease = configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName, someNotificationMessages);
+
+    List<Future<Release>> newReleases = Lists.newArrayList();
+    for (int i = 0; i < 2; i++) {
+      newReleases.add(executorService.submit(() -> {
+        ApolloNotificationMessages clientMessages = new ApolloNotificationMessages();
+        clientMessages.put(someKey, someNewNotificationId);
+        return configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName,
+            clientMessages);
+      }));
+    }
+    refreshBlocked.countDown();
+    messageHandled.get(5, TimeUnit.SECONDS);
+
+    assertEquals(someRelease, release);
+    assertEquals(someRelease, stillOldRelease);
+    for (Future<Release> newRelease : newReleases) {
+      assertEquals(anotherRelease, newRelease.get(5, TimeUnit.SECONDS));
+    }
+    executorService.shutdown();
+
+    verify(releaseMessageService, times(2)).findLatestReleaseMessageForMessages(Lists.newArrayList(someKey));
+    verify(releaseService, times(2)).findLatestActiveRelease(someAppId, someClusterName, someNamespaceName);
+  }
+
+  @Test
+  public void testFindLatestActiveReleaseWithReleaseMessageDuringRefresh() throws Exception {
+    long someNewNotificationId = someNotificationId + 1;
+    ReleaseMessage anotherReleaseMessage = mock(ReleaseMessage.class);
+    Release anotherRelease = mock(Release.class);
+    CountDownLatch refreshStarted = new CountDownLatch(1);
+    CountDownLatch refreshBlocked = new CountDownLatch(1);
+
+    //the refresh in flight reads the db before the new release
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenReturn(someReleaseMessage)
+        .thenAnswer(invocation -> {
+          refreshStarted.countDown();
+          refreshBlocked.await();
+          return someReleaseMessage;
+        })
+        .thenReturn(anotherReleaseMessage);
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName))
+        .thenReturn(someRelease, someRelease, anotherRelease);
+    when(someReleaseMessage.getId()).thenReturn(someNotificationId);
+    when(anotherReleaseMessage.getMessage()).thenReturn(someKey);
+    when(anotherReleaseMessage.getId()).thenReturn(someNewNotificationId);
+
+    Release release = configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName,
+        someNotificationMessages);
+
+    ReflectionTestUtils.invokeMethod(configServiceWithCache, "refresh", someKey, false);
+    assertTrue(refreshStarted.await(5, TimeUnit.SECONDS));
+
+    ExecutorService executorService = Executors.newSingleThreadExecutor();
+    Future<?> messageHandled = executorService.submit(() ->
+        configServiceWithCache.handleMessage(anotherReleaseMessage, Topics.APOLLO_RELEASE_TOPIC));
+    refreshBlocked.countDown();
+    messageHandled.get(5, TimeUnit.SECONDS);
+    executorService.shutdown();
+
+    Release shouldBeNewRelease = configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName, someNotificationMessages);
+
+    assertEquals(someRelease, release);
+    assertEquals(anotherRelease, shouldBeNewRelease);
+
+    verify(releaseMessageService, times(3)).findLatestReleaseMessageForMessages(Lists.newArrayList(someKey));
+    verify(releaseService, times(3)).findLatestActiveRelease(someAppId, someClusterName, someNamespaceName);
+  }
+
+  @Test
+  public void testFindLatestActiveReleaseWhenReadReplicaLags() throws Exception {
+    long someNewNotificationId = someNotificationId + 1;
+    ReleaseMessage anotherReleaseMessage = mock(ReleaseMessage.class);
+    Release anotherRelease = mock(Release.class);
+    AtomicBoolean readingReplica = new AtomicBoolean();
+    ReadReplica readReplica = mock(ReadReplica.class);
+    when(readReplica.read(any())).thenAnswer(invocation -> {
+      readingReplica.set(true);
+      try {
+        return invocation.<Supplier<?>>getArgument(0).get();
+      } finally {
+        readingReplica.set(false);
+      }
+    });
+    ReflectionTestUtils.setField(configServiceWithCache, "readReplica", readReplica);
+
+    //the replica has not applied the new release yet
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenAnswer(invocation -> readingReplica.get() ? someReleaseMessage : anotherReleaseMessage);
+    when(releaseService.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName))
+        .thenAnswer(invocation -> readingReplica.get() ? someRelease : anotherRelease);
+    when(someReleaseMessage.getId()).thenReturn(someNotificationId);
+    when(anotherReleaseMessage.getId()).thenReturn(someNewNotificationId);
+
+    Release release = configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName, someNamespaceName,
+        someNotificationMessages);
+
+    someNotificationMessages.put(someKey, someNewNotificationId);
+
+    Release shouldBeNewRelease = configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName, someNotificationMessages);
+    //the entry loaded from the primary is not overwritten by the replica
+    Future<?> refreshFromReplica = ReflectionTestUtils.invokeMethod(configServiceWithCache, "refresh", someKey, false);
+    refreshFromReplica.get(5, TimeUnit.SECONDS);
+    Release stillNewRelease = configServiceWithCache.findLatestActiveRelease(someAppId, someClusterName,
+        someNamespaceName, someNotificationMessages);
+
+    assertEquals(someRelease, release);
+    assertEquals(anotherRelease, shouldBeNewRelease);
+    assertEquals(anotherRelease, stillNewRelease);
+  }
+
   @Test
   public void testFindLatestActiveReleaseWithIrrelevantMessages() throws Exception {
     long someNewNotificationId = someNotificationId + 1;
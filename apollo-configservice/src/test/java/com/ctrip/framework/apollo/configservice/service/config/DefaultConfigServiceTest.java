@@ -1,6 +1,7 @@
 package com.ctrip.framework.apollo.configservice.service.config;
 
 import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.never;
@@ -8,11 +9,20 @@ import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.datasource.ReadReplica;
 import com.ctrip.framework.apollo.biz.entity.Release;
+import com.ctrip.framework.apollo.biz.entity.ReleaseMessage;
 import com.ctrip.framework.apollo.biz.grayReleaseRule.GrayReleaseRulesHolder;
+import com.ctrip.framework.apollo.biz.service.ReleaseMessageService;
 import com.ctrip.framework.apollo.biz.service.ReleaseService;
+import com.ctrip.framework.apollo.biz.utils.ReleaseMessageKeyGenerator;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl;
 import com.ctrip.framework.apollo.core.ConfigConsts;
 import com.ctrip.framework.apollo.core.dto.ApolloNotificationMessages;
+import com.google.common.collect.Lists;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -39,6 +49,8 @@ public class DefaultConfigServiceTest {
   private ReleaseService releaseService;
   @Mock
   private GrayReleaseRulesHolder grayReleaseRulesHolder;
+  @Mock
+  private ReleaseMessageService releaseMessageService;
 
   @Mock
   private Release someRelease;
@@ -48,6 +60,10 @@ public class DefaultConfigServiceTest {
     configService = new DefaultConfigService();
     ReflectionTestUtils.setField(configService, "releaseService", releaseService);
     ReflectionTestUtils.setField(configService, "grayReleaseRulesHolder", grayReleaseRulesHolder);
+    ReflectionTestUtils.setField(configService, "releaseMessageService", releaseMessageService);
+    ReflectionTestUtils.setField(configService, "admissionControl",
+        new AdmissionControl(mock(BizConfig.class)));
+    ReflectionTestUtils.setField(configService, "readReplica", new ReadReplica(false));
 
     someClientAppId = "1234";
     someConfigAppId = "1";
@@ -75,6 +91,65 @@ public class DefaultConfigServiceTest {
     assertEquals(someRelease, release);
   }
 
+  @Test
+  public void testLoadConfigFromReadReplica() throws Exception {
+    AtomicBoolean readingReplica = mockReadReplica();
+    String someKey = ReleaseMessageKeyGenerator.generate(someConfigAppId, someClusterName, defaultNamespaceName);
+    ApolloNotificationMessages clientMessages = new ApolloNotificationMessages();
+    clientMessages.put(someKey, 1L);
+    ReleaseMessage replicatedReleaseMessage = mock(ReleaseMessage.class);
+
+    when(replicatedReleaseMessage.getId()).thenReturn(1L);
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenAnswer(invocation -> readingReplica.get() ? replicatedReleaseMessage : null);
+    when(releaseService.findLatestActiveRelease(someConfigAppId, someClusterName, defaultNamespaceName))
+        .thenAnswer(invocation -> readingReplica.get() ? someRelease : null);
+
+    Release release = configService
+        .loadConfig(someClientAppId, someClientIp, someConfigAppId, someClusterName, defaultNamespaceName, someDataCenter,
+            clientMessages);
+
+    assertEquals(someRelease, release);
+  }
+
+  @Test
+  public void testLoadConfigFromPrimaryWhenReadReplicaLags() throws Exception {
+    AtomicBoolean readingReplica = mockReadReplica();
+    String someKey = ReleaseMessageKeyGenerator.generate(someConfigAppId, someClusterName, defaultNamespaceName);
+    ApolloNotificationMessages clientMessages = new ApolloNotificationMessages();
+    clientMessages.put(someKey, 2L);
+    ReleaseMessage replicatedReleaseMessage = mock(ReleaseMessage.class);
+    Release newRelease = mock(Release.class);
+
+    when(replicatedReleaseMessage.getId()).thenReturn(1L);
+    when(releaseMessageService.findLatestReleaseMessageForMessages(Lists.newArrayList(someKey)))
+        .thenAnswer(invocation -> readingReplica.get() ? replicatedReleaseMessage : null);
+    when(releaseService.findLatestActiveRelease(someConfigAppId, someClusterName, defaultNamespaceName))
+        .thenAnswer(invocation -> readingReplica.get() ? someRelease : newRelease);
+
+    Release release = configService
+        .loadConfig(someClientAppId, someClientIp, someConfigAppId, someClusterName, defaultNamespaceName, someDataCenter,
+            clientMessages);
+
+    assertEquals(newRelease, release);
+  }
+
+  private AtomicBoolean mockReadReplica() {
+    ReadReplica readReplica = mock(ReadReplica.class);
+    AtomicBoolean readingReplica = new AtomicBoolean();
+    when(readReplica.isEnabled()).thenReturn(true);
+    when(readReplica.read(any())).thenAnswer(invocation -> {
+      readingReplica.set(true);
+      try {
+        return invocation.<Supplier<?>>getArgument(0).get();
+      } finally {
+        readingReplica.set(false);
+      }
+    });
+    ReflectionTestUtils.setField(configService, "readReplica", readReplica);
+    return readingReplica;
+  }
+
   @Test
   public void testLoadConfigWithGrayRelease() throws Exception {
     Release grayRelease = mock(Release.class);
@@ -0,0 +1,120 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl.Budget;
+import com.ctrip.framework.apollo.configservice.util.AdmissionControl.Permit;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class AdmissionControlTest {
+  private AdmissionControl admissionControl;
+
+  @Mock
+  private BizConfig bizConfig;
+
+  @Before
+  public void setUp() throws Exception {
+    when(bizConfig.isAdmissionControlEnabled()).thenReturn(true);
+    when(bizConfig.admissionControlRetryAfter()).thenReturn(5);
+    when(bizConfig.admissionControlLongPollMaxConcurrency()).thenReturn(2);
+    when(bizConfig.admissionControlCacheHitMaxConcurrency()).thenReturn(100);
+    when(bizConfig.admissionControlDatabaseMaxConcurrency()).thenReturn(1);
+
+    admissionControl = new AdmissionControl(bizConfig);
+  }
+
+  @Test
+  public void testBudgetsAreSeparated() throws Exception {
+    Permit somePermit = admissionControl.tryAcquire(Budget.LONG_POLL);
+    Permit anotherPermit = admissionControl.tryAcquire(Budget.LONG_POLL);
+
+    assertNotNull(somePermit);
+    assertNotNull(anotherPermit);
+    assertNull(admissionControl.tryAcquire(Budget.LONG_POLL));
+    assertNotNull(admissionControl.tryAcquire(Budget.CACHE_HIT));
+
+    somePermit.release();
+    //released more than once
+    somePermit.release();
+
+    assertNotNull(admissionControl.tryAcquire(Budget.LONG_POLL));
+    assertNull(admissionControl.tryAcquire(Budget.LONG_POLL));
+  }
+
+  @Test(expected = ServiceOverloadedException.class)
+  public void testAcquireWhenExhausted() throws Exception {
+    admissionControl.acquire(Budget.DATABASE);
+
+    admissionControl.acquire(Budget.DATABASE);
+  }
+
+  @Test
+  public void testDisabled() throws Exception {
+    when(bizConfig.isAdmissionControlEnabled()).thenReturn(false);
+    admissionControl = new AdmissionControl(bizConfig);
+
+    for (int i = 0; i < 10; i++) {
+      assertNotNull(admissionControl.acquire(Budget.DATABASE));
+    }
+    assertEquals(0, admissionControl.getLimiter(Budget.DATABASE).getInflight());
+  }
+
+  @Test
+  public void testCacheMissNotSampledByCacheHitBudget() throws Exception {
+    Permit requestPermit = admissionControl.acquire(Budget.CACHE_HIT);
+    Permit databasePermit = admissionControl.acquire(Budget.DATABASE);
+    TimeUnit.MILLISECONDS.sleep(150);
+    databasePermit.release();
+    requestPermit.release();
+
+    assertEquals(100, admissionControl.getLimiter(Budget.CACHE_HIT).getLimit());
+
+    requestPermit = admissionControl.acquire(Budget.CACHE_HIT);
+    TimeUnit.MILLISECONDS.sleep(150);
+    requestPermit.release();
+
+    assertEquals(90, admissionControl.getLimiter(Budget.CACHE_HIT).getLimit());
+  }
+
+  @Test
+  public void testReject() throws Exception {
+    MockHttpServletResponse response = new MockHttpServletResponse();
+
+    admissionControl.reject(response);
+
+    assertEquals(429, response.getStatus());
+    int retryAfter = Integer.parseInt(response.getHeader(HttpHeaders.RETRY_AFTER));
+    assertTrue(retryAfter >= 5 && retryAfter <= 10);
+  }
+
+  @Test
+  public void testMetrics() throws Exception {
+    SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    admissionControl.bindTo(registry);
+
+    admissionControl.acquire(Budget.DATABASE);
+    admissionControl.tryAcquire(Budget.DATABASE);
+
+    assertEquals(1, registry.get("apollo.admission.limit").tag("budget", "database").gauge().value(), 0);
+    assertEquals(1, registry.get("apollo.admission.inflight").tag("budget", "database").gauge().value(), 0);
+    assertEquals(1, registry.get("apollo.admission.accepted").tag("budget", "database").functionCounter()
+        .count(), 0);
+    assertEquals(1, registry.get("apollo.admission.rejected").tag("budget", "database").functionCounter()
+        .count(), 0);
+  }
+}
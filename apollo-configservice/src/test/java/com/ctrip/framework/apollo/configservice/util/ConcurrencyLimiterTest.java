@@ -0,0 +1,98 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrencyLimiterTest {
+  private static final long SOME_TARGET_LATENCY = TimeUnit.MILLISECONDS.toNanos(100);
+
+  @Test
+  public void testRejectBeyondLimit() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(2, 2, 0);
+
+    assertTrue(limiter.tryAcquire());
+    assertTrue(limiter.tryAcquire());
+    assertFalse(limiter.tryAcquire());
+
+    limiter.release(-1);
+
+    assertTrue(limiter.tryAcquire());
+    assertEquals(2, limiter.getInflight());
+    assertEquals(3, limiter.getAccepted());
+    assertEquals(1, limiter.getRejected());
+  }
+
+  @Test
+  public void testFixedLimitIgnoresLatency() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(1, 10, 0);
+
+    assertTrue(limiter.tryAcquire());
+    limiter.release(TimeUnit.SECONDS.toNanos(10));
+
+    assertEquals(10, limiter.getLimit());
+  }
+
+  @Test
+  public void testBackoffOncePerTargetLatency() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(5, 100, SOME_TARGET_LATENCY);
+
+    for (int i = 0; i < 10; i++) {
+      assertTrue(limiter.tryAcquire());
+    }
+    for (int i = 0; i < 10; i++) {
+      limiter.release(SOME_TARGET_LATENCY * 2);
+    }
+
+    assertEquals(90, limiter.getLimit());
+    assertEquals(0, limiter.getInflight());
+  }
+
+  @Test
+  public void testBackoffNotBelowMinLimit() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(9, 10, TimeUnit.MILLISECONDS.toNanos(1));
+
+    for (int i = 0; i < 3; i++) {
+      assertTrue(limiter.tryAcquire());
+      limiter.release(TimeUnit.SECONDS.toNanos(1));
+      TimeUnit.MILLISECONDS.sleep(2);
+    }
+
+    assertEquals(9, limiter.getLimit());
+  }
+
+  @Test
+  public void testGrowWhenLimitInUse() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(5, 100, SOME_TARGET_LATENCY);
+
+    assertTrue(limiter.tryAcquire());
+    limiter.release(SOME_TARGET_LATENCY * 2);
+    assertEquals(90, limiter.getLimit());
+
+    //not grown when the limit is barely used
+    assertTrue(limiter.tryAcquire());
+    limiter.release(1);
+    assertEquals(90, limiter.getLimit());
+
+    for (int i = 0; i < 50; i++) {
+      assertTrue(limiter.tryAcquire());
+    }
+    limiter.release(1);
+
+    assertEquals(91, limiter.getLimit());
+  }
+
+  @Test
+  public void testNotSampled() throws Exception {
+    ConcurrencyLimiter limiter = new ConcurrencyLimiter(5, 100, SOME_TARGET_LATENCY);
+
+    assertTrue(limiter.tryAcquire());
+    limiter.release(-1);
+
+    assertEquals(100, limiter.getLimit());
+  }
+}
@@ -10,11 +10,19 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 import org.springframework.test.util.ReflectionTestUtils;
 
+import com.google.common.collect.Lists;
+import com.google.common.collect.Sets;
+
+import java.util.Date;
+import java.util.List;
 import java.util.Objects;
 import java.util.concurrent.BlockingQueue;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anySet;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 /**
@@ -26,6 +34,8 @@ public class InstanceConfigAuditUtilTest {
 
   @Mock
   private InstanceService instanceService;
+  @Mock
+  private InstanceConfigHeartbeatStore instanceConfigHeartbeatStore;
   private BlockingQueue<InstanceConfigAuditUtil.InstanceConfigAuditModel> audits;
 
   private String someAppId;
@@ -41,7 +51,7 @@ public class InstanceConfigAuditUtilTest {
 
   @Before
   public void setUp() throws Exception {
-    instanceConfigAuditUtil = new InstanceConfigAuditUtil(instanceService);
+    instanceConfigAuditUtil = new InstanceConfigAuditUtil(instanceService, instanceConfigHeartbeatStore);
 
     audits = (BlockingQueue<InstanceConfigAuditUtil.InstanceConfigAuditModel>)
         ReflectionTestUtils.getField(instanceConfigAuditUtil, "audits");
@@ -71,6 +81,16 @@ public class InstanceConfigAuditUtilTest {
     assertTrue(Objects.equals(someAuditModel, audit));
   }
 
+  @Test
+  public void testAuditWhenQueueIsFull() throws Exception {
+    while (instanceConfigAuditUtil.audit(someAppId, someClusterName, someDataCenter, someIp,
+        someConfigAppId, someConfigClusterName, someConfigNamespace, someReleaseKey)) {
+      //fill the queue
+    }
+
+    assertEquals(1, instanceConfigAuditUtil.getDroppedAuditCount());
+  }
+
   @Test
   public void testDoAudit() throws Exception {
     long someInstanceId = 1;
@@ -79,15 +99,85 @@ public class InstanceConfigAuditUtilTest {
     when(someInstance.getId()).thenReturn(someInstanceId);
     when(instanceService.createInstance(any(Instance.class))).thenReturn(someInstance);
 
-    instanceConfigAuditUtil.doAudit(someAuditModel);
+    instanceConfigAuditUtil.doAudit(Lists.newArrayList(someAuditModel));
 
-    verify(instanceService, times(1)).findInstance(someAppId, someClusterName, someDataCenter,
-        someIp);
+    verify(instanceService, times(1)).findInstances(someAppId, someClusterName,
+        Sets.newHashSet(someIp));
     verify(instanceService, times(1)).createInstance(any(Instance.class));
-    verify(instanceService, times(1)).findInstanceConfig(someInstanceId, someConfigAppId,
-        someConfigNamespace);
-    verify(instanceService, times(1)).createInstanceConfig(any(InstanceConfig.class));
+    verify(instanceService, times(1)).findInstanceConfigsByInstanceIds(Sets.newHashSet(someInstanceId));
+    verify(instanceService, times(1)).batchCreateInstanceConfigs(argThat(instanceConfigs ->
+        instanceConfigs.size() == 1 && instanceConfigs.get(0).getInstanceId() == someInstanceId));
   }
 
+  @Test
+  public void testDoAuditWithExistingInstanceAndInstanceConfigs() throws Exception {
+    long someInstanceId = 1;
+    String anotherConfigNamespace = "anotherConfigNamespace";
+    String anotherReleaseKey = "anotherReleaseKey";
+    Instance someInstance = assembleInstance(someInstanceId);
+    InstanceConfig someInstanceConfig = assembleInstanceConfig(someInstanceId, someConfigNamespace,
+        anotherReleaseKey);
+    InstanceConfig anotherInstanceConfig = assembleInstanceConfig(someInstanceId,
+        anotherConfigNamespace, someReleaseKey);
+
+    InstanceConfigAuditUtil.InstanceConfigAuditModel anotherAuditModel =
+        new InstanceConfigAuditUtil.InstanceConfigAuditModel(someAppId, someClusterName,
+            someDataCenter, someIp, someConfigAppId, someConfigClusterName, anotherConfigNamespace,
+            someReleaseKey);
+
+    when(instanceService.findInstances(someAppId, someClusterName, Sets.newHashSet(someIp)))
+        .thenReturn(Lists.newArrayList(someInstance));
+    when(instanceService.findInstanceConfigsByInstanceIds(Sets.newHashSet(someInstanceId)))
+        .thenReturn(Lists.newArrayList(someInstanceConfig, anotherInstanceConfig));
+
+    instanceConfigAuditUtil.doAudit(Lists.newArrayList(someAuditModel, anotherAuditModel,
+        someAuditModel));
+
+    verify(instanceService, never()).createInstance(any(Instance.class));
+    verify(instanceService, times(1)).findInstanceConfigsByInstanceIds(anySet());
+    verify(instanceService, times(1)).batchUpdateInstanceConfigs(argThat(instanceConfigs ->
+        instanceConfigs.size() == 1 && instanceConfigs.get(0) == someInstanceConfig
+            && someReleaseKey.equals(someInstanceConfig.getReleaseKey())));
+    verify(instanceService, times(1)).batchCreateInstanceConfigs(argThat(List::isEmpty));
+    verify(instanceConfigHeartbeatStore, times(1)).heartbeat(anotherInstanceConfig,
+        anotherAuditModel.getOfferTime());
+  }
 
+  @Test
+  public void testDoAuditWithSameReleaseKeyAgain() throws Exception {
+    long someInstanceId = 1;
+    Instance someInstance = assembleInstance(someInstanceId);
+
+    when(instanceService.findInstances(someAppId, someClusterName, Sets.newHashSet(someIp)))
+        .thenReturn(Lists.newArrayList(someInstance));
+
+    instanceConfigAuditUtil.doAudit(Lists.newArrayList(someAuditModel));
+    instanceConfigAuditUtil.doAudit(Lists.newArrayList(someAuditModel));
+
+    verify(instanceService, times(1)).findInstances(someAppId, someClusterName,
+        Sets.newHashSet(someIp));
+    verify(instanceService, times(1)).findInstanceConfigsByInstanceIds(anySet());
+  }
+
+  private Instance assembleInstance(long instanceId) {
+    Instance instance = new Instance();
+    instance.setId(instanceId);
+    instance.setAppId(someAppId);
+    instance.setClusterName(someClusterName);
+    instance.setDataCenter(someDataCenter);
+    instance.setIp(someIp);
+    return instance;
+  }
+
+  private InstanceConfig assembleInstanceConfig(long instanceId, String configNamespace,
+      String releaseKey) {
+    InstanceConfig instanceConfig = new InstanceConfig();
+    instanceConfig.setInstanceId(instanceId);
+    instanceConfig.setConfigAppId(someConfigAppId);
+    instanceConfig.setConfigClusterName(someConfigClusterName);
+    instanceConfig.setConfigNamespaceName(configNamespace);
+    instanceConfig.setReleaseKey(releaseKey);
+    instanceConfig.setDataChangeLastModifiedTime(new Date());
+    return instanceConfig;
+  }
 }
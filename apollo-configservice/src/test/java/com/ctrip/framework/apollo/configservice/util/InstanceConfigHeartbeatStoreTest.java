@@ -0,0 +1,121 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.collect.ImmutableMap;
+
+import com.ctrip.framework.apollo.biz.config.BizConfig;
+import com.ctrip.framework.apollo.biz.entity.InstanceConfig;
+import com.ctrip.framework.apollo.biz.service.InstanceService;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.anyMap;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class InstanceConfigHeartbeatStoreTest {
+  private InstanceConfigHeartbeatStore instanceConfigHeartbeatStore;
+
+  @Mock
+  private InstanceService instanceService;
+  @Mock
+  private BizConfig bizConfig;
+
+  private int someHeartbeatIntervalInMinute;
+
+  @Before
+  public void setUp() throws Exception {
+    someHeartbeatIntervalInMinute = 10;
+    when(bizConfig.instanceConfigHeartbeatIntervalInMinute()).thenReturn(someHeartbeatIntervalInMinute);
+
+    instanceConfigHeartbeatStore = new InstanceConfigHeartbeatStore(instanceService, bizConfig);
+  }
+
+  @Test
+  public void testHeartbeatWithinInterval() throws Exception {
+    Date someLastModifiedTime = new Date();
+    InstanceConfig someInstanceConfig = assembleInstanceConfig(1, someLastModifiedTime);
+
+    assertFalse(instanceConfigHeartbeatStore.heartbeat(someInstanceConfig,
+        new Date(someLastModifiedTime.getTime() + 1000)));
+
+    instanceConfigHeartbeatStore.flush();
+
+    verify(instanceService, never()).batchUpdateInstanceConfigLastModifiedTimes(anyMap());
+  }
+
+  @Test
+  public void testHeartbeatCoalescedAndFlushed() throws Exception {
+    long someId = 1;
+    long anotherId = 2;
+    Date someLastModifiedTime = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+    Date someHeartbeatTime = new Date();
+    Date anotherHeartbeatTime = new Date(someHeartbeatTime.getTime() + 1000);
+    InstanceConfig someInstanceConfig = assembleInstanceConfig(someId, someLastModifiedTime);
+    InstanceConfig anotherInstanceConfig = assembleInstanceConfig(anotherId, someLastModifiedTime);
+
+    assertTrue(instanceConfigHeartbeatStore.heartbeat(someInstanceConfig, anotherHeartbeatTime));
+    assertTrue(instanceConfigHeartbeatStore.heartbeat(someInstanceConfig, someHeartbeatTime));
+    assertTrue(instanceConfigHeartbeatStore.heartbeat(anotherInstanceConfig, someHeartbeatTime));
+
+    assertEquals(2, instanceConfigHeartbeatStore.getPendingHeartbeatCount());
+
+    instanceConfigHeartbeatStore.flush();
+
+    assertEquals(0, instanceConfigHeartbeatStore.getPendingHeartbeatCount());
+    verify(instanceService, times(1)).batchUpdateInstanceConfigLastModifiedTimes(ImmutableMap.of(
+        someId, anotherHeartbeatTime, anotherId, someHeartbeatTime));
+
+    instanceConfigHeartbeatStore.flush();
+
+    verify(instanceService, times(1)).batchUpdateInstanceConfigLastModifiedTimes(anyMap());
+  }
+
+  @Test
+  public void testHeartbeatOfferedAgainAfterFlushFailed() throws Exception {
+    long someId = 1;
+    Date someLastModifiedTime = new Date(System.currentTimeMillis() - TimeUnit.DAYS.toMillis(1));
+    Date someHeartbeatTime = new Date();
+    InstanceConfig someInstanceConfig = assembleInstanceConfig(someId, someLastModifiedTime);
+
+    assertTrue(instanceConfigHeartbeatStore.heartbeat(someInstanceConfig, someHeartbeatTime));
+
+    doThrow(new IllegalStateException("db down")).doNothing().when(instanceService)
+        .batchUpdateInstanceConfigLastModifiedTimes(anyMap());
+
+    try {
+      instanceConfigHeartbeatStore.flush();
+      fail("flush should fail");
+    } catch (IllegalStateException ex) {
+      //expected
+    }
+
+    assertEquals(1, instanceConfigHeartbeatStore.getPendingHeartbeatCount());
+
+    instanceConfigHeartbeatStore.flush();
+
+    assertEquals(0, instanceConfigHeartbeatStore.getPendingHeartbeatCount());
+    verify(instanceService, times(2)).batchUpdateInstanceConfigLastModifiedTimes(ImmutableMap.of(
+        someId, someHeartbeatTime));
+  }
+
+  private InstanceConfig assembleInstanceConfig(long id, Date lastModifiedTime) {
+    InstanceConfig instanceConfig = new InstanceConfig();
+    instanceConfig.setId(id);
+    instanceConfig.setDataChangeLastModifiedTime(lastModifiedTime);
+    return instanceConfig;
+  }
+}
@@ -0,0 +1,182 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.collect.Lists;
+import com.google.common.collect.Multimap;
+import com.google.common.collect.Multimaps;
+import com.google.common.collect.Ordering;
+import com.google.common.collect.TreeMultimap;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link WatchKeyRegistry} with the synchronized case insensitive tree multimap it replaces,
+ * not run with the unit tests.
+ *
+ * <p>Run it with the test classpath, e.g. {@code java -Xmx2g -cp target/classes:target/test-classes:<deps>
+ * com.ctrip.framework.apollo.configservice.util.WatchKeyRegistryBenchmark [watchers] [keys] [threads]}.
+ * Each watcher watches 3 keys, as a client watches its cluster, data center and default cluster.</p>
+ */
+public class WatchKeyRegistryBenchmark {
+  private static final int KEYS_PER_WATCHER = 3;
+
+  private final int watcherCount;
+  private final int keyCount;
+  private final int threadCount;
+  private final List<String> keys;
+
+  private WatchKeyRegistryBenchmark(int watcherCount, int keyCount, int threadCount) {
+    this.watcherCount = watcherCount;
+    this.keyCount = keyCount;
+    this.threadCount = threadCount;
+    keys = Lists.newArrayListWithCapacity(keyCount);
+    for (int i = 0; i < keyCount; i++) {
+      keys.add("someAppId" + i % 1000 + "+default+someNamespace" + i / 1000);
+    }
+  }
+
+  public static void main(String[] args) throws Exception {
+    int watcherCount = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+    int keyCount = args.length > 1 ? Integer.parseInt(args[1]) : 100000;
+    int threadCount = args.length > 2 ? Integer.parseInt(args[2]) : 8;
+
+    WatchKeyRegistryBenchmark benchmark = new WatchKeyRegistryBenchmark(watcherCount, keyCount, threadCount);
+    System.out.println(String.format("%d watchers, %d keys each over %d keys, %d threads", watcherCount,
+        KEYS_PER_WATCHER, keyCount, threadCount));
+    //the first round warms up
+    for (int round = 0; round < 2; round++) {
+      benchmark.run("TreeMultimap", benchmark.treeMultimap());
+      benchmark.run("registry, keys released", benchmark.registry(true));
+      benchmark.run("registry, keys never released", benchmark.registry(false));
+    }
+  }
+
+  private Registry treeMultimap() {
+    Multimap<String, Object> multimap = Multimaps.synchronizedSetMultimap(
+        TreeMultimap.create(String.CASE_INSENSITIVE_ORDER, Ordering.arbitrary()));
+    return new Registry() {
+      @Override
+      public void put(String watchKey, Object watcher) {
+        multimap.put(watchKey, watcher);
+      }
+
+      @Override
+      public void remove(String watchKey, Object watcher) {
+        multimap.remove(watchKey, watcher);
+      }
+
+      @Override
+      public Collection<Object> get(String watchKey) {
+        //copied as the notifying thread does
+        synchronized (multimap) {
+          return Lists.newArrayList(multimap.get(watchKey));
+        }
+      }
+    };
+  }
+
+  private Registry registry(boolean keysReleased) {
+    WatchKeyDictionary watchKeyDictionary = new WatchKeyDictionary();
+    if (keysReleased) {
+      keys.forEach(watchKeyDictionary::getOrCreateId);
+    }
+    WatchKeyRegistry<Object> watchKeyRegistry = new WatchKeyRegistry<>(watchKeyDictionary);
+    return new Registry() {
+      @Override
+      public void put(String watchKey, Object watcher) {
+        watchKeyRegistry.put(watchKey, watcher);
+      }
+
+      @Override
+      public void remove(String watchKey, Object watcher) {
+        watchKeyRegistry.remove(watchKey, watcher);
+      }
+
+      @Override
+      public Collection<Object> get(String watchKey) {
+        return Lists.newArrayList(watchKeyRegistry.get(watchKey));
+      }
+    };
+  }
+
+  private void run(String name, Registry registry) throws Exception {
+    Object[] watchers = new Object[watcherCount];
+    for (int i = 0; i < watcherCount; i++) {
+      watchers[i] = new Object();
+    }
+
+    long heapBefore = usedHeap();
+    long registerNanos = forEachWatcher(watchers, (watchKey, watcher) -> registry.put(watchKey, watcher));
+    long heapAfter = usedHeap();
+
+    long lookupNanos = inParallel(threadCount, thread -> {
+      for (int i = thread; i < keyCount; i += threadCount) {
+        registry.get(keys.get(i).toUpperCase());
+      }
+    });
+
+    long unregisterNanos = forEachWatcher(watchers, (watchKey, watcher) -> registry.remove(watchKey, watcher));
+
+    long pairs = (long) watcherCount * KEYS_PER_WATCHER;
+    System.out.println(String.format("%-30s heap %4d MB, register %5.2f M/s, notify lookup %4d k keys/s, "
+            + "unregister %5.2f M/s", name, (heapAfter - heapBefore) / 1024 / 1024,
+        pairs * 1000.0 / registerNanos, keyCount * 1000000L / Math.max(lookupNanos, 1),
+        pairs * 1000.0 / unregisterNanos));
+  }
+
+  private long forEachWatcher(Object[] watchers, WatcherAction action) throws Exception {
+    return inParallel(threadCount, thread -> {
+      for (int i = thread; i < watchers.length; i += threadCount) {
+        for (int j = 0; j < KEYS_PER_WATCHER; j++) {
+          action.apply(keys.get((i + j * 7919) % keyCount), watchers[i]);
+        }
+      }
+    });
+  }
+
+  private long inParallel(int threads, ThreadAction action) throws Exception {
+    ExecutorService executorService = Executors.newFixedThreadPool(threads);
+    long start = System.nanoTime();
+    List<Future<?>> futures = Lists.newArrayList();
+    for (int i = 0; i < threads; i++) {
+      int thread = i;
+      futures.add(executorService.submit(() -> action.apply(thread)));
+    }
+    for (Future<?> future : futures) {
+      future.get();
+    }
+    long elapsed = System.nanoTime() - start;
+    executorService.shutdown();
+    executorService.awaitTermination(1, TimeUnit.MINUTES);
+    return elapsed;
+  }
+
+  private static long usedHeap() throws InterruptedException {
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      TimeUnit.MILLISECONDS.sleep(100);
+    }
+    Runtime runtime = Runtime.getRuntime();
+    return runtime.totalMemory() - runtime.freeMemory();
+  }
+
+  private interface Registry {
+    void put(String watchKey, Object watcher);
+
+    void remove(String watchKey, Object watcher);
+
+    Collection<Object> get(String watchKey);
+  }
+
+  private interface WatcherAction {
+    void apply(String watchKey, Object watcher);
+  }
+
+  private interface ThreadAction {
+    void apply(int thread);
+  }
+}
@@ -0,0 +1,144 @@
+package com.ctrip.framework.apollo.configservice.util;
+
+import com.google.common.collect.Sets;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertTrue;
+
+public class WatchKeyRegistryTest {
+  private WatchKeyDictionary watchKeyDictionary;
+  private WatchKeyRegistry<String> watchKeyRegistry;
+
+  private String someWatchKey;
+  private String anotherWatchKey;
+  private String someWatcher;
+  private String anotherWatcher;
+
+  @Before
+  public void setUp() throws Exception {
+    watchKeyDictionary = new WatchKeyDictionary();
+    watchKeyRegistry = new WatchKeyRegistry<>(watchKeyDictionary);
+
+    someWatchKey = "someAppId+someCluster+someNamespace";
+    anotherWatchKey = "someAppId+someCluster+anotherNamespace";
+    someWatcher = "someWatcher";
+    anotherWatcher = "anotherWatcher";
+  }
+
+  @Test
+  public void testDictionaryIdsAreStableAndCaseInsensitive() throws Exception {
+    int someId = watchKeyDictionary.getOrCreateId(someWatchKey);
+    int anotherId = watchKeyDictionary.getOrCreateId(anotherWatchKey);
+
+    assertNotEquals(someId, anotherId);
+    assertEquals(someId, watchKeyDictionary.getOrCreateId(someWatchKey));
+    assertEquals(someId, watchKeyDictionary.findId(someWatchKey.toUpperCase()));
+    assertEquals(someId, watchKeyDictionary.getOrCreateId(someWatchKey.toLowerCase()));
+    assertEquals(WatchKeyDictionary.NOT_FOUND, watchKeyDictionary.findId("someAppId+someCluster+unknown"));
+    assertEquals(2, watchKeyDictionary.size());
+  }
+
+  @Test
+  public void testPutAndRemove() throws Exception {
+    assertTrue(watchKeyRegistry.put(someWatchKey, someWatcher));
+    assertTrue(watchKeyRegistry.put(someWatchKey, anotherWatcher));
+    assertFalse(watchKeyRegistry.put(someWatchKey, anotherWatcher));
+    assertTrue(watchKeyRegistry.put(anotherWatchKey, someWatcher));
+
+    assertEquals(3, watchKeyRegistry.size());
+    assertEquals(Sets.newHashSet(someWatcher, anotherWatcher), watchKeyRegistry.get(someWatchKey));
+    //same as the case insensitive multimap it replaces
+    assertEquals(Sets.newHashSet(someWatcher, anotherWatcher),
+        watchKeyRegistry.get(someWatchKey.toLowerCase()));
+    assertTrue(watchKeyRegistry.containsKey(anotherWatchKey));
+
+    assertTrue(watchKeyRegistry.remove(someWatchKey, someWatcher));
+    assertFalse(watchKeyRegistry.remove(someWatchKey, someWatcher));
+    assertTrue(watchKeyRegistry.remove(anotherWatchKey, someWatcher));
+
+    assertEquals(1, watchKeyRegistry.size());
+    assertFalse(watchKeyRegistry.containsKey(anotherWatchKey));
+    assertFalse(watchKeyRegistry.remove("someAppId+someCluster+unknown", someWatcher));
+    assertTrue(watchKeyRegistry.get("someAppId+someCluster+unknown").isEmpty());
+  }
+
+  @Test
+  public void testPutAndRemoveKnownKeys() throws Exception {
+    watchKeyDictionary.getOrCreateId(someWatchKey);
+
+    assertTrue(watchKeyRegistry.put(someWatchKey, someWatcher));
+    assertTrue(watchKeyRegistry.put(someWatchKey.toUpperCase(), anotherWatcher));
+
+    assertEquals(Sets.newHashSet(someWatcher, anotherWatcher), watchKeyRegistry.get(someWatchKey));
+    assertTrue(watchKeyRegistry.remove(someWatchKey, someWatcher));
+    assertTrue(watchKeyRegistry.remove(someWatchKey, anotherWatcher));
+
+    assertFalse(watchKeyRegistry.containsKey(someWatchKey));
+    assertTrue(watchKeyRegistry.isEmpty());
+    //the emptied set is dropped, and a new one is created for the next watcher
+    assertTrue(watchKeyRegistry.put(someWatchKey, someWatcher));
+    assertEquals(Sets.newHashSet(someWatcher), watchKeyRegistry.get(someWatchKey));
+  }
+
+  @Test
+  public void testUnknownKeysNotCreateIds() throws Exception {
+    assertTrue(watchKeyRegistry.put(someWatchKey, someWatcher));
+    assertTrue(watchKeyRegistry.put(anotherWatchKey, someWatcher));
+
+    assertEquals(0, watchKeyDictionary.size());
+    assertEquals(2, unknownKeyWatchers().size());
+
+    assertTrue(watchKeyRegistry.remove(someWatchKey, someWatcher));
+    assertTrue(watchKeyRegistry.remove(anotherWatchKey.toUpperCase(), someWatcher));
+
+    assertTrue(unknownKeyWatchers().isEmpty());
+  }
+
+  @Test
+  public void testWatchersPutBeforeKeyHasId() throws Exception {
+    assertTrue(watchKeyRegistry.put(someWatchKey, someWatcher));
+
+    //e.g. the first release of the key
+    watchKeyDictionary.getOrCreateId(someWatchKey);
+    assertTrue(watchKeyRegistry.put(someWatchKey, anotherWatcher));
+
+    assertEquals(Sets.newHashSet(someWatcher, anotherWatcher), watchKeyRegistry.get(someWatchKey));
+    assertTrue(watchKeyRegistry.remove(someWatchKey, someWatcher));
+    assertTrue(watchKeyRegistry.remove(someWatchKey, anotherWatcher));
+
+    assertTrue(watchKeyRegistry.isEmpty());
+    assertFalse(watchKeyRegistry.containsKey(someWatchKey));
+    assertTrue(unknownKeyWatchers().isEmpty());
+  }
+
+  @Test
+  public void testIdMapGrows() throws Exception {
+    WatchKeyIdMap<String> watchKeyIdMap = new WatchKeyIdMap<>();
+    int someId = 1;
+    int largeId = 100000;
+
+    watchKeyIdMap.put(someId, someWatcher);
+    watchKeyIdMap.computeIfAbsent(largeId, id -> anotherWatcher);
+
+    assertEquals(someWatcher, watchKeyIdMap.get(someId));
+    assertEquals(anotherWatcher, watchKeyIdMap.get(largeId));
+    assertEquals(anotherWatcher, watchKeyIdMap.computeIfAbsent(largeId, id -> someWatcher));
+    assertEquals(null, watchKeyIdMap.get(largeId + 1));
+    assertEquals(null, watchKeyIdMap.get(WatchKeyDictionary.NOT_FOUND));
+
+    assertFalse(watchKeyIdMap.remove(someId, anotherWatcher));
+    assertTrue(watchKeyIdMap.remove(someId, someWatcher));
+    assertEquals(null, watchKeyIdMap.get(someId));
+  }
+
+  private Map<?, ?> unknownKeyWatchers() {
+    return (Map<?, ?>) ReflectionTestUtils.getField(watchKeyRegistry, "unknownKeyWatchers");
+  }
+}
@@ -14,10 +14,16 @@ import org.mockito.Mock;
 import org.mockito.junit.MockitoJUnitRunner;
 
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Set;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 /**
@@ -160,6 +166,36 @@ public class WatchKeysUtilTest {
     assertWatchKeys(somePublicAppId, clusters, somePublicNamespace, watchKeysMap.get(somePublicNamespace));
   }
 
+  @Test
+  public void testAssembleAllWatchKeysMemoizedUntilAppNamespacesChange() throws Exception {
+    Multimap<String, String> watchKeysMap =
+        watchKeysUtil.assembleAllWatchKeys(someAppId, someCluster,
+            Sets.newHashSet(someNamespace, anotherNamespace, somePublicNamespace), someDC);
+    Multimap<String, String> anotherWatchKeysMap =
+        watchKeysUtil.assembleAllWatchKeys(someAppId, someCluster,
+            Sets.newHashSet(somePublicNamespace, anotherNamespace, someNamespace), someDC);
+
+    assertSame(watchKeysMap, anotherWatchKeysMap);
+    verify(appNamespaceService, times(1))
+        .findPublicNamespacesByNames(Sets.newHashSet(somePublicNamespace));
+
+    //the public namespace is deleted
+    when(appNamespaceService.getVersion()).thenReturn(1L);
+    when(appNamespaceService.findPublicNamespacesByNames(Sets.newHashSet(somePublicNamespace)))
+        .thenReturn(Collections.emptyList());
+
+    Multimap<String, String> updatedWatchKeysMap =
+        watchKeysUtil.assembleAllWatchKeys(someAppId, someCluster,
+            Sets.newHashSet(someNamespace, anotherNamespace, somePublicNamespace), someDC);
+
+    Set<String> clusters = Sets.newHashSet(defaultCluster, someCluster, someDC);
+
+    assertNotSame(watchKeysMap, updatedWatchKeysMap);
+    assertEquals(clusters.size() * 3, updatedWatchKeysMap.size());
+    assertFalse(updatedWatchKeysMap.containsValue(Joiner.on(ConfigConsts.CLUSTER_NAMESPACE_SEPARATOR)
+        .join(somePublicAppId, defaultCluster, somePublicNamespace)));
+  }
+
   private void assertWatchKeys(String appId, Set<String> clusters, String namespaceName,
                                Collection<String> watchedKeys) {
     for (String cluster : clusters) {
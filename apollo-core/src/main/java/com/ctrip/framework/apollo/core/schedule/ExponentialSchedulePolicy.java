@@ -28,6 +28,21 @@ public class ExponentialSchedulePolicy implements SchedulePolicy {
     return delayTime;
   }
 
+  /**
+   * Fail with the delay no shorter than the min delay time, e.g. the Retry-After of the server
+   */
+  public long fail(long minDelayTime) {
+    long delayTime = fail();
+
+    if (minDelayTime > delayTime) {
+      delayTime = minDelayTime;
+      //back off from the delay the server asked for on the next failure
+      lastDelayTime = Math.min(minDelayTime, delayTimeUpperBound);
+    }
+
+    return delayTime;
+  }
+
   @Override
   public void success() {
     lastDelayTime = 0;
@@ -0,0 +1,42 @@
+package com.ctrip.framework.apollo.core.schedule;
+
+import static org.junit.Assert.assertEquals;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class ExponentialSchedulePolicyTest {
+  private ExponentialSchedulePolicy schedulePolicy;
+
+  @Before
+  public void setUp() throws Exception {
+    schedulePolicy = new ExponentialSchedulePolicy(1, 8);
+  }
+
+  @Test
+  public void testFail() throws Exception {
+    assertEquals(1, schedulePolicy.fail());
+    assertEquals(2, schedulePolicy.fail());
+    assertEquals(4, schedulePolicy.fail());
+    assertEquals(8, schedulePolicy.fail());
+    assertEquals(8, schedulePolicy.fail());
+
+    schedulePolicy.success();
+
+    assertEquals(1, schedulePolicy.fail());
+  }
+
+  @Test
+  public void testFailWithMinDelayTime() throws Exception {
+    assertEquals(3, schedulePolicy.fail(3));
+    //backs off from the min delay time
+    assertEquals(6, schedulePolicy.fail());
+    assertEquals(8, schedulePolicy.fail(2));
+  }
+
+  @Test
+  public void testFailWithMinDelayTimeBeyondUpperBound() throws Exception {
+    assertEquals(20, schedulePolicy.fail(20));
+    assertEquals(8, schedulePolicy.fail());
+  }
+}
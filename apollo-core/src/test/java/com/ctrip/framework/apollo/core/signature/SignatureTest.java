@@ -1,6 +1,7 @@
 package com.ctrip.framework.apollo.core.signature;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotEquals;
 import static org.junit.Assert.assertTrue;
 
 import java.util.Map;
@@ -23,6 +24,21 @@ public class SignatureTest {
     assertEquals(expectedSignature, actualSignature);
   }
 
+  @Test
+  public void testSignatureWithDifferentSecrets() {
+    String timestamp = "1576478257344";
+    String pathWithQuery = "/configs/100004458/default/application?ip=10.0.0.1";
+    String secret = "df23df3f59884980844ff3dada30fa97";
+    String anotherSecret = "anotherSecret";
+
+    String signature = Signature.signature(timestamp, pathWithQuery, secret);
+    String anotherSignature = Signature.signature(timestamp, pathWithQuery, anotherSecret);
+
+    assertNotEquals(signature, anotherSignature);
+    assertEquals(signature, Signature.signature(timestamp, pathWithQuery, secret));
+    assertEquals(anotherSignature, Signature.signature(timestamp, pathWithQuery, anotherSecret));
+  }
+
   @Test
   public void testBuildHttpHeaders() {
     String url = "http://10.0.0.1:8080/configs/100004458/default/application?ip=10.0.0.1";
@@ -310,6 +310,12 @@ public class AdminServiceAPI {
       return response;
     }
 
+    public List<ReleaseTargetResultDTO> batchCreateReleases(String appId, Env env, BatchReleaseDTO batchRelease) {
+      ReleaseTargetResultDTO[] results = restTemplate.post(env, "apps/{appId}/releases/batch", batchRelease,
+          ReleaseTargetResultDTO[].class, appId);
+      return Arrays.asList(results);
+    }
+
     public ReleaseDTO createGrayDeletionRelease(String appId, Env env, String clusterName, String namespace,
                                     String releaseName, String releaseComment, String operator,
                                     boolean isEmergencyPublish, Set<String> grayDelKeys) {